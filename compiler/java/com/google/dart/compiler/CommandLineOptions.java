@@ -71,6 +71,10 @@ public class CommandLineOptions {
     usage = "Enable incremental compilation")
     private boolean incremental = false;
 
+    @Option(name = "--threads",
+        usage = "Number of threads used to parse, resolve and\n analyze units in parallel (default 1)")
+    private int threadCount = 1;
+
     @Option(name = "--work", aliases = { "-out" },
         usage = "Directory to receive compiler output\n for future incremental builds")
     private File workDirectory = new File("out");
@@ -171,6 +175,13 @@ public class CommandLineOptions {
       return incremental;
     }
 
+    /**
+     * Returns the maximum number of threads the compiler may use for parallel work.
+     */
+    public int getThreadCount() {
+      return Math.max(1, threadCount);
+    }
+
     public boolean shouldBatch() {
       return batch;
     }
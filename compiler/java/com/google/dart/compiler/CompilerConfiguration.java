@@ -58,6 +58,14 @@ public interface CompilerConfiguration {
    */
   boolean incremental();
 
+  /**
+   * Returns the maximum number of threads the compiler may use to parse, resolve and analyze
+   * compilation units in parallel. A value of <code>1</code> means that all work is done on the
+   * calling thread. With more threads, the {@link #getPhases()} which are a
+   * {@link ConcurrentCompilationPhase} may run concurrently for different units.
+   */
+  int getThreadCount();
+
   /**
    * The work directory where incremental build output is stored between invocations.
    */
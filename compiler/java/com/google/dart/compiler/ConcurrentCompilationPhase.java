@@ -0,0 +1,14 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler;
+
+/**
+ * A {@link DartCompilationPhase} which may be executed on different units at the same time. It
+ * must only modify the unit it is executed on, and elements declared in that unit, apart from
+ * caches whose values do not depend on which unit computed them. Other phases are executed on one
+ * unit at a time, in unit order.
+ */
+public interface ConcurrentCompilationPhase extends DartCompilationPhase {
+}
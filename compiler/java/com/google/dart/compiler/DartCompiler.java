@@ -4,6 +4,7 @@
 
 package com.google.dart.compiler;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -49,6 +50,7 @@ import org.kohsuke.args4j.CmdLineParser;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintStream;
 import java.io.Reader;
 import java.io.Writer;
@@ -56,6 +58,7 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -63,6 +66,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Entry point for the Dart compiler.
@@ -134,6 +144,7 @@ public class DartCompiler {
     private final boolean incremental;
     private final List<DartCompilationPhase> phases;
     private final LibrarySource coreLibrarySource;
+    private ExecutorService executor;
 
     private Compiler(LibrarySource app, List<LibrarySource> embedded, CompilerConfiguration config,
         DartCompilerMainContext context) {
@@ -176,6 +187,7 @@ public class DartCompiler {
       } catch (IOException e) {
         context.onError(new DartCompilationError(app, DartCompilerErrorCode.IO, e.getMessage()));
       } finally {
+        shutdownExecutor();
         Tracer.end(logEvent);
       }
     }
@@ -229,9 +241,26 @@ public class DartCompiler {
       TraceEvent logEvent =
           Tracer.canTrace() ? Tracer.start(DartEventType.PARSE_OUTOFDATE) : null;
       CompilerMetrics compilerMetrics = context.getCompilerMetrics();
-      long parseStart = compilerMetrics != null ? CompilerMetrics.getCPUTime() : 0;
+      long parseStart = compilerMetrics != null ? System.nanoTime() : 0;
 
       try {
+        // Schedule parsing of each compilation unit. When parsing in parallel the units are merged
+        // below in the same order as they would be parsed serially, so results are deterministic.
+        Map<LibraryNode, PendingUnit> pendingUnits = Maps.newIdentityHashMap();
+        for (LibraryUnit lib : getLibrariesToProcess()) {
+          LibrarySource libSrc = lib.getSource();
+          for (LibraryNode sourcePathNode : lib.getSourcePaths()) {
+            DartSource dartSrc = libSrc.getSourceFor(sourcePathNode.getText());
+            if (dartSrc == null || !dartSrc.exists()) {
+              continue;
+            }
+            boolean diet = incremental
+                && !SystemLibraryManager.isDartUri(libSrc.getUri())
+                && !isSourceOutOfDate(dartSrc);
+            pendingUnits.put(sourcePathNode, parseLater(dartSrc, lib.getPrefixes(), diet));
+          }
+        }
+
         final Set<String> topLevelSymbolsDiff = Sets.newHashSet();
         for (LibraryUnit lib : getLibrariesToProcess()) {
           LibrarySource libSrc = lib.getSource();
@@ -246,16 +275,14 @@ public class DartCompiler {
             String relPath = sourcePathNode.getText();
             newUnitPaths.add(relPath);
 
-            // Prepare DartSource for "#source" unit.
-            final DartSource dartSrc = libSrc.getSourceFor(relPath);
-            if (dartSrc == null || !dartSrc.exists()) {
+            // Skip "#source" units which don't exist.
+            PendingUnit pendingUnit = pendingUnits.get(sourcePathNode);
+            if (pendingUnit == null) {
               continue;
             }
 
-            if (!incremental
-                || SystemLibraryManager.isDartUri(libSrc.getUri())
-                || isSourceOutOfDate(dartSrc)) {
-              DartUnit unit = parse(dartSrc, lib.getPrefixes(),  false);
+            if (!pendingUnit.isDiet()) {
+              DartUnit unit = pendingUnit.get();
               // If we just parsed unit of library, report problems.
               if (sourcePathNode == selfSourcePath) {
                 // report "#import" problems
@@ -297,7 +324,7 @@ public class DartCompiler {
                 }
               }
             } else {
-              DartUnit dietUnit = parse(dartSrc, lib.getPrefixes(), true);
+              DartUnit dietUnit = pendingUnit.get();
               if (dietUnit != null) {
                 if (sourcePathNode == selfSourcePath) {
                   lib.setSelfDartUnit(dietUnit);
@@ -324,9 +351,9 @@ public class DartCompiler {
         // Parse units, which potentially depend on the difference in top-level symbols.
         if (!topLevelSymbolsDiff.isEmpty()) {
           context.setFilesHaveChanged();
+          Map<LibraryNode, PendingUnit> reparsedUnits = Maps.newIdentityHashMap();
           for (LibraryUnit lib : getLibrariesToProcess()) {
             LibrarySource libSrc = lib.getSource();
-            LibraryNode selfSourcePath = lib.getSelfSourcePath();
             LibraryDeps deps = lib.getDeps(context);
             for (LibraryNode libNode : lib.getSourcePaths()) {
               String relPath = libNode.getText();
@@ -337,19 +364,28 @@ public class DartCompiler {
               }
               // Check re-compilation conditions.
               if (source.shouldRecompileOnAnyTopLevelChange()
-                  || !Sets.intersection(source.getAllSymbols(), topLevelSymbolsDiff).isEmpty()
-                  || !Sets.intersection(source.getHoles(), topLevelSymbolsDiff).isEmpty()) {
+                  || source.usesAnySymbol(topLevelSymbolsDiff)) {
                 DartSource dartSrc = libSrc.getSourceFor(relPath);
                 if (dartSrc == null || !dartSrc.exists()) {
                   continue;
                 }
-                DartUnit unit = parse(dartSrc, lib.getPrefixes(), false);
-                if (unit != null) {
-                  if (libNode == selfSourcePath) {
-                    lib.setSelfDartUnit(unit);
-                  } else {
-                    lib.putUnit(unit);
-                  }
+                reparsedUnits.put(libNode, parseLater(dartSrc, lib.getPrefixes(), false));
+              }
+            }
+          }
+          for (LibraryUnit lib : getLibrariesToProcess()) {
+            LibraryNode selfSourcePath = lib.getSelfSourcePath();
+            for (LibraryNode libNode : lib.getSourcePaths()) {
+              PendingUnit pendingUnit = reparsedUnits.get(libNode);
+              if (pendingUnit == null) {
+                continue;
+              }
+              DartUnit unit = pendingUnit.get();
+              if (unit != null) {
+                if (libNode == selfSourcePath) {
+                  lib.setSelfDartUnit(unit);
+                } else {
+                  lib.putUnit(unit);
                 }
               }
             }
@@ -357,12 +393,154 @@ public class DartCompiler {
         }
       } finally {
         if (compilerMetrics != null) {
-          compilerMetrics.addParseWallTimeNano(CompilerMetrics.getCPUTime() - parseStart);
+          compilerMetrics.addParseWallTimeNano(System.nanoTime() - parseStart);
         }
         Tracer.end(logEvent);
       }
     }
 
+    /**
+     * Schedules parsing of the given source. If parallel parsing is enabled, the unit is parsed on
+     * the parse executor and problems are reported when the unit is retrieved; otherwise it is
+     * parsed on the calling thread when {@link PendingUnit#get()} is invoked.
+     */
+    private PendingUnit parseLater(final DartSource dartSrc, final Set<String> libraryPrefixes,
+        final boolean diet) {
+      PendingUnit pendingUnit = new PendingUnit(dartSrc, libraryPrefixes, diet);
+      ExecutorService executor = getExecutor();
+      if (executor != null) {
+        pendingUnit.parsedUnit = takeParsedUnit(dartSrc);
+        if (pendingUnit.parsedUnit == null) {
+          final DeferredDartCompilerContext unitContext = new DeferredDartCompilerContext(context);
+          pendingUnit.unitContext = unitContext;
+          pendingUnit.future = executor.submit(new Callable<DartUnit>() {
+            @Override
+            public DartUnit call() throws Exception {
+              return parse(dartSrc, libraryPrefixes, diet, unitContext);
+            }
+          });
+        }
+      }
+      return pendingUnit;
+    }
+
+    /**
+     * @return the {@link ExecutorService} used to process units and libraries in parallel, or
+     *         <code>null</code> if all work should be done on the calling thread.
+     */
+    private ExecutorService getExecutor() {
+      int threadCount = config.getThreadCount();
+      if (executor == null && threadCount > 1) {
+        executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "dartc-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+        CompilerMetrics compilerMetrics = context.getCompilerMetrics();
+        if (compilerMetrics != null) {
+          compilerMetrics.setParseThreadCount(threadCount);
+        }
+      }
+      return executor;
+    }
+
+    private void shutdownExecutor() {
+      if (executor != null) {
+        executor.shutdownNow();
+        executor = null;
+      }
+    }
+
+    /**
+     * Runs the given tasks on the executor and waits for all of them to complete.
+     */
+    private void invokeAll(List<Callable<Void>> tasks) throws IOException {
+      try {
+        for (Future<Void> future : getExecutor().invokeAll(tasks)) {
+          try {
+            future.get();
+          } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while compiling units");
+      }
+    }
+
+    /**
+     * A compilation unit which is compiled on the executor, see
+     * {@link Compiler#compileUnitsInParallel()}.
+     */
+    private final class CompiledUnit {
+      private final int index;
+      private final LibraryUnit lib;
+      private final DeferredDartCompilerContext unitContext =
+          new DeferredDartCompilerContext(context);
+      private DartUnit unit;
+      private LibraryDeps.Source deps;
+
+      private CompiledUnit(int index, LibraryUnit lib, DartUnit unit) {
+        this.index = index;
+        this.lib = lib;
+        this.unit = unit;
+      }
+    }
+
+    /**
+     * A compilation unit which is scheduled to be parsed.
+     */
+    private final class PendingUnit {
+      private final DartSource dartSrc;
+      private final Set<String> libraryPrefixes;
+      private final boolean diet;
+      private DartUnit parsedUnit;
+      private Future<DartUnit> future;
+      private DeferredDartCompilerContext unitContext;
+
+      private PendingUnit(DartSource dartSrc, Set<String> libraryPrefixes, boolean diet) {
+        this.dartSrc = dartSrc;
+        this.libraryPrefixes = libraryPrefixes;
+        this.diet = diet;
+      }
+
+      boolean isDiet() {
+        return diet;
+      }
+
+      /**
+       * Waits for the unit to be parsed, reports its problems to the compiler context and returns
+       * it. May return <code>null</code>, see {@link Compiler#parse(DartSource, Set, boolean)}.
+       */
+      DartUnit get() throws IOException {
+        if (parsedUnit != null) {
+          return parsedUnit;
+        }
+        if (future == null) {
+          return parse(dartSrc, libraryPrefixes, diet);
+        }
+        DartUnit unit;
+        try {
+          unit = future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while parsing " + dartSrc.getName());
+        } catch (ExecutionException e) {
+          Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+          throw Throwables.propagate(e.getCause());
+        }
+        unitContext.replay();
+        return checkParseErrors(unit);
+      }
+    }
+
     Collection<LibraryUnit> getLibrariesToProcess() {
       return libraries.values();
     }
@@ -490,19 +668,24 @@ public class DartCompiler {
           Tracer.canTrace() ? Tracer.start(DartEventType.BUILD_LIB_SCOPES) : null;
       try {
         Collection<LibraryUnit> libs = getLibrariesToProcess();
+        LibraryTaskScheduler scheduler = new LibraryTaskScheduler(getExecutor(), context);
 
         // Build the class elements declared in the sources of a library.
-        // Loop can be parallelized.
-        for (LibraryUnit lib : libs) {
-          new TopLevelElementBuilder().exec(lib, context);
-        }
+        scheduler.runIndependently(libs, new LibraryTaskScheduler.LibraryTask() {
+          @Override
+          public void run(LibraryUnit lib, DartCompilerContext libContext) {
+            new TopLevelElementBuilder().exec(lib, libContext);
+          }
+        });
 
         // The library scope can then be constructed, containing types declared
-        // in the library, and // types declared in the imports. Loop can be
-        // parallelized.
-        for (LibraryUnit lib : libs) {
-          new TopLevelElementBuilder().fillInLibraryScope(lib, context);
-        }
+        // in the library, and types declared in the imports.
+        scheduler.runIndependently(libs, new LibraryTaskScheduler.LibraryTask() {
+          @Override
+          public void run(LibraryUnit lib, DartCompilerContext libContext) {
+            new TopLevelElementBuilder().fillInLibraryScope(lib, (DartCompilerListener) libContext);
+          }
+        });
       } finally {
         Tracer.end(logEvent);
       }
@@ -520,12 +703,6 @@ public class DartCompiler {
           // Load the existing DEPS, or create an empty one.
           LibraryDeps deps = lib.getDeps(context);
 
-          // Prepare all top-level symbols.
-          Set<String> oldTopLevelSymbols = Sets.newHashSet();
-          for (LibraryDeps.Source source : deps.getSources()) {
-            oldTopLevelSymbols.addAll(source.getTopSymbols());
-          }
-
           // Parse units that are out-of-date with respect to their dependencies.
           for (DartUnit unit : lib.getUnits()) {
             if (unit.isDiet()) {
@@ -592,15 +769,18 @@ public class DartCompiler {
         // compile.
 
         // Resolve super class chain, and build the member elements. Both passes
-        // need the library scope to be setup. Each for loop can be
-        // parallelized.
-        for (LibraryUnit lib : getLibrariesToProcess()) {
-          for (DartUnit unit : lib.getUnits()) {
-            // These two method calls can be parallelized.
-            new SupertypeResolver().exec(unit, context, getTypeProvider());
-            new MemberBuilder().exec(unit, context, getTypeProvider());
-          }
-        }
+        // need the library scope to be setup. A library is processed once all
+        // the libraries it imports are done.
+        new LibraryTaskScheduler(getExecutor(), context).runInImportOrder(getLibrariesToProcess(),
+            new LibraryTaskScheduler.LibraryTask() {
+              @Override
+              public void run(LibraryUnit lib, DartCompilerContext libContext) {
+                for (DartUnit unit : lib.getUnits()) {
+                  new SupertypeResolver().exec(unit, libContext, getTypeProvider());
+                  new MemberBuilder().exec(unit, libContext, getTypeProvider());
+                }
+              }
+            });
 
         // Perform resolution on compile-time constant expressions.
         for (LibraryUnit lib : getLibrariesToProcess()) {
@@ -732,7 +912,12 @@ public class DartCompiler {
         // Set entry point
         setEntryPoint();
 
-        // The two following for loops can be parallelized.
+        // Compile units on several threads, if possible.
+        if (getExecutor() != null) {
+          compileUnitsInParallel();
+          return;
+        }
+
         for (LibraryUnit lib : getLibrariesToProcess()) {
           boolean persist = false;
 
@@ -744,20 +929,12 @@ public class DartCompiler {
               continue;
             }
 
-            updateAnalysisTimestamp(unit);
+            updateAnalysisTimestamp(unit, System.currentTimeMillis());
 
             // Run all compiler phases including AST simplification and symbol
             // resolution. This must run in serial.
             for (DartCompilationPhase phase : phases) {
-              TraceEvent phaseEvent =
-                  Tracer.canTrace() ? Tracer.start(DartEventType.EXEC_PHASE, "phase", phase
-                      .getClass().getCanonicalName(), "lib", lib.getName(), "unit", unit
-                      .getSourceName()) : null;
-              try {
-                unit = phase.exec(unit, context, getTypeProvider());
-              } finally {
-                Tracer.end(phaseEvent);
-              }
+              unit = execPhase(phase, lib, unit, context);
               if (!config.resolveDespiteParseErrors() && context.getErrorCount() > 0) {
                 return;
               }
@@ -786,20 +963,172 @@ public class DartCompiler {
       }
     }
 
-    private void updateAnalysisTimestamp(DartUnit unit) throws IOException {
+    /**
+     * Does the same as the serial loop in {@link #compileLibraries()}, but runs each
+     * {@link ConcurrentCompilationPhase} for different units at the same time. Each phase is run
+     * for all units before the next phase is started, so a phase sees the results of the previous
+     * phases for all units, whatever the thread scheduling. Problems, unit notifications and
+     * dependencies are reported to the context in unit order, and if errors stop the compilation,
+     * it stops at the same unit as the serial loop would.
+     */
+    private void compileUnitsInParallel() throws IOException {
+      final long analysisTime = System.currentTimeMillis();
+      List<CompiledUnit> units = Lists.newArrayList();
+      for (LibraryUnit lib : getLibrariesToProcess()) {
+        for (DartUnit unit : lib.getUnits()) {
+          // Don't compile diet units.
+          if (!unit.isDiet()) {
+            units.add(new CompiledUnit(units.size(), lib, unit));
+          }
+        }
+      }
+
+      // Start with the largest units, so that they don't delay the end of a phase.
+      List<CompiledUnit> largestFirst = Lists.newArrayList(units);
+      Collections.sort(largestFirst, new Comparator<CompiledUnit>() {
+        @Override
+        public int compare(CompiledUnit o1, CompiledUnit o2) {
+          return o2.unit.getSourceInfo().getLength() - o1.unit.getSourceInfo().getLength();
+        }
+      });
+
+      // Run all compiler phases. If errors stop the compilation, only the units before the first
+      // unit with errors go on to the next phase. Phases which modify elements declared in other
+      // units, such as the resolver, run for one unit at a time, in unit order.
+      int failedIndex = -1;
+      for (final DartCompilationPhase phase : phases) {
+        if (phase instanceof ConcurrentCompilationPhase) {
+          List<Callable<Void>> tasks = Lists.newArrayList();
+          for (final CompiledUnit compiledUnit : largestFirst) {
+            if (failedIndex == -1 || compiledUnit.index < failedIndex) {
+              tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                  compiledUnit.unit = execPhase(phase, compiledUnit.lib, compiledUnit.unit,
+                      compiledUnit.unitContext);
+                  return null;
+                }
+              });
+            }
+          }
+          invokeAll(tasks);
+        } else {
+          for (CompiledUnit compiledUnit : units) {
+            if (failedIndex != -1 && compiledUnit.index >= failedIndex) {
+              break;
+            }
+            compiledUnit.unit = execPhase(phase, compiledUnit.lib, compiledUnit.unit,
+                compiledUnit.unitContext);
+            if (!config.resolveDespiteParseErrors()
+                && (context.getErrorCount() > 0 || compiledUnit.unitContext.getErrorCount() > 0)) {
+              break;
+            }
+          }
+        }
+        if (!config.resolveDespiteParseErrors()) {
+          for (CompiledUnit compiledUnit : units) {
+            if (compiledUnit.index == failedIndex) {
+              break;
+            }
+            if (context.getErrorCount() > 0 || compiledUnit.unitContext.getErrorCount() > 0) {
+              failedIndex = compiledUnit.index;
+              break;
+            }
+          }
+        }
+      }
+      final int compiledCount = failedIndex == -1 ? units.size() : failedIndex;
+      int analyzedCount = failedIndex == -1 ? units.size() : failedIndex + 1;
+
+      // Write timestamps of the analyzed units and collect dependencies of the compiled units.
+      List<Callable<Void>> tasks = Lists.newArrayList();
+      for (final CompiledUnit compiledUnit : units.subList(0, analyzedCount)) {
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            updateAnalysisTimestamp(compiledUnit.unit, analysisTime);
+            if (compiledUnit.index < compiledCount) {
+              compiledUnit.deps = LibraryDeps.buildSource(compiledUnit.unit);
+            }
+            return null;
+          }
+        });
+      }
+      invokeAll(tasks);
+
+      // Report results in unit order.
+      Set<LibraryUnit> persistedLibs = Sets.newLinkedHashSet();
+      for (CompiledUnit compiledUnit : units.subList(0, analyzedCount)) {
+        compiledUnit.unitContext.replay();
+        if (compiledUnit.index < compiledCount) {
+          // To help support the IDE, notify the listener that this unit is compiled.
+          context.unitCompiled(compiledUnit.unit);
+          compiledUnit.lib.getDeps(context).update(context, compiledUnit.unit, compiledUnit.deps);
+          persistedLibs.add(compiledUnit.lib);
+        }
+      }
+
+      // Persist the DEPS files of the libraries which were compiled completely.
+      if (failedIndex != -1) {
+        persistedLibs.remove(units.get(failedIndex).lib);
+      }
+      tasks.clear();
+      for (final LibraryUnit lib : persistedLibs) {
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            lib.writeDeps(context);
+            return null;
+          }
+        });
+      }
+      invokeAll(tasks);
+    }
+
+    /**
+     * Runs the given phase on the given unit, reporting problems to the given context.
+     */
+    private DartUnit execPhase(DartCompilationPhase phase, LibraryUnit lib, DartUnit unit,
+        DartCompilerContext unitContext) {
+      TraceEvent phaseEvent =
+          Tracer.canTrace() ? Tracer.start(DartEventType.EXEC_PHASE, "phase", phase
+              .getClass().getCanonicalName(), "lib", lib.getName(), "unit", unit
+              .getSourceName()) : null;
+      try {
+        return phase.exec(unit, unitContext, getTypeProvider());
+      } finally {
+        Tracer.end(phaseEvent);
+      }
+    }
+
+    private void updateAnalysisTimestamp(DartUnit unit, long timestamp) throws IOException {
       // Update timestamp.
       Writer writer =
           context.getArtifactWriter(unit.getSourceInfo().getSource(), "", EXTENSION_TIMESTAMP);
-      String timestampData = String.format("%d\n", System.currentTimeMillis());
+      String timestampData = String.format("%d\n", timestamp);
       writer.write(timestampData);
       writer.close();
     }
 
     DartUnit parse(DartSource dartSrc, Set<String> libraryPrefixes, boolean diet) throws IOException {
+      DartUnit parsedUnit = takeParsedUnit(dartSrc);
+      if (parsedUnit != null) {
+        return parsedUnit;
+      }
+      return checkParseErrors(parse(dartSrc, libraryPrefixes, diet, context));
+    }
+
+    /**
+     * Reads and parses the given source, reporting problems to the given listener. May be called
+     * concurrently from several threads.
+     */
+    private DartUnit parse(DartSource dartSrc, Set<String> libraryPrefixes, boolean diet,
+        DartCompilerListener listener) throws IOException {
       TraceEvent parseEvent =
           Tracer.canTrace() ? Tracer.start(DartEventType.PARSE, "src", dartSrc.getName()) : null;
       CompilerMetrics compilerMetrics = context.getCompilerMetrics();
       long parseStart = compilerMetrics != null ? CompilerMetrics.getThreadTime() : 0;
+      long unitParseStart = compilerMetrics != null ? System.nanoTime() : 0;
       Reader r = dartSrc.getSourceReader();
       String srcCode;
       boolean failed = true;
@@ -812,17 +1141,12 @@ public class DartCompiler {
         }
 
         DartScannerParserContext parserContext =
-            new DartScannerParserContext(dartSrc, srcCode, context, context.getCompilerMetrics());
+            new DartScannerParserContext(dartSrc, srcCode, listener, compilerMetrics);
         DartParser parser = new DartParser(parserContext, libraryPrefixes, diet);
         DartUnit unit = parser.parseUnit(dartSrc);
         if (compilerMetrics != null) {
           compilerMetrics.addParseTimeNano(CompilerMetrics.getThreadTime() - parseStart);
-        }
-
-        if (!config.resolveDespiteParseErrors() && context.getErrorCount() > 0) {
-          // We don't return this unit, so no more processing expected for it.
-          context.unitCompiled(unit);
-          return null;
+          compilerMetrics.addUnitParseWallTimeNano(System.nanoTime() - unitParseStart);
         }
         return unit;
       } finally {
@@ -830,6 +1154,27 @@ public class DartCompiler {
       }
     }
 
+    /**
+     * @return the given unit, or <code>null</code> if it should not be processed any further
+     *         because of parse errors.
+     */
+    private DartUnit checkParseErrors(DartUnit unit) {
+      if (!config.resolveDespiteParseErrors() && context.getErrorCount() > 0) {
+        // We don't return this unit, so no more processing expected for it.
+        context.unitCompiled(unit);
+        return null;
+      }
+      return unit;
+    }
+
+    /**
+     * @return the already parsed {@link DartUnit} to use for the given source, or
+     *         <code>null</code> if the source should be parsed.
+     */
+    DartUnit takeParsedUnit(DartSource dartSrc) {
+      return null;
+    }
+
     private void reportMissingSource(DartCompilerContext context,
                                      LibrarySource libSrc,
                                      LibraryNode libNode) {
@@ -876,15 +1221,14 @@ public class DartCompiler {
     }
 
     @Override
-    DartUnit parse(DartSource dartSrc, Set<String> prefixes, boolean diet) throws IOException {
+    DartUnit takeParsedUnit(DartSource dartSrc) {
       if (parsedUnits == null) {
-        return super.parse(dartSrc, prefixes, diet);
+        return null;
       }
       URI srcUri = dartSrc.getUri();
       // Remove the parsed unit from the map if present
       // so that it will not be consumed a 2nd time if it is sourced by multiple libraries
-      DartUnit parsedUnit = parsedUnits.remove(srcUri);
-      return parsedUnit == null ? super.parse(dartSrc, prefixes, diet) : parsedUnit;
+      return parsedUnits.remove(srcUri);
     }
   }
 
@@ -1184,7 +1528,12 @@ public class DartCompiler {
     DartCompilerMainContext context = new DartCompilerMainContext(lib, provider, listener, config);
     Compiler compiler = new SelectiveCompiler(lib, resolvedLibs, parsedUnits, config, context);
 
-    LibraryUnit topLibUnit = compiler.updateAndResolve();
+    LibraryUnit topLibUnit;
+    try {
+      topLibUnit = compiler.updateAndResolve();
+    } finally {
+      compiler.shutdownExecutor();
+    }
 
     Map<URI, LibraryUnit> librariesToResolve;
     librariesToResolve = new HashMap<URI, LibraryUnit>();
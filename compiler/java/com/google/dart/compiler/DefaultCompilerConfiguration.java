@@ -96,6 +96,11 @@ public class DefaultCompilerConfiguration implements CompilerConfiguration {
     return compilerOptions.buildIncrementally();
   }
 
+  @Override
+  public int getThreadCount() {
+    return compilerOptions.getThreadCount();
+  }
+
   @Override
   public File getOutputDirectory() {
     return compilerOptions.getWorkDirectory();
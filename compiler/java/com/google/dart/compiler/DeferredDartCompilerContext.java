@@ -0,0 +1,147 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler;
+
+import com.google.common.collect.Lists;
+import com.google.dart.compiler.ast.DartUnit;
+import com.google.dart.compiler.ast.LibraryUnit;
+import com.google.dart.compiler.metrics.CompilerMetrics;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * A {@link DartCompilerContext} for work done on a worker thread. Listener events are recorded, so
+ * that they can later be replayed, in a deterministic order, to the main compiler context. All
+ * other requests are forwarded to the main context. Each instance is expected to be used by a
+ * single thread at a time.
+ */
+final class DeferredDartCompilerContext implements DartCompilerListener, DartCompilerContext {
+
+  /**
+   * Single recorded event.
+   */
+  private interface Event {
+    void replay(DartCompilerListener listener);
+  }
+
+  private final DartCompilerMainContext context;
+  private final List<Event> events = Lists.newArrayList();
+  private int errorCount;
+
+  DeferredDartCompilerContext(DartCompilerMainContext context) {
+    this.context = context;
+  }
+
+  @Override
+  public void onError(final DartCompilationError event) {
+    ErrorCode errorCode = event.getErrorCode();
+    if (errorCode.getSubSystem() != SubSystem.STATIC_TYPE
+        && errorCode.getErrorSeverity() == ErrorSeverity.ERROR) {
+      errorCount++;
+    }
+    events.add(new Event() {
+      @Override
+      public void replay(DartCompilerListener listener) {
+        listener.onError(event);
+      }
+    });
+  }
+
+  @Override
+  public void unitAboutToCompile(final DartSource source, final boolean diet) {
+    events.add(new Event() {
+      @Override
+      public void replay(DartCompilerListener listener) {
+        listener.unitAboutToCompile(source, diet);
+      }
+    });
+  }
+
+  @Override
+  public void unitCompiled(final DartUnit unit) {
+    events.add(new Event() {
+      @Override
+      public void replay(DartCompilerListener listener) {
+        listener.unitCompiled(unit);
+      }
+    });
+  }
+
+  /**
+   * @return the number of recorded errors which the main context counts in
+   *         {@link DartCompilerMainContext#getErrorCount()}.
+   */
+  int getErrorCount() {
+    return errorCount;
+  }
+
+  /**
+   * Sends all recorded events to the main compiler context, in the order they were recorded, and
+   * forgets them.
+   */
+  void replay() {
+    for (Event event : events) {
+      event.replay(context);
+    }
+    events.clear();
+    errorCount = 0;
+  }
+
+  @Override
+  public LibraryUnit getApplicationUnit() {
+    return context.getApplicationUnit();
+  }
+
+  @Override
+  public LibraryUnit getAppLibraryUnit() {
+    return context.getAppLibraryUnit();
+  }
+
+  @Override
+  public LibraryUnit getLibraryUnit(LibrarySource lib) {
+    return context.getLibraryUnit(lib);
+  }
+
+  @Override
+  public Reader getArtifactReader(Source source, String part, String extension)
+      throws IOException {
+    return context.getArtifactReader(source, part, extension);
+  }
+
+  @Override
+  public URI getArtifactUri(DartSource source, String part, String extension) {
+    return context.getArtifactUri(source, part, extension);
+  }
+
+  @Override
+  public Writer getArtifactWriter(Source source, String part, String extension)
+      throws IOException {
+    return context.getArtifactWriter(source, part, extension);
+  }
+
+  @Override
+  public boolean isOutOfDate(Source source, Source base, String extension) {
+    return context.isOutOfDate(source, base, extension);
+  }
+
+  @Override
+  public CompilerMetrics getCompilerMetrics() {
+    return context.getCompilerMetrics();
+  }
+
+  @Override
+  public CompilerConfiguration getCompilerConfiguration() {
+    return context.getCompilerConfiguration();
+  }
+
+  @Override
+  public LibrarySource getSystemLibraryFor(String importSpec) {
+    return context.getSystemLibraryFor(importSpec);
+  }
+}
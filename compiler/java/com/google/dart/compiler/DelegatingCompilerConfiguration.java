@@ -63,6 +63,11 @@ public class DelegatingCompilerConfiguration implements CompilerConfiguration {
     return delegate.incremental();
   }
 
+  @Override
+  public int getThreadCount() {
+    return delegate.getThreadCount();
+  }
+
   @Override
   public File getOutputDirectory() {
     return delegate.getOutputDirectory();
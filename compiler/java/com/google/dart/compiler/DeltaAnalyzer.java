@@ -6,10 +6,12 @@ package com.google.dart.compiler;
 
 import com.google.common.io.CharStreams;
 import com.google.common.io.Closeables;
+import com.google.dart.compiler.ast.DartClass;
 import com.google.dart.compiler.ast.DartNode;
 import com.google.dart.compiler.ast.DartUnit;
 import com.google.dart.compiler.ast.LibraryNode;
 import com.google.dart.compiler.ast.LibraryUnit;
+import com.google.dart.compiler.common.SourceInfo;
 import com.google.dart.compiler.metrics.CompilerMetrics;
 import com.google.dart.compiler.parser.DartParser;
 import com.google.dart.compiler.parser.DartScannerParserContext;
@@ -22,6 +24,7 @@ import com.google.dart.compiler.resolver.MemberBuilder;
 import com.google.dart.compiler.resolver.Resolver;
 import com.google.dart.compiler.resolver.Scope;
 import com.google.dart.compiler.resolver.SupertypeResolver;
+import com.google.dart.compiler.type.InterfaceType;
 import com.google.dart.compiler.type.TypeAnalyzer;
 
 import java.io.IOException;
@@ -36,6 +39,8 @@ class DeltaAnalyzer {
   private final DartCompilerListener listener;
   private final CoreTypeProvider typeProvider;
   private final DartCompilerContext context;
+  private final int interestStart;
+  private final int interestLength;
 
   public DeltaAnalyzer(SourceDelta delta,
                        LibraryElement enclosingLibrary,
@@ -49,6 +54,8 @@ class DeltaAnalyzer {
     this.enclosingLibrary = enclosingLibrary;
     this.config = config;
     this.listener = listener;
+    this.interestStart = interestStart;
+    this.interestLength = interestLength;
     typeProvider = new CoreTypeProviderImplementation(coreLibrary.getScope(), listener);
     this.context = new Context();
   }
@@ -67,14 +74,49 @@ class DeltaAnalyzer {
     new SupertypeResolver().exec(unit, context, typeProvider);
     new MemberBuilder().exec(unit, context, typeProvider);
 
-    // The following two phases can be narrowed down to the interest area. We currently ignore the
-    // interest area, but long term, we will need to narrow down to the interest area to handle
-    // very large files.
-    new Resolver(context, scope, typeProvider).exec(unit);
-    new TypeAnalyzer().exec(unit, context, typeProvider);
+    // The method bodies are only resolved and analyzed in the member enclosing the interest area,
+    // so that the cost does not grow with the size of the unit.
+    DartNode member = interestStart >= 0 ? findInterestMember(unit) : null;
+    if (member == null) {
+      new Resolver(context, scope, typeProvider).exec(unit);
+      new TypeAnalyzer().exec(unit, context, typeProvider);
+    } else {
+      new Resolver(context, scope, typeProvider).exec(unit, member);
+      InterfaceType currentClass = null;
+      if (member.getParent() instanceof DartClass) {
+        currentClass = ((DartClass) member.getParent()).getElement().getType();
+      }
+      TypeAnalyzer.analyze(member, typeProvider, context, currentClass);
+    }
     return unit;
   }
 
+  /**
+   * @return the top-level node or class member which encloses the interest area, or
+   *         <code>null</code> if the interest area is not within a top-level node.
+   */
+  private DartNode findInterestMember(DartUnit unit) {
+    for (DartNode node : unit.getTopLevelNodes()) {
+      if (enclosesInterest(node)) {
+        if (node instanceof DartClass) {
+          for (DartNode member : ((DartClass) node).getMembers()) {
+            if (enclosesInterest(member)) {
+              return member;
+            }
+          }
+        }
+        return node;
+      }
+    }
+    return null;
+  }
+
+  private boolean enclosesInterest(DartNode node) {
+    SourceInfo sourceInfo = node.getSourceInfo();
+    return sourceInfo.getOffset() <= interestStart
+        && interestStart + interestLength <= sourceInfo.getEnd();
+  }
+
   private Scope deltaLibraryScope(Source originalSource, DartUnit unit) {
     // Create a library unit which holds the new unit.
     LibraryUnit libraryUnit = new LibraryUnit(makeLibrarySource("delta"));
@@ -4,9 +4,7 @@
 package com.google.dart.compiler;
 
 import com.google.common.base.Objects;
-import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.dart.compiler.ast.DartUnit;
@@ -16,6 +14,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -25,7 +24,7 @@ import java.util.Set;
  * Represents a library's dependencies artifact.
  */
 public class LibraryDeps {
-  private static final String VERSION = "v00001";
+  private static final String VERSION = "v00002";
 
   /**
    * Each dependency record contains the library in which it was found, name of the unit in this
@@ -72,11 +71,35 @@ public class LibraryDeps {
 
   public static class Source {
     private final Set<Dependency> deps = Sets.newHashSet();
-    private final Set<String> topSymbols = Sets.newHashSet();
-    private final Set<String> allSymbols = Sets.newHashSet();
-    private final Set<String> holes = Sets.newHashSet();
+    private Set<String> topSymbols;
+    private Set<String> allSymbols;
+    private Set<String> holes;
     private boolean shouldRecompileOnAnyTopLevelChange = false;
 
+    /**
+     * The sorted symbol table of the DEPS artifact from which this {@link Source} was read, or
+     * <code>null</code>. Symbols are referenced by their index in this table, and the sorted index
+     * arrays are decoded into {@link Set}s only when requested.
+     */
+    private final String[] symbolTable;
+    private final int[] topSymbolIds;
+    private final int[] allSymbolIds;
+    private final int[] holeIds;
+
+    public Source() {
+      this(null, null, null, null);
+      topSymbols = Sets.newHashSet();
+      allSymbols = Sets.newHashSet();
+      holes = Sets.newHashSet();
+    }
+
+    private Source(String[] symbolTable, int[] topSymbolIds, int[] allSymbolIds, int[] holeIds) {
+      this.symbolTable = symbolTable;
+      this.topSymbolIds = topSymbolIds;
+      this.allSymbolIds = allSymbolIds;
+      this.holeIds = holeIds;
+    }
+
     /**
      * @return the {@link Set} of {@link Dependency}s.
      */
@@ -87,14 +110,20 @@ public class LibraryDeps {
     /**
      * @return the names of top-level elements, such as methods and classes.
      */
-    public Set<String> getTopSymbols() {
+    public synchronized Set<String> getTopSymbols() {
+      if (topSymbols == null) {
+        topSymbols = toSet(topSymbolIds);
+      }
       return topSymbols;
     }
 
     /**
      * @return the names of all elements in unit, such as names of local variables, fields, etc.
      */
-    public Set<String> getAllSymbols() {
+    public synchronized Set<String> getAllSymbols() {
+      if (allSymbols == null) {
+        allSymbols = toSet(allSymbolIds);
+      }
       return allSymbols;
     }
 
@@ -102,10 +131,41 @@ public class LibraryDeps {
      * @return the names of functions, which are invoked without qualifier. So, declaration or
      *         removing function with such name on top-level should cause recompiling.
      */
-    public Set<String> getHoles() {
+    public synchronized Set<String> getHoles() {
+      if (holes == null) {
+        holes = toSet(holeIds);
+      }
       return holes;
     }
 
+    /**
+     * @return <code>true</code> if any of the given names is in {@link #getAllSymbols()} or
+     *         {@link #getHoles()}. For a {@link Source} read from a DEPS artifact this uses binary
+     *         searches in the sorted symbol table and index arrays, without decoding the symbols.
+     */
+    public synchronized boolean usesAnySymbol(Set<String> names) {
+      if (allSymbols == null && holes == null) {
+        for (String name : names) {
+          int id = Arrays.binarySearch(symbolTable, name);
+          if (id >= 0) {
+            if (Arrays.binarySearch(allSymbolIds, id) >= 0
+                || Arrays.binarySearch(holeIds, id) >= 0) {
+              return true;
+            }
+          }
+        }
+        return false;
+      }
+      Set<String> all = getAllSymbols();
+      Set<String> holeNames = getHoles();
+      for (String name : names) {
+        if (all.contains(name) || holeNames.contains(name)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
     /**
      * @return <code>true</code> if this unit should be recompiled on any change in the set of
      *         top-level symbols. Typically unit has compilation errors, which potentially may be
@@ -127,7 +187,7 @@ public class LibraryDeps {
      */
     public void addTopSymbol(String symbol) {
       if (!Strings.isNullOrEmpty(symbol)) {
-        topSymbols.add(symbol);
+        getTopSymbols().add(symbol);
       }
     }
 
@@ -135,14 +195,22 @@ public class LibraryDeps {
      * Adds symbol to the {@link Set} of all symbols.
      */
     public void addAllSymbol(String symbol) {
-      allSymbols.add(symbol);
+      getAllSymbols().add(symbol);
     }
 
     /**
      * Adds new hole for {@link #getHoles()}.
      */
     public void addHole(String hole) {
-      holes.add(hole);
+      getHoles().add(hole);
+    }
+
+    private Set<String> toSet(int[] ids) {
+      Set<String> result = Sets.newHashSetWithExpectedSize(ids.length);
+      for (int id : ids) {
+        result.add(symbolTable[id]);
+      }
+      return result;
     }
   }
 
@@ -164,30 +232,22 @@ public class LibraryDeps {
         return deps;
       }
     }
+    // Read symbol table.
+    String[] symbolTable = new String[Integer.parseInt(buf.readLine())];
+    for (int i = 0; i < symbolTable.length; i++) {
+      symbolTable[i] = buf.readLine();
+    }
     // Read units dependencies.
     String relPath;
     while (null != (relPath = buf.readLine())) {
-      Source source = new Source();
       // Read flags.
-      source.shouldRecompileOnAnyTopLevelChange = Boolean.parseBoolean(buf.readLine());
-      // Read top symbols.
-      {
-        String line = buf.readLine();
-        Iterable<String> topSymbols = Splitter.on(' ').omitEmptyStrings().split(line);
-        Iterables.addAll(source.topSymbols, topSymbols);
-      }
-      // Read all symbols.
-      {
-        String line = buf.readLine();
-        Iterable<String> allSymbols = Splitter.on(' ').omitEmptyStrings().split(line);
-        Iterables.addAll(source.allSymbols, allSymbols);
-      }
-      // Read holes.
-      {
-        String line = buf.readLine();
-        Iterable<String> holes = Splitter.on(' ').omitEmptyStrings().split(line);
-        Iterables.addAll(source.holes, holes);
-      }
+      boolean shouldRecompileOnAnyTopLevelChange = Boolean.parseBoolean(buf.readLine());
+      // Read top symbols, all symbols and holes.
+      int[] topSymbolIds = parseIds(buf.readLine());
+      int[] allSymbolIds = parseIds(buf.readLine());
+      int[] holeIds = parseIds(buf.readLine());
+      Source source = new Source(symbolTable, topSymbolIds, allSymbolIds, holeIds);
+      source.shouldRecompileOnAnyTopLevelChange = shouldRecompileOnAnyTopLevelChange;
       // Read dependencies.
       while (true) {
         String line = buf.readLine();
@@ -196,8 +256,10 @@ public class LibraryDeps {
           break;
         }
         // Parse line.
-        String[] parts = line.split(" ");
-        source.deps.add(new Dependency(new URI(parts[0]), parts[1], Long.parseLong(parts[2])));
+        int firstSpace = line.indexOf(' ');
+        int lastSpace = line.lastIndexOf(' ');
+        source.deps.add(new Dependency(new URI(line.substring(0, firstSpace)), line.substring(
+            firstSpace + 1, lastSpace), Long.parseLong(line.substring(lastSpace + 1))));
       }
       // Remember dependencies for current unit.
       deps.sources.put(relPath, source);
@@ -205,7 +267,37 @@ public class LibraryDeps {
     return deps;
   }
 
-  private final Map<String, Source> sources = Maps.newHashMap();
+  /**
+   * @return the symbol ids in the given line, separated by single spaces.
+   */
+  private static int[] parseIds(String line) {
+    int length = line.length();
+    if (length == 0) {
+      return new int[0];
+    }
+    int count = 1;
+    for (int i = 0; i < length; i++) {
+      if (line.charAt(i) == ' ') {
+        count++;
+      }
+    }
+    int[] ids = new int[count];
+    int index = 0;
+    int value = 0;
+    for (int i = 0; i < length; i++) {
+      char c = line.charAt(i);
+      if (c == ' ') {
+        ids[index++] = value;
+        value = 0;
+      } else {
+        value = value * 10 + (c - '0');
+      }
+    }
+    ids[index] = value;
+    return ids;
+  }
+
+  private final Map<String, Source> sources = Maps.newConcurrentMap();
 
   public LibraryDeps() {
   }
@@ -242,10 +334,35 @@ public class LibraryDeps {
    * Update the library dependencies to reflect this unit's classes.
    */
   public void update(DartCompilerMainContext context, DartUnit unit) {
-    Source source = new Source();
+    update(context, unit, buildSource(unit));
+  }
+
+  /**
+   * Update the library dependencies to reflect this unit's classes, using the {@link Source}
+   * previously built by {@link #buildSource(DartUnit)}. Reads the errors reported to the context
+   * for the unit, so must only be called once all of them have been reported, and not concurrently
+   * with other updates of the same context.
+   */
+  public void update(DartCompilerMainContext context, DartUnit unit, Source source) {
     DartSource unitSource = (DartSource) unit.getSourceInfo().getSource();
     String relPath = unitSource.getRelativePath();
     putSource(relPath, source);
+    // Analyze errors and see if any of them should force recompilation.
+    List<DartCompilationError> sourceErrors = context.getSourceErrors(unitSource);
+    for (DartCompilationError error : sourceErrors) {
+      if (error.getErrorCode().needsRecompilation()) {
+        source.shouldRecompileOnAnyTopLevelChange = true;
+        break;
+      }
+    }
+  }
+
+  /**
+   * Builds the {@link Source} with the dependencies and symbols of the given unit. Does not depend
+   * on the state of this {@link LibraryDeps}, so may be called on any thread.
+   */
+  public static Source buildSource(DartUnit unit) {
+    Source source = new Source();
     // Remember dependencies.
     LibraryDepsVisitor.exec(unit, source);
     // Fill Source with symbols.
@@ -255,20 +372,31 @@ public class LibraryDeps {
     for (String name : unit.getTopDeclarationNames()) {
       source.addTopSymbol(name);
     }
-    // Analyze errors and see if any of them should force recompilation.
-    List<DartCompilationError> sourceErrors = context.getSourceErrors(unitSource);
-    for (DartCompilationError error : sourceErrors) {
-      if (error.getErrorCode().needsRecompilation()) {
-        source.shouldRecompileOnAnyTopLevelChange = true;
-        break;
-      }
-    }
+    return source;
   }
 
   public void write(Writer writer) throws IOException {
+    // Prepare sorted symbol table.
+    String[] symbolTable;
+    {
+      Set<String> symbols = Sets.newTreeSet();
+      for (Source source : sources.values()) {
+        symbols.addAll(source.getTopSymbols());
+        symbols.addAll(source.getAllSymbols());
+        symbols.addAll(source.getHoles());
+      }
+      symbolTable = symbols.toArray(new String[symbols.size()]);
+    }
     // Write version.
     writer.write(VERSION);
     writer.write('\n');
+    // Write symbol table.
+    writer.write(Integer.toString(symbolTable.length));
+    writer.write('\n');
+    for (String symbol : symbolTable) {
+      writer.write(symbol);
+      writer.write('\n');
+    }
     // Write entries.
     for (Entry<String, Source> entry : sources.entrySet()) {
       String relPath = entry.getKey();
@@ -279,24 +407,10 @@ public class LibraryDeps {
       // Flags.
       writer.write(Boolean.toString(source.shouldRecompileOnAnyTopLevelChange));
       writer.write('\n');
-      // Write top symbols.
-      for (String symbol : source.topSymbols) {
-        writer.write(symbol);
-        writer.write(' ');
-      }
-      writer.write('\n');
-      // Write all symbols.
-      for (String symbol : source.allSymbols) {
-        writer.write(symbol);
-        writer.write(' ');
-      }
-      writer.write('\n');
-      // Write holes.
-      for (String hole : source.holes) {
-        writer.write(hole);
-        writer.write(' ');
-      }
-      writer.write('\n');
+      // Write top symbols, all symbols and holes.
+      writeIds(writer, symbolTable, source.getTopSymbols());
+      writeIds(writer, symbolTable, source.getAllSymbols());
+      writeIds(writer, symbolTable, source.getHoles());
       // Write dependencies.
       for (Dependency dep : source.deps) {
         writer.write(dep.libUri.toString());
@@ -310,4 +424,24 @@ public class LibraryDeps {
       writer.write('\n');
     }
   }
+
+  /**
+   * Writes the sorted ids of the given symbols in the given symbol table, separated by spaces.
+   */
+  private static void writeIds(Writer writer, String[] symbolTable, Set<String> symbols)
+      throws IOException {
+    int[] ids = new int[symbols.size()];
+    int index = 0;
+    for (String symbol : symbols) {
+      ids[index++] = Arrays.binarySearch(symbolTable, symbol);
+    }
+    Arrays.sort(ids);
+    for (int i = 0; i < ids.length; i++) {
+      if (i != 0) {
+        writer.write(' ');
+      }
+      writer.write(Integer.toString(ids[i]));
+    }
+    writer.write('\n');
+  }
 }
@@ -0,0 +1,266 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.dart.compiler.ast.LibraryUnit;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a {@link LibraryTask} for each library of a set of libraries, possibly in parallel. Problems
+ * reported by the tasks are sent to the compiler context in the iteration order of the libraries,
+ * so the result does not depend on thread scheduling.
+ */
+final class LibraryTaskScheduler {
+
+  /**
+   * Work to do for a single library. The context given to the task also implements
+   * {@link DartCompilerListener}.
+   */
+  interface LibraryTask {
+    void run(LibraryUnit lib, DartCompilerContext context);
+  }
+
+  /**
+   * Group of libraries which import each other, directly or transitively. The libraries of a group
+   * are processed together, on the same thread, in iteration order.
+   */
+  private static final class Group {
+    final List<LibraryUnit> libraries = Lists.newArrayList();
+    final List<Group> dependents = Lists.newArrayList();
+    final AtomicInteger pendingImports = new AtomicInteger();
+  }
+
+  private final ExecutorService executor;
+  private final DartCompilerMainContext context;
+
+  /**
+   * @param executor the executor to run tasks on, may be <code>null</code> to run all tasks on the
+   *          calling thread.
+   * @param context the compiler context to report problems to.
+   */
+  LibraryTaskScheduler(ExecutorService executor, DartCompilerMainContext context) {
+    this.executor = executor;
+    this.context = context;
+  }
+
+  /**
+   * Runs the given task for each library, without any ordering between libraries.
+   */
+  void runIndependently(Collection<LibraryUnit> libs, LibraryTask task) {
+    run(libs, task, false);
+  }
+
+  /**
+   * Runs the given task for each library, starting the task for a library only once the tasks for
+   * all libraries it imports are complete. Imports of libraries which are not in "libs" are
+   * considered complete.
+   */
+  void runInImportOrder(Collection<LibraryUnit> libs, LibraryTask task) {
+    run(libs, task, true);
+  }
+
+  private void run(Collection<LibraryUnit> libs, LibraryTask task, boolean importOrder) {
+    if (executor == null || libs.size() < 2) {
+      for (LibraryUnit lib : libs) {
+        task.run(lib, context);
+      }
+      return;
+    }
+
+    // Prepare a context for each library to record its problems.
+    Map<LibraryUnit, DeferredDartCompilerContext> contexts = Maps.newIdentityHashMap();
+    for (LibraryUnit lib : libs) {
+      contexts.put(lib, new DeferredDartCompilerContext(context));
+    }
+
+    List<Group> groups = importOrder ? groupByImports(libs) : groupIndependently(libs);
+    new Execution(task, contexts, groups).run();
+
+    // Report problems in the iteration order of the libraries.
+    for (LibraryUnit lib : libs) {
+      contexts.get(lib).replay();
+    }
+  }
+
+  /**
+   * Single run of a {@link LibraryTask} over a set of {@link Group}s.
+   */
+  private final class Execution {
+    private final LibraryTask task;
+    private final Map<LibraryUnit, DeferredDartCompilerContext> contexts;
+    private final List<Group> groups;
+    private final AtomicInteger remainingGroups;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    Execution(LibraryTask task, Map<LibraryUnit, DeferredDartCompilerContext> contexts,
+        List<Group> groups) {
+      this.task = task;
+      this.contexts = contexts;
+      this.groups = groups;
+      this.remainingGroups = new AtomicInteger(groups.size());
+    }
+
+    /**
+     * Runs the task for all groups and waits for completion.
+     */
+    void run() {
+      List<Group> ready = Lists.newArrayList();
+      for (Group group : groups) {
+        if (group.pendingImports.get() == 0) {
+          ready.add(group);
+        }
+      }
+      for (Group group : ready) {
+        submit(group);
+      }
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InternalCompilerException("Interrupted while processing libraries");
+      }
+      if (failure.get() != null) {
+        throw Throwables.propagate(failure.get());
+      }
+    }
+
+    private void submit(final Group group) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (failure.get() != null) {
+            return;
+          }
+          try {
+            for (LibraryUnit lib : group.libraries) {
+              task.run(lib, contexts.get(lib));
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+            done.countDown();
+            return;
+          }
+          // Start the groups for which this was the last pending import.
+          for (Group dependent : group.dependents) {
+            if (dependent.pendingImports.decrementAndGet() == 0) {
+              submit(dependent);
+            }
+          }
+          if (remainingGroups.decrementAndGet() == 0) {
+            done.countDown();
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * @return a separate {@link Group} for each library.
+   */
+  private static List<Group> groupIndependently(Collection<LibraryUnit> libs) {
+    List<Group> groups = Lists.newArrayList();
+    for (LibraryUnit lib : libs) {
+      Group group = new Group();
+      group.libraries.add(lib);
+      groups.add(group);
+    }
+    return groups;
+  }
+
+  /**
+   * Groups the libraries into strongly connected components of the import graph and links each
+   * group to the groups which import it.
+   */
+  private static List<Group> groupByImports(Collection<LibraryUnit> libs) {
+    final Map<LibraryUnit, Integer> order = Maps.newIdentityHashMap();
+    for (LibraryUnit lib : libs) {
+      order.put(lib, order.size());
+    }
+    ComponentFinder finder = new ComponentFinder(order);
+    for (LibraryUnit lib : libs) {
+      finder.visit(lib);
+    }
+    for (Group group : finder.groups) {
+      // Keep iteration order within the group.
+      Collections.sort(group.libraries, new Comparator<LibraryUnit>() {
+        @Override
+        public int compare(LibraryUnit o1, LibraryUnit o2) {
+          return order.get(o1) - order.get(o2);
+        }
+      });
+      // Link to the groups we import.
+      for (LibraryUnit lib : group.libraries) {
+        for (LibraryUnit imported : lib.getImports()) {
+          Group importedGroup = finder.groupOf.get(imported);
+          if (importedGroup != null && importedGroup != group
+              && !importedGroup.dependents.contains(group)) {
+            importedGroup.dependents.add(group);
+            group.pendingImports.incrementAndGet();
+          }
+        }
+      }
+    }
+    return finder.groups;
+  }
+
+  /**
+   * Finds the strongly connected components of the import graph using Tarjan's algorithm.
+   */
+  private static final class ComponentFinder {
+    private final Map<LibraryUnit, Integer> order;
+    private final Map<LibraryUnit, Integer> index = Maps.newIdentityHashMap();
+    private final Map<LibraryUnit, Integer> lowLink = Maps.newIdentityHashMap();
+    private final List<LibraryUnit> stack = Lists.newArrayList();
+    final Map<LibraryUnit, Group> groupOf = Maps.newIdentityHashMap();
+    final List<Group> groups = Lists.newArrayList();
+
+    ComponentFinder(Map<LibraryUnit, Integer> order) {
+      this.order = order;
+    }
+
+    void visit(LibraryUnit lib) {
+      if (index.containsKey(lib)) {
+        return;
+      }
+      index.put(lib, index.size());
+      lowLink.put(lib, index.get(lib));
+      stack.add(lib);
+      for (LibraryUnit imported : lib.getImports()) {
+        if (imported == null || !order.containsKey(imported)) {
+          continue;
+        }
+        if (!index.containsKey(imported)) {
+          visit(imported);
+          lowLink.put(lib, Math.min(lowLink.get(lib), lowLink.get(imported)));
+        } else if (!groupOf.containsKey(imported)) {
+          lowLink.put(lib, Math.min(lowLink.get(lib), index.get(imported)));
+        }
+      }
+      if (lowLink.get(lib).equals(index.get(lib))) {
+        Group group = new Group();
+        LibraryUnit member;
+        do {
+          member = stack.remove(stack.size() - 1);
+          group.libraries.add(member);
+          groupOf.put(member, group);
+        } while (member != lib);
+        groups.add(group);
+      }
+    }
+  }
+}
@@ -0,0 +1,123 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler.ast;
+
+import com.google.common.collect.Lists;
+import com.google.dart.compiler.resolver.Element;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The fields and methods declared in the units of a library, top-level or in classes, sorted by
+ * name so that the members whose names start with a given prefix are found without visiting the
+ * units again.
+ *
+ * @see LibraryUnit#getSymbolTable()
+ */
+public class LibrarySymbolTable {
+  private static final Comparator<Element> NAME_ORDER = new Comparator<Element>() {
+    @Override
+    public int compare(Element e1, Element e2) {
+      return e1.getName().compareTo(e2.getName());
+    }
+  };
+
+  private final String[] names;
+  private final Element[] elements;
+
+  /**
+   * <code>true</code> if every member of the units had been resolved when the table was built.
+   */
+  private final boolean complete;
+
+  LibrarySymbolTable(Iterable<DartUnit> units) {
+    final List<Element> members = Lists.newArrayList();
+    final boolean[] unresolved = new boolean[1];
+    ASTVisitor<Void> visitor = new ASTVisitor<Void>() {
+      @Override
+      public Void visitField(DartField node) {
+        add(node.getElement());
+        return null;
+      }
+
+      @Override
+      public Void visitFunctionTypeAlias(DartFunctionTypeAlias node) {
+        return null;
+      }
+
+      @Override
+      public Void visitMethodDefinition(DartMethodDefinition node) {
+        // Named constructors are not members.
+        if (node.getName() instanceof DartIdentifier) {
+          add(node.getElement());
+        }
+        return null;
+      }
+
+      private void add(Element element) {
+        if (element != null) {
+          members.add(element);
+        } else {
+          unresolved[0] = true;
+        }
+      }
+    };
+    for (DartUnit unit : units) {
+      unit.accept(visitor);
+    }
+    Collections.sort(members, NAME_ORDER);
+    int size = members.size();
+    names = new String[size];
+    elements = new Element[size];
+    for (int i = 0; i < size; i++) {
+      elements[i] = members.get(i);
+      names[i] = elements[i].getName();
+    }
+    complete = !unresolved[0];
+  }
+
+  boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Adds to the given list the members whose names start with the given prefix, in the order of
+   * their names.
+   *
+   * @param prefix the prefix of the names, or <code>null</code> for all the members
+   * @param includeStatics <code>true</code> if static members should be included
+   */
+  public void findMembers(String prefix, boolean includeStatics, List<? super Element> result) {
+    int index = prefix != null ? lowerBound(prefix) : 0;
+    for (; index < names.length; index++) {
+      if (prefix != null && !names[index].startsWith(prefix)) {
+        break;
+      }
+      Element element = elements[index];
+      if (includeStatics || !element.getModifiers().isStatic()) {
+        result.add(element);
+      }
+    }
+  }
+
+  /**
+   * @return the index of the first name not less than the given name
+   */
+  private int lowerBound(String name) {
+    int low = 0;
+    int high = names.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (names[middle].compareTo(name) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -43,6 +43,8 @@ public class LibraryUnit {
 
   private LibraryDeps deps;
 
+  private volatile LibrarySymbolTable symbolTable;
+
   private LibraryNode entryNode;
   private DartUnit selfDartUnit;
 
@@ -104,6 +106,7 @@ public class LibraryUnit {
   public void putUnit(DartUnit unit) {
     unit.setLibrary(this);
     units.put(unit.getSourceName(), unit);
+    symbolTable = null;
   }
 
   public DartUnit getUnit(String sourceName) {
@@ -242,11 +245,26 @@ public class LibraryUnit {
     this.entryNode = libraryNode;
   }
 
+  /**
+   * Gets the table of the fields and methods declared in the units of this library. The table is
+   * built on first use and kept until a unit is added, unless some members were not resolved yet.
+   */
+  public LibrarySymbolTable getSymbolTable() {
+    LibrarySymbolTable table = symbolTable;
+    if (table == null) {
+      table = new LibrarySymbolTable(getUnits());
+      if (table.isComplete()) {
+        symbolTable = table;
+      }
+    }
+    return table;
+  }
+
   /**
    * Gets the dependencies associated with this library. If no dependencies artifact exists,
    * or the file is invalid, it will return an empty deps object.
    */
-  public LibraryDeps getDeps(DartCompilerContext context) throws IOException {
+  public synchronized LibraryDeps getDeps(DartCompilerContext context) throws IOException {
     if (deps != null) {
       return deps;
     }
@@ -5,16 +5,13 @@
 package com.google.dart.compiler.common;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import com.google.dart.compiler.Source;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -62,30 +59,48 @@ public final class SourceInfo implements Serializable {
     return linesInfo;
   }
 
+  /**
+   * Records the offsets at which the lines of the given {@link Source} start, as computed by the
+   * scanner, so that the {@link Source} does not have to be read again to compute lines and
+   * columns.
+   *
+   * @param lineStarts the increasing line start offsets, the first one being <code>0</code>
+   */
+  public static void setLineStarts(Source source, int[] lineStarts) {
+    Preconditions.checkArgument(lineStarts.length > 0 && lineStarts[0] == 0);
+    lines.put(source, new LinesInfo(lineStarts, lineStarts.length));
+  }
+
   /**
    * @return the new {@link LinesInfo}, may be empty if some {@link Exception} happens, but not
    *         <code>null</code>.
    */
   private static LinesInfo createLinesInfo(Source source) {
-    BufferedReader reader = null;
+    Reader reader = null;
     try {
-      reader = new BufferedReader(source.getSourceReader());
+      reader = source.getSourceReader();
+      char[] buffer = new char[8192];
+      int[] lineOffsets = new int[64];
+      int lineCount = 1;
       int offset = 0;
-      List<Integer> lineOffsets = Lists.newArrayList(0);
       while (true) {
-        int charValue = reader.read();
-        if (charValue == -1) {
+        int count = reader.read(buffer);
+        if (count == -1) {
           break;
         }
-        offset++;
-        char c = (char) charValue;
-        if (c == '\n') {
-          lineOffsets.add(offset);
+        for (int i = 0; i < count; i++) {
+          if (buffer[i] == '\n') {
+            if (lineCount == lineOffsets.length) {
+              lineOffsets = Arrays.copyOf(lineOffsets, lineCount * 2);
+            }
+            lineOffsets[lineCount++] = offset + i + 1;
+          }
         }
+        offset += count;
       }
-      return new LinesInfo(lineOffsets);
+      return new LinesInfo(lineOffsets, lineCount);
     } catch (Throwable e) {
-      return new LinesInfo(ImmutableList.of(0));
+      return new LinesInfo(new int[] {0}, 1);
     } finally {
       if (reader != null) {
         try {
@@ -154,18 +169,20 @@ public final class SourceInfo implements Serializable {
    * Container for information about lines in some {@link Source}.
    */
   private static class LinesInfo {
-    private final List<Integer> lineOffsets;
+    private final int[] lineOffsets;
+    private final int lineCount;
 
-    public LinesInfo(List<Integer> lineOffsets) {
+    public LinesInfo(int[] lineOffsets, int lineCount) {
       this.lineOffsets = lineOffsets;
+      this.lineCount = lineCount;
     }
 
     int getLineOffset(int line) {
-      return lineOffsets.get(line);
+      return lineOffsets[line];
     }
 
     int getLineOfOffset(int offset) {
-      int index = Collections.binarySearch(lineOffsets, offset);
+      int index = Arrays.binarySearch(lineOffsets, 0, lineCount, offset);
       if (index >= 0) {
         return index;
       }
@@ -44,7 +44,9 @@ public final class CompilerMetrics {
   private final long milliStartTime;
   
   private long nanoParseWallTime = 0;
+  private int parseThreadCount = 1;
   private AtomicLong nanoTotalParseTime = new AtomicLong();
+  private AtomicLong nanoUnitParseWallTime = new AtomicLong();
   private long nativeLibCharCount;
 
   // Parser metrics
@@ -71,6 +73,21 @@ public final class CompilerMetrics {
     this.nanoParseWallTime = nanoWallParseTime;
   }
 
+  /**
+   * Accumulate the wall time spent reading and parsing a single unit, on whichever thread parsed
+   * it.
+   */
+  public void addUnitParseWallTimeNano(long nanoUnitParseWallTime) {
+    this.nanoUnitParseWallTime.addAndGet(nanoUnitParseWallTime);
+  }
+
+  /**
+   * Records the number of threads used to parse units in parallel.
+   */
+  public void setParseThreadCount(int parseThreadCount) {
+    this.parseThreadCount = parseThreadCount;
+  }
+
   public void done() {
     if (milliEndTime == -1) {
       milliEndTime = System.currentTimeMillis();
@@ -129,6 +146,26 @@ public final class CompilerMetrics {
     return nanoToMillis(nanoParseWallTime);
   }
 
+  public double getUnitParseWallTime() {
+    return nanoToMillis(nanoUnitParseWallTime.get());
+  }
+
+  public int getParseThreadCount() {
+    return parseThreadCount;
+  }
+
+  /**
+   * Returns the wall time spent parsing single units, summed over all units, divided by the wall
+   * time spent parsing all of them. This is the average number of units that were being parsed at
+   * once, which is a little below 1 when parsing on a single thread.
+   */
+  public double getParseConcurrency() {
+    if (nanoParseWallTime == 0) {
+      return 0;
+    }
+    return getUnitParseWallTime() / getParseWallTime();
+  }
+
   public double getPercentCharsConsumedByNativeLibraries() {
     return (getJSNativeLibCharSize() / getNumCharsParsed()) * 100d;
   }
@@ -183,6 +220,9 @@ public final class CompilerMetrics {
     out.println("# Compile-time-unit-average-ms  : " + getTimeSpentPerUnit());
     out.format("# Parse-wall-time-ms             : %1$.2f%n", getParseWallTime());
     out.format("# Parse-time-ms                  : %1$.2f%n", getParseTime());
+    out.println("# Parse-threads                  : " + getParseThreadCount());
+    out.format("# Parse-unit-wall-time-ms        : %1$.2f%n", getUnitParseWallTime());
+    out.format("# Parse-concurrency              : %1$.2f%n", getParseConcurrency());
     out.println("# Parsed-units                   : " + getNumUnitsParsed());
     out.println("# Parsed-src-chars               : " + getNumCharsParsed());
     out.println("# Parsed-src-lines               : " + getNumLinesParsed());
@@ -36,7 +36,7 @@ abstract class AbstractParser {
     private static Map<String, Class<?>> classes;
     private static Map<String, List<Token>> methods;
 
-    private static void init(StackTraceElement[] stackTrace) {
+    private static synchronized void init(StackTraceElement[] stackTrace) {
       if (classes == null) {
         classes = Maps.newHashMap();
         methods = Maps.newHashMap();
@@ -72,7 +72,7 @@ abstract class AbstractParser {
       }
     }
 
-    public static Set<Token> terminalsForStack(StackTraceElement[] stackTrace) {
+    public static synchronized Set<Token> terminalsForStack(StackTraceElement[] stackTrace) {
       Set<Token> results = Sets.newHashSet();
       for (StackTraceElement frame: stackTrace) {
         List<Token> found = methods.get(frame.getClassName() + "." + frame.getMethodName());
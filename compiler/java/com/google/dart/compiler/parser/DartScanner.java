@@ -9,8 +9,8 @@ import com.google.dart.compiler.metrics.Tracer;
 import com.google.dart.compiler.metrics.Tracer.TraceEvent;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
 
 /**
  * The Dart scanner. Should normally be used only by {@link DartParser}.
@@ -107,18 +107,6 @@ public class DartScanner {
       this.baseOffset = baseOffset;
     }
 
-    static class RollbackToken {
-      public final int absoluteOffset;
-      final Token replacedToken;
-
-      public RollbackToken(int tokenOffset, Token token) {
-        absoluteOffset = tokenOffset;
-        replacedToken = token;
-      }
-    }
-
-    /* Stack of tokens present before setPeek() */
-    Stack<RollbackToken> rollbackTokens = null;
     final int baseOffset;
 
     @Override
@@ -252,10 +240,34 @@ public class DartScanner {
     }
 
     private int lookahead[] = new int[NUM_LOOKAHEAD];
-    private Position lookaheadPos[] = new Position[NUM_LOOKAHEAD];
-    private Position nextLookaheadPos;
-    private ArrayList<TokenData> tokens;
-    private TokenData lastToken;
+    private int lookaheadPos[] = new int[NUM_LOOKAHEAD];
+    private int lookaheadLine[] = new int[NUM_LOOKAHEAD];
+    private int nextLookaheadPos;
+    private int nextLookaheadLine;
+
+    // The offsets at which lines begin, indexed by line number - 1.
+    private int[] lineStarts = new int[64];
+    private int lineCount;
+
+    // The scanned tokens, stored in parallel arrays indexed by token offset. The value of a token
+    // is an index into the value table, or NO_VALUE.
+    private Token[] tokens;
+    private int[] tokenBegins;
+    private int[] tokenBeginLines;
+    private int[] tokenEnds;
+    private int[] tokenEndLines;
+    private int[] tokenValues;
+    private int tokenCount;
+
+    // The value of the token being scanned.
+    private int lastTokenValue;
+
+    // The distinct token values, along with the keyword tokens of values scanned as identifiers.
+    // Values taken from the source are interned by a hash table of value index + 1.
+    private String[] values = new String[256];
+    private Token[] valueKeywords = new Token[256];
+    private int valueCount;
+    private int[] valueTable = new int[512];
 
     // Current offset in the token list
     int currentOffset;
@@ -283,23 +295,15 @@ public class DartScanner {
       ret.append(currentOffset);
       ret.append(")");
       if ( currentOffset > -1 ) {
-        TokenData tok = tokens.get(currentOffset);
         ret.append(" = [");
-        ret.append(tok.token);
-        if (tok.value != null) {
-          ret.append(" (" + tok.value + ")");
-        }
+        appendToken(ret, currentOffset);
         ret.append("], ");
       }
 
       ret.append("[");
-      for (int i = 0; i < tokens.size(); i++) {
-        TokenData tok = tokens.get(i);
-        ret.append(tok.token);
-        if (tok.value != null) {
-          ret.append(" (" + tok.value + ")");
-        }
-        if (i < tokens.size() - 1) {
+      for (int i = 0; i < tokenCount; i++) {
+        appendToken(ret, i);
+        if (i < tokenCount - 1) {
           ret.append(", ");
         }
       }
@@ -316,6 +320,22 @@ public class DartScanner {
       return ret.toString();
     }
 
+    private void appendToken(StringBuilder ret, int offset) {
+      ret.append(tokens[offset]);
+      String value = getValue(offset);
+      if (value != null) {
+        ret.append(" (" + value + ")");
+      }
+    }
+
+    /**
+     * @return the value of the token at the given offset, or <code>null</code>
+     */
+    private String getValue(int offset) {
+      int value = tokenValues[offset];
+      return value != NO_VALUE ? values[value] : null;
+    }
+
     /**
      * @return the current scanning mode
      */
@@ -397,20 +417,13 @@ public class DartScanner {
     }
   }
 
-  private static class TokenData {
-    Token token;
-    Location location;
-    String value;
-
-    @Override
-    public String toString() {
-      String str = token.toString();
-      return (value != null) ? str + "(" + value + ")" : str;
-    }
-  }
-
   private static final int NUM_LOOKAHEAD = 2;
 
+  /**
+   * The value index of a token which has no value.
+   */
+  private static final int NO_VALUE = -1;
+
   private static boolean isDecimalDigit(int c) {
     return c >= '0' && c <= '9';
   }
@@ -451,14 +464,24 @@ public class DartScanner {
     try {
       this.source = source;
       internalState = new InternalState();
-      internalState.tokens = new ArrayList<TokenData>(source.length()/2);
+      int capacity = source.length() / 4 + 16;
+      internalState.tokens = new Token[capacity];
+      internalState.tokenBegins = new int[capacity];
+      internalState.tokenBeginLines = new int[capacity];
+      internalState.tokenEnds = new int[capacity];
+      internalState.tokenEndLines = new int[capacity];
+      internalState.tokenValues = new int[capacity];
 
       // Initialize lookahead positions.
       // TODO Determine if line & column should be relative to 0 or 'start'
-      internalState.nextLookaheadPos = new Position(start, 1, 1);
-      for (int i = 0; i < internalState.lookaheadPos.length; ++i) {
-        internalState.lookaheadPos[i] = new Position(start, 1, 1);
+      internalState.nextLookaheadPos = start;
+      internalState.nextLookaheadLine = 1;
+      for (int i = 0; i < NUM_LOOKAHEAD; ++i) {
+        internalState.lookaheadPos[i] = start;
+        internalState.lookaheadLine[i] = 1;
       }
+      internalState.lineStarts[0] = start;
+      internalState.lineCount = 1;
 
       // Fill all the characters in the look-ahead and all the peek
       // elements in the tokens buffer.
@@ -485,7 +508,7 @@ public class DartScanner {
    * Returns the number of lines of source that were scanned.
    */
   public int getLineCount() {
-    int lineCount = internalState.nextLookaheadPos.line;
+    int lineCount = internalState.nextLookaheadLine;
     if (isEos()) {
       // At the end of the file the next line has advanced one past the end
       lineCount -= 1;
@@ -493,11 +516,19 @@ public class DartScanner {
     return lineCount;
   }
 
+  /**
+   * Returns the offsets at which the lines of the scanned source start, in increasing order. The
+   * first line starts at the start offset given to the constructor.
+   */
+  public int[] getLineStarts() {
+    return Arrays.copyOf(internalState.lineStarts, internalState.lineCount);
+  }
+
   /**
    * Returns the number of characters of source code that were scanned.
    */
   public int getCharCount() {
-    return internalState.nextLookaheadPos.pos;
+    return internalState.nextLookaheadPos;
   }
 
   /**
@@ -512,8 +543,8 @@ public class DartScanner {
    * Get the token value for one of the look-ahead tokens.
    */
   public String getPeekTokenValue(int n) {
-    assert (0 <= n && (internalState.currentOffset + n + 1) < internalState.tokens.size());
-    return internalState.tokens.get(internalState.currentOffset + n + 1).value;
+    assert (0 <= n && (internalState.currentOffset + n + 1) < internalState.tokenCount);
+    return internalState.getValue(internalState.currentOffset + n + 1);
   }
 
   /**
@@ -532,29 +563,81 @@ public class DartScanner {
     return internalState.currentOffset;
   }
 
+  /**
+   * Sets the current offset of the scanner, as returned by {@link #getOffset()}.
+   */
+  public void setOffset(int offset) {
+    internalState.currentOffset = offset;
+  }
+
   /**
    * Gets the current token.
    */
   public Token getToken() {
-    return internalState.tokens.get(internalState.currentOffset).token;
+    return internalState.tokens[internalState.currentOffset];
   }
 
   /**
    * Gets the location of the current token.
    */
   public Location getTokenLocation() {
-    return internalState.tokens.get(internalState.currentOffset).location;
+    return getLocation(internalState.currentOffset);
+  }
+
+  /**
+   * Gets the source position at which the current token ends, without creating a
+   * {@link Location}.
+   */
+  public int getTokenEnd() {
+    return internalState.tokenEnds[internalState.currentOffset];
   }
 
   public Location peekTokenLocation(int n) {
-    if ((internalState.currentOffset + n + 1) < internalState.tokens.size()) {
-      return internalState.tokens.get(internalState.currentOffset + n + 1).location;
+    return getLocation(getPeekOffset(n));
+  }
+
+  /**
+   * Gets the source position at which a look-ahead token begins, without creating a
+   * {@link Location}.
+   */
+  public int peekTokenBegin(int n) {
+    return internalState.tokenBegins[getPeekOffset(n)];
+  }
+
+  private int getPeekOffset(int n) {
+    if ((internalState.currentOffset + n + 1) < internalState.tokenCount) {
+      return internalState.currentOffset + n + 1;
     } else {
       // It is not valid to read beyond the end of the token stream, so we
-      // return the Location of the EOS token.
-      return internalState.tokens.get(internalState.tokens.size() - 1).location;
+      // return the EOS token.
+      return internalState.tokenCount - 1;
+    }
+  }
+
+  /**
+   * @return the location of the token at the given offset, or <code>null</code> for the dummy
+   *         token which precedes the first token.
+   */
+  private Location getLocation(int offset) {
+    if (offset == 0) {
+      return null;
     }
+    int begin = internalState.tokenBegins[offset];
+    int beginLine = internalState.tokenBeginLines[offset];
+    int end = internalState.tokenEnds[offset];
+    int endLine = internalState.tokenEndLines[offset];
+    return new Location(new Position(begin, beginLine, getColumn(begin, beginLine)),
+        new Position(end, endLine, getColumn(end, endLine)));
+  }
 
+  /**
+   * @return the column of the given source position on the given line
+   */
+  private int getColumn(int pos, int line) {
+    // Past the end of the source, the line may not have been recorded.
+    int lineStart = line <= internalState.lineCount ? internalState.lineStarts[line - 1]
+        : source.length();
+    return pos - lineStart + 1;
   }
 
   /**
@@ -562,12 +645,12 @@ public class DartScanner {
    * by a call to next().
    */
   public String getTokenValue() {
-    return internalState.tokens.get(internalState.currentOffset).value;
+    return internalState.getValue(internalState.currentOffset);
   }
 
   public String peekTokenValue(int n) {
-    if ((internalState.currentOffset + n + 1) < internalState.tokens.size()) {
-      return internalState.tokens.get(internalState.currentOffset + n + 1).value;
+    if ((internalState.currentOffset + n + 1) < internalState.tokenCount) {
+      return internalState.getValue(internalState.currentOffset + n + 1);
     } else {
       // It is not valid to read beyond the end of the token stream, so we
       // return the null, the default value of an EOS token.
@@ -580,7 +663,7 @@ public class DartScanner {
    */
   public Token next() {
     // Do not advance the current offset beyond the end of the stoken stream
-    if (internalState.currentOffset + 1 < internalState.tokens.size()) {
+    if (internalState.currentOffset + 1 < internalState.tokenCount) {
       internalState.currentOffset++;
     }
     return getToken();
@@ -590,8 +673,8 @@ public class DartScanner {
    * Token look-ahead - past the token returned by next().
    */
   public Token peek(int n) {
-    if ((internalState.currentOffset + n + 1) < internalState.tokens.size()) {
-      return internalState.tokens.get(internalState.currentOffset + n + 1).token;
+    if ((internalState.currentOffset + n + 1) < internalState.tokenCount) {
+      return internalState.tokens[internalState.currentOffset + n + 1];
     } else {
       // It is not valid to read beyond the end of the token stream, so we
       // return the EOS token
@@ -612,16 +695,16 @@ public class DartScanner {
    * Sets the token at the specified slot in the lookahead buffer.
    */
   public void setPeek(int n, Token token) {
-    assert (0 <= n && (internalState.currentOffset + n + 1) < internalState.tokens.size());
-    internalState.tokens.get(internalState.currentOffset + n + 1).token = token;
+    assert (0 <= n && (internalState.currentOffset + n + 1) < internalState.tokenCount);
+    internalState.tokens[internalState.currentOffset + n + 1] = token;
   }
 
   /**
    * Sets the token at the specified slot in the lookahead buffer.
    */
   public void setAbsolutePeek(int n, Token token) {
-    assert (0 <= n && n < internalState.tokens.size());
-    internalState.tokens.get(n).token = token;
+    assert (0 <= n && n < internalState.tokenCount);
+    internalState.tokens[n] = token;
   }
 
   @Override
@@ -656,26 +739,40 @@ public class DartScanner {
   private void advance() {
     for (int i = 0; i < NUM_LOOKAHEAD - 1; ++i) {
       internalState.lookahead[i] = internalState.lookahead[i + 1];
-      internalState.lookaheadPos[i] = internalState.lookaheadPos[i + 1].copy();
+      internalState.lookaheadPos[i] = internalState.lookaheadPos[i + 1];
+      internalState.lookaheadLine[i] = internalState.lookaheadLine[i + 1];
     }
-    if (internalState.nextLookaheadPos.pos < source.length()) {
-      int ch = source.codePointAt(internalState.nextLookaheadPos.pos);
+    int pos = internalState.nextLookaheadPos;
+    if (pos < source.length()) {
+      int ch = source.codePointAt(pos);
       internalState.lookahead[NUM_LOOKAHEAD - 1] = ch;
-      internalState.lookaheadPos[NUM_LOOKAHEAD - 1] = internalState.nextLookaheadPos.copy();
-      internalState.nextLookaheadPos.advance(ch == '\n');
+      internalState.lookaheadPos[NUM_LOOKAHEAD - 1] = pos;
+      internalState.lookaheadLine[NUM_LOOKAHEAD - 1] = internalState.nextLookaheadLine;
+      internalState.nextLookaheadPos = pos + 1;
+      if (ch == '\n') {
+        internalState.nextLookaheadLine++;
+        addLineStart(pos + 1);
+      }
     } else {
       // Let the last look-ahead position be past the source. This makes
       // the position information for the last token correct.
       internalState.lookahead[NUM_LOOKAHEAD - 1] = -1;
-      internalState.lookaheadPos[NUM_LOOKAHEAD - 1] = new Position(source.length(),
-        internalState.nextLookaheadPos.line, internalState.nextLookaheadPos.col);
+      internalState.lookaheadPos[NUM_LOOKAHEAD - 1] = source.length();
+      internalState.lookaheadLine[NUM_LOOKAHEAD - 1] = internalState.nextLookaheadLine;
 
       // Leave the nextLookahead position pointing to the line after the last line
-      internalState.nextLookaheadPos = new Position(source.length(),
-          internalState.nextLookaheadPos.line + 1, 1);
+      internalState.nextLookaheadPos = source.length();
+      internalState.nextLookaheadLine++;
     }
   }
 
+  private void addLineStart(int pos) {
+    if (internalState.lineCount == internalState.lineStarts.length) {
+      internalState.lineStarts = Arrays.copyOf(internalState.lineStarts, internalState.lineCount * 2);
+    }
+    internalState.lineStarts[internalState.lineCount++] = pos;
+  }
+
   /**
    * Called when comments are identified to aggregate the total number of comment lines and comment
    * characters then delegate to {@link #recordCommentLocation(int, int, int, int)}.  This provides
@@ -715,49 +812,129 @@ public class DartScanner {
   }
 
   // Get the current source code position.
-  private Position position() {
+  private int position() {
     return internalState.lookaheadPos[0];
   }
 
   private void scanFile() {
     // First node inserted as a dummy.
-    internalState.lastToken = new TokenData();
-    internalState.tokens.add(internalState.lastToken);
+    internalState.lastTokenValue = NO_VALUE;
+    addToken(null, 0, 1, 0, 1);
 
     while (true) {
-      internalState.lastToken = new TokenData();
+      internalState.lastTokenValue = NO_VALUE;
       Token token;
-      Position begin, end;
+      int begin, beginLine;
       do {
         skipWhiteSpace();
         begin = position();
+        beginLine = internalState.lookaheadLine[0];
         token = scanToken();
       } while (token == Token.COMMENT);
-      end = position();
 
-      internalState.lastToken.token = token;
-      internalState.lastToken.location = new Location(begin, end);
-      internalState.tokens.add(internalState.lastToken);
+      addToken(token, begin, beginLine, position(), internalState.lookaheadLine[0]);
       if (token == Token.EOS) {
-//        System.out.print("tokens: ");
-//        for(TokenData t : internalState.tokens) {
-//          if (t != null) {
-//            if (t.token != null) {
-//              System.out.print(t + ", ");
-//            } else {
-//              System.out.print("Null, ");
-//            }
-//          }
-//        }
-//        System.out.println();
         return;
       }
     }
   }
 
+  private void addToken(Token token, int begin, int beginLine, int end, int endLine) {
+    int offset = internalState.tokenCount;
+    if (offset == internalState.tokens.length) {
+      int capacity = offset * 2;
+      internalState.tokens = Arrays.copyOf(internalState.tokens, capacity);
+      internalState.tokenBegins = Arrays.copyOf(internalState.tokenBegins, capacity);
+      internalState.tokenBeginLines = Arrays.copyOf(internalState.tokenBeginLines, capacity);
+      internalState.tokenEnds = Arrays.copyOf(internalState.tokenEnds, capacity);
+      internalState.tokenEndLines = Arrays.copyOf(internalState.tokenEndLines, capacity);
+      internalState.tokenValues = Arrays.copyOf(internalState.tokenValues, capacity);
+    }
+    internalState.tokens[offset] = token;
+    internalState.tokenBegins[offset] = begin;
+    internalState.tokenBeginLines[offset] = beginLine;
+    internalState.tokenEnds[offset] = end;
+    internalState.tokenEndLines[offset] = endLine;
+    internalState.tokenValues[offset] = internalState.lastTokenValue;
+    internalState.tokenCount++;
+  }
+
+  /**
+   * Sets the value of the token being scanned to the source text between the given positions.
+   * Equal values share one {@link String}, which is created the first time the value is scanned.
+   */
+  private void setTokenValue(int begin, int end) {
+    int length = end - begin;
+    int hash = 0;
+    for (int i = begin; i < end; i++) {
+      hash = 31 * hash + source.charAt(i);
+    }
+    int[] table = internalState.valueTable;
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    while (table[slot] != 0) {
+      int index = table[slot] - 1;
+      String value = internalState.values[index];
+      if (value.length() == length && value.hashCode() == hash
+          && source.regionMatches(begin, value, 0, length)) {
+        internalState.lastTokenValue = index;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    setTokenValue(source.substring(begin, end));
+    table[slot] = internalState.lastTokenValue + 1;
+    if (internalState.valueCount * 2 > table.length) {
+      rehashValues();
+    }
+  }
+
+  /**
+   * Sets the value of the token being scanned.
+   */
+  private void setTokenValue(String value) {
+    int index = internalState.valueCount;
+    if (index == internalState.values.length) {
+      internalState.values = Arrays.copyOf(internalState.values, index * 2);
+      internalState.valueKeywords = Arrays.copyOf(internalState.valueKeywords, index * 2);
+    }
+    internalState.values[index] = value;
+    internalState.valueCount++;
+    internalState.lastTokenValue = index;
+  }
+
+  private void rehashValues() {
+    int[] oldTable = internalState.valueTable;
+    int[] table = new int[oldTable.length * 2];
+    int mask = table.length - 1;
+    for (int entry : oldTable) {
+      if (entry != 0) {
+        int slot = internalState.values[entry - 1].hashCode() & mask;
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = entry;
+      }
+    }
+    internalState.valueTable = table;
+  }
+
+  /**
+   * @return the token for the value of the token being scanned, which is an identifier or keyword
+   */
+  private Token lookupTokenValue() {
+    int index = internalState.lastTokenValue;
+    Token token = internalState.valueKeywords[index];
+    if (token == null) {
+      token = Token.lookup(internalState.values[index]);
+      internalState.valueKeywords[index] = token;
+    }
+    return token;
+  }
+
   private Token scanIdentifier(boolean allowDollars) {
     assert (isIdentifierStart(lookahead(0)));
-    Position begin = position();
+    int begin = position();
     while (true) {
       int nextChar = lookahead(0);
       if (!isIdentifierPart(nextChar) || (!allowDollars && nextChar == '$')) {
@@ -765,19 +942,14 @@ public class DartScanner {
       }
       advance();
     }
-    int size = position().pos - begin.pos;
-
-    // Use a substring of the source string instead of copying all the
-    // characters to the token value buffer.
-    String result = source.substring(begin.pos, begin.pos + size);
-    internalState.lastToken.value = result;
-    return Token.lookup(result);
+    setTokenValue(begin, position());
+    return lookupTokenValue();
   }
 
   private Token scanNumber() {
     boolean isDouble = false;
     assert (isDecimalDigit(lookahead(0)) || is('.'));
-    Position begin = position();
+    int begin = position();
     while (isDecimalDigit(lookahead(0)))
       advance();
     if (is('.') && isDecimalDigit(lookahead(1))) {
@@ -801,8 +973,7 @@ public class DartScanner {
       // Number literals must not be followed directly by an identifier.
       return Token.ILLEGAL;
     }
-    int size = position().pos - begin.pos;
-    internalState.lastToken.value = source.substring(begin.pos, begin.pos + size);
+    setTokenValue(begin, position());
     return isDouble ? Token.DOUBLE_LITERAL : Token.INTEGER_LITERAL;
   }
 
@@ -816,7 +987,7 @@ public class DartScanner {
     advance();
     advance();
 
-    Position begin = position();
+    int begin = position();
     if (!isHexDigit(lookahead(0))) {
       return Token.ILLEGAL;
     }
@@ -827,7 +998,7 @@ public class DartScanner {
     if (isIdentifierStart(lookahead(0))) {
       return Token.ILLEGAL;
     }
-    internalState.lastToken.value = source.substring(begin.pos, position().pos);
+    setTokenValue(begin, position());
     return Token.HEX_LITERAL;
   }
 
@@ -860,8 +1031,9 @@ public class DartScanner {
     assert (internalState.getMode() == InternalState.Mode.IN_STRING);
     int quote = internalState.getQuote();
     boolean multiLine = internalState.isMultiLine();
-    // TODO(floitsch): Do we really need a StringBuffer to accumulate the characters?
-    StringBuilder tokenValueBuffer = new StringBuilder();
+    // The value is the source text between the quotes.
+    int valueBegin = position();
+    int valueEnd;
     while (true) {
       if (isEos()) {
         // Unterminated string (either multi-line or not).
@@ -869,6 +1041,7 @@ public class DartScanner {
         return Token.ILLEGAL;
       }
       int c = lookahead(0);
+      valueEnd = position();
       advance();
       if (c == quote) {
         if (!multiLine) {
@@ -886,9 +1059,8 @@ public class DartScanner {
         // unterminated (non multi-line) string
         return Token.ILLEGAL;
       }
-      tokenValueBuffer.appendCodePoint(c);
     }
-    internalState.lastToken.value = tokenValueBuffer.toString();
+    setTokenValue(valueBegin, valueEnd);
     internalState.popMode();
     return Token.STRING;
   }
@@ -912,7 +1084,11 @@ public class DartScanner {
     assert (internalState.getMode() == InternalState.Mode.IN_STRING);
     int quote = internalState.getQuote();
     boolean multiLine = internalState.isMultiLine();
-    StringBuffer tokenValueBuffer = new StringBuffer();
+    // Until an escape sequence is found, the value is the source text scanned so far. The buffer
+    // holds the value once an escape sequence has been found.
+    int valueBegin = position();
+    int valueEnd;
+    StringBuilder tokenValueBuffer = null;
     while (true) {
       if (isEos()) {
         // Unterminated string (either multi-line or not).
@@ -921,6 +1097,7 @@ public class DartScanner {
       }
       int c = lookahead(0);
       if (c == quote) {
+        valueEnd = position();
         advance();
         if (!multiLine) {
           // Done parsing string constant.
@@ -937,6 +1114,10 @@ public class DartScanner {
         // unterminated (non multi-line) string
         return Token.ILLEGAL;
       } else if (c == '\\') {
+        if (tokenValueBuffer == null) {
+          tokenValueBuffer = new StringBuilder();
+          tokenValueBuffer.append(source, valueBegin, position());
+        }
         advance();
         if (isEos()) {
           // Unterminated string (either multi-line or not).
@@ -1034,7 +1215,9 @@ public class DartScanner {
       } else if (c == '$') {
         // TODO(sigmund): add support for named embedded expressions and
         // function embedded expressions for string templates.
-        if (tokenValueBuffer.length() == 0) {
+        boolean isEmpty = tokenValueBuffer == null ? position() == valueBegin
+            : tokenValueBuffer.length() == 0;
+        if (isEmpty) {
           advance();
           int nextChar = lookahead(0);
           if (nextChar == '{') {
@@ -1050,16 +1233,18 @@ public class DartScanner {
           // Encountered the beginning of an embedded expression (string
           // interpolation), return the current segment, and keep the "$" for
           // the next token.
-          internalState.lastToken.value = tokenValueBuffer.toString();
+          setStringValue(tokenValueBuffer, valueBegin, position());
           return Token.STRING_SEGMENT;
         }
       } else {
         advance();
       }
-      tokenValueBuffer.appendCodePoint(c);
+      if (tokenValueBuffer != null) {
+        tokenValueBuffer.appendCodePoint(c);
+      }
     }
 
-    internalState.lastToken.value = tokenValueBuffer.toString();
+    setStringValue(tokenValueBuffer, valueBegin, valueEnd);
     internalState.popMode();
     if (start) {
       return Token.STRING;
@@ -1068,6 +1253,14 @@ public class DartScanner {
     }
   }
 
+  private void setStringValue(StringBuilder tokenValueBuffer, int valueBegin, int valueEnd) {
+    if (tokenValueBuffer != null) {
+      setTokenValue(tokenValueBuffer.toString());
+    } else {
+      setTokenValue(valueBegin, valueEnd);
+    }
+  }
+
   private Token scanToken() {
     switch (internalState.getMode()) {
       case IN_STRING:
@@ -1082,7 +1275,7 @@ public class DartScanner {
         } else {
           internalState.popMode();
           if (!isEos()) {
-            internalState.lastToken.value = String.valueOf(c);
+            setTokenValue(String.valueOf(c));
           }
           return Token.ILLEGAL;
         }
@@ -1304,18 +1497,17 @@ public class DartScanner {
    */
   private Token scanDirective() {
     assert (is('#'));
-    Position currPos = position();
-    int start = currPos.pos;
-    int line = currPos.line;
-    int col = currPos.col;
+    int start = position();
+    int line = internalState.lookaheadLine[0];
+    int col = getColumn(start, line);
 
     // Skip over the #! if it exists and consider it a comment
     if (start == 0) {
       if (lookahead(1) == '!') {
         while (!isEos() && !isLineTerminator(lookahead(0)))
           advance();
-        int stop = internalState.lookaheadPos[0].pos;
-        commentLocation(start, stop, line, internalState.lookaheadPos[0].line, col);
+        int stop = internalState.lookaheadPos[0];
+        commentLocation(start, stop, line, internalState.lookaheadLine[0], col);
         return Token.COMMENT;
       }
     }
@@ -1333,7 +1525,7 @@ public class DartScanner {
       }
       advance();
     }
-    String syntax = source.substring(start, position().pos);
+    String syntax = source.substring(start, position());
     Token token = Token.lookup(syntax);
     return token == Token.IDENTIFIER ? Token.ILLEGAL : token;
   }
@@ -1353,10 +1545,9 @@ public class DartScanner {
 
   private Token skipMultiLineComment() {
     assert (is('*'));
-    Position currPos = internalState.lookaheadPos[0];
-    int start = currPos.pos - 1;
-    int line = currPos.line;
-    int col = currPos.col;
+    int start = internalState.lookaheadPos[0] - 1;
+    int line = internalState.lookaheadLine[0];
+    int col = getColumn(start + 1, line);
     int commentDepth = 1;
     advance();
     while (!isEos()) {
@@ -1365,8 +1556,8 @@ public class DartScanner {
       if (first == '*' && is('/')) {
         if(--commentDepth == 0) {
           Token result = select(Token.COMMENT);
-          int stop = internalState.lookaheadPos[0].pos;
-          commentLocation(start, stop, line, internalState.lookaheadPos[0].line, col);
+          int stop = internalState.lookaheadPos[0];
+          commentLocation(start, stop, line, internalState.lookaheadLine[0], col);
           return result;
         }
         advance();
@@ -1375,23 +1566,22 @@ public class DartScanner {
         advance();
       }
     }
-    int stop = internalState.lookaheadPos[0].pos;
-    commentLocation(start, stop, line, internalState.lookaheadPos[0].line, col);
+    int stop = internalState.lookaheadPos[0];
+    commentLocation(start, stop, line, internalState.lookaheadLine[0], col);
     // Unterminated multi-line comment.
     return Token.ILLEGAL;
   }
 
   private Token skipSingleLineComment() {
     assert (is('/'));
-    Position currPos = internalState.lookaheadPos[0];
-    int start = currPos.pos - 1;
-    int line = currPos.line;
-    int col = currPos.col;
+    int start = internalState.lookaheadPos[0] - 1;
+    int line = internalState.lookaheadLine[0];
+    int col = getColumn(start + 1, line);
     advance();
     while (!isEos() && !isLineTerminator(lookahead(0)))
       advance();
-    int stop = internalState.lookaheadPos[0].pos;
-    commentLocation(start, stop, line, internalState.lookaheadPos[0].line, col);
+    int stop = internalState.lookaheadPos[0];
+    commentLocation(start, stop, line, internalState.lookaheadLine[0], col);
     return Token.COMMENT;
   }
 
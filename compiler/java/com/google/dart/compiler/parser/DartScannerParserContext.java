@@ -13,19 +13,32 @@ import com.google.dart.compiler.common.HasSourceInfo;
 import com.google.dart.compiler.common.HasSourceInfoSetter;
 import com.google.dart.compiler.common.SourceInfo;
 import com.google.dart.compiler.metrics.CompilerMetrics;
-import com.google.dart.compiler.parser.DartScanner.State;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.Stack;
+import java.util.Arrays;
 
 /**
  * A ParserContext backed by a DartScanner.
  */
 public class DartScannerParserContext implements ParserContext {
   private DartScanner scanner;
-  private Deque<DartScanner.State> stateStack = new ArrayDeque<DartScanner.State>();
-  private Deque<DartScanner.Position> positionStack = new ArrayDeque<DartScanner.Position>();
+
+  /**
+   * The state saved by each {@link #begin()} which has not yet been terminated: the scanner
+   * offset, the size of the token undo log, and the source position at which the node starts.
+   */
+  private int[] offsetStack = new int[32];
+  private int[] undoStack = new int[32];
+  private int[] positionStack = new int[32];
+  private int stackSize;
+
+  /**
+   * The tokens replaced by {@link #replaceNextToken(Token)} since the outermost {@link #begin()},
+   * with their offsets, in the order in which they were replaced. Rolling back undoes the
+   * replacements made since the matching {@link #begin()}.
+   */
+  private int[] undoOffsets = new int[8];
+  private Token[] undoTokens = new Token[8];
+  private int undoSize;
   private Source source;
   private DartCompilerListener listener;
   private final CompilerMetrics compilerMetrics;
@@ -39,42 +52,37 @@ public class DartScannerParserContext implements ParserContext {
       DartCompilerListener listener, CompilerMetrics compilerMetrics) {
     this.source = source;
     this.scanner = createScanner(sourceCode);
+    if (source != null) {
+      SourceInfo.setLineStarts(source, scanner.getLineStarts());
+    }
     this.listener = listener;
     this.compilerMetrics = compilerMetrics;
   }
 
   @Override
   public void begin() {
-    stateStack.push(scanner.getState());
-    positionStack.push(getBeginLocation(0));
-  }
-
-  private DartScanner.Position getBeginLocation(int n) {
-    DartScanner.Location tokenLocation = scanner.peekTokenLocation(n);
-    return tokenLocation != null ? tokenLocation.getBegin() : new DartScanner.Position(0, 1, 1);
-  }
-
-  private DartScanner.Position getEndLocation() {
-    DartScanner.Location tokenLocation = scanner.getTokenLocation();
-    return tokenLocation != null ? tokenLocation.getEnd() : new DartScanner.Position(0, 1, 1);
+    if (stackSize == offsetStack.length) {
+      int capacity = stackSize * 2;
+      offsetStack = Arrays.copyOf(offsetStack, capacity);
+      undoStack = Arrays.copyOf(undoStack, capacity);
+      positionStack = Arrays.copyOf(positionStack, capacity);
+    }
+    offsetStack[stackSize] = scanner.getOffset();
+    undoStack[stackSize] = undoSize;
+    positionStack[stackSize] = scanner.peekTokenBegin(0);
+    stackSize++;
   }
 
   @Override
   public <T> T done(T result) {
-    DartScanner.State oldState = stateStack.pop();
-    DartScanner.State newState = stateStack.peek();
-
-    // If there is more state left, push the newer token changes to them.
-    if (newState != null) {
-      if (oldState.rollbackTokens != null) {
-        if (newState.rollbackTokens != null) {
-          oldState.rollbackTokens.addAll(newState.rollbackTokens);
-        }
-        newState.rollbackTokens = oldState.rollbackTokens;
-      }
+    stackSize--;
+    // The token changes now belong to the enclosing node, if any.
+    if (stackSize == 0) {
+      Arrays.fill(undoTokens, 0, undoSize, null);
+      undoSize = 0;
     }
 
-    setSourcePosition(result, positionStack.pop());
+    setSourcePosition(result, positionStack[stackSize]);
 
     if (result instanceof DartUnit) {
       if (compilerMetrics != null) {
@@ -92,13 +100,12 @@ public class DartScannerParserContext implements ParserContext {
    *
    * @param <T> result type
    * @param result
-   * @param startPos
+   * @param start
    */
-  private <T> void setSourcePosition(T result, DartScanner.Position startPos) {
+  private <T> void setSourcePosition(T result, int start) {
     if (result instanceof HasSourceInfoSetter) {
       HasSourceInfoSetter hasSourceInfoSetter = (HasSourceInfoSetter) result;
-      int start = startPos.getPos();
-      int end = getEndLocation().getPos();
+      int end = scanner.getTokenEnd();
       if (start != -1 && end < start) {
         // handle 0-length tokens, including where there is trailing whitespace
         end = start;
@@ -110,7 +117,7 @@ public class DartScannerParserContext implements ParserContext {
   @Override
   public <T> T doneWithoutConsuming(T result) {
     // do not throw away state
-    setSourcePosition(result, positionStack.peek());
+    setSourcePosition(result, positionStack[stackSize - 1]);
 
     // want next begin() call to seek to the next token and skip whitespace after previous done()
     return result;
@@ -143,18 +150,16 @@ public class DartScannerParserContext implements ParserContext {
 
   @Override
   public void rollback() {
-    // undo changes made to scanner tokens
-    DartScanner.State oldState = stateStack.pop();
-    scanner.restoreState(oldState);
-
-    // Restore the replaced tokens to their state.
-    if (oldState.rollbackTokens != null) {
-      while (!oldState.rollbackTokens.isEmpty()) {
-        State.RollbackToken token = oldState.rollbackTokens.pop();
-        scanner.setAbsolutePeek(token.absoluteOffset, token.replacedToken);
-      }
+    stackSize--;
+    scanner.setOffset(offsetStack[stackSize]);
+
+    // Restore the replaced tokens to their state, most recent first.
+    int undoMark = undoStack[stackSize];
+    while (undoSize > undoMark) {
+      undoSize--;
+      scanner.setAbsolutePeek(undoOffsets[undoSize], undoTokens[undoSize]);
+      undoTokens[undoSize] = null;
     }
-    positionStack.pop();
   }
 
   @Override
@@ -169,13 +174,14 @@ public class DartScannerParserContext implements ParserContext {
 
   @Override
   public void replaceNextToken(Token token) {
-    DartScanner.State state = stateStack.peek();
-    DartScanner.State.RollbackToken oldToken
-      = new DartScanner.State.RollbackToken(scanner.getOffset() + 1, scanner.peek(0));
-    if (state.rollbackTokens == null) {
-      state.rollbackTokens = new Stack<State.RollbackToken>();
+    assert stackSize > 0;
+    if (undoSize == undoOffsets.length) {
+      undoOffsets = Arrays.copyOf(undoOffsets, undoSize * 2);
+      undoTokens = Arrays.copyOf(undoTokens, undoSize * 2);
     }
-    state.rollbackTokens.push(oldToken);
+    undoOffsets[undoSize] = scanner.getOffset() + 1;
+    undoTokens[undoSize] = scanner.peek(0);
+    undoSize++;
     scanner.setPeek(0, token);
   }
 
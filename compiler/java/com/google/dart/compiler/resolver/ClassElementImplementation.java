@@ -35,7 +35,7 @@ class ClassElementImplementation extends AbstractNodeElement implements ClassNod
       new AtomicReference<List<InterfaceType>>();
   private final SourceInfo nameLocation;
   private final String declarationNameWithTypeParameter;
-  private List<Element> unimplementedMembers;
+  private volatile List<Element> unimplementedMembers;
 
   // declared volatile for thread-safety
   @SuppressWarnings("unused")
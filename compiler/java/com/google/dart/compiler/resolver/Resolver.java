@@ -118,6 +118,40 @@ public class Resolver {
     return unit;
   }
 
+  /**
+   * Entry point for IDE. Resolves names in a single top-level node or class member of a
+   * compilation unit, and in the field initializers of the unit, which may determine the types of
+   * the fields. The other method bodies are left unresolved.
+   *
+   * @param unit the unit, whose elements have been built.
+   * @param member a top-level node of the unit, or a member of one of its classes.
+   */
+  public DartUnit exec(DartUnit unit, DartNode member) {
+    LibraryElement library = unit.getLibrary() != null ? unit.getLibrary().getElement() : null;
+    for (DartNode node : unit.getTopLevelNodes()) {
+      if (node == member || node instanceof DartFieldDefinition) {
+        node.accept(new ResolveElementsVisitor(topLevelContext, library));
+      } else if (node instanceof DartClass) {
+        ClassNodeElement classElement = ((DartClass) node).getElement();
+        ResolveElementsVisitor visitor =
+            new ResolveElementsVisitor(topLevelContext.extend(classElement), classElement);
+        // Fields first, so that constructors know which final fields need initializing.
+        DartNode classMember = null;
+        for (DartNode child : ((DartClass) node).getMembers()) {
+          if (child instanceof DartFieldDefinition) {
+            child.accept(visitor);
+          } else if (child == member) {
+            classMember = child;
+          }
+        }
+        if (classMember != null) {
+          classMember.accept(visitor);
+        }
+      }
+    }
+    return unit;
+  }
+
   /**
    * Main entry point for IDE. Resolves a member (method or field)
    * incrementally in the given context.
@@ -51,6 +51,11 @@ public class TestCompilerConfiguration implements CompilerConfiguration {
     return false;
   }
 
+  @Override
+  public int getThreadCount() {
+    return 1;
+  }
+
   @Override
   public List<DartCompilationPhase> getPhases() {
     return Collections.emptyList();
@@ -4,6 +4,7 @@
 
 package com.google.dart.compiler.type;
 
+import com.google.common.collect.MapMaker;
 import com.google.dart.compiler.resolver.ClassElement;
 import com.google.dart.compiler.resolver.Element;
 import com.google.dart.compiler.resolver.ElementKind;
@@ -11,17 +12,29 @@ import com.google.dart.compiler.resolver.Elements;
 import com.google.dart.compiler.resolver.FieldElement;
 import com.google.dart.compiler.resolver.MethodElement;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An interface type.
  */
 class InterfaceTypeImplementation extends AbstractType implements InterfaceType {
+  /**
+   * Stands for the absence of a member in {@link #members}.
+   */
+  private static final Member NO_MEMBER = new MemberImplementation(null, null);
+
   private final ClassElement element;
   private final List<Type> arguments;
 
+  /**
+   * The results of {@link #lookupMember(String)}, keyed by name, or <code>null</code> if no member
+   * has been looked up. For the declared type of a class (see {@link ClassElement#getType()}) this
+   * is the flattened member table of the class, in which inherited members are resolved once.
+   */
+  private volatile Map<String, Member> members;
+
   InterfaceTypeImplementation(ClassElement element, List<Type> arguments) {
     this.element = element;
     this.arguments = arguments;
@@ -102,18 +115,53 @@ class InterfaceTypeImplementation extends AbstractType implements InterfaceType
 
   @Override
   public Member lookupMember(String name) {
-    Element element = getElement().lookupLocalElement(name);
+    Map<String, Member> map = members;
+    if (map == null) {
+      map = new MapMaker().concurrencyLevel(2).makeMap();
+      members = map;
+    }
+    Member member = map.get(name);
+    if (member == null) {
+      member = computeMember(name);
+      map.put(name, member != null ? member : NO_MEMBER);
+    }
+    return member != NO_MEMBER ? member : null;
+  }
+
+  private Member computeMember(String name) {
+    ClassElement classElement = getElement();
+    InterfaceType declaredType = classElement.getType();
+    if (declaredType != this && declaredType instanceof InterfaceTypeImplementation) {
+      // Find the member in the flattened table of the class and substitute the type arguments.
+      Member member = declaredType.lookupMember(name);
+      if (member == null) {
+        return null;
+      }
+      InterfaceType holder = member.getHolder();
+      if (holder == declaredType) {
+        return new MemberImplementation(this, member.getElement());
+      }
+      if (isRaw() || getArguments().isEmpty()) {
+        // Substitution would not change the holder.
+        return member;
+      }
+      return new MemberImplementation(
+          holder.subst(getArguments(), classElement.getTypeParameters()), member.getElement());
+    }
+    Element element = classElement.lookupLocalElement(name);
     if (element != null) {
       return new MemberImplementation(this, element);
     }
-    InterfaceType supertype = getSupertype();
+    // The supertype and interfaces are expressed in terms of the type parameters of the class and
+    // keep their own tables, so that each inherited member is resolved once.
+    InterfaceType supertype = classElement.getSupertype();
     if (supertype != null) {
       Member member = supertype.lookupMember(name);
       if (member != null) {
         return member;
       }
     }
-    for (InterfaceType intrface : getInterfaces()) {
+    for (InterfaceType intrface : classElement.getInterfaces()) {
       Member member = intrface.lookupMember(name);
       if (member != null) {
         return member;
@@ -122,26 +170,6 @@ class InterfaceTypeImplementation extends AbstractType implements InterfaceType
     return null;
   }
 
-  private InterfaceType getSupertype() {
-    InterfaceType supertype = getElement().getSupertype();
-    if (supertype == null) {
-      return null;
-    } else {
-      return supertype.subst(getArguments(), getElement().getTypeParameters());
-    }
-  }
-
-  private List<InterfaceType> getInterfaces() {
-    List<InterfaceType> interfaces = getElement().getInterfaces();
-    List<InterfaceType> result = new ArrayList<InterfaceType>(interfaces.size());
-    List<Type> typeArguments = getArguments();
-    List<Type> typeParameters = getElement().getTypeParameters();
-    for (InterfaceType type : interfaces) {
-      result.add(type.subst(typeArguments, typeParameters));
-    }
-    return result;
-  }
-
   private static class MemberImplementation implements Member {
     private final InterfaceType holder;
     private final Element member;
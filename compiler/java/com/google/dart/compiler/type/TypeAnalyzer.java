@@ -12,8 +12,8 @@ import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.dart.compiler.ConcurrentCompilationPhase;
 import com.google.dart.compiler.DartCompilationError;
-import com.google.dart.compiler.DartCompilationPhase;
 import com.google.dart.compiler.DartCompilerContext;
 import com.google.dart.compiler.ErrorCode;
 import com.google.dart.compiler.ErrorSeverity;
@@ -125,7 +125,7 @@ import java.util.Set;
 /**
  * Analyzer of static type information.
  */
-public class TypeAnalyzer implements DartCompilationPhase {
+public class TypeAnalyzer implements ConcurrentCompilationPhase {
 
   private final Set<ClassElement> diagnosedAbstractClasses = Sets.newHashSet();
 
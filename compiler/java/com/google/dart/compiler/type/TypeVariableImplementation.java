@@ -67,6 +67,11 @@ class TypeVariableImplementation extends AbstractType implements TypeVariable {
     return false;
   }
 
+  @Override
+  public int hashCode() {
+    return element.hashCode();
+  }
+
   @Override
   public TypeKind getKind() {
     return TypeKind.VARIABLE;
@@ -19,6 +19,7 @@ import com.google.dart.compiler.resolver.VariableElement;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -33,6 +34,21 @@ import java.util.Set;
 public class Types {
   private final CoreTypeProvider typeProvider;
 
+  /**
+   * Memo of {@link #asInstanceOf(Type, ClassElement)} for interface types, keyed by the type and
+   * then by the target element. Results, including <code>null</code>, are valid for the lifetime of
+   * this {@link Types} because the class hierarchy is resolved before types are analyzed.
+   */
+  private final Map<Type, Map<ClassElement, InterfaceType>> instanceOfCache =
+      new HashMap<Type, Map<ClassElement, InterfaceType>>();
+
+  /**
+   * The supertypes of each class, keyed by the class and then by the supertype element. Each
+   * supertype is expressed in terms of the type parameters of the class.
+   */
+  private final Map<ClassElement, Map<ClassElement, InterfaceType>> supertypeClosures =
+      new HashMap<ClassElement, Map<ClassElement, InterfaceType>>();
+
   private Types(CoreTypeProvider typeProvider) { // Prevent subclassing.
     this.typeProvider = typeProvider;
   }
@@ -259,7 +275,69 @@ public class Types {
    */
   @VisibleForTesting
   public InterfaceType asInstanceOf(Type t, ClassElement element) {
-    return checkedAsInstanceOf(t, element, new HashSet<TypeVariable>());
+    return checkedAsInstanceOf(t, element, null);
+  }
+
+  /**
+   * @return the instantiation of the given element which the given interface type implements,
+   *         looked up in the supertype closure of the type's element, or <code>null</code>.
+   */
+  private InterfaceType interfaceAsInstanceOf(InterfaceType t, ClassElement element) {
+    Map<ClassElement, InterfaceType> results = instanceOfCache.get(t);
+    if (results == null) {
+      results = new HashMap<ClassElement, InterfaceType>();
+      instanceOfCache.put(t, results);
+    } else {
+      InterfaceType result = results.get(element);
+      if (result != null || results.containsKey(element)) {
+        return result;
+      }
+    }
+    ClassElement tElement = t.getElement();
+    InterfaceType result = getSupertypeClosure(tElement).get(element);
+    if (result != null) {
+      if (t.isRaw()) {
+        result = result.asRawType();
+      } else {
+        result = result.subst(t.getArguments(), tElement.getTypeParameters());
+      }
+    }
+    results.put(element, result);
+    return result;
+  }
+
+  /**
+   * @return the supertypes of the given class, keyed by their elements. Supertypes are visited in
+   *         the same depth-first order as the original walk of the hierarchy, so when a class is
+   *         reachable on several paths, the first one wins.
+   */
+  private Map<ClassElement, InterfaceType> getSupertypeClosure(ClassElement element) {
+    Map<ClassElement, InterfaceType> closure = supertypeClosures.get(element);
+    if (closure == null) {
+      closure = new HashMap<ClassElement, InterfaceType>();
+      addSupertypes(closure, element.getType());
+      supertypeClosures.put(element, closure);
+    }
+    return closure;
+  }
+
+  private void addSupertypes(Map<ClassElement, InterfaceType> closure, InterfaceType type) {
+    ClassElement element = type.getElement();
+    InterfaceType supertype = element.getSupertype();
+    if (supertype != null) {
+      addSupertype(closure, asSupertype(type, supertype));
+    }
+    for (InterfaceType intrface : element.getInterfaces()) {
+      addSupertype(closure, asSupertype(type, intrface));
+    }
+  }
+
+  private void addSupertype(Map<ClassElement, InterfaceType> closure, InterfaceType supertype) {
+    // A class which was already visited had all of its supertypes visited too.
+    if (!closure.containsKey(supertype.getElement())) {
+      closure.put(supertype.getElement(), supertype);
+      addSupertypes(closure, supertype);
+    }
   }
 
   private InterfaceType checkedAsInstanceOf(Type t, ClassElement element, Set<TypeVariable> variablesReferenced) {
@@ -269,24 +347,7 @@ public class Types {
         if (t.getElement().equals(element)) {
           return (InterfaceType) t;
         }
-        InterfaceType ti = (InterfaceType) t;
-        ClassElement tElement = ti.getElement();
-        InterfaceType supertype = tElement.getSupertype();
-        if (supertype != null) {
-          InterfaceType result = checkedAsInstanceOf(asSupertype(ti, supertype), element,
-                                                     variablesReferenced);
-          if (result != null) {
-            return result;
-          }
-        }
-        for (InterfaceType intrface : tElement.getInterfaces()) {
-          InterfaceType result = checkedAsInstanceOf(asSupertype(ti, intrface), element,
-                                                     variablesReferenced);
-          if (result != null) {
-            return result;
-          }
-        }
-        return null;
+        return interfaceAsInstanceOf((InterfaceType) t, element);
       }
       case FUNCTION: {
         Element e = t.getElement();
@@ -304,7 +365,9 @@ public class Types {
         TypeVariable v = (TypeVariable) t;
         Type bound = v.getTypeVariableElement().getBound();
         // Check for previously encountered variables to avoid getting stuck in an infinite loop.
-        if (variablesReferenced.contains(v)) {
+        if (variablesReferenced == null) {
+          variablesReferenced = new HashSet<TypeVariable>();
+        } else if (variablesReferenced.contains(v)) {
           if (bound instanceof InterfaceType) {
             return (InterfaceType) bound;
           }
@@ -18,6 +18,8 @@ public class CompilerTests extends TestSetup {
     TestSuite suite = new TestSuite("DartC compiler test suite.");
     suite.addTestSuite(SystemLibraryManagerTest.class);
     suite.addTestSuite(PrettyErrorFormatterTest.class);
+    suite.addTestSuite(LibraryTaskSchedulerTest.class);
+    suite.addTestSuite(LibraryDepsTest.class);
     return suite;
   }
 }
@@ -4,6 +4,13 @@
 
 package com.google.dart.compiler;
 
+import com.google.dart.compiler.ast.DartBinaryExpression;
+import com.google.dart.compiler.ast.DartBlock;
+import com.google.dart.compiler.ast.DartClass;
+import com.google.dart.compiler.ast.DartField;
+import com.google.dart.compiler.ast.DartFieldDefinition;
+import com.google.dart.compiler.ast.DartMethodDefinition;
+import com.google.dart.compiler.ast.DartReturnStatement;
 import com.google.dart.compiler.ast.DartUnit;
 import com.google.dart.compiler.ast.LibraryUnit;
 import com.google.dart.compiler.resolver.ClassElement;
@@ -104,6 +111,32 @@ public class DeltaAnalyzerTest extends TestCase {
     assertSame(cls, element);
   }
 
+  public void testInterestMember() throws IOException {
+    TestLibrarySource librarySource = new TestLibrarySource(getName());
+    librarySource.addSource("before.dart",
+                            "class Foo {}");
+    DartSource sourceBefore = librarySource.getSourceFor("before.dart");
+    String code = "class Foo {\n  var f = 1;\n  a() { return f + 1; }\n  b() { return f + 1; }\n}\n";
+    DartSource sourceAfter = new DartSourceString("after.dart", code);
+    DartUnit change = analyze(librarySource, sourceBefore, sourceAfter,
+                              code.indexOf("f + 1", code.indexOf("b()")));
+    DartClass cls = (DartClass) change.getTopLevelNodes().get(0);
+    DartField field = ((DartFieldDefinition) cls.getMembers().get(0)).getFields().get(0);
+    assertEquals("int", field.getElement().getType().toString());
+    // Only the body of the member enclosing the interest area is resolved and analyzed.
+    DartBinaryExpression a = getReturnValue((DartMethodDefinition) cls.getMembers().get(1));
+    assertNull(a.getArg1().getElement());
+    assertNull(a.getElement());
+    DartBinaryExpression b = getReturnValue((DartMethodDefinition) cls.getMembers().get(2));
+    assertSame(field.getElement(), b.getArg1().getElement());
+    assertNotNull(b.getElement());
+  }
+
+  private static DartBinaryExpression getReturnValue(DartMethodDefinition method) {
+    DartBlock body = method.getFunction().getBody();
+    return (DartBinaryExpression) ((DartReturnStatement) body.getStatements().get(0)).getValue();
+  }
+
   private DartUnit analyzeNoChange(LibrarySource librarySource) throws IOException {
     DartSource sourceBefore = librarySource.getSourceFor("before.dart");
     DartSource sourceAfter = sourceBefore;
@@ -112,12 +145,17 @@ public class DeltaAnalyzerTest extends TestCase {
 
   private DartUnit analyze(LibrarySource librarySource, DartSource sourceBefore,
                            DartSource sourceAfter) throws IOException {
+    return analyze(librarySource, sourceBefore, sourceAfter, -1);
+  }
+
+  private DartUnit analyze(LibrarySource librarySource, DartSource sourceBefore,
+                           DartSource sourceAfter, int interestStart) throws IOException {
     LibraryUnit libraryUnit = DartCompiler.analyzeLibrary(librarySource, null,
                                                           config, provider, listener);
     LibraryElement enclosingLibrary = libraryUnit.getElement();
     LibraryElement coreLibrary = libraryUnit.getImports().iterator().next().getElement();
     return (DartUnit) DartCompiler.analyzeDelta(SourceDelta.before(sourceBefore).after(sourceAfter),
                                                 enclosingLibrary, coreLibrary,
-                                                null, -1, -1, config, listener);
+                                                null, interestStart, 0, config, listener);
   }
 }
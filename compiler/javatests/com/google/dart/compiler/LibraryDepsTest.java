@@ -0,0 +1,76 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler;
+
+import com.google.common.collect.ImmutableSet;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URI;
+
+/**
+ * Test for {@link LibraryDeps}.
+ */
+public class LibraryDepsTest extends TestCase {
+
+  public void test_readWrite() throws Exception {
+    LibraryDeps deps = new LibraryDeps();
+    {
+      LibraryDeps.Source source = new LibraryDeps.Source();
+      source.addTopSymbol("A");
+      source.addTopSymbol("foo");
+      source.addAllSymbol("A");
+      source.addAllSymbol("foo");
+      source.addAllSymbol("x");
+      source.addHole("bar");
+      source.addDep(new LibraryDeps.Dependency(new URI("file:/a/b.dart"), "b.dart", 42));
+      deps.putSource("a.dart", source);
+    }
+    {
+      LibraryDeps.Source source = new LibraryDeps.Source();
+      source.addAllSymbol("x");
+      deps.putSource("c.dart", source);
+    }
+    LibraryDeps newDeps = roundTrip(deps);
+    assertEquals(ImmutableSet.of("a.dart", "c.dart"), newDeps.getUnitPaths());
+    LibraryDeps.Source source = newDeps.getSource("a.dart");
+    assertTrue(source.usesAnySymbol(ImmutableSet.of("z", "x")));
+    assertTrue(source.usesAnySymbol(ImmutableSet.of("bar")));
+    assertFalse(source.usesAnySymbol(ImmutableSet.of("z", "B")));
+    assertEquals(ImmutableSet.of("A", "foo"), source.getTopSymbols());
+    assertEquals(ImmutableSet.of("A", "foo", "x"), source.getAllSymbols());
+    assertEquals(ImmutableSet.of("bar"), source.getHoles());
+    assertFalse(source.shouldRecompileOnAnyTopLevelChange());
+    LibraryDeps.Dependency dep = source.getDeps().iterator().next();
+    assertEquals(new URI("file:/a/b.dart"), dep.getLibUri());
+    assertEquals("b.dart", dep.getUnitName());
+    assertEquals(42, dep.getLastModified());
+    source = newDeps.getSource("c.dart");
+    assertTrue(source.getTopSymbols().isEmpty());
+    assertTrue(source.getHoles().isEmpty());
+    assertTrue(source.usesAnySymbol(ImmutableSet.of("x")));
+    // Sources which were read can be written again.
+    source.addHole("y");
+    source = roundTrip(newDeps).getSource("c.dart");
+    assertEquals(ImmutableSet.of("x"), source.getAllSymbols());
+    assertEquals(ImmutableSet.of("y"), source.getHoles());
+  }
+
+  /**
+   * Dependencies written in an older format are ignored.
+   */
+  public void test_readOldVersion() throws Exception {
+    LibraryDeps deps = LibraryDeps.fromReader(new StringReader("v00001\na.dart\nfalse\nA\n\n\n\n"));
+    assertTrue(deps.getUnitPaths().isEmpty());
+  }
+
+  private static LibraryDeps roundTrip(LibraryDeps deps) throws Exception {
+    StringWriter writer = new StringWriter();
+    deps.write(writer);
+    return LibraryDeps.fromReader(new StringReader(writer.toString()));
+  }
+}
@@ -0,0 +1,139 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.dart.compiler.ast.LibraryUnit;
+import com.google.dart.compiler.testing.TestCompilerConfiguration;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Test for {@link LibraryTaskScheduler}.
+ */
+public class LibraryTaskSchedulerTest extends TestCase {
+  private final List<DartCompilationError> errors =
+      Collections.synchronizedList(Lists.<DartCompilationError>newArrayList());
+  private final List<LibraryUnit> completed =
+      Collections.synchronizedList(Lists.<LibraryUnit>newArrayList());
+  private ExecutorService executor;
+  private DartCompilerMainContext context;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    executor = Executors.newFixedThreadPool(4);
+    DartCompilerListener listener = new DartCompilerListener.Empty() {
+      @Override
+      public void onError(DartCompilationError event) {
+        errors.add(event);
+      }
+    };
+    context = new DartCompilerMainContext(new MockLibrarySource(), new MockArtifactProvider(),
+        listener, new TestCompilerConfiguration());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    executor.shutdownNow();
+    super.tearDown();
+  }
+
+  /**
+   * A library is processed only after all libraries it imports, and libraries which import each
+   * other are processed together.
+   */
+  public void test_runInImportOrder() throws Exception {
+    LibraryUnit app = new LibraryUnit(new MockLibrarySource());
+    LibraryUnit libA = new LibraryUnit(new MockLibrarySource());
+    LibraryUnit libB = new LibraryUnit(new MockLibrarySource());
+    LibraryUnit core = new LibraryUnit(new MockLibrarySource());
+    app.addImport(libA, null);
+    app.addImport(libB, null);
+    libA.addImport(core, null);
+    libB.addImport(core, null);
+    core.addImport(libB, null);
+    List<LibraryUnit> libs = ImmutableList.of(app, libA, libB, core);
+    new LibraryTaskScheduler(executor, context).runInImportOrder(libs, new RecordingTask(libs));
+    assertEquals(4, completed.size());
+    assertSame(app, completed.get(3));
+    assertTrue(completed.indexOf(libA) > completed.indexOf(core));
+    assertTrue(completed.indexOf(libA) > completed.indexOf(libB));
+    assertErrorsInOrder(libs);
+  }
+
+  public void test_runIndependently() throws Exception {
+    List<LibraryUnit> libs = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      libs.add(new LibraryUnit(new MockLibrarySource()));
+    }
+    new LibraryTaskScheduler(executor, context).runIndependently(libs, new RecordingTask(libs));
+    assertEquals(libs.size(), completed.size());
+    assertErrorsInOrder(libs);
+  }
+
+  public void test_serial() throws Exception {
+    LibraryUnit libA = new LibraryUnit(new MockLibrarySource());
+    LibraryUnit libB = new LibraryUnit(new MockLibrarySource());
+    libA.addImport(libB, null);
+    List<LibraryUnit> libs = ImmutableList.of(libA, libB);
+    new LibraryTaskScheduler(null, context).runInImportOrder(libs, new RecordingTask(libs));
+    assertEquals(libs, completed);
+    assertErrorsInOrder(libs);
+  }
+
+  public void test_failure() throws Exception {
+    List<LibraryUnit> libs = ImmutableList.of(
+        new LibraryUnit(new MockLibrarySource()),
+        new LibraryUnit(new MockLibrarySource()));
+    try {
+      new LibraryTaskScheduler(executor, context).runIndependently(libs,
+          new LibraryTaskScheduler.LibraryTask() {
+            @Override
+            public void run(LibraryUnit lib, DartCompilerContext libContext) {
+              throw new IllegalStateException("boom");
+            }
+          });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("boom", e.getMessage());
+    }
+  }
+
+  private void assertErrorsInOrder(List<LibraryUnit> libs) {
+    assertEquals(libs.size(), errors.size());
+    for (int i = 0; i < libs.size(); i++) {
+      assertSame(libs.get(i).getSource(), errors.get(i).getSource());
+    }
+  }
+
+  /**
+   * Reports an error for each library and records the order in which libraries are processed.
+   */
+  private class RecordingTask implements LibraryTaskScheduler.LibraryTask {
+    private final List<LibraryUnit> libs;
+
+    RecordingTask(List<LibraryUnit> libs) {
+      this.libs = libs;
+    }
+
+    @Override
+    public void run(LibraryUnit lib, DartCompilerContext libContext) {
+      // Give other libraries a chance to run first.
+      if (libs.indexOf(lib) % 2 == 0) {
+        Thread.yield();
+      }
+      libContext.onError(new DartCompilationError(lib.getSource(), DartCompilerErrorCode.IO,
+          String.valueOf(libs.indexOf(lib))));
+      completed.add(lib);
+    }
+  }
+}
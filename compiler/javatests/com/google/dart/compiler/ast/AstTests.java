@@ -18,6 +18,7 @@ public class AstTests extends TestSetup {
     TestSuite suite = new TestSuite("Dart AST test suite.");
 
     suite.addTestSuite(DartToSourceVisitorTest.class);
+    suite.addTestSuite(LibrarySymbolTableTest.class);
     return new AstTests(suite);
   }
 }
@@ -0,0 +1,53 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler.ast;
+
+import com.google.common.collect.Lists;
+import com.google.dart.compiler.CompilerTestCase;
+import com.google.dart.compiler.resolver.Element;
+
+import java.util.List;
+
+/**
+ * Tests for {@link LibrarySymbolTable}.
+ */
+public class LibrarySymbolTableTest extends CompilerTestCase {
+
+  public void test_findMembers() throws Exception {
+    LibraryUnit library = analyzeLibrary(
+        "Test.dart",
+        makeCode(
+            "class A {",
+            "  var barField;",
+            "  static var barStatic;",
+            "  A() {}",
+            "  A.named() {}",
+            "  bar() {}",
+            "  baz() {}",
+            "}",
+            "var bar;",
+            "foo() {}",
+            "typedef barType();")).getLibraryUnitResult();
+    LibrarySymbolTable table = library.getSymbolTable();
+    assertSame(table, library.getSymbolTable());
+    assertEquals("[bar, bar, barField]", findMembers(table, "bar", false));
+    assertEquals("[bar, bar, barField, barStatic]", findMembers(table, "bar", true));
+    assertEquals("[baz]", findMembers(table, "baz", false));
+    assertEquals("[]", findMembers(table, "c", false));
+    // The unnamed constructor has an empty name.
+    assertEquals("[, bar, bar, barField, baz, foo]", findMembers(table, null, false));
+  }
+
+  private static String findMembers(LibrarySymbolTable table, String prefix,
+      boolean includeStatics) {
+    List<Element> members = Lists.newArrayList();
+    table.findMembers(prefix, includeStatics, members);
+    List<String> names = Lists.newArrayList();
+    for (Element member : members) {
+      names.add(member.getName());
+    }
+    return names.toString();
+  }
+}
@@ -17,6 +17,7 @@ public class CommonTests extends TestSetup {
   public static Test suite() {
     TestSuite suite = new TestSuite("Dart common test suite.");
     suite.addTestSuite(LibrarySourceFileTest.class);
+    suite.addTestSuite(SourceInfoTest.class);
     return new CommonTests(suite);
   }
 }
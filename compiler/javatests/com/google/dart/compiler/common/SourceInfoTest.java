@@ -0,0 +1,53 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler.common;
+
+import com.google.dart.compiler.DartCompilerListener;
+import com.google.dart.compiler.parser.DartScannerParserContext;
+import com.google.dart.compiler.util.DartSourceString;
+
+import junit.framework.TestCase;
+
+import java.io.Reader;
+
+/**
+ * Tests for the line and column computation of {@link SourceInfo}.
+ */
+public class SourceInfoTest extends TestCase {
+  private static final String CODE = "class A {\n  foo() {}\n\n}\n";
+
+  public void test_readSource() {
+    assertLinesAndColumns(new DartSourceString("Test.dart", CODE));
+  }
+
+  public void test_scannedSource() {
+    DartSourceString source = new DartSourceString("Test.dart", CODE) {
+      @Override
+      public Reader getSourceReader() {
+        throw new AssertionError("The source should not be read again");
+      }
+    };
+    new DartScannerParserContext(source, CODE, DartCompilerListener.EMPTY);
+    assertLinesAndColumns(source);
+  }
+
+  private static void assertLinesAndColumns(DartSourceString source) {
+    assertLineAndColumn(source, 0, 1, 1);
+    assertLineAndColumn(source, 6, 1, 7);
+    assertLineAndColumn(source, 9, 1, 10);
+    assertLineAndColumn(source, 10, 2, 1);
+    assertLineAndColumn(source, 12, 2, 3);
+    assertLineAndColumn(source, 21, 3, 1);
+    assertLineAndColumn(source, 22, 4, 1);
+    assertLineAndColumn(source, 24, 5, 1);
+  }
+
+  private static void assertLineAndColumn(DartSourceString source, int offset, int line,
+      int column) {
+    SourceInfo sourceInfo = new SourceInfo(source, offset, 0);
+    assertEquals(line, sourceInfo.getLine());
+    assertEquals(column, sourceInfo.getColumn());
+  }
+}
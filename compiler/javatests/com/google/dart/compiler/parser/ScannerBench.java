@@ -0,0 +1,75 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler.parser;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.dart.compiler.DartCompilerListener;
+import com.google.dart.compiler.util.DartSourceString;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark for the memory allocated and the time taken by the scanner and the parser. Run it on
+ * the directories of the core and DOM libraries, e.g. <code>corelib/src lib/dom lib/html</code>.
+ * The benchmark will loop forever to ease profiling.
+ */
+public class ScannerBench {
+
+  public static void main(String... arguments) throws IOException {
+    List<String> names = new ArrayList<String>();
+    List<String> sources = new ArrayList<String>();
+    for (String argument : arguments) {
+      addSources(new File(argument), names, sources);
+    }
+    long chars = 0;
+    for (String source : sources) {
+      chars += source.length();
+    }
+    System.out.println(sources.size() + " files, " + chars + " chars");
+    com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    while (true) {
+      long allocated = threadBean.getThreadAllocatedBytes(threadId);
+      long start = System.currentTimeMillis();
+      for (String source : sources) {
+        new DartScanner(source);
+      }
+      long scanTime = System.currentTimeMillis() - start;
+      long scanAllocated = threadBean.getThreadAllocatedBytes(threadId) - allocated;
+
+      allocated = threadBean.getThreadAllocatedBytes(threadId);
+      start = System.currentTimeMillis();
+      for (int i = 0; i < sources.size(); i++) {
+        DartSourceString source = new DartSourceString(names.get(i), sources.get(i));
+        ParserContext context = new DartScannerParserContext(source, sources.get(i),
+            DartCompilerListener.EMPTY);
+        new DartParser(context).parseUnit(source);
+      }
+      long parseTime = System.currentTimeMillis() - start;
+      long parseAllocated = threadBean.getThreadAllocatedBytes(threadId) - allocated;
+
+      System.out.println(String.format("scan %d ms %.01f MB, scan and parse %d ms %.01f MB",
+          scanTime, scanAllocated / 1e6, parseTime, parseAllocated / 1e6));
+    }
+  }
+
+  private static void addSources(File file, List<String> names, List<String> sources)
+      throws IOException {
+    if (file.isDirectory()) {
+      for (File child : file.listFiles()) {
+        addSources(child, names, sources);
+      }
+    } else if (file.getName().endsWith(".dart")) {
+      names.add(file.getPath());
+      sources.add(Files.toString(file, Charsets.UTF_8));
+    }
+  }
+}
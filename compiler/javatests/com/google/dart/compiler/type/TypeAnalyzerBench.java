@@ -95,7 +95,7 @@ public class TypeAnalyzerBench {
     }
   }
 
-  private static void printScores(Deque<Double> scores) {
+  static void printScores(Deque<Double> scores) {
     double xn = 1d;
     for (double x : scores) {
       xn *= x;
@@ -110,7 +110,7 @@ public class TypeAnalyzerBench {
     System.out.println(String.format("geomean %.03f std. dev. %.03f", geomean, stddev));
   }
 
-  private static DartArtifactProvider getArtifactProvider(File outputDirectory) {
+  static DartArtifactProvider getArtifactProvider(File outputDirectory) {
     final DartArtifactProvider provider = new DefaultDartArtifactProvider(outputDirectory);
     return new DartArtifactProvider() {
       ConcurrentHashMap<URI, CharArrayWriter> artifacts =
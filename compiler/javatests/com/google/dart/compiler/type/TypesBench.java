@@ -0,0 +1,99 @@
+// Copyright (c) 2012, the Dart project authors.  Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+
+package com.google.dart.compiler.type;
+
+import com.google.dart.compiler.CommandLineOptions.CompilerOptions;
+import com.google.dart.compiler.CompilerConfiguration;
+import com.google.dart.compiler.DartCompilationPhase;
+import com.google.dart.compiler.DartCompiler;
+import com.google.dart.compiler.DartCompilerListener;
+import com.google.dart.compiler.DefaultCompilerConfiguration;
+import com.google.dart.compiler.UrlLibrarySource;
+import com.google.dart.compiler.ast.DartClass;
+import com.google.dart.compiler.ast.DartNode;
+import com.google.dart.compiler.ast.DartUnit;
+import com.google.dart.compiler.type.TypeAnalyzerBench.CollectingPhase;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Benchmark for {@link Types#isSubtype(Type, Type)} on the classes of the core and DOM libraries.
+ * Each iteration checks every class against every other class using a new {@link Types}, the way
+ * the type analyzer uses one per compilation unit. The benchmark will loop forever to ease
+ * profiling.
+ */
+public class TypesBench {
+  private static final double SCORE_SCALE = 1000d;
+  private static final long ROUND_DURATION_MS = 5000L;
+
+  public static void main(String... arguments) throws CmdLineException, IOException {
+    CompilerOptions compilerOptions = new CompilerOptions();
+    CmdLineParser cmdLineParser = new CmdLineParser(compilerOptions);
+    cmdLineParser.parseArgument(arguments);
+    final CollectingPhase phase = new CollectingPhase();
+    CompilerConfiguration config = new DefaultCompilerConfiguration(compilerOptions) {
+      @Override
+      public List<DartCompilationPhase> getPhases() {
+        ArrayList<DartCompilationPhase> phases = new ArrayList<DartCompilationPhase>();
+        phases.addAll(super.getPhases());
+        phases.add(phase);
+        return phases;
+      }
+    };
+    File sourceFile = File.createTempFile("TypesBench", ".dart");
+    sourceFile.deleteOnExit();
+    FileWriter writer = new FileWriter(sourceFile);
+    try {
+      writer.write("#library('TypesBench');\n#import('dart:html');\nmain() {}\n");
+    } finally {
+      writer.close();
+    }
+    DartCompiler.compileLib(new UrlLibrarySource(sourceFile), config,
+        TypeAnalyzerBench.getArtifactProvider(config.getOutputDirectory()),
+        DartCompilerListener.EMPTY);
+    List<Type> classTypes = new ArrayList<Type>();
+    for (DartUnit unit : phase.units) {
+      for (DartNode node : unit.getTopLevelNodes()) {
+        if (node instanceof DartClass) {
+          classTypes.add(((DartClass) node).getElement().getType());
+        }
+      }
+    }
+    System.out.println(classTypes.size() + " classes");
+    Deque<Double> scores = new ArrayDeque<Double>(10);
+    for (int i = 0; i < 10; i++) {
+      scores.addLast(0d);
+    }
+    long start = System.currentTimeMillis();
+    int i = 0;
+    while (true) {
+      i++;
+      Types types = Types.getInstance(phase.typeProvider);
+      for (Type t : classTypes) {
+        for (Type s : classTypes) {
+          types.isSubtype(t, s);
+        }
+      }
+      long elapsed = System.currentTimeMillis() - start;
+      if (elapsed > ROUND_DURATION_MS) {
+        double score = i * SCORE_SCALE / elapsed;
+        scores.removeFirst();
+        scores.addLast(score);
+        TypeAnalyzerBench.printScores(scores);
+        start = System.currentTimeMillis();
+        i = 0;
+      }
+    }
+  }
+}
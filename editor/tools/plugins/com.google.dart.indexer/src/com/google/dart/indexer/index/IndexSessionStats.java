@@ -32,4 +32,9 @@ public class IndexSessionStats {
   public long getTimeSpentParsing() {
     return timeSpentParsing;
   }
+
+  @Override
+  public String toString() {
+    return "PARSE " + timeSpentParsing + " ms\n" + storageStats.toString();
+  }
 }
@@ -29,6 +29,7 @@ import com.google.dart.indexer.index.updating.FileInfoUpdater;
 import com.google.dart.indexer.index.updating.FileInfoUpdaterImpl;
 import com.google.dart.indexer.locations.Location;
 import com.google.dart.indexer.source.IndexableSource;
+import com.google.dart.indexer.storage.BufferedFileTransaction;
 import com.google.dart.indexer.storage.FileTransaction;
 import com.google.dart.indexer.storage.StorageTransaction;
 import com.google.dart.indexer.workspace.index.IndexingTarget;
@@ -74,6 +75,33 @@ public class IndexTransaction {
     errors.add(error);
   }
 
+  /**
+   * Apply the changes recorded by
+   * {@link #processTarget(IndexingTarget, IndexConfigurationInstance)} for the given target to the
+   * storage. The result is the same as indexing the target using
+   * {@link #indexTarget(IndexingTarget)}, but all of the work that does not involve the storage has
+   * already been done.
+   * 
+   * @param target the target whose changes are being applied
+   * @param buffer the changes recorded for the target
+   * @throws IndexRequestFailed if the changes could not be applied
+   */
+  public void applyTarget(IndexingTarget target, BufferedFileTransaction buffer)
+      throws IndexRequestFailed {
+    try {
+      IFile file = target.getFile();
+      if (TRACE_INDEXED_FILES) {
+        IndexerPlugin.getLogger().trace("Indexing " + file.getFullPath());
+      }
+      FileTransaction fileTransaction = storageTransaction.createFileTransaction(file);
+      removeInformationThatWillBeReconstructed(file, fileTransaction.getOriginalFileInfo());
+      buffer.applyTo(fileTransaction);
+      fileTransaction.commit();
+    } catch (IndexRequestFailedUnchecked e) {
+      throw e.unwrap();
+    }
+  }
+
   public void close() throws IndexRequestFailed {
     for (Processor processor : configuration.getKnownProcessors()) {
       try {
@@ -120,6 +148,40 @@ public class IndexTransaction {
     }
   }
 
+  /**
+   * Run the processors of the given configuration on the given target, recording the changes they
+   * make rather than applying them to the storage. This method does not access the storage, so it
+   * can be invoked on any thread, as long as each thread uses its own configuration. The recorded
+   * changes must then be applied using
+   * {@link #applyTarget(IndexingTarget, BufferedFileTransaction)}.
+   * 
+   * @param target the target to be processed
+   * @param processingConfiguration the configuration providing the processors to be used
+   * @return the changes recorded for the target, or <code>null</code> if the target is not indexed
+   * @throws IndexRequestFailed if the target could not be processed
+   */
+  public BufferedFileTransaction processTarget(IndexingTarget target,
+      IndexConfigurationInstance processingConfiguration) throws IndexRequestFailed {
+    try {
+      IFile file = target.getFile();
+      if (file == null) {
+        return null;
+      }
+      Processor[] processors = processingConfiguration.findProcessors(file);
+      if (processors.length == 0) {
+        return null;
+      }
+      BufferedFileTransaction buffer = new BufferedFileTransaction();
+      FileInfoUpdater updater = new FileInfoUpdaterImpl(buffer);
+      for (int i = 0; i < processors.length; i++) {
+        processors[i].processTarget(target, updater);
+      }
+      return buffer;
+    } catch (IndexRequestFailedUnchecked e) {
+      throw e.unwrap();
+    }
+  }
+
   @Deprecated
   public IFile[] removeTarget(IndexingTarget target) {
     IFile file = target.getFile();
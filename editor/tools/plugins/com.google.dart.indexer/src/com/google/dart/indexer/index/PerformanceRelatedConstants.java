@@ -14,9 +14,31 @@
 package com.google.dart.indexer.index;
 
 public class PerformanceRelatedConstants {
-  public static final int BUILDING_FILE_CACHE = 512;
+  /**
+   * The percentage of the maximum heap size that the caches of the index may use together.
+   */
+  public static final int CACHE_HEAP_PERCENTAGE = 25;
 
-  public static final int BUILDING_LOCATION_CACHE = 512;
+  /**
+   * The maximum number of targets whose changes are written to the storage without releasing the
+   * lock on the indexer when indexing in parallel.
+   */
+  public static final int INDEXING_BATCH_SIZE = 32;
 
-  public static final int READING_LOCATION_CACHE = 128;
+  /**
+   * The number of worker threads used to process targets when indexing in parallel.
+   */
+  public static final int INDEXING_THREADS = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The percentage of the maximum heap size below which the free heap is considered to be low, in
+   * which case the caches of the index are shrunk.
+   */
+  public static final int LOW_MEMORY_PERCENTAGE = 10;
+
+  /**
+   * The minimum number of queued targets for which the targets are processed in parallel. Smaller
+   * updates are not worth starting the worker threads.
+   */
+  public static final int PARALLEL_INDEXING_THRESHOLD = 64;
 }
@@ -26,6 +26,16 @@ import org.eclipse.core.resources.IFile;
  * The clients should create configurations using the <code>IndexConfigurationBuilder</code> class.
  */
 public interface IndexConfigurationInstance {
+  /**
+   * Add the given amount of time to the time reported by the next invocation of
+   * {@link #gatherTimeSpentParsing()}. This is used to report the time spent parsing by processors
+   * that were created by other instances of the same configuration, such as the instances used by
+   * the workers of a parallel indexing.
+   * 
+   * @param timeSpentParsing the number of milliseconds spent parsing by the other processors
+   */
+  public void addTimeSpentParsing(long timeSpentParsing);
+
   public String describe();
 
   /**
@@ -47,6 +57,14 @@ public interface IndexConfigurationInstance {
 
   public long gatherTimeSpentParsing();
 
+  /**
+   * Return the configuration of which this is an instance. Instantiating it again creates
+   * processors and contributors that do not share any state with the ones of this instance.
+   * 
+   * @return the configuration of which this is an instance
+   */
+  public IndexConfiguration getConfiguration();
+
   /**
    * Return an array containing all of the processors that have been created.
    * 
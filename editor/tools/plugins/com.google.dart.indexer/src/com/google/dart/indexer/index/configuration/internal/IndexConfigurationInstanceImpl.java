@@ -50,6 +50,12 @@ public class IndexConfigurationInstanceImpl implements IndexConfigurationInstanc
 
   private Map<LayerId, Layer> idsToLayers;
 
+  /**
+   * The number of milliseconds spent parsing by processors that are not known to this instance,
+   * since the last time the time spent parsing was gathered.
+   */
+  private long additionalTimeSpentParsing = 0;
+
   public IndexConfigurationInstanceImpl(IndexConfiguration configuration,
       ProcessorRegistration registrations[], Layer[] layers) {
     if (configuration == null) {
@@ -67,6 +73,11 @@ public class IndexConfigurationInstanceImpl implements IndexConfigurationInstanc
     this.idsToLayers = indexLayersById(layers);
   }
 
+  @Override
+  public synchronized void addTimeSpentParsing(long timeSpentParsing) {
+    additionalTimeSpentParsing += timeSpentParsing;
+  }
+
   @Override
   public String describe() {
     return configuration.describe();
@@ -97,7 +108,11 @@ public class IndexConfigurationInstanceImpl implements IndexConfigurationInstanc
 
   @Override
   public long gatherTimeSpentParsing() {
-    long result = 0;
+    long result;
+    synchronized (this) {
+      result = additionalTimeSpentParsing;
+      additionalTimeSpentParsing = 0;
+    }
     for (Iterator<Processor> iterator = registrationsToProcessors.values().iterator(); iterator.hasNext();) {
       Processor processor = iterator.next();
       result += processor.getAndResetTimeSpentParsing();
@@ -105,6 +120,11 @@ public class IndexConfigurationInstanceImpl implements IndexConfigurationInstanc
     return result;
   }
 
+  @Override
+  public IndexConfiguration getConfiguration() {
+    return configuration;
+  }
+
   @Override
   public Processor getInitializedProcessor(String id) {
     return getInitializedProcessor(findRegistration(id));
@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.pagedstorage;
+
+import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageCorruptedException;
+import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
+import com.google.dart.indexer.pagedstorage.filesystem.AccessMode;
+import com.google.dart.indexer.storage.paged.store.DataHandler;
+import com.google.dart.indexer.storage.paged.store.FileStore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A redo log of page images. Instead of writing a page at its position in the file of the paged
+ * storage, the image of the page is appended to the log, and the images are only copied into the
+ * file by a checkpoint, after which the committed part of the log is discarded. Each entry consists
+ * of the page id, a checksum of the entry and the image of the page, so that an entry that was only
+ * partially written is recognized when the log is read, and ends the log.
+ * <p>
+ * The pages written by one commit of the storage are followed by a commit marker, an entry without
+ * an image. Only the pages of the batches whose marker has been written are replayed or copied
+ * into the file, so that the file never holds part of a batch.
+ * <p>
+ * Appended entries are buffered and written to the log by {@link #commit()}. Threads that commit
+ * concurrently share a single write and sync of the log (group commit): the first of them writes
+ * everything that has been appended so far, and the others only wait for it to finish.
+ */
+class PageLog {
+  /**
+   * The number of bytes in front of the image of a page in each entry: the page id, the checksum
+   * and eight unused bytes, which keep the entries aligned to the blocks of the file. An entry is
+   * therefore this many bytes longer than a page, and a commit marker is only this long.
+   */
+  private static final int ENTRY_HEADER_LENGTH = 16;
+
+  /**
+   * The page id of the entries that mark the end of a batch of pages.
+   */
+  private static final int COMMIT_MARKER = -1;
+
+  private static int readInt(byte[] buffer, int offset) {
+    return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+        | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+  }
+
+  private static void writeInt(byte[] buffer, int offset, int value) {
+    buffer[offset] = (byte) (value >> 24);
+    buffer[offset + 1] = (byte) (value >> 16);
+    buffer[offset + 2] = (byte) (value >> 8);
+    buffer[offset + 3] = (byte) value;
+  }
+
+  private final DataHandler handler;
+  private final FileStore file;
+  private final int pageSize;
+  private final int entryLength;
+
+  /**
+   * The entries that have been appended but not yet written to the log.
+   */
+  private byte[] buffer;
+  private int bufferLength;
+
+  /**
+   * The length of the log including the entries in the buffer, not counting the file header.
+   */
+  private long appendedLength;
+
+  /**
+   * The length of the log up to the end of the last commit marker that was appended.
+   */
+  private long markedLength;
+
+  /**
+   * The length of the log that has been written and synced, not counting the file header.
+   */
+  private long writtenLength;
+
+  /**
+   * The length of the log up to the end of the last commit marker that has been written and synced.
+   */
+  private long committedLength;
+
+  /**
+   * Whether a thread is currently writing the log, outside of the monitor of the log.
+   */
+  private boolean writing;
+
+  /**
+   * Open the log with the given name, creating it if it does not exist.
+   * 
+   * @param handler the handler computing the checksums of the entries
+   * @param fileName the name of the log file
+   * @param accessMode the access mode
+   * @param pageSize the size of the pages in the log
+   */
+  PageLog(DataHandler handler, String fileName, AccessMode accessMode, int pageSize)
+      throws PagedStorageException {
+    this.handler = handler;
+    this.pageSize = pageSize;
+    this.entryLength = ENTRY_HEADER_LENGTH + pageSize;
+    FileStore store = FileStore.open(handler, fileName, accessMode);
+    try {
+      store.init();
+    } catch (PagedStorageException e) {
+      store.closeSilently();
+      throw e;
+    }
+    file = store;
+    buffer = new byte[entryLength * 4];
+  }
+
+  /**
+   * Append the image of the given page to the log. The entry is only written to the log by the next
+   * {@link #commit()}, and only replayed once it is followed by a commit marker.
+   * 
+   * @param pageId the page id
+   * @param page the image of the page
+   */
+  synchronized void append(int pageId, byte[] page) {
+    int offset = appendHeader(pageId, entryLength);
+    System.arraycopy(page, 0, buffer, offset + ENTRY_HEADER_LENGTH, pageSize);
+    writeInt(buffer, offset + 4, handler.getChecksum(buffer, offset, offset + entryLength));
+  }
+
+  /**
+   * Append a commit marker, ending the batch of the pages appended since the previous marker. The
+   * marker is only written to the log by the next {@link #commit()}.
+   */
+  synchronized void appendCommitMarker() {
+    if (markedLength == appendedLength) {
+      return;
+    }
+    int offset = appendHeader(COMMIT_MARKER, ENTRY_HEADER_LENGTH);
+    writeInt(buffer, offset + 4, handler.getChecksum(buffer, offset, offset
+        + ENTRY_HEADER_LENGTH));
+    markedLength = appendedLength;
+  }
+
+  /**
+   * Wait until no thread is writing the log. The caller must hold the monitor of the log, and keeps
+   * it while no other thread can append to or write the log.
+   */
+  synchronized void awaitIdle() {
+    boolean interrupted = false;
+    while (writing) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Close the log file. Entries that have not been committed are lost.
+   */
+  synchronized void close() {
+    awaitIdle();
+    file.closeSilently();
+  }
+
+  /**
+   * Write all of the entries appended so far to the log and sync it, committing the batches whose
+   * markers have been appended. If another thread is writing the log, wait for it, and only write
+   * the entries it did not write. If the entries cannot be written, they are kept to be written by
+   * the next commit.
+   */
+  void commit() {
+    byte[] entries;
+    int length;
+    long position;
+    long newLength;
+    long newCommittedLength;
+    synchronized (this) {
+      long target = markedLength;
+      boolean interrupted = false;
+      while (writing && committedLength < target) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (committedLength >= target) {
+        return;
+      }
+      writing = true;
+      entries = buffer;
+      length = bufferLength;
+      position = writtenLength;
+      newLength = appendedLength;
+      newCommittedLength = markedLength;
+      buffer = new byte[Math.max(entries.length, entryLength * 4)];
+      bufferLength = 0;
+    }
+    boolean written = false;
+    try {
+      file.write(FileStore.HEADER_LENGTH + position, entries, 0, length);
+      file.sync();
+      written = true;
+    } finally {
+      synchronized (this) {
+        writing = false;
+        if (written) {
+          writtenLength = newLength;
+          committedLength = newCommittedLength;
+        } else {
+          // put the entries back in front of the ones appended in the meantime
+          byte[] requeued = new byte[Math.max(length + bufferLength, buffer.length)];
+          System.arraycopy(entries, 0, requeued, 0, length);
+          System.arraycopy(buffer, 0, requeued, length, bufferLength);
+          buffer = requeued;
+          bufferLength += length;
+        }
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Return the length of the log up to the end of the last batch that has been committed.
+   * 
+   * @return the committed length of the log in bytes
+   */
+  synchronized long committedLength() {
+    return committedLength;
+  }
+
+  /**
+   * Discard the committed part of the log, keeping the entries after the last commit marker that
+   * has been written, which are written again by the next commit. The caller must make sure that
+   * the committed pages have been written into the file of the storage and synced, and must hold
+   * the monitor of the log after {@link #awaitIdle() waiting} for the log to be idle.
+   */
+  synchronized void discardCommitted() {
+    int writtenTail = (int) (writtenLength - committedLength);
+    byte[] tail = new byte[Math.max(writtenTail + bufferLength, entryLength * 4)];
+    if (writtenTail > 0) {
+      file.readFully(FileStore.HEADER_LENGTH + committedLength, tail, 0, writtenTail);
+    }
+    System.arraycopy(buffer, 0, tail, writtenTail, bufferLength);
+    file.setLength(FileStore.HEADER_LENGTH);
+    file.sync();
+    buffer = tail;
+    bufferLength += writtenTail;
+    appendedLength -= committedLength;
+    markedLength -= committedLength;
+    writtenLength = 0;
+    committedLength = 0;
+  }
+
+  /**
+   * Return the length of the log, including the entries that have not been committed.
+   * 
+   * @return the length of the log in bytes
+   */
+  synchronized long length() {
+    return appendedLength;
+  }
+
+  /**
+   * Read the images of the pages in the committed batches between the given positions of the log.
+   * The positions must be the ends of commit markers that have been written, and the part of the
+   * log between them is not changed until the log is discarded, so the caller does not need to
+   * hold the monitor of the log.
+   * 
+   * @param start the position of the first entry to be read
+   * @param end the position after the last entry to be read
+   * @param images the map to which the latest image of each page is added, keyed by page id
+   */
+  void readCommitted(long start, long end, Map<Integer, byte[]> images)
+      throws PagedStorageException {
+    if (readEntries(start, end, images) != end) {
+      throw new PagedStorageCorruptedException("Invalid entry in " + file);
+    }
+  }
+
+  /**
+   * Read the committed batches of the log, and pass the image of each page to the given storage to
+   * be written into its file. Reading stops at the first entry that was not completely written,
+   * and the pages that follow the last complete commit marker are ignored.
+   * 
+   * @param storage the storage into which the pages are written
+   * @return the number of pages that were written
+   */
+  synchronized int replay(PagedStorage storage) throws PagedStorageException {
+    Map<Integer, byte[]> images = new TreeMap<Integer, byte[]>();
+    readEntries(0, file.length() - FileStore.HEADER_LENGTH, images);
+    for (Map.Entry<Integer, byte[]> entry : images.entrySet()) {
+      storage.replayPage(entry.getKey(), entry.getValue());
+    }
+    return images.size();
+  }
+
+  /**
+   * Discard all of the entries of the log. The caller must make sure that the pages in the log have
+   * been written and synced, and that no thread is writing the log.
+   */
+  synchronized void reset() {
+    file.setLength(FileStore.HEADER_LENGTH);
+    file.sync();
+    bufferLength = 0;
+    appendedLength = 0;
+    markedLength = 0;
+    writtenLength = 0;
+    committedLength = 0;
+  }
+
+  /**
+   * Append the header of an entry of the given length to the buffer. The checksum is left zero.
+   * 
+   * @param pageId the page id, or {@link #COMMIT_MARKER}
+   * @param length the length of the entry
+   * @return the offset of the entry in the buffer
+   */
+  private int appendHeader(int pageId, int length) {
+    if (bufferLength + length > buffer.length) {
+      byte[] newBuffer = new byte[Math.max(buffer.length * 2, bufferLength + length)];
+      System.arraycopy(buffer, 0, newBuffer, 0, bufferLength);
+      buffer = newBuffer;
+    }
+    int offset = bufferLength;
+    writeInt(buffer, offset, pageId);
+    for (int i = 4; i < ENTRY_HEADER_LENGTH; i++) {
+      buffer[offset + i] = 0;
+    }
+    bufferLength += length;
+    appendedLength += length;
+    return offset;
+  }
+
+  /**
+   * Read the entries of the log between the given positions, stopping at the first entry that was
+   * not completely written, and add the images of the pages of each batch to the given map once
+   * the commit marker of the batch has been read.
+   * 
+   * @param start the position of the first entry to be read
+   * @param end the position after the last entry that may be read
+   * @param images the map to which the latest image of each page is added, keyed by page id
+   * @return the position after the last commit marker that was read
+   */
+  private long readEntries(long start, long end, Map<Integer, byte[]> images) {
+    Map<Integer, byte[]> batch = new LinkedHashMap<Integer, byte[]>();
+    byte[] entry = new byte[entryLength];
+    long committed = start;
+    long position = start;
+    while (position + ENTRY_HEADER_LENGTH <= end) {
+      file.readFully(FileStore.HEADER_LENGTH + position, entry, 0, ENTRY_HEADER_LENGTH);
+      int pageId = readInt(entry, 0);
+      int length = pageId == COMMIT_MARKER ? ENTRY_HEADER_LENGTH : entryLength;
+      if (position + length > end) {
+        break;
+      }
+      if (length > ENTRY_HEADER_LENGTH) {
+        file.readFully(FileStore.HEADER_LENGTH + position + ENTRY_HEADER_LENGTH, entry,
+            ENTRY_HEADER_LENGTH, pageSize);
+      }
+      int checksum = readInt(entry, 4);
+      writeInt(entry, 4, 0);
+      if (handler.getChecksum(entry, 0, length) != checksum) {
+        break;
+      }
+      position += length;
+      if (pageId == COMMIT_MARKER) {
+        images.putAll(batch);
+        batch.clear();
+        committed = position;
+      } else {
+        byte[] page = new byte[pageSize];
+        System.arraycopy(entry, ENTRY_HEADER_LENGTH, page, 0, pageSize);
+        batch.put(pageId, page);
+      }
+    }
+    return committed;
+  }
+}
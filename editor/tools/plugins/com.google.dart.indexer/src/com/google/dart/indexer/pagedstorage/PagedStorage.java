@@ -21,8 +21,10 @@ import com.google.dart.indexer.pagedstorage.filesystem.AccessMode;
 import com.google.dart.indexer.pagedstorage.filesystem.FileSystem;
 import com.google.dart.indexer.pagedstorage.pagestore.Record;
 import com.google.dart.indexer.pagedstorage.pagestore.RecordFactory;
+import com.google.dart.indexer.pagedstorage.stats.PageCacheStats;
 import com.google.dart.indexer.pagedstorage.util.Cache;
-import com.google.dart.indexer.pagedstorage.util.CacheTQ;
+import com.google.dart.indexer.pagedstorage.util.CacheSLRU;
+import com.google.dart.indexer.pagedstorage.util.CacheStriped;
 import com.google.dart.indexer.pagedstorage.util.FileUtils;
 import com.google.dart.indexer.pagedstorage.util.ObjectArray;
 import com.google.dart.indexer.storage.paged.store.CacheObject;
@@ -32,7 +34,13 @@ import com.google.dart.indexer.storage.paged.store.DataHandler;
 import com.google.dart.indexer.storage.paged.store.FileStore;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 
 /**
@@ -52,6 +60,18 @@ import java.util.zip.CRC32;
  * <li>X-(X+8): checksum of bytes 0-X (CRC32)</li>
  * </ul>
  * Page 3 contains the first free list page. Page 4 contains the first special page.
+ * <p>
+ * Pages are read and written at their position in the file, so that several threads can read and
+ * write pages concurrently. The page cache is divided into stripes that are locked independently.
+ * Allocating and freeing pages updates the shared allocation bitmap and is therefore serialized by
+ * the monitor of the storage, which may be acquired before the lock of a cache stripe but never
+ * while one is held.
+ * <p>
+ * Once the file is open, written pages are appended to a redo log (see {@link PageLog}) instead of
+ * being written at their position, and {@link #commit()} makes them durable with a sequential write
+ * of the log, ending them with a commit marker. The committed pages are copied into the file by a
+ * checkpoint, which runs on a background thread when the log has grown large, and the committed
+ * part of the log is replayed when the file is opened again.
  */
 public class PagedStorage implements CacheWriter, DataHandler {
   public static final int PAGE_SIZE_MIN = 128;
@@ -66,6 +86,21 @@ public class PagedStorage implements CacheWriter, DataHandler {
 
   private static final int INCREMENT_PAGES = 128;
 
+  /**
+   * The number of independently locked stripes the page cache is divided into.
+   */
+  private static final int CACHE_STRIPES = 16;
+
+  /**
+   * The size of the log above which a checkpoint is started after a commit.
+   */
+  private static final long CHECKPOINT_LOG_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * The suffix appended to the name of the file to get the name of the log.
+   */
+  private static final String LOG_SUFFIX = ".log";
+
   private static final int READ_VERSION = 0;
   private static final int WRITE_VERSION = 0;
 
@@ -74,7 +109,7 @@ public class PagedStorage implements CacheWriter, DataHandler {
   private AccessMode accessMode;
   private int pageSize;
   private int pageSizeShift;
-  private long writeCount;
+  private final AtomicLong writeCount = new AtomicLong();
   private int[] specialPages;
   private int specialPageCount;
 
@@ -93,7 +128,34 @@ public class PagedStorage implements CacheWriter, DataHandler {
   /**
    * Number of pages (including free pages).
    */
-  private int pageCount;
+  private volatile int pageCount;
+
+  /**
+   * The redo log to which written pages are appended, or <code>null</code> if pages are written at
+   * their position in the file.
+   */
+  private volatile PageLog log;
+
+  /**
+   * The images of the pages that have been appended to the log but not yet written into the file,
+   * keyed by page id. Entries are added while holding the monitor of the log.
+   */
+  private final Map<Integer, byte[]> loggedPages = new ConcurrentHashMap<Integer, byte[]>();
+
+  /**
+   * The lock held while the pages in the log are being written into the file.
+   */
+  private final Object checkpointLock = new Object();
+
+  /**
+   * Whether a checkpoint has been started on a background thread and has not yet finished.
+   */
+  private final AtomicBoolean checkpointRunning = new AtomicBoolean();
+
+  /**
+   * The thread running the most recently started background checkpoint, or <code>null</code>.
+   */
+  private volatile Thread checkpointer;
 
   /**
    * Create a new page store object.
@@ -110,7 +172,11 @@ public class PagedStorage implements CacheWriter, DataHandler {
     this.specialPageCount = specialPageCount;
     this.specialPages = new int[specialPageCount];
     this.cacheSize = cacheSizeDefault;
-    this.cache = new CacheTQ(this, cacheSize);
+    Cache[] stripes = new Cache[CACHE_STRIPES];
+    for (int i = 0; i < CACHE_STRIPES; i++) {
+      stripes[i] = new CacheSLRU(this, Math.max(cacheSize / CACHE_STRIPES, 1));
+    }
+    this.cache = new CacheStriped(stripes);
     setPageSize(PAGE_SIZE_DEFAULT);
   }
 
@@ -138,17 +204,21 @@ public class PagedStorage implements CacheWriter, DataHandler {
   }
 
   /**
-   * Flush all pending changes to disk, and re-open the log file.
+   * Flush all pending changes to disk, write the pages in the log into the file and reset the log.
    */
   public synchronized void checkpoint() throws PagedStorageException {
     writeBack();
+    if (log != null) {
+      log.appendCommitMarker();
+      log.commit();
+      writeLoggedPages();
+    }
     byte[] empty = new byte[pageSize];
     // TODO avoid to write empty pages
     for (int i = FIRST_PAGE_ALLOCATION_BITMAP_PAGE; i < pageCount; i++) {
       if (!isUsed(i)) {
-        file.seek((long) i << pageSizeShift);
-        file.write(empty, 0, pageSize);
-        writeCount++;
+        file.write((long) i << pageSizeShift, empty, 0, pageSize);
+        writeCount.incrementAndGet();
       }
     }
     // TODO shrink file if required here
@@ -158,9 +228,22 @@ public class PagedStorage implements CacheWriter, DataHandler {
   }
 
   /**
-   * Close the file without further writing.
+   * Close the file without further writing. Changes that have not been committed are lost.
    */
   public void close() {
+    Thread runningCheckpointer = checkpointer;
+    if (runningCheckpointer != null) {
+      try {
+        runningCheckpointer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (log != null) {
+      log.close();
+      log = null;
+    }
+    loggedPages.clear();
     if (file != null) {
       try {
         file.close();
@@ -173,6 +256,27 @@ public class PagedStorage implements CacheWriter, DataHandler {
     }
   }
 
+  /**
+   * Append all pending changes to the log, followed by a commit marker, and make them durable.
+   * Threads that commit at the same time share a single write and sync of the log. If the log has
+   * grown large, a checkpoint is started on a background thread.
+   */
+  public void commit() throws PagedStorageException {
+    PageLog currentLog;
+    synchronized (this) {
+      writeBack();
+      currentLog = log;
+      if (currentLog == null) {
+        return;
+      }
+      currentLog.appendCommitMarker();
+    }
+    currentLog.commit();
+    if (currentLog.length() > CHECKPOINT_LOG_SIZE) {
+      startCheckpointer();
+    }
+  }
+
   /**
    * Create a data object.
    * 
@@ -199,8 +303,9 @@ public class PagedStorage implements CacheWriter, DataHandler {
 
   @Override
   public int getChecksum(byte[] data, int start, int end) {
-    // TODO implement checksum
-    return 0;
+    CRC32 crc = new CRC32();
+    crc.update(data, start, end - start);
+    return (int) crc.getValue();
   }
 
   /**
@@ -227,7 +332,7 @@ public class PagedStorage implements CacheWriter, DataHandler {
    * @param pos the page id
    * @return the record or null
    */
-  public synchronized Record getRecord(int pos) {
+  public Record getRecord(int pos) {
     CacheObject obj = cache.find(pos);
     return (Record) obj;
   }
@@ -240,12 +345,12 @@ public class PagedStorage implements CacheWriter, DataHandler {
   }
 
   public long getWriteCount() {
-    return writeCount;
+    return writeCount.get();
   }
 
   @Override
   public void handleInvalidChecksum() throws PagedStorageException {
-    // TODO implement checksum
+    throw new PagedStorageCorruptedException("Invalid checksum in " + fileName);
   }
 
   /**
@@ -305,10 +410,21 @@ public class PagedStorage implements CacheWriter, DataHandler {
    * 
    * @param pageId the page id
    */
-  public synchronized void removeRecord(int pageId) {
+  public void removeRecord(int pageId) {
     cache.remove(pageId);
   }
 
+  /**
+   * Set the maximum size of the page cache. Changed pages that no longer fit in the cache are
+   * written back.
+   * 
+   * @param cacheSizeKb the maximum size of the cache in KB
+   */
+  public void setCacheSize(int cacheSizeKb) throws PagedStorageException {
+    cacheSize = cacheSizeKb;
+    cache.setMaxSize(cacheSizeKb);
+  }
+
   /**
    * Set the page size. The size must be a power of two. This method must be called before opening.
    * 
@@ -335,7 +451,7 @@ public class PagedStorage implements CacheWriter, DataHandler {
     pageSizeShift = shift;
   }
 
-  public void setSpecialPage(int index, int page) {
+  public synchronized void setSpecialPage(int index, int page) {
     if (index < 0 || index >= specialPageCount) {
       throw new IllegalArgumentException("special page index incorrect: " + index);
     }
@@ -343,6 +459,15 @@ public class PagedStorage implements CacheWriter, DataHandler {
     writeVariableHeader();
   }
 
+  /**
+   * Add the counters of the page cache to the given statistics.
+   * 
+   * @param stats the statistics to be updated
+   */
+  public void stats(PageCacheStats stats) {
+    cache.stats(stats);
+  }
+
   /**
    * Update a record.
    * 
@@ -354,7 +479,7 @@ public class PagedStorage implements CacheWriter, DataHandler {
     updateRecord(record, false, null);
   }
 
-  public synchronized void updateRecord(Record record, boolean logUndo, Data old)
+  public void updateRecord(Record record, boolean logUndo, Data old)
       throws PagedStorageException {
     checkOpen();
     record.setChanged(true);
@@ -370,7 +495,7 @@ public class PagedStorage implements CacheWriter, DataHandler {
   }
 
   @Override
-  public synchronized void writeBack(CacheObject obj) throws PagedStorageException {
+  public void writeBack(CacheObject obj) throws PagedStorageException {
     Record record = (Record) obj;
     record.write();
     record.setChanged(false);
@@ -382,10 +507,19 @@ public class PagedStorage implements CacheWriter, DataHandler {
    * @param pageId the page id
    * @param data the data
    */
-  public synchronized void writePage(int pageId, Data data) {
-    file.seek((long) pageId << pageSizeShift);
-    file.write(data.getBytes(), 0, pageSize);
-    writeCount++;
+  public void writePage(int pageId, Data data) {
+    PageLog currentLog = log;
+    if (currentLog == null) {
+      file.write((long) pageId << pageSizeShift, data.getBytes(), 0, pageSize);
+    } else {
+      byte[] image = new byte[pageSize];
+      System.arraycopy(data.getBytes(), 0, image, 0, pageSize);
+      synchronized (currentLog) {
+        loggedPages.put(pageId, image);
+        currentLog.append(pageId, image);
+      }
+    }
+    writeCount.incrementAndGet();
   }
 
   /**
@@ -393,7 +527,7 @@ public class PagedStorage implements CacheWriter, DataHandler {
    * 
    * @param pageId the page to allocate
    */
-  void allocatePage(int pageId) throws PagedStorageException {
+  synchronized void allocatePage(int pageId) throws PagedStorageException {
     PageAllocationBitmapPage bitmap = getAllocationBitmapPageForPage(pageId);
     bitmap.allocate(pageId);
   }
@@ -404,12 +538,27 @@ public class PagedStorage implements CacheWriter, DataHandler {
    * @param pos the page id
    * @param page the page
    */
-  synchronized void readPage(int pos, Data page) throws PagedStorageException {
-    if (pos >= pageCount) {
-      throw new PagedStorageNonexistentPageReferenceException(pos + " of " + pageCount);
+  void readPage(int pos, Data page) throws PagedStorageException {
+    int count = pageCount;
+    if (pos >= count) {
+      throw new PagedStorageNonexistentPageReferenceException(pos + " of " + count);
+    }
+    byte[] image = loggedPages.get(pos);
+    if (image != null) {
+      System.arraycopy(image, 0, page.getBytes(), 0, pageSize);
+    } else {
+      file.readFully((long) pos << pageSizeShift, page.getBytes(), 0, pageSize);
     }
-    file.seek((long) pos << pageSizeShift);
-    file.readFully(page.getBytes(), 0, pageSize);
+  }
+
+  /**
+   * Write a page read from the log into the file.
+   * 
+   * @param pageId the page id
+   * @param image the image of the page
+   */
+  void replayPage(int pageId, byte[] image) {
+    file.write((long) pageId << pageSizeShift, image, 0, pageSize);
   }
 
   private void checkOpen() {
@@ -447,11 +596,12 @@ public class PagedStorage implements CacheWriter, DataHandler {
   }
 
   private void increaseFileSize(int increment) {
-    pageCount += increment;
-    long newLength = (long) pageCount << pageSizeShift;
+    int newPageCount = pageCount + increment;
+    long newLength = (long) newPageCount << pageSizeShift;
     file.setLength(newLength);
-    writeCount++;
+    writeCount.incrementAndGet();
     fileLength = newLength;
+    pageCount = newPageCount;
   }
 
   private boolean isUsed(int pageId) throws PagedStorageException {
@@ -469,6 +619,7 @@ public class PagedStorage implements CacheWriter, DataHandler {
     file = store;
     readStaticHeader();
     freeListPagesPerList = PageAllocationBitmapPage.getPagesAddressed(pageSize);
+    openLog(true);
     fileLength = file.length();
     pageCount = (int) (fileLength / pageSize);
     if (pageCount < MIN_PAGE_COUNT) {
@@ -492,6 +643,7 @@ public class PagedStorage implements CacheWriter, DataHandler {
     file = store;
     recoveryRunning = true;
     writeStaticHeader();
+    openLog(false);
 
     writeVariableHeader();
     increaseFileSize(MIN_PAGE_COUNT);
@@ -509,6 +661,25 @@ public class PagedStorage implements CacheWriter, DataHandler {
     checkpoint();
   }
 
+  /**
+   * Open the log, replaying the pages in it if requested, and reset it.
+   * 
+   * @param replay whether the pages in the log are to be written into the file
+   */
+  private void openLog(boolean replay) throws PagedStorageException {
+    PageLog newLog = new PageLog(this, fileName + LOG_SUFFIX, accessMode, pageSize);
+    try {
+      if (replay && newLog.replay(this) > 0) {
+        file.sync();
+      }
+      newLog.reset();
+    } catch (PagedStorageException e) {
+      newLog.close();
+      throw e;
+    }
+    log = newLog;
+  }
+
   private void readStaticHeader() throws PagedStorageException {
     file.seek(FileStore.HEADER_LENGTH);
     Data page = Data.create(this, new byte[PAGE_SIZE_MIN - FileStore.HEADER_LENGTH]);
@@ -532,7 +703,7 @@ public class PagedStorage implements CacheWriter, DataHandler {
       }
       page.reset();
       readPage(i, page);
-      writeCount = page.readLong();
+      writeCount.set(page.readLong());
       for (int pp = 0; pp < specialPageCount; pp++) {
         specialPages[pp] = page.readInt();
       }
@@ -546,6 +717,32 @@ public class PagedStorage implements CacheWriter, DataHandler {
     }
   }
 
+  /**
+   * Start a checkpoint on a background thread, unless one is already running.
+   */
+  private void startCheckpointer() {
+    if (!checkpointRunning.compareAndSet(false, true)) {
+      return;
+    }
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          writeLoggedPages();
+        } catch (PagedStorageException e) {
+          IndexerPlugin.getLogger().logError(e, "Could not checkpoint file: \"" + fileName + "\"");
+        } catch (RuntimeException e) {
+          IndexerPlugin.getLogger().logError(e, "Could not checkpoint file: \"" + fileName + "\"");
+        } finally {
+          checkpointRunning.set(false);
+        }
+      }
+    }, "Index checkpointer");
+    thread.setDaemon(true);
+    checkpointer = thread;
+    thread.start();
+  }
+
   private void writeBack() throws PagedStorageException {
     ObjectArray<CacheObject> list = cache.getAllChanged();
     CacheObject.sort(list);
@@ -555,6 +752,45 @@ public class PagedStorage implements CacheWriter, DataHandler {
     }
   }
 
+  /**
+   * Write the committed pages in the log into the file and discard the committed part of the log.
+   * Pages that have been appended but not committed are not written, so that the file never holds
+   * part of a commit. Most of the pages are written while other threads keep appending to the log;
+   * the pages committed in the meantime are written while appending is blocked, after which the
+   * file is synced and the committed part of the log can be discarded.
+   */
+  private void writeLoggedPages() throws PagedStorageException {
+    synchronized (checkpointLock) {
+      PageLog currentLog = log;
+      if (currentLog == null) {
+        return;
+      }
+      long checkpointedLength = currentLog.committedLength();
+      Map<Integer, byte[]> written = new TreeMap<Integer, byte[]>();
+      currentLog.readCommitted(0, checkpointedLength, written);
+      for (Map.Entry<Integer, byte[]> entry : written.entrySet()) {
+        file.write((long) entry.getKey() << pageSizeShift, entry.getValue(), 0, pageSize);
+      }
+      synchronized (currentLog) {
+        currentLog.awaitIdle();
+        Map<Integer, byte[]> remaining = new TreeMap<Integer, byte[]>();
+        currentLog.readCommitted(checkpointedLength, currentLog.committedLength(), remaining);
+        for (Map.Entry<Integer, byte[]> entry : remaining.entrySet()) {
+          file.write((long) entry.getKey() << pageSizeShift, entry.getValue(), 0, pageSize);
+        }
+        file.sync();
+        written.putAll(remaining);
+        // keep the images that are newer than the ones in the file
+        for (Map.Entry<Integer, byte[]> entry : written.entrySet()) {
+          if (Arrays.equals(loggedPages.get(entry.getKey()), entry.getValue())) {
+            loggedPages.remove(entry.getKey());
+          }
+        }
+        currentLog.discardCommitted();
+      }
+    }
+  }
+
   private void writeStaticHeader() {
     Data page = Data.create(this, new byte[pageSize - FileStore.HEADER_LENGTH]);
     page.writeInt(pageSize);
@@ -566,17 +802,15 @@ public class PagedStorage implements CacheWriter, DataHandler {
 
   private void writeVariableHeader() {
     Data page = Data.create(this, pageSize);
-    page.writeLong(writeCount);
+    page.writeLong(writeCount.get());
     for (int pp = 0; pp < specialPageCount; pp++) {
       page.writeInt(specialPages[pp]);
     }
     CRC32 crc = new CRC32();
     crc.update(page.getBytes(), 0, page.length());
     page.writeLong(crc.getValue());
-    file.seek(pageSize);
-    file.write(page.getBytes(), 0, pageSize);
-    file.seek(pageSize + pageSize);
-    file.write(page.getBytes(), 0, pageSize);
-    writeCount++;
+    file.write(pageSize, page.getBytes(), 0, pageSize);
+    file.write(pageSize + pageSize, page.getBytes(), 0, pageSize);
+    writeCount.incrementAndGet();
   }
 }
@@ -29,6 +29,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 public class SpeedTest {
   public static void main(String[] args) throws Exception {
@@ -59,9 +60,17 @@ public class SpeedTest {
         fileObject.seek(offset);
         fileObject.readFully(buf, 0, buf.length);
       }
-      fileObject.close();
       long end = System.currentTimeMillis();
       IndexerPlugin.getLogger().trace(IndexerDebugOptions.MISCELLANEOUS, (end - start) + " ms.");
+
+      int threadCount = Runtime.getRuntime().availableProcessors();
+      IndexerPlugin.getLogger().trace(IndexerDebugOptions.MISCELLANEOUS,
+          "Running positional read test with " + threadCount + " threads... ");
+      start = System.currentTimeMillis();
+      readConcurrently(fileObject, threadCount, readAttemps / threadCount, fileSize, readSize);
+      end = System.currentTimeMillis();
+      IndexerPlugin.getLogger().trace(IndexerDebugOptions.MISCELLANEOUS, (end - start) + " ms.");
+      fileObject.close();
     }
   }
 
@@ -76,4 +85,29 @@ public class SpeedTest {
     }
     os.close();
   }
+
+  private static void readConcurrently(final FileObject fileObject, int threadCount,
+      final int readAttemps, final int fileSize, final int readSize) throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      new Thread("SpeedTest reader " + i) {
+        @Override
+        public void run() {
+          Random random = new Random();
+          byte[] buf = new byte[readSize];
+          try {
+            for (int attemp = 0; attemp < readAttemps; attemp++) {
+              long offset = random.nextInt(fileSize - readSize);
+              fileObject.readFully(offset, buf, 0, buf.length);
+            }
+          } catch (IOException e) {
+            IndexerPlugin.getLogger().logError(e);
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    done.await();
+  }
 }
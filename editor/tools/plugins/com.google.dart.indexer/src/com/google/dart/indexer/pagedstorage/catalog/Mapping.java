@@ -21,6 +21,7 @@ import com.google.dart.indexer.pagedstorage.infostore.InfoPos;
 import com.google.dart.indexer.pagedstorage.infostore.InfoStore;
 import com.google.dart.indexer.pagedstorage.infostore.InfoStore.Page;
 import com.google.dart.indexer.pagedstorage.infostore.InfoStoreItemsHierarchy;
+import com.google.dart.indexer.pagedstorage.pagestore.PinnedPages;
 import com.google.dart.indexer.pagedstorage.stats.MappingLayerStats;
 import com.google.dart.indexer.pagedstorage.treestore.PageRec;
 import com.google.dart.indexer.pagedstorage.treestore.PageRecPos;
@@ -128,11 +129,40 @@ public class Mapping implements TreeCoordListener, InfoStoreItemsHierarchy {
   }
 
   public synchronized int find(String[] path) throws PagedStorageException {
-    return lookup(path, false);
+    PinnedPages pinnedPages = new PinnedPages();
+    try {
+      return lookup(path, false, pinnedPages);
+    } finally {
+      pinnedPages.unpinAll();
+    }
+  }
+
+  /**
+   * Return the identifier of the item with the given path, pinning the pages of the tree on the
+   * path for the rest of the caller's operation, which unpins them when it has completed.
+   */
+  public synchronized int find(String[] path, PinnedPages pinnedPages)
+      throws PagedStorageException {
+    return lookup(path, false, pinnedPages);
   }
 
   public synchronized int findOrCreate(String[] path) throws PagedStorageException {
-    return lookup(path, true);
+    PinnedPages pinnedPages = new PinnedPages();
+    try {
+      return lookup(path, true, pinnedPages);
+    } finally {
+      pinnedPages.unpinAll();
+    }
+  }
+
+  /**
+   * Return the identifier of the item with the given path, creating the item if it does not exist,
+   * and pinning the pages of the tree on the path for the rest of the caller's operation, which
+   * unpins them when it has completed.
+   */
+  public synchronized int findOrCreate(String[] path, PinnedPages pinnedPages)
+      throws PagedStorageException {
+    return lookup(path, true, pinnedPages);
   }
 
   @Override
@@ -344,9 +374,15 @@ public class Mapping implements TreeCoordListener, InfoStoreItemsHierarchy {
     return CB_ID + PageRecPos.SIZE + layerId * InfoPos.SIZE;
   }
 
-  private int lookup(String[] path, boolean add) throws PagedStorageException {
+  /**
+   * Look up the given path, pinning the pages of the tree on the path so that they are not evicted
+   * from the cache while the items are being found or created.
+   */
+  private int lookup(String[] path, boolean add, PinnedPages pinnedPages)
+      throws PagedStorageException {
     ++lookupCount;
     PageRec pageRec = treeStore.root();
+    pageRec.pin(pinnedPages);
     int pathLength = path.length;
     int rowId = 0;
     for (int i = 0; i < pathLength; i++) {
@@ -362,6 +398,7 @@ public class Mapping implements TreeCoordListener, InfoStoreItemsHierarchy {
         }
         return ID_NONE;
       }
+      pos.pin(pinnedPages);
 
       int parentRowId = rowId;
       rowId = pos.getRowId();
@@ -398,6 +435,7 @@ public class Mapping implements TreeCoordListener, InfoStoreItemsHierarchy {
           }
           return ID_NONE;
         }
+        pageRec.pin(pinnedPages);
       }
     }
     return rowId;
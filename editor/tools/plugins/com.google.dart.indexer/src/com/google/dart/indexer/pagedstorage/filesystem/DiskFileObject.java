@@ -20,7 +20,8 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 
 /**
- * This class is extends a java.io.RandomAccessFile.
+ * This class is extends a java.io.RandomAccessFile. Positional reads and writes move the file
+ * pointer, so they are serialized.
  */
 public class DiskFileObject extends RandomAccessFile implements FileObject {
   private final String name;
@@ -35,6 +36,17 @@ public class DiskFileObject extends RandomAccessFile implements FileObject {
     return name;
   }
 
+  @Override
+  public synchronized void readFully(long pos, byte[] b, int off, int len) throws IOException {
+    long oldPos = getFilePointer();
+    seek(pos);
+    try {
+      readFully(b, off, len);
+    } finally {
+      seek(oldPos);
+    }
+  }
+
   @Override
   public void setFileLength(long newLength) throws IOException {
     FileUtils.setLength(this, newLength);
@@ -44,4 +56,15 @@ public class DiskFileObject extends RandomAccessFile implements FileObject {
   public void sync() throws IOException {
     getFD().sync();
   }
+
+  @Override
+  public synchronized void write(long pos, byte[] b, int off, int len) throws IOException {
+    long oldPos = getFilePointer();
+    seek(pos);
+    try {
+      write(b, off, len);
+    } finally {
+      seek(oldPos);
+    }
+  }
 }
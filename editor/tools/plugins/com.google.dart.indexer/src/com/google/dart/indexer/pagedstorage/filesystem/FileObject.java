@@ -54,6 +54,18 @@ public interface FileObject {
    */
   void readFully(byte[] b, int off, int len) throws IOException;
 
+  /**
+   * Read from the given position in the file without changing the file pointer. Positional reads
+   * and writes can be performed concurrently by several threads, but not concurrently with the
+   * methods that use the file pointer.
+   * 
+   * @param pos the position in the file
+   * @param b the byte array
+   * @param off the offset
+   * @param len the number of bytes
+   */
+  void readFully(long pos, byte[] b, int off, int len) throws IOException;
+
   /**
    * Go to the specified position in the file.
    * 
@@ -81,4 +93,15 @@ public interface FileObject {
    * @param len the number of bytes
    */
   void write(byte[] b, int off, int len) throws IOException;
+
+  /**
+   * Write to the given position in the file without changing the file pointer.
+   * 
+   * @param pos the position in the file
+   * @param b the byte array
+   * @param off the offset
+   * @param len the number of bytes
+   * @see #readFully(long, byte[], int, int)
+   */
+  void write(long pos, byte[] b, int off, int len) throws IOException;
 }
@@ -68,6 +68,17 @@ public class InMemoryFileObject implements FileObject {
     readWrite(b, off, len, false);
   }
 
+  @Override
+  public synchronized void readFully(long pos, byte[] b, int off, int len) throws IOException {
+    long oldPos = this.pos;
+    this.pos = pos;
+    try {
+      readWrite(b, off, len, false);
+    } finally {
+      this.pos = oldPos;
+    }
+  }
+
   @Override
   public void seek(long pos) {
     this.pos = (int) pos;
@@ -107,6 +118,18 @@ public class InMemoryFileObject implements FileObject {
     readWrite(b, off, len, true);
   }
 
+  @Override
+  public synchronized void write(long pos, byte[] b, int off, int len) throws IOException {
+    touch();
+    long oldPos = this.pos;
+    this.pos = pos;
+    try {
+      readWrite(b, off, len, true);
+    } finally {
+      this.pos = oldPos;
+    }
+  }
+
   private void changeLength(long len) {
     length = len;
     len = MathUtils.roundUpLong(len, BLOCK_SIZE);
@@ -20,11 +20,13 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel.MapMode;
 
 /**
- * FileObject which is using NIO MappedByteBuffer mapped to memory from file.
+ * FileObject which is using NIO MappedByteBuffer mapped to memory from file. Positional reads and
+ * writes are serialized, because the buffer is replaced when the file size changes.
  */
 public class MemoryMappedFileObject implements FileObject {
   // TODO support files over 2 GB by using multiple buffers
@@ -72,6 +74,13 @@ public class MemoryMappedFileObject implements FileObject {
     mapped.get(b, off, len);
   }
 
+  @Override
+  public synchronized void readFully(long pos, byte[] b, int off, int len) {
+    ByteBuffer buffer = mapped.duplicate();
+    buffer.position((int) pos);
+    buffer.get(b, off, len);
+  }
+
   @Override
   public void seek(long pos) {
     mapped.position((int) pos);
@@ -98,6 +107,16 @@ public class MemoryMappedFileObject implements FileObject {
     mapped.put(b, off, len);
   }
 
+  @Override
+  public synchronized void write(long pos, byte[] b, int off, int len) throws IOException {
+    if (mapped.capacity() < pos + len) {
+      setFileLength(pos + len);
+    }
+    ByteBuffer buffer = mapped.duplicate();
+    buffer.position((int) pos);
+    buffer.put(b, off, len);
+  }
+
   /**
    * Re-map byte buffer into memory, called when file size has changed or file was created.
    */
@@ -13,6 +13,7 @@
  */
 package com.google.dart.indexer.pagedstorage.filesystem;
 
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
@@ -20,7 +21,8 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
- * File which uses NIO FileChannel.
+ * File which uses NIO FileChannel. Positional reads and writes use the positional methods of the
+ * channel, which do not lock the file.
  */
 public class NioFileObject implements FileObject {
   private final String name;
@@ -68,6 +70,17 @@ public class NioFileObject implements FileObject {
     channel.read(buf);
   }
 
+  @Override
+  public void readFully(long pos, byte[] b, int off, int len) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+    while (buf.hasRemaining()) {
+      int read = channel.read(buf, pos + buf.position() - off);
+      if (read < 0) {
+        throw new EOFException("read " + len + " bytes at " + pos + " of " + name);
+      }
+    }
+  }
+
   @Override
   public void seek(long pos) throws IOException {
     channel.position(pos);
@@ -101,4 +114,12 @@ public class NioFileObject implements FileObject {
     buf.limit(off + len);
     channel.write(buf);
   }
+
+  @Override
+  public void write(long pos, byte[] b, int off, int len) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+    while (buf.hasRemaining()) {
+      channel.write(buf, pos + buf.position() - off);
+    }
+  }
 }
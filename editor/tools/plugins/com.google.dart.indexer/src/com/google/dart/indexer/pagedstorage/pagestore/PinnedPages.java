@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.pagedstorage.pagestore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instances of the class <code>PinnedPages</code> hold the pages that were pinned during an
+ * operation on the paged storage, so that they stay in the cache until the operation has completed.
+ * The object that starts the operation creates the holder and {@link #unpinAll() unpins} the pages
+ * when the operation is done, typically in a <code>finally</code> block.
+ */
+public class PinnedPages {
+  /**
+   * The pages that have been pinned, once for each time they were pinned.
+   */
+  private final List<Record> pages = new ArrayList<Record>();
+
+  /**
+   * Pin the given page until {@link #unpinAll()} is invoked.
+   * 
+   * @param page the page to be pinned
+   */
+  public void pin(Record page) {
+    page.pin();
+    pages.add(page);
+  }
+
+  /**
+   * Unpin all of the pages that were pinned through this holder.
+   */
+  public void unpinAll() {
+    for (Record page : pages) {
+      page.unpin();
+    }
+    pages.clear();
+  }
+}
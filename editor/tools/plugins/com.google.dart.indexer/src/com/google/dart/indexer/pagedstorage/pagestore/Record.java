@@ -22,7 +22,7 @@ import com.google.dart.indexer.storage.paged.store.CacheObject;
 public abstract class Record extends CacheObject {
   @Override
   public boolean canRemove() {
-    return true;
+    return !isPinned();
   }
 
   public abstract void write() throws PagedStorageException;
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.pagedstorage.stats;
+
+/**
+ * The counters of the page cache of a paged storage. The hit and miss counters only count lookups
+ * of pages that are not being created.
+ */
+public class PageCacheStats {
+  public long hits;
+
+  public long misses;
+
+  public long evictions;
+
+  /**
+   * The size and the maximum size of the cache, in double words (4 bytes).
+   */
+  public int size, maxSize;
+
+  @Override
+  public String toString() {
+    String s = "lookups " + (hits + misses);
+    if (hits + misses > 0) {
+      s += " (" + (hits * 100 / (hits + misses)) + "% hits)";
+    }
+    return s + "  evictions " + evictions + "  SIZE " + (size / 256) + " KB of " + (maxSize / 256)
+        + " KB";
+  }
+}
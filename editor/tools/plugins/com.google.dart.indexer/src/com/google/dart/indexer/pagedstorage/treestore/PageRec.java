@@ -16,6 +16,7 @@ package com.google.dart.indexer.pagedstorage.treestore;
 import com.google.dart.indexer.IndexerPlugin;
 import com.google.dart.indexer.debug.IndexerDebugOptions;
 import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
+import com.google.dart.indexer.pagedstorage.pagestore.PinnedPages;
 import com.google.dart.indexer.pagedstorage.treestore.TreeStore.Page;
 import com.google.dart.indexer.utilities.io.PrintStringWriter;
 
@@ -95,6 +96,16 @@ public class PageRec {
     return new PageRecPos(page, record, pos);
   }
 
+  /**
+   * Pin the page holding this record, so that it stays in the cache of the paged storage until the
+   * given pages are unpinned.
+   * 
+   * @param pinnedPages the pages pinned by the operation using this record
+   */
+  public void pin(PinnedPages pinnedPages) {
+    pinnedPages.pin(page);
+  }
+
   @Override
   public String toString() {
     return "<" + page.getPos() + "," + record + ">";
@@ -16,6 +16,7 @@ package com.google.dart.indexer.pagedstorage.treestore;
 import com.google.dart.indexer.IndexerPlugin;
 import com.google.dart.indexer.debug.IndexerDebugOptions;
 import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
+import com.google.dart.indexer.pagedstorage.pagestore.PinnedPages;
 import com.google.dart.indexer.pagedstorage.treestore.TreeStore.Page;
 import com.google.dart.indexer.storage.paged.store.Data;
 import com.google.dart.indexer.utilities.io.PrintStringWriter;
@@ -99,6 +100,16 @@ public class PageRecPos {
     return page.getTimestamp(record, pos);
   }
 
+  /**
+   * Pin the page holding this item, so that it stays in the cache of the paged storage until the
+   * given pages are unpinned.
+   * 
+   * @param pinnedPages the pages pinned by the operation using this item
+   */
+  public void pin(PinnedPages pinnedPages) {
+    pinnedPages.pin(page);
+  }
+
   public String readName() {
     return page.readName(record, pos);
   }
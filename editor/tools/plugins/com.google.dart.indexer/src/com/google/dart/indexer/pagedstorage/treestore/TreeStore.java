@@ -17,6 +17,7 @@ import com.google.dart.indexer.IndexerPlugin;
 import com.google.dart.indexer.debug.IndexerDebugOptions;
 import com.google.dart.indexer.pagedstorage.PagedStorage;
 import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
+import com.google.dart.indexer.pagedstorage.pagestore.PinnedPages;
 import com.google.dart.indexer.pagedstorage.pagestore.Record;
 import com.google.dart.indexer.pagedstorage.pagestore.RecordFactory;
 import com.google.dart.indexer.pagedstorage.pagestore.StdRecord;
@@ -924,7 +925,68 @@ public class TreeStore {
     }
   }
 
-  public PageRecPos lookup(String[] path, boolean add) throws PagedStorageException {
+  public Iterator<TreeLeaf> pathIterator() {
+    return new LeafIterator();
+  }
+
+  public PageRecPos readPos(Data data) throws PagedStorageException {
+    int pageId = data.readInt();
+    int record = data.readShortInt();
+    int index = data.readShortInt();
+    return new PageRecPos(readPage(pageId), record, index);
+  }
+
+  public PageRec root() {
+    return new PageRec(rootPage, 0);
+  }
+
+  public void setCoordListener(TreeCoordListener coordListener) {
+    this.coordListener = coordListener;
+  }
+
+  public void stats(TreeStoreStats stats) {
+    List<Page> pagesToDump = new LinkedList<Page>();
+    pagesToDump.add(rootPage);
+    while (!pagesToDump.isEmpty()) {
+      Page page = pagesToDump.remove(0);
+      ++stats.pages;
+      try {
+        page.stats(stats, pagesToDump);
+      } catch (PagedStorageException exception) {
+        IndexerPlugin.getLogger().logError(exception);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    dump(result, 0, true);
+    return result.toString();
+  }
+
+  public String toTestableString() {
+    StringBuilder result = new StringBuilder();
+    dump(result, 0, false);
+    return result.toString();
+  }
+
+  Page readPage(int pageId) throws PagedStorageException {
+    return (Page) pagedStorage.readRecord(pageId, recordFactory);
+  }
+
+  /**
+   * Look up the given path, pinning the pages on the path, including the page holding the item
+   * that is returned, so that they are not evicted from the cache while the caller is using the
+   * item. The caller unpins the pages when its operation has completed.
+   * 
+   * @param path the names of the items on the path
+   * @param add <code>true</code> if the items that do not exist are to be created
+   * @param pinnedPages the pages pinned by the operation performing the lookup
+   * @return the item at the end of the path, or <code>null</code> if it does not exist
+   */
+  public PageRecPos lookup(String[] path, boolean add, PinnedPages pinnedPages)
+      throws PagedStorageException {
     if (add) {
       IndexerPlugin.getLogger().trace(IndexerDebugOptions.TREE_LOOKUPS,
           "TreeStore<" + rootPage.pageId + "> search-or-add: " + StringUtils.join(path));
@@ -933,6 +995,7 @@ public class TreeStore {
           "TreeStore<" + rootPage.pageId + "> search: " + StringUtils.join(path));
     }
     PageRec pageRec = root();
+    pageRec.pin(pinnedPages);
     int pathLength = path.length;
     PageRecPos result = null;
     for (int i = 0; i < pathLength; i++) {
@@ -952,6 +1015,7 @@ public class TreeStore {
         }
         return null;
       }
+      pos.pin(pinnedPages);
       if (i == pathLength - 1) {
         result = pos;
       } else {
@@ -966,6 +1030,7 @@ public class TreeStore {
           }
           return null;
         }
+        pageRec.pin(pinnedPages);
       }
     }
     if (result == null) {
@@ -977,56 +1042,6 @@ public class TreeStore {
     return result;
   }
 
-  public Iterator<TreeLeaf> pathIterator() {
-    return new LeafIterator();
-  }
-
-  public PageRecPos readPos(Data data) throws PagedStorageException {
-    int pageId = data.readInt();
-    int record = data.readShortInt();
-    int index = data.readShortInt();
-    return new PageRecPos(readPage(pageId), record, index);
-  }
-
-  public PageRec root() {
-    return new PageRec(rootPage, 0);
-  }
-
-  public void setCoordListener(TreeCoordListener coordListener) {
-    this.coordListener = coordListener;
-  }
-
-  public void stats(TreeStoreStats stats) {
-    List<Page> pagesToDump = new LinkedList<Page>();
-    pagesToDump.add(rootPage);
-    while (!pagesToDump.isEmpty()) {
-      Page page = pagesToDump.remove(0);
-      ++stats.pages;
-      try {
-        page.stats(stats, pagesToDump);
-      } catch (PagedStorageException exception) {
-        IndexerPlugin.getLogger().logError(exception);
-      }
-    }
-  }
-
-  @Override
-  public String toString() {
-    StringBuilder result = new StringBuilder();
-    dump(result, 0, true);
-    return result.toString();
-  }
-
-  public String toTestableString() {
-    StringBuilder result = new StringBuilder();
-    dump(result, 0, false);
-    return result.toString();
-  }
-
-  Page readPage(int pageId) throws PagedStorageException {
-    return (Page) pagedStorage.readRecord(pageId, recordFactory);
-  }
-
   private void open(int rootPageId) throws PagedStorageException {
     if (rootPageId < 0) {
       rootPageId = pagedStorage.allocatePage();
@@ -14,6 +14,7 @@
 package com.google.dart.indexer.pagedstorage.util;
 
 import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
+import com.google.dart.indexer.pagedstorage.stats.PageCacheStats;
 import com.google.dart.indexer.storage.paged.store.CacheObject;
 
 /**
@@ -93,6 +94,13 @@ public interface Cache {
    */
   void setMaxSize(int size) throws PagedStorageException;
 
+  /**
+   * Add the counters of this cache to the given statistics.
+   * 
+   * @param stats the statistics to be updated
+   */
+  void stats(PageCacheStats stats);
+
   /**
    * Update an element in the cache. This will move the item to the front of the list.
    * 
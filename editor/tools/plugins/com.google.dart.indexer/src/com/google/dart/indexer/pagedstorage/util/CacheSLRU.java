@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.pagedstorage.util;
+
+import com.google.dart.indexer.IndexerPlugin;
+import com.google.dart.indexer.debug.IndexerDebugOptions;
+import com.google.dart.indexer.pagedstorage.DebugConstants;
+import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
+import com.google.dart.indexer.pagedstorage.stats.PageCacheStats;
+import com.google.dart.indexer.storage.paged.store.CacheObject;
+import com.google.dart.indexer.storage.paged.store.CacheWriter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache implementation based on the segmented LRU algorithm. New items are added to the
+ * 'probation' queue, and only move to the 'protected' queue if they are referenced again, so that a
+ * sweep over many items that are each used once, such as a query over the whole index, only evicts
+ * items from the 'probation' queue and leaves the frequently used items alone. Items that fall out
+ * of the 'protected' queue get another chance in the 'probation' queue.
+ * <p>
+ * {@link #find(int)} does not change the queues, so it may be called concurrently by several
+ * threads as long as no other method is running. It only marks the item as referenced, and
+ * referenced items are moved when they reach the end of their queue.
+ */
+public class CacheSLRU implements Cache {
+  static final String TYPE_NAME = "SLRU";
+
+  private static final int PROBATION = 1, PROTECTED = 2;
+  private static final int PERCENT_PROTECTED = 80;
+
+  private final CacheWriter writer;
+  private final CacheObject headProbation = new CacheHead();
+  private final CacheObject headProtected = new CacheHead();
+  private int len;
+  private int mask;
+  private int maxSize;
+  private int maxProtected;
+  private int sizeProbation, sizeProtected;
+  private int recordCount;
+  private CacheObject[] values;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public CacheSLRU(CacheWriter writer, int maxKb) {
+    int maxSize = maxKb * 1024 / 4;
+    this.writer = writer;
+    this.maxSize = maxSize;
+    this.len = getTableLength(maxSize);
+    this.mask = len - 1;
+    recalculateMax();
+    clear();
+  }
+
+  @Override
+  public void clear() {
+    headProbation.next = headProbation.previous = headProbation;
+    headProtected.next = headProtected.previous = headProtected;
+    // first set to null - avoiding out of memory
+    values = null;
+    values = new CacheObject[len];
+    sizeProbation = sizeProtected = 0;
+    recordCount = 0;
+  }
+
+  @Override
+  public CacheObject find(int pos) {
+    CacheObject o = findCacheObject(pos);
+    if (o == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    o.referenced = true;
+    return o;
+  }
+
+  @Override
+  public CacheObject get(int pos) {
+    CacheObject r = findCacheObject(pos);
+    if (r == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    moveToProtected(r);
+    return r;
+  }
+
+  @Override
+  public ObjectArray<CacheObject> getAllChanged() {
+    ObjectArray<CacheObject> list = ObjectArray.newInstance();
+    for (CacheObject o = headProtected.next; o != headProtected; o = o.next) {
+      if (o.isChanged()) {
+        list.add(o);
+      }
+    }
+    for (CacheObject o = headProbation.next; o != headProbation; o = o.next) {
+      if (o.isChanged()) {
+        list.add(o);
+      }
+    }
+    CacheObject.sort(list);
+    return list;
+  }
+
+  @Override
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public int getSize() {
+    return sizeProbation + sizeProtected;
+  }
+
+  @Override
+  public String getTypeName() {
+    return TYPE_NAME;
+  }
+
+  @Override
+  public void put(CacheObject rec) throws PagedStorageException {
+    if (findCacheObject(rec.getPos()) != null) {
+      return;
+    }
+    removeOldIfRequired();
+    rec.cacheQueue = PROBATION;
+    rec.referenced = false;
+    putCacheObject(rec);
+    addToFront(headProbation, rec);
+    sizeProbation += rec.getMemorySize();
+  }
+
+  @Override
+  public void remove(int pos) {
+    CacheObject r = removeCacheObject(pos);
+    if (r != null) {
+      removeFromList(r);
+      if (r.cacheQueue == PROTECTED) {
+        sizeProtected -= r.getMemorySize();
+      } else {
+        sizeProbation -= r.getMemorySize();
+      }
+    }
+  }
+
+  @Override
+  public void setMaxSize(int maxKb) throws PagedStorageException {
+    int newSize = maxKb * 1024 / 4;
+    maxSize = newSize < 0 ? 0 : newSize;
+    recalculateMax();
+    int newLen = getTableLength(maxSize);
+    if (newLen > len) {
+      rehash(newLen);
+    }
+    removeOldIfRequired();
+  }
+
+  @Override
+  public void stats(PageCacheStats stats) {
+    stats.hits += hits.get();
+    stats.misses += misses.get();
+    stats.evictions += evictions.get();
+    stats.size += getSize();
+    stats.maxSize += maxSize;
+  }
+
+  @Override
+  public CacheObject update(int pos, CacheObject rec) throws PagedStorageException {
+    CacheObject old = findCacheObject(pos);
+    if (old == null) {
+      put(rec);
+    } else if (old == rec) {
+      moveToProtected(rec);
+    }
+    return old;
+  }
+
+  private void addToFront(CacheObject head, CacheObject rec) {
+    if (DebugConstants.CHECK) {
+      if (rec == head) {
+        throw new IllegalArgumentException("try to move head");
+      }
+      if (rec.next != null || rec.previous != null) {
+        throw new IllegalArgumentException("already linked");
+      }
+    }
+    rec.next = head;
+    rec.previous = head.previous;
+    rec.previous.next = rec;
+    head.previous = rec;
+  }
+
+  /**
+   * Move the least recently used item of the 'protected' queue to the 'probation' queue, unless it
+   * has been referenced since it was last moved, in which case it stays in the 'protected' queue.
+   */
+  private void demote() {
+    CacheObject r = headProtected.next;
+    removeFromList(r);
+    if (r.referenced) {
+      r.referenced = false;
+      addToFront(headProtected, r);
+      return;
+    }
+    int size = r.getMemorySize();
+    sizeProtected -= size;
+    sizeProbation += size;
+    r.cacheQueue = PROBATION;
+    addToFront(headProbation, r);
+  }
+
+  private CacheObject findCacheObject(int pos) {
+    CacheObject rec = values[pos & mask];
+    while (rec != null && rec.getPos() != pos) {
+      rec = rec.chained;
+    }
+    return rec;
+  }
+
+  /**
+   * Return the length of the hash table for a cache of the given maximum size.
+   */
+  private int getTableLength(int maxSize) {
+    int length = MathUtils.nextPowerOf2(maxSize / 64);
+    MathUtils.checkPowerOf2(length);
+    return length;
+  }
+
+  private void moveToProtected(CacheObject rec) {
+    removeFromList(rec);
+    rec.referenced = false;
+    if (rec.cacheQueue == PROBATION) {
+      int size = rec.getMemorySize();
+      sizeProbation -= size;
+      sizeProtected += size;
+      rec.cacheQueue = PROTECTED;
+    }
+    addToFront(headProtected, rec);
+    int i = 0;
+    while (sizeProtected > maxProtected && i++ < recordCount) {
+      demote();
+    }
+  }
+
+  private void putCacheObject(CacheObject rec) {
+    int index = rec.getPos() & mask;
+    rec.chained = values[index];
+    values[index] = rec;
+    recordCount++;
+  }
+
+  private void recalculateMax() {
+    maxProtected = maxSize * PERCENT_PROTECTED / 100;
+  }
+
+  /**
+   * Replace the hash table with one of the given length, keeping the items in the cache and their
+   * position in the queues. The table only grows, so that the chains stay short when the maximum
+   * size of the cache is increased.
+   */
+  private void rehash(int newLen) {
+    CacheObject[] oldValues = values;
+    values = new CacheObject[newLen];
+    len = newLen;
+    mask = newLen - 1;
+    for (CacheObject rec : oldValues) {
+      while (rec != null) {
+        CacheObject next = rec.chained;
+        int index = rec.getPos() & mask;
+        rec.chained = values[index];
+        values[index] = rec;
+        rec = next;
+      }
+    }
+  }
+
+  private CacheObject removeCacheObject(int pos) {
+    int index = pos & mask;
+    CacheObject rec = values[index];
+    if (rec == null) {
+      return null;
+    }
+    if (rec.getPos() == pos) {
+      values[index] = rec.chained;
+    } else {
+      CacheObject last;
+      do {
+        last = rec;
+        rec = rec.chained;
+        if (rec == null) {
+          return null;
+        }
+      } while (rec.getPos() != pos);
+      last.chained = rec.chained;
+    }
+    recordCount--;
+    rec.chained = null;
+    return rec;
+  }
+
+  private void removeFromList(CacheObject rec) {
+    if (DebugConstants.CHECK && rec instanceof CacheHead) {
+      throw new AssertionError("CacheSLRU internal inconsistency");
+    }
+    rec.previous.next = rec.next;
+    rec.next.previous = rec.previous;
+    rec.next = null;
+    rec.previous = null;
+  }
+
+  private void removeOld() throws PagedStorageException {
+    int i = 0;
+    CacheObject firstPinned = null;
+    ObjectArray<CacheObject> changed = ObjectArray.newInstance();
+    while ((sizeProbation + sizeProtected) * 4 > maxSize * 3
+        && recordCount > Constants.CACHE_MIN_RECORDS) {
+      i++;
+      if (i >= recordCount * 2) {
+        // all remaining items are pinned or have been referenced recently
+        IndexerPlugin.getLogger().trace(IndexerDebugOptions.RARE_ANOMALIES,
+            "Cannot remove records, cache size too small?");
+        break;
+      }
+      if (sizeProtected > maxProtected || sizeProbation == 0) {
+        demote();
+        continue;
+      }
+      CacheObject r = headProbation.next;
+      if (r.referenced) {
+        moveToProtected(r);
+        continue;
+      }
+      if (!r.canRemove()) {
+        removeFromList(r);
+        addToFront(headProbation, r);
+        if (firstPinned == null) {
+          firstPinned = r;
+        } else if (r == firstPinned) {
+          // every item in the 'probation' queue is pinned
+          demote();
+        }
+        continue;
+      }
+      sizeProbation -= r.getMemorySize();
+      removeCacheObject(r.getPos());
+      removeFromList(r);
+      evictions.incrementAndGet();
+      if (r.isChanged()) {
+        changed.add(r);
+      }
+    }
+    if (changed.size() > 0) {
+      CacheObject.sort(changed);
+      for (i = 0; i < changed.size(); i++) {
+        CacheObject rec = changed.get(i);
+        writer.writeBack(rec);
+      }
+    }
+  }
+
+  private void removeOldIfRequired() throws PagedStorageException {
+    // a small method, to allow inlining
+    if (sizeProbation + sizeProtected >= maxSize) {
+      removeOld();
+    }
+  }
+}
@@ -14,6 +14,7 @@
 package com.google.dart.indexer.pagedstorage.util;
 
 import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
+import com.google.dart.indexer.pagedstorage.stats.PageCacheStats;
 import com.google.dart.indexer.storage.paged.store.CacheObject;
 
 import java.util.Map;
@@ -94,6 +95,11 @@ class CacheSecondLevel implements Cache {
     baseCache.setMaxSize(size);
   }
 
+  @Override
+  public void stats(PageCacheStats stats) {
+    baseCache.stats(stats);
+  }
+
   @Override
   public CacheObject update(int pos, CacheObject record) throws PagedStorageException {
     CacheObject oldRec = baseCache.update(pos, record);
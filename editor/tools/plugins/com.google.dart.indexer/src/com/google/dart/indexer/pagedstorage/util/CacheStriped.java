@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.pagedstorage.util;
+
+import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
+import com.google.dart.indexer.pagedstorage.stats.PageCacheStats;
+import com.google.dart.indexer.storage.paged.store.CacheObject;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A cache that is divided into a number of stripes, each of which is a separate cache guarded by its
+ * own lock. Objects are assigned to a stripe by hashing their position, so threads that use objects
+ * in different stripes never block each other. {@link #find(int)} does not change the cache, so it
+ * only takes the read lock of the stripe and never blocks other readers.
+ * <p>
+ * Objects that are written back when they fall out of a stripe are written while the lock of the
+ * stripe is held, so the writer must not wait for a lock that is held while the cache is used.
+ */
+public class CacheStriped implements Cache {
+  static final String TYPE_NAME = "Striped";
+
+  private final Cache[] stripes;
+  private final ReadWriteLock[] locks;
+  private final int shift;
+  private final int mask;
+
+  /**
+   * Create a cache that is divided into the given stripes.
+   * 
+   * @param stripes the caches holding the objects of each stripe, the number of which must be a
+   *          power of two
+   */
+  public CacheStriped(Cache[] stripes) {
+    MathUtils.checkPowerOf2(stripes.length);
+    this.stripes = stripes;
+    this.locks = new ReadWriteLock[stripes.length];
+    for (int i = 0; i < stripes.length; i++) {
+      locks[i] = new ReentrantReadWriteLock();
+    }
+    this.shift = 32 - Integer.numberOfTrailingZeros(stripes.length);
+    this.mask = stripes.length - 1;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < stripes.length; i++) {
+      locks[i].writeLock().lock();
+      try {
+        stripes[i].clear();
+      } finally {
+        locks[i].writeLock().unlock();
+      }
+    }
+  }
+
+  @Override
+  public CacheObject find(int pos) {
+    int index = getStripe(pos);
+    locks[index].readLock().lock();
+    try {
+      return stripes[index].find(pos);
+    } finally {
+      locks[index].readLock().unlock();
+    }
+  }
+
+  @Override
+  public CacheObject get(int pos) {
+    int index = getStripe(pos);
+    locks[index].writeLock().lock();
+    try {
+      return stripes[index].get(pos);
+    } finally {
+      locks[index].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public ObjectArray<CacheObject> getAllChanged() {
+    ObjectArray<CacheObject> list = ObjectArray.newInstance();
+    for (int i = 0; i < stripes.length; i++) {
+      locks[i].readLock().lock();
+      try {
+        list.addAll(stripes[i].getAllChanged());
+      } finally {
+        locks[i].readLock().unlock();
+      }
+    }
+    return list;
+  }
+
+  @Override
+  public int getMaxSize() {
+    int maxSize = 0;
+    for (Cache stripe : stripes) {
+      maxSize += stripe.getMaxSize();
+    }
+    return maxSize;
+  }
+
+  @Override
+  public int getSize() {
+    int size = 0;
+    for (int i = 0; i < stripes.length; i++) {
+      locks[i].readLock().lock();
+      try {
+        size += stripes[i].getSize();
+      } finally {
+        locks[i].readLock().unlock();
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public String getTypeName() {
+    return TYPE_NAME + "(" + stripes.length + " x " + stripes[0].getTypeName() + ")";
+  }
+
+  @Override
+  public void put(CacheObject r) throws PagedStorageException {
+    int index = getStripe(r.getPos());
+    locks[index].writeLock().lock();
+    try {
+      stripes[index].put(r);
+    } finally {
+      locks[index].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void remove(int pos) {
+    int index = getStripe(pos);
+    locks[index].writeLock().lock();
+    try {
+      stripes[index].remove(pos);
+    } finally {
+      locks[index].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void setMaxSize(int size) throws PagedStorageException {
+    for (int i = 0; i < stripes.length; i++) {
+      locks[i].writeLock().lock();
+      try {
+        stripes[i].setMaxSize(Math.max(size / stripes.length, 1));
+      } finally {
+        locks[i].writeLock().unlock();
+      }
+    }
+  }
+
+  @Override
+  public void stats(PageCacheStats stats) {
+    for (int i = 0; i < stripes.length; i++) {
+      locks[i].readLock().lock();
+      try {
+        stripes[i].stats(stats);
+      } finally {
+        locks[i].readLock().unlock();
+      }
+    }
+  }
+
+  @Override
+  public CacheObject update(int pos, CacheObject record) throws PagedStorageException {
+    int index = getStripe(pos);
+    locks[index].writeLock().lock();
+    try {
+      return stripes[index].update(pos, record);
+    } finally {
+      locks[index].writeLock().unlock();
+    }
+  }
+
+  /**
+   * Return the index of the stripe holding the object at the given position. The stripe is chosen
+   * by the high bits of a multiplicative hash, so that the low bits used by the stripes themselves
+   * remain evenly distributed.
+   */
+  private int getStripe(int pos) {
+    return ((pos * 0x9E3779B9) >>> shift) & mask;
+  }
+}
@@ -36,8 +36,9 @@ public class SimpleCacheLRU {
 
   private final SimpleCacheObject head = new CacheHead();
 
-  private final int hashTableSize;
-  private final int mask;
+  private final int averageItemSize;
+  private int hashTableSize;
+  private int mask;
   private SimpleCacheObject[] values;
   private int maxSize;
   private int itemCount;
@@ -54,16 +55,9 @@ public class SimpleCacheLRU {
     }
     this.minItems = minItems;
     this.maxSize = maxSize;
-    this.hashTableSize = nextPowerOf2(maxSize * 4 / averageItemSize / 3); // just
-                                                                          // a
-                                                                          // wild
-                                                                          // guess
-                                                                          // on
-                                                                          // hash
-                                                                          // table
-                                                                          // size
+    this.averageItemSize = averageItemSize;
+    this.hashTableSize = getHashTableSize(maxSize);
     this.mask = hashTableSize - 1;
-    checkPowerOf2(hashTableSize);
     clear();
   }
 
@@ -96,6 +90,15 @@ public class SimpleCacheLRU {
     return misses;
   }
 
+  /**
+   * Return the total memory size of the objects in this cache.
+   * 
+   * @return the total memory size of the objects in this cache
+   */
+  public int getUsedSize() {
+    return usedSize;
+  }
+
   public SimpleCacheObject put(SimpleCacheObject rec) {
     SimpleCacheObject old = find(rec.data);
     if (old == null) {
@@ -146,6 +149,21 @@ public class SimpleCacheLRU {
     removeFromLinkedList(rec);
   }
 
+  /**
+   * Set the maximum size of this cache, removing the least recently used objects if the cache is
+   * larger than the new maximum size.
+   * 
+   * @param maxSize the maximum total memory size of the objects in the cache
+   */
+  public void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+    int newHashTableSize = getHashTableSize(maxSize);
+    if (newHashTableSize > hashTableSize) {
+      rehash(newHashTableSize);
+    }
+    removeOldIfRequired();
+  }
+
   @Override
   public String toString() {
     StringBuilder result = new StringBuilder();
@@ -174,6 +192,31 @@ public class SimpleCacheLRU {
     return rec;
   }
 
+  /**
+   * Return the size of the hash table for a cache of the given maximum size.
+   */
+  private int getHashTableSize(int maxSize) {
+    // just a wild guess on hash table size
+    int size = nextPowerOf2(maxSize * 4 / averageItemSize / 3);
+    checkPowerOf2(size);
+    return size;
+  }
+
+  /**
+   * Replace the hash table with one of the given size, keeping the objects in the cache and their
+   * order of use.
+   */
+  private void rehash(int newHashTableSize) {
+    hashTableSize = newHashTableSize;
+    mask = newHashTableSize - 1;
+    values = new SimpleCacheObject[newHashTableSize];
+    for (SimpleCacheObject rec = head.next; rec != head; rec = rec.next) {
+      int index = rec.data.hashCode() & mask;
+      rec.chained = values[index];
+      values[index] = rec;
+    }
+  }
+
   private void removeFromLinkedList(SimpleCacheObject rec) {
     rec.previous.next = rec.next;
     rec.next.previous = rec.previous;
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.storage;
+
+import com.google.dart.indexer.exceptions.IndexRequestFailed;
+import com.google.dart.indexer.index.entries.DependentLocation;
+import com.google.dart.indexer.index.entries.FileInfo;
+import com.google.dart.indexer.index.layers.Layer;
+import com.google.dart.indexer.locations.Location;
+import com.google.dart.indexer.source.IndexableSource;
+
+import org.eclipse.core.resources.IFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instances of the class <code>BufferedFileTransaction</code> record the changes made while
+ * processing a single file without touching the storage, so that the file can be processed on any
+ * thread and the changes applied to a real file transaction later by the thread that owns the
+ * storage. The changes are applied in the order in which they were made.
+ */
+public class BufferedFileTransaction extends FileTransaction {
+  /**
+   * A single change recorded by a buffered file transaction.
+   */
+  private static abstract class Change {
+    public abstract void applyTo(FileTransaction fileTransaction) throws IndexRequestFailed;
+  }
+
+  /**
+   * The changes that have been recorded, in the order in which they were made.
+   */
+  private final List<Change> changes = new ArrayList<Change>();
+
+  /**
+   * Initialize a newly created transaction to have no changes.
+   */
+  public BufferedFileTransaction() {
+    super();
+  }
+
+  @Override
+  @Deprecated
+  public void addDependency(final IFile masterFile, final DependentLocation dependency) {
+    changes.add(new Change() {
+      @Override
+      public void applyTo(FileTransaction fileTransaction) throws IndexRequestFailed {
+        fileTransaction.addDependency(masterFile, dependency);
+      }
+    });
+  }
+
+  @Override
+  public void addDependency(final IndexableSource masterFile, final DependentLocation dependency) {
+    changes.add(new Change() {
+      @Override
+      public void applyTo(FileTransaction fileTransaction) throws IndexRequestFailed {
+        fileTransaction.addDependency(masterFile, dependency);
+      }
+    });
+  }
+
+  @Override
+  public void addReference(final Layer layer, final Location sourceLocation,
+      final Location destinationLocation) {
+    changes.add(new Change() {
+      @Override
+      public void applyTo(FileTransaction fileTransaction) throws IndexRequestFailed {
+        fileTransaction.addReference(layer, sourceLocation, destinationLocation);
+      }
+    });
+  }
+
+  @Override
+  public void addSourceLocation(final Location location) {
+    if (location == null) {
+      throw new NullPointerException("location is null");
+    }
+    changes.add(new Change() {
+      @Override
+      public void applyTo(FileTransaction fileTransaction) throws IndexRequestFailed {
+        fileTransaction.addSourceLocation(location);
+      }
+    });
+  }
+
+  /**
+   * Apply the recorded changes to the given file transaction. The given transaction is not
+   * committed.
+   * 
+   * @param fileTransaction the file transaction to which the changes are to be applied
+   * @throws IndexRequestFailed if one of the changes could not be applied
+   */
+  public void applyTo(FileTransaction fileTransaction) throws IndexRequestFailed {
+    for (Change change : changes) {
+      change.applyTo(fileTransaction);
+    }
+  }
+
+  /**
+   * A buffered transaction is never committed itself; its changes are applied to another
+   * transaction using {@link #applyTo(FileTransaction)}.
+   */
+  @Override
+  public void commit() {
+    throw new UnsupportedOperationException("Buffered file transactions cannot be committed");
+  }
+
+  /**
+   * The original information is only available from the storage, which a buffered transaction
+   * does not have access to.
+   */
+  @Override
+  public FileInfo getOriginalFileInfo() {
+    throw new UnsupportedOperationException(
+        "Buffered file transactions do not have access to the original file information");
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.storage.paged;
+
+import com.google.dart.indexer.index.PerformanceRelatedConstants;
+import com.google.dart.indexer.pagedstorage.PagedStorage;
+import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
+import com.google.dart.indexer.pagedstorage.stats.PageCacheStats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Instances of the class <code>AdaptiveCacheManager</code> size the page cache and the location
+ * identifier cache of a {@link DiskMappedStorage}. The caches share a budget that is a fixed
+ * percentage of the maximum heap size. Each cache starts at half of its share of the budget.
+ * <p>
+ * The sizes are adjusted after each commit, based on the lookups made since the previous
+ * adjustment. A full cache whose hit rate is low doubles in size, as long as both caches still fit
+ * in the budget. When the heap that is still live after garbage collection leaves too little free
+ * memory, both caches are halved.
+ */
+public class AdaptiveCacheManager {
+  /**
+   * The estimated number of bytes used by an entry of the location identifier cache, including the
+   * location used as its key.
+   */
+  private static final int LOCATION_ENTRY_BYTES = 128;
+
+  /**
+   * The minimum size of the page cache, in KB.
+   */
+  private static final int MIN_PAGE_CACHE_KB = 1024;
+
+  /**
+   * The minimum number of entries in the location identifier cache.
+   */
+  private static final int MIN_LOCATION_CACHE_SIZE = 1024;
+
+  /**
+   * The minimum number of lookups since the previous adjustment for the hit rate of a cache to be
+   * taken into account.
+   */
+  private static final int MIN_LOOKUPS = 1000;
+
+  /**
+   * The percentage of hits below which a full cache is considered to be thrashing.
+   */
+  private static final int MIN_HIT_PERCENTAGE = 90;
+
+  /**
+   * Return the number of KB used by the given number of location identifier cache entries.
+   */
+  private static int entriesToKb(int entries) {
+    return (int) ((long) entries * LOCATION_ENTRY_BYTES / 1024);
+  }
+
+  /**
+   * Return the number of location identifier cache entries that fit in the given number of KB.
+   */
+  private static int kbToEntries(int kb) {
+    return (int) Math.min((long) kb * 1024 / LOCATION_ENTRY_BYTES, Integer.MAX_VALUE);
+  }
+
+  private final int maxHeapKb;
+
+  private final int heapBudgetKb;
+
+  private int pageCacheKb;
+
+  private int locationCacheSize;
+
+  /**
+   * The cache counters at the time of the previous adjustment.
+   */
+  private long pageHits, pageMisses, locationHits, locationMisses;
+
+  private int growCount, shrinkCount;
+
+  private String lastDecision;
+
+  /**
+   * Initialize a newly created manager to size the caches from the maximum heap size of the
+   * virtual machine.
+   */
+  public AdaptiveCacheManager() {
+    this(Runtime.getRuntime().maxMemory());
+  }
+
+  /**
+   * Initialize a newly created manager to size the caches from the given maximum heap size.
+   * 
+   * @param maxHeapBytes the maximum size of the heap, in bytes
+   */
+  AdaptiveCacheManager(long maxHeapBytes) {
+    long maxHeapKb = maxHeapBytes / 1024;
+    this.maxHeapKb = (int) Math.min(maxHeapKb, Integer.MAX_VALUE);
+    heapBudgetKb = (int) Math.min(
+        maxHeapKb * PerformanceRelatedConstants.CACHE_HEAP_PERCENTAGE / 100,
+        Integer.MAX_VALUE);
+    // The page cache is meant to use three quarters of the budget and the location identifier cache
+    // the rest, and each starts at half of its share.
+    pageCacheKb = Math.max(heapBudgetKb * 3 / 8, MIN_PAGE_CACHE_KB);
+    locationCacheSize = Math.max(kbToEntries(heapBudgetKb / 8), MIN_LOCATION_CACHE_SIZE);
+  }
+
+  /**
+   * Adjust the sizes of the caches of the given stores to the lookups made since the previous
+   * adjustment and to the free heap.
+   * 
+   * @param pagedStorage the storage holding the page cache
+   * @param locationTreeStore the store holding the location identifier cache
+   * @return a description of the change that was made, or <code>null</code> if the sizes were not
+   *         changed
+   * @throws PagedStorageException if changed pages evicted from the page cache cannot be written
+   */
+  public String adjust(PagedStorage pagedStorage, LocationTreeStore locationTreeStore)
+      throws PagedStorageException {
+    PageCacheStats pageStats = new PageCacheStats();
+    pagedStorage.stats(pageStats);
+    int oldPageCacheKb = pageCacheKb;
+    int oldLocationCacheSize = locationCacheSize;
+    String decision = adjust(pageStats, locationTreeStore.getCacheHits(),
+        locationTreeStore.getCacheMisses(), locationTreeStore.getCachedIdCount());
+    if (pageCacheKb != oldPageCacheKb) {
+      pagedStorage.setCacheSize(pageCacheKb);
+    }
+    if (locationCacheSize != oldLocationCacheSize) {
+      locationTreeStore.setCacheSize(locationCacheSize);
+    }
+    return decision;
+  }
+
+  /**
+   * Return the maximum number of entries in the location identifier cache.
+   * 
+   * @return the maximum number of entries in the location identifier cache
+   */
+  public int getLocationCacheSize() {
+    return locationCacheSize;
+  }
+
+  /**
+   * Return the maximum size of the page cache.
+   * 
+   * @return the maximum size of the page cache in KB
+   */
+  public int getPageCacheSize() {
+    return pageCacheKb;
+  }
+
+  /**
+   * Record the current sizes and the last decision in the given statistics.
+   * 
+   * @param stats the statistics to be updated
+   */
+  public void stats(CacheSizingStats stats) {
+    stats.heapBudgetKb = heapBudgetKb;
+    stats.pageCacheKb = pageCacheKb;
+    stats.locationCacheSize = locationCacheSize;
+    stats.growCount = growCount;
+    stats.shrinkCount = shrinkCount;
+    stats.lastDecision = lastDecision;
+  }
+
+  /**
+   * Compute the new sizes of the caches from the given counters and the free heap. The sizes are
+   * only recorded here; {@link #adjust(PagedStorage, LocationTreeStore)} applies them to the
+   * caches.
+   * 
+   * @param pageStats the statistics of the page cache
+   * @param hits the total number of hits in the location identifier cache
+   * @param misses the total number of misses in the location identifier cache
+   * @param cachedIdCount the number of entries in the location identifier cache
+   * @return a description of the change that was made, or <code>null</code> if the sizes were not
+   *         changed
+   */
+  String adjust(PageCacheStats pageStats, long hits, long misses, int cachedIdCount) {
+    // The counters are reset when the storage is recreated.
+    long newPageHits = pageStats.hits >= pageHits ? pageStats.hits - pageHits : pageStats.hits;
+    long newPageMisses = pageStats.misses >= pageMisses ? pageStats.misses - pageMisses
+        : pageStats.misses;
+    pageHits = pageStats.hits;
+    pageMisses = pageStats.misses;
+    long newLocationHits = hits >= locationHits ? hits - locationHits : hits;
+    long newLocationMisses = misses >= locationMisses ? misses - locationMisses : misses;
+    locationHits = hits;
+    locationMisses = misses;
+
+    int newPageCacheKb = pageCacheKb;
+    int newLocationCacheSize = locationCacheSize;
+    String decision = null;
+    long freeHeapKb = maxHeapKb - getLiveHeapKb();
+    if (freeHeapKb * 100 < (long) maxHeapKb * PerformanceRelatedConstants.LOW_MEMORY_PERCENTAGE) {
+      newPageCacheKb = Math.min(Math.max(pageCacheKb / 2, MIN_PAGE_CACHE_KB), pageCacheKb);
+      newLocationCacheSize = Math.min(
+          Math.max(locationCacheSize / 2, MIN_LOCATION_CACHE_SIZE), locationCacheSize);
+      decision = "shrunk, only " + freeHeapKb + " KB of heap free";
+    } else {
+      if (isThrashing(newPageHits, newPageMisses, pageStats.size, pageStats.maxSize)) {
+        int availableKb = heapBudgetKb - entriesToKb(locationCacheSize);
+        newPageCacheKb = Math.max(Math.min(pageCacheKb * 2, availableKb), pageCacheKb);
+        if (newPageCacheKb != pageCacheKb) {
+          decision = "grew pages, " + hitPercentage(newPageHits, newPageMisses) + "% hits";
+        }
+      }
+      if (isThrashing(newLocationHits, newLocationMisses, cachedIdCount, locationCacheSize)) {
+        int available = kbToEntries(heapBudgetKb - newPageCacheKb);
+        newLocationCacheSize = Math.max(Math.min(locationCacheSize * 2, available),
+            locationCacheSize);
+        if (newLocationCacheSize != locationCacheSize) {
+          decision = (decision == null ? "grew" : decision + ",") + " locations, "
+              + hitPercentage(newLocationHits, newLocationMisses) + "% hits";
+        }
+      }
+    }
+    if (newPageCacheKb == pageCacheKb && newLocationCacheSize == locationCacheSize) {
+      return null;
+    }
+    if (newPageCacheKb < pageCacheKb || newLocationCacheSize < locationCacheSize) {
+      shrinkCount++;
+    } else {
+      growCount++;
+    }
+    lastDecision = decision;
+    pageCacheKb = newPageCacheKb;
+    locationCacheSize = newLocationCacheSize;
+    return decision;
+  }
+
+  /**
+   * Return the size of the heap that was still in use after the last garbage collection, or the
+   * current size of the heap in use if the virtual machine does not report it.
+   */
+  long getLiveHeapKb() {
+    long liveBytes = 0;
+    boolean reported = false;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        MemoryUsage usage = pool.getCollectionUsage();
+        if (usage != null) {
+          liveBytes += usage.getUsed();
+          reported = true;
+        }
+      }
+    }
+    if (!reported) {
+      Runtime runtime = Runtime.getRuntime();
+      liveBytes = runtime.totalMemory() - runtime.freeMemory();
+    }
+    return liveBytes / 1024;
+  }
+
+  private long hitPercentage(long hits, long misses) {
+    return hits * 100 / (hits + misses);
+  }
+
+  /**
+   * Return <code>true</code> if a cache with the given lookups and sizes would benefit from being
+   * larger: it is full and too many of a significant number of lookups missed.
+   */
+  private boolean isThrashing(long hits, long misses, long size, long maxSize) {
+    long lookups = hits + misses;
+    return lookups >= MIN_LOOKUPS && hits * 100 < lookups * MIN_HIT_PERCENTAGE
+        && size * 4 >= maxSize * 3;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.storage.paged;
+
+/**
+ * The cache sizes chosen by an {@link AdaptiveCacheManager} and the decisions that led to them.
+ */
+public class CacheSizingStats {
+  /**
+   * The memory that the caches may use together, in KB.
+   */
+  public int heapBudgetKb;
+
+  /**
+   * The maximum size of the page cache, in KB.
+   */
+  public int pageCacheKb;
+
+  /**
+   * The maximum number of entries in the location identifier cache.
+   */
+  public int locationCacheSize;
+
+  public int growCount, shrinkCount;
+
+  /**
+   * The reason for the last change of the cache sizes, or <code>null</code> if they have not been
+   * changed.
+   */
+  public String lastDecision;
+
+  @Override
+  public String toString() {
+    String s = "budget " + heapBudgetKb + " KB  pages " + pageCacheKb + " KB  locations "
+        + locationCacheSize + "  grown " + growCount + "  shrunk " + shrinkCount;
+    if (lastDecision != null) {
+      s += "  last: " + lastDecision;
+    }
+    return s;
+  }
+}
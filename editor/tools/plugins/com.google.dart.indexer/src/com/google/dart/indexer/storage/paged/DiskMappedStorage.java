@@ -46,6 +46,12 @@ public class DiskMappedStorage extends AbstractIntegratedStorage {
   private LocationTreeStore locationTreeStore;
   private File file;
 
+  /**
+   * The manager sizing the caches of the paged storage. It outlives the paged storage, which is
+   * recreated when the index is destroyed, so that the sizes learned are kept.
+   */
+  private final AdaptiveCacheManager cacheManager = new AdaptiveCacheManager();
+
   private final IndexConfigurationInstance configuration;
 
   public DiskMappedStorage(IndexConfigurationInstance configuration, File rootFolder)
@@ -106,7 +112,12 @@ public class DiskMappedStorage extends AbstractIntegratedStorage {
     IndexerPlugin.getLogger().trace(IndexerDebugOptions.STORAGE_CALLS,
         "DiskMappedStorage.checkpoint()");
     try {
-      pagedStorage.checkpoint();
+      pagedStorage.commit();
+      String decision = cacheManager.adjust(pagedStorage, locationTreeStore);
+      if (decision != null) {
+        IndexerPlugin.getLogger().trace(IndexerDebugOptions.MISCELLANEOUS,
+            "Index caches " + decision);
+      }
     } catch (PagedStorageException exception) {
       IndexerPlugin.getLogger().logError(exception);
     }
@@ -188,6 +199,8 @@ public class DiskMappedStorage extends AbstractIntegratedStorage {
     PagedIndexStatistics stats = new PagedIndexStatistics();
     locationTreeStore.stats(stats.locationStats);
     fileTreeStore.stats(stats.fileStats);
+    pagedStorage.stats(stats.pageCacheStats);
+    cacheManager.stats(stats.cacheSizingStats);
     stats.resolve(pagedStorage.getPageSize());
     return stats;
   }
@@ -317,13 +330,14 @@ public class DiskMappedStorage extends AbstractIntegratedStorage {
   }
 
   private void createPageStore() throws PagedStorageException {
-    int cacheSizeKb = 1024 * 128;
     // nioMapped:
-    pagedStorage = new PagedStorage("nio:" + file.getPath(), AccessMode.READ_WRITE, cacheSizeKb, 4);
+    pagedStorage = new PagedStorage("nio:" + file.getPath(), AccessMode.READ_WRITE,
+        cacheManager.getPageCacheSize(), 4);
     pagedStorage.open();
 
     locationTreeStore = new LocationTreeStore(pagedStorage, pagedStorage.getSpecialPage(2),
-        pagedStorage.getSpecialPage(3), configuration.getLayers().length);
+        pagedStorage.getSpecialPage(3), configuration.getLayers().length,
+        cacheManager.getLocationCacheSize());
     fileTreeStore = new FileTreeStore(pagedStorage, pagedStorage.getSpecialPage(0),
         pagedStorage.getSpecialPage(1), locationTreeStore, configuration);
   }
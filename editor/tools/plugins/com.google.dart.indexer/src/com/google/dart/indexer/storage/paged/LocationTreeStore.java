@@ -26,6 +26,7 @@ import com.google.dart.indexer.pagedstorage.catalog.Mapping;
 import com.google.dart.indexer.pagedstorage.exceptions.PagedStorageException;
 import com.google.dart.indexer.pagedstorage.infostore.InfoPos;
 import com.google.dart.indexer.pagedstorage.infostore.InfoStore;
+import com.google.dart.indexer.pagedstorage.pagestore.PinnedPages;
 import com.google.dart.indexer.pagedstorage.treestore.TreeLeaf;
 import com.google.dart.indexer.pagedstorage.treestore.TreeStore;
 import com.google.dart.indexer.pagedstorage.util.SimpleCacheLRU;
@@ -156,7 +157,7 @@ public class LocationTreeStore implements LocationIdEncoder {
   private final SimpleCacheLRU cache;
 
   public LocationTreeStore(PagedStorage pagedStorage, int rootTreePageId, int rootMappingPageId,
-      int layers) throws PagedStorageException {
+      int layers, int cacheSize) throws PagedStorageException {
     treeStore = new TreeStore(pagedStorage, 4, rootTreePageId);
     infoStores = new InfoStore[layers];
     for (int i = 0; i < infoStores.length; i++) {
@@ -166,19 +167,26 @@ public class LocationTreeStore implements LocationIdEncoder {
     for (int i = 0; i < infoStores.length; i++) {
       infoStores[i].setHierarchy(mapping, i);
     }
-    cache = new SimpleCacheLRU(10000, 1, 16);
+    cache = new SimpleCacheLRU(cacheSize, 1, 16);
   }
 
   public void addReference(Location sourceLocation, Location destinationLocation, int layerId,
       boolean bidirectional) throws PagedStorageException {
-    int sourceId = locationToId(sourceLocation);
-    int destinationId = locationToId(destinationLocation);
-    if (sourceId == Mapping.ID_NONE || destinationId == Mapping.ID_NONE) {
-      return; // failed to create
-    }
-    mapping.addToInfo(destinationId, layerId, (KIND_SOURCE << 29) | sourceId);
-    if (bidirectional) {
-      mapping.addToInfo(sourceId, layerId, (KIND_DESTINATION << 29) | destinationId);
+    // The locations usually share most of their path, so the pages found for the source stay
+    // pinned for the lookup of the destination.
+    PinnedPages pinnedPages = new PinnedPages();
+    try {
+      int sourceId = locationToId(sourceLocation, pinnedPages);
+      int destinationId = locationToId(destinationLocation, pinnedPages);
+      if (sourceId == Mapping.ID_NONE || destinationId == Mapping.ID_NONE) {
+        return; // failed to create
+      }
+      mapping.addToInfo(destinationId, layerId, (KIND_SOURCE << 29) | sourceId);
+      if (bidirectional) {
+        mapping.addToInfo(sourceId, layerId, (KIND_DESTINATION << 29) | destinationId);
+      }
+    } finally {
+      pinnedPages.unpinAll();
     }
   }
 
@@ -189,6 +197,33 @@ public class LocationTreeStore implements LocationIdEncoder {
     }
   }
 
+  /**
+   * Return the number of lookups that found the identifier of a location in the cache.
+   * 
+   * @return the number of identifier cache hits
+   */
+  public int getCacheHits() {
+    return cache.getHits();
+  }
+
+  /**
+   * Return the number of lookups that did not find the identifier of a location in the cache.
+   * 
+   * @return the number of identifier cache misses
+   */
+  public int getCacheMisses() {
+    return cache.getMisses();
+  }
+
+  /**
+   * Return the number of location identifiers currently in the cache.
+   * 
+   * @return the number of cached identifiers
+   */
+  public int getCachedIdCount() {
+    return cache.getUsedSize();
+  }
+
   @Override
   public Location locationFromId(int id) throws PagedStorageException {
     String[] path = mapping.resolve(id);
@@ -203,23 +238,12 @@ public class LocationTreeStore implements LocationIdEncoder {
    */
   @Override
   public int locationToId(Location location) throws PagedStorageException {
-    CachedInfo cachedInfo = (CachedInfo) cache.get(location);
-    if (cachedInfo == null || (cachedInfo.id < 0 && cachedInfo.id != ID_FAILED)) {
-      int id = mapping.findOrCreate(pathFor(location));
-      if (id == Mapping.ID_NONE) {
-        id = ID_FAILED;
-      }
-      if (cachedInfo != null) {
-        cachedInfo.id = id;
-      } else {
-        cachedInfo = new CachedInfo(location, id);
-        cache.putNew(cachedInfo);
-      }
-    }
-    if (cachedInfo.id < 0) {
-      return Mapping.ID_NONE;
+    PinnedPages pinnedPages = new PinnedPages();
+    try {
+      return locationToId(location, pinnedPages);
+    } finally {
+      pinnedPages.unpinAll();
     }
-    return cachedInfo.id;
   }
 
   public LocationInfo read(Location location, int layerId, boolean bidirectional)
@@ -332,6 +356,15 @@ public class LocationTreeStore implements LocationIdEncoder {
     progress.subTask("Done.");
   }
 
+  /**
+   * Set the maximum number of location identifiers kept in the cache.
+   * 
+   * @param cacheSize the maximum number of cached identifiers
+   */
+  public void setCacheSize(int cacheSize) {
+    cache.setMaxSize(cacheSize);
+  }
+
   public void stats(MappingStats stats) {
     try {
       mapping.stats(stats);
@@ -444,6 +477,32 @@ public class LocationTreeStore implements LocationIdEncoder {
     return LocationPersitence.getInstance().byUniqueIdentifier(id);
   }
 
+  /**
+   * Return the identifier of the given location, pinning the pages looked up to find it for the
+   * rest of the caller's operation. Might return <code>ID_NONE</code> to indicate that creation has
+   * failed.
+   */
+  private int locationToId(Location location, PinnedPages pinnedPages)
+      throws PagedStorageException {
+    CachedInfo cachedInfo = (CachedInfo) cache.get(location);
+    if (cachedInfo == null || (cachedInfo.id < 0 && cachedInfo.id != ID_FAILED)) {
+      int id = mapping.findOrCreate(pathFor(location), pinnedPages);
+      if (id == Mapping.ID_NONE) {
+        id = ID_FAILED;
+      }
+      if (cachedInfo != null) {
+        cachedInfo.id = id;
+      } else {
+        cachedInfo = new CachedInfo(location, id);
+        cache.putNew(cachedInfo);
+      }
+    }
+    if (cachedInfo.id < 0) {
+      return Mapping.ID_NONE;
+    }
+    return cachedInfo.id;
+  }
+
   private String[] pathFor(Location location) {
     String uniqueIdentifier = LocationPersitence.getInstance().getUniqueIdentifier(location);
     return splitPath(uniqueIdentifier);
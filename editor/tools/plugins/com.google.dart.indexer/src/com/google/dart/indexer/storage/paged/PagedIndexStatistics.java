@@ -13,11 +13,17 @@
  */
 package com.google.dart.indexer.storage.paged;
 
+import com.google.dart.indexer.pagedstorage.stats.PageCacheStats;
+
 public class PagedIndexStatistics {
   public final MappingStats fileStats = new MappingStats();
 
   public final MappingStats locationStats = new MappingStats();
 
+  public final PageCacheStats pageCacheStats = new PageCacheStats();
+
+  public final CacheSizingStats cacheSizingStats = new CacheSizingStats();
+
   public void resolve(int pageSize) {
     fileStats.resolve(pageSize);
     locationStats.resolve(pageSize);
@@ -25,6 +31,7 @@ public class PagedIndexStatistics {
 
   @Override
   public String toString() {
-    return "\nFILE " + fileStats.toString() + "\nLOCA " + locationStats.toString() + "\n";
+    return "\nFILE " + fileStats.toString() + "\nLOCA " + locationStats.toString() + "\nPAGE "
+        + pageCacheStats.toString() + "\nSIZE " + cacheSizingStats.toString() + "\n";
   }
 }
@@ -17,6 +17,7 @@ import com.google.dart.indexer.pagedstorage.DebugConstants;
 import com.google.dart.indexer.pagedstorage.util.ObjectArray;
 
 import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * The base object for all cached objects.
@@ -51,6 +52,12 @@ public abstract class CacheObject {
     recordList.sort(new CacheComparator());
   }
 
+  /**
+   * The updater used to change the pin count of cache objects atomically.
+   */
+  private static final AtomicIntegerFieldUpdater<CacheObject> PIN_COUNT =
+      AtomicIntegerFieldUpdater.newUpdater(CacheObject.class, "pinCount");
+
   /**
    * The previous element in the LRU linked list. If the previous element is the head, then this
    * element is the most recently used object.
@@ -69,13 +76,25 @@ public abstract class CacheObject {
   public CacheObject chained;
 
   /**
-   * The cache queue identifier. This field is only used for the 2Q cache algorithm.
+   * The cache queue identifier. This field is only used for the segmented LRU cache algorithm.
    */
   public int cacheQueue;
+
+  /**
+   * Whether the object has been found in the cache since the cache last moved it. This field is only
+   * used for the segmented LRU cache algorithm, where lookups that must not change the queues use it
+   * to record the access.
+   */
+  public boolean referenced;
   public int pageId;
 
   private boolean changed;
 
+  /**
+   * The number of times the object has been pinned and not yet unpinned.
+   */
+  private volatile int pinCount;
+
   /**
    * Check if the object can be removed from the cache. For example pinned objects can not be
    * removed.
@@ -107,12 +126,20 @@ public abstract class CacheObject {
   }
 
   /**
-   * Check if this cache object can be removed from the cache.
+   * Check if this cache object has been pinned and must therefore stay in the cache.
    * 
-   * @return if it can be removed
+   * @return if it is pinned
    */
   public boolean isPinned() {
-    return false;
+    return pinCount > 0;
+  }
+
+  /**
+   * Prevent this cache object from being removed from the cache until it is unpinned. An object can
+   * be pinned several times, and must be unpinned as many times.
+   */
+  public void pin() {
+    PIN_COUNT.incrementAndGet(this);
   }
 
   public void setChanged(boolean b) {
@@ -125,4 +152,11 @@ public abstract class CacheObject {
     }
     this.pageId = pos;
   }
+
+  /**
+   * Undo one {@link #pin()} of this cache object.
+   */
+  public void unpin() {
+    PIN_COUNT.decrementAndGet(this);
+  }
 }
@@ -72,7 +72,7 @@ public class FileStore {
 
   private FileObject file;
   private long filePos;
-  private long fileLength;
+  private volatile long fileLength;
 
   // private Reference autoDeleteReference;
   // private boolean checkedWriting = true;
@@ -273,6 +273,30 @@ public class FileStore {
     filePos += len;
   }
 
+  /**
+   * Read a number of bytes at the given file location without moving the file pointer. Positional
+   * reads and writes can be performed concurrently.
+   * 
+   * @param pos the location
+   * @param b the target buffer
+   * @param off the offset
+   * @param len the number of bytes to read
+   */
+  public void readFully(long pos, byte[] b, int off, int len) {
+    if (DebugConstants.CHECK && len < 0) {
+      throw new AssertionError("read len " + len);
+    }
+    if (DebugConstants.CHECK && (pos % Constants.FILE_BLOCK_SIZE != 0
+        || len % Constants.FILE_BLOCK_SIZE != 0)) {
+      throw new AssertionError("unaligned read " + name + " pos " + pos + " len " + len);
+    }
+    try {
+      file.readFully(pos, b, off, len);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Read a number of bytes without decrypting.
    * 
@@ -370,6 +394,35 @@ public class FileStore {
     fileLength = Math.max(filePos, fileLength);
   }
 
+  /**
+   * Write a number of bytes at the given file location without moving the file pointer.
+   * 
+   * @param pos the location
+   * @param b the source buffer
+   * @param off the offset
+   * @param len the number of bytes to write
+   * @see #readFully(long, byte[], int, int)
+   */
+  public void write(long pos, byte[] b, int off, int len) {
+    if (DebugConstants.CHECK && len < 0) {
+      throw new AssertionError("write len " + len);
+    }
+    if (DebugConstants.CHECK && (pos % Constants.FILE_BLOCK_SIZE != 0
+        || len % Constants.FILE_BLOCK_SIZE != 0)) {
+      throw new AssertionError("unaligned write " + name + " pos " + pos + " len " + len);
+    }
+    try {
+      file.write(pos, b, off, len);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    if (pos + len > fileLength) {
+      synchronized (this) {
+        fileLength = Math.max(pos + len, fileLength);
+      }
+    }
+  }
+
   /**
    * Generate the random salt bytes if required.
    * 
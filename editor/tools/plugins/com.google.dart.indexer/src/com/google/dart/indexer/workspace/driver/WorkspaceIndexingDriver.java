@@ -172,12 +172,29 @@ public class WorkspaceIndexingDriver {
   }
 
   public void execute(Query query) throws IndexTemporarilyNonOperational {
+    execute(query, null);
+  }
+
+  /**
+   * Execute the given query, waiting for the index to be built if necessary. The monitor is only
+   * used to stop waiting, by throwing an {@link OperationCanceledException}, once it has been
+   * canceled. The thread executing the query must not be interrupted instead, because that would
+   * close the files of the index for all threads.
+   * 
+   * @param query the query to be executed
+   * @param monitor the monitor used to determine whether the query has been canceled, or
+   *          <code>null</code> if it cannot be canceled
+   */
+  public void execute(Query query, IProgressMonitor monitor) throws IndexTemporarilyNonOperational {
     try {
       synchronized (indexer) {
         indexer.prioritizeQuery(query);
         try {
           boolean hasBeenScheduled = false;
           while (!isShutdown) {
+            if (monitor != null && monitor.isCanceled()) {
+              throw new OperationCanceledException();
+            }
             try {
               indexer.execute(query);
               break;
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.workspace.index;
+
+import com.google.dart.indexer.IndexerPlugin;
+import com.google.dart.indexer.exceptions.IndexRequestFailed;
+import com.google.dart.indexer.index.IndexTransaction;
+import com.google.dart.indexer.index.configuration.IndexConfigurationInstance;
+import com.google.dart.indexer.index.configuration.Processor;
+import com.google.dart.indexer.storage.BufferedFileTransaction;
+
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instances of the class <code>IndexingPipeline</code> process indexing targets on a fixed number
+ * of worker threads. Processors and contributors keep state while processing a target, so each
+ * worker uses its own instance of the index configuration. Processors also cache the information
+ * computed for the other targets of the same {@link IndexingTargetGroup group}, such as the
+ * resolved AST structures of the compilation units in a library, so all of the targets of a group
+ * are processed by the same worker. The workers do not access the storage: the changes for each
+ * target are recorded in a {@link BufferedFileTransaction} that the thread owning the pipeline
+ * applies using {@link IndexTransaction#applyTarget(IndexingTarget, BufferedFileTransaction)}.
+ * <p>
+ * Targets are submitted by the thread owning the pipeline, which is also the only thread that can
+ * shut it down.
+ */
+class IndexingPipeline {
+  /**
+   * The transaction used to process the targets.
+   */
+  private final IndexTransaction transaction;
+
+  /**
+   * The configuration of the index being updated.
+   */
+  private final IndexConfigurationInstance configuration;
+
+  /**
+   * The configuration instances used by the workers, one for each worker.
+   */
+  private final IndexConfigurationInstance[] configurations;
+
+  /**
+   * The executors running the workers. Each executor has a single thread, which uses the
+   * configuration instance at the same index.
+   */
+  private final ExecutorService[] workers;
+
+  /**
+   * A table mapping the groups of the targets that have been submitted to the index of the worker
+   * processing the targets in that group.
+   */
+  private final HashMap<IndexingTargetGroup, Integer> groupWorkers =
+      new HashMap<IndexingTargetGroup, Integer>();
+
+  /**
+   * The index of the worker to which the targets of the next new group will be submitted.
+   */
+  private int nextWorker = 0;
+
+  /**
+   * Initialize a newly created pipeline to process targets as part of the given transaction.
+   * 
+   * @param transaction the transaction used to process the targets
+   * @param configuration the configuration of the index being updated
+   * @param threadCount the number of worker threads
+   */
+  public IndexingPipeline(IndexTransaction transaction, IndexConfigurationInstance configuration,
+      int threadCount) {
+    this.transaction = transaction;
+    this.configuration = configuration;
+    configurations = new IndexConfigurationInstance[threadCount];
+    workers = new ExecutorService[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      final String threadName = "Index worker " + (i + 1);
+      configurations[i] = configuration.getConfiguration().instantiate();
+      workers[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, threadName);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  /**
+   * Stop the workers, waiting for the targets being processed, add the time the processors of the
+   * workers spent parsing to the configuration of the index, and release the information cached by
+   * those processors. Targets that have been submitted but not yet processed are dropped.
+   */
+  public void shutdown() {
+    for (ExecutorService worker : workers) {
+      worker.shutdownNow();
+    }
+    try {
+      for (ExecutorService worker : workers) {
+        while (!worker.awaitTermination(1, TimeUnit.SECONDS)) {
+          // Parsing is not interruptible, so wait for the worker to finish the current target.
+        }
+      }
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    for (IndexConfigurationInstance workerConfiguration : configurations) {
+      configuration.addTimeSpentParsing(workerConfiguration.gatherTimeSpentParsing());
+      for (Processor processor : workerConfiguration.getKnownProcessors()) {
+        try {
+          processor.transactionEnded();
+        } catch (Exception exception) {
+          // Ignore problems from individual processors, other than to log them.
+          IndexerPlugin.getLogger().logError(exception,
+              "Processor failed while transaction was ending: " + processor.getClass().getName());
+        }
+      }
+    }
+  }
+
+  /**
+   * Submit the given target to be processed by the worker processing the other targets in the same
+   * group. The result of the returned future is the changes recorded for the target, or
+   * <code>null</code> if the target is not indexed.
+   * 
+   * @param target the target to be processed
+   * @return the future result of processing the target
+   */
+  public Future<BufferedFileTransaction> submit(final IndexingTarget target) {
+    final int workerIndex = getWorkerFor(target.getGroup());
+    return workers[workerIndex].submit(new Callable<BufferedFileTransaction>() {
+      @Override
+      public BufferedFileTransaction call() throws IndexRequestFailed {
+        return transaction.processTarget(target, configurations[workerIndex]);
+      }
+    });
+  }
+
+  /**
+   * Return the index of the worker that processes the targets in the given group. The groups are
+   * assigned to the workers in turn the first time a target in the group is submitted.
+   * 
+   * @param group the group of the target being submitted, or <code>null</code> if it does not have
+   *          a group
+   * @return the index of the worker that processes the targets in the given group
+   */
+  private int getWorkerFor(IndexingTargetGroup group) {
+    Integer workerIndex = group == null ? null : groupWorkers.get(group);
+    if (workerIndex == null) {
+      workerIndex = nextWorker;
+      nextWorker = (nextWorker + 1) % workers.length;
+      if (group != null) {
+        groupWorkers.put(group, workerIndex);
+      }
+    }
+    return workerIndex;
+  }
+}
@@ -22,10 +22,12 @@ import com.google.dart.indexer.exceptions.IndexTemporarilyNonOperational;
 import com.google.dart.indexer.index.IndexSession;
 import com.google.dart.indexer.index.IndexSessionStats;
 import com.google.dart.indexer.index.IndexTransaction;
+import com.google.dart.indexer.index.PerformanceRelatedConstants;
 import com.google.dart.indexer.index.configuration.IndexConfigurationInstance;
 import com.google.dart.indexer.index.entries.PathAndModStamp;
 import com.google.dart.indexer.index.queries.Query;
 import com.google.dart.indexer.index.readonly.Index;
+import com.google.dart.indexer.storage.BufferedFileTransaction;
 import com.google.dart.indexer.storage.inmemory.StorageManager;
 import com.google.dart.indexer.utilities.io.PrintStringWriter;
 import com.google.dart.indexer.utils.ToStringComparator;
@@ -49,6 +51,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * This class was designed to be testable easily, so it does not interact with workspace events.
@@ -232,7 +236,13 @@ public class WorkspaceIndexer {
     try {
       boolean didSomething = false;
       try {
-        didSomething = doIndexPendingFiles(transaction, dequeued, stopProcessingAt, monitor);
+        if (PerformanceRelatedConstants.INDEXING_THREADS > 1
+            && queue.getQueueSize() >= PerformanceRelatedConstants.PARALLEL_INDEXING_THRESHOLD) {
+          didSomething = doIndexPendingFilesInParallel(transaction, dequeued, stopProcessingAt,
+              monitor);
+        } else {
+          didSomething = doIndexPendingFiles(transaction, dequeued, stopProcessingAt, monitor);
+        }
       } finally {
         transaction.close();
       }
@@ -368,6 +378,25 @@ public class WorkspaceIndexer {
     }
   }
 
+  /**
+   * Wait for the given result of processing a target to be available. Failures are not reported
+   * here, but when the result is written.
+   */
+  private void awaitResult(Future<BufferedFileTransaction> result)
+      throws IndexTemporarilyNonOperational {
+    if (result == null) {
+      return;
+    }
+    try {
+      result.get();
+    } catch (ExecutionException exception) {
+      // Reported by writeTarget.
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IndexTemporarilyNonOperational(exception);
+    }
+  }
+
   private Collection<IFile> collectAllExistingFiles() {
     final Collection<IFile> existingFiles = new ArrayList<IFile>();
     try {
@@ -391,7 +420,6 @@ public class WorkspaceIndexer {
       LinkedList<IndexingTarget> dequeued, long stopProcessingAt, IProgressMonitor monitor)
       throws IndexRequestFailed {
     boolean didSomething = false;
-    int filesIndexedAfterCheckpoint = 0;
     int filesIndexed = 0;
     do {
       if (monitor.isCanceled()) {
@@ -411,35 +439,85 @@ public class WorkspaceIndexer {
         IndexerPlugin.getLogger().logError(exception);
         transaction.addErrorTarget(target, exception);
       }
-      monitor.worked(1);
-      monitor.subTask(queue.size() + " files left to index");
-      ++filesIndexed;
-      if (++filesIndexedAfterCheckpoint == 20) {
-        IndexerPlugin.getLogger().trace(IndexerDebugOptions.MISCELLANEOUS,
-            filesIndexed + " files total.");
-        // session.getStorage().checkpoint();
-        filesIndexedAfterCheckpoint = 0;
-      }
-      IProject project = target.getProject();
-      if (!queue.hasQueuedFilesIn(project)) {
-        synchronized (this) {
-          this.notifyAll();
-        }
-      }
+      targetIndexed(target, ++filesIndexed, monitor);
     } while (stopProcessingAt == -1 || System.currentTimeMillis() < stopProcessingAt);
-    IndexingTarget[] targetsWithErrors = transaction.getTargetsWithErrors();
-    if (targetsWithErrors.length > 0) {
-      monitor.subTask(targetsWithErrors.length + " files to reindex");
-      for (IndexingTarget target : targetsWithErrors) {
-        try {
-          synchronized (this) {
-            indexTarget(target, transaction, true);
+    retryTargetsWithErrors(transaction, monitor);
+    return didSomething;
+  }
+
+  /**
+   * Index the pending targets using an {@link IndexingPipeline}: the targets are processed on
+   * worker threads while this thread writes the changes recorded for the targets that have already
+   * been processed to the storage, in the order in which the targets were dequeued. Targets that no
+   * longer exist are removed by this thread, because removing a target reads the storage.
+   */
+  private boolean doIndexPendingFilesInParallel(IndexTransaction transaction,
+      LinkedList<IndexingTarget> dequeued, long stopProcessingAt, IProgressMonitor monitor)
+      throws IndexRequestFailed {
+    int threadCount = PerformanceRelatedConstants.INDEXING_THREADS;
+    IndexingPipeline pipeline = new IndexingPipeline(transaction, configuration, threadCount);
+    LinkedList<IndexingTarget> submittedTargets = new LinkedList<IndexingTarget>();
+    LinkedList<Future<BufferedFileTransaction>> results =
+        new LinkedList<Future<BufferedFileTransaction>>();
+    boolean didSomething = false;
+    boolean canceled = false;
+    boolean stopped = false;
+    int filesIndexed = 0;
+    try {
+      while (true) {
+        // Keep enough targets in the pipeline for the workers to stay busy while this thread
+        // writes.
+        while (!stopped && results.size() < threadCount * 4) {
+          if (monitor.isCanceled()) {
+            canceled = true;
+            stopped = true;
+            break;
           }
-        } catch (TargetIndexingFailed exception) {
-          IndexerPlugin.getLogger().logError(exception);
+          if (didSomething && stopProcessingAt != -1
+              && System.currentTimeMillis() >= stopProcessingAt) {
+            stopped = true;
+            break;
+          }
+          IndexingTarget target = queue.dequeue();
+          if (target == null) {
+            break;
+          }
+          dequeued.addLast(target);
+          didSomething = true;
+          submittedTargets.addLast(target);
+          results.addLast(target.exists() ? pipeline.submit(target) : null);
+        }
+        if (results.isEmpty()) {
+          break;
+        }
+        awaitResult(results.getFirst());
+        int batchSize = 0;
+        IndexingTarget[] written =
+            new IndexingTarget[PerformanceRelatedConstants.INDEXING_BATCH_SIZE];
+        synchronized (this) {
+          do {
+            IndexingTarget target = submittedTargets.removeFirst();
+            try {
+              writeTarget(target, results.removeFirst(), transaction);
+            } catch (TargetIndexingFailed exception) {
+              IndexerPlugin.getLogger().logError(exception);
+              transaction.addErrorTarget(target, exception);
+            }
+            written[batchSize++] = target;
+          } while (batchSize < written.length && !results.isEmpty()
+              && (results.getFirst() == null || results.getFirst().isDone()));
+        }
+        for (int i = 0; i < batchSize; i++) {
+          targetIndexed(written[i], ++filesIndexed, monitor);
         }
       }
+    } finally {
+      pipeline.shutdown();
+    }
+    if (canceled) {
+      return true;
     }
+    retryTargetsWithErrors(transaction, monitor);
     return didSomething;
   }
 
@@ -484,6 +562,23 @@ public class WorkspaceIndexer {
     }
   }
 
+  private void retryTargetsWithErrors(IndexTransaction transaction, IProgressMonitor monitor)
+      throws IndexRequestFailed {
+    IndexingTarget[] targetsWithErrors = transaction.getTargetsWithErrors();
+    if (targetsWithErrors.length > 0) {
+      monitor.subTask(targetsWithErrors.length + " files to reindex");
+      for (IndexingTarget target : targetsWithErrors) {
+        try {
+          synchronized (this) {
+            indexTarget(target, transaction, true);
+          }
+        } catch (TargetIndexingFailed exception) {
+          IndexerPlugin.getLogger().logError(exception);
+        }
+      }
+    }
+  }
+
   private void resyncAllFiles() throws IndexRequiresFullRebuild {
     final HashSet<IFile> unprocessedExistingFiles = new HashSet<IFile>(collectAllExistingFiles());
     PathAndModStamp[] indexedFiles = findAllIndexedFiles(unprocessedExistingFiles);
@@ -510,4 +605,56 @@ public class WorkspaceIndexer {
       queue.addedFile(file);
     }
   }
+
+  private void targetIndexed(IndexingTarget target, int filesIndexed, IProgressMonitor monitor) {
+    monitor.worked(1);
+    monitor.subTask(queue.size() + " files left to index");
+    if (filesIndexed % 20 == 0) {
+      IndexerPlugin.getLogger().trace(IndexerDebugOptions.MISCELLANEOUS,
+          filesIndexed + " files total.");
+      // session.getStorage().checkpoint();
+    }
+    IProject project = target.getProject();
+    if (!queue.hasQueuedFilesIn(project)) {
+      synchronized (this) {
+        this.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Write the result of processing the given target to the storage. A <code>null</code> result
+   * means that the target did not exist when it was dequeued, in which case it is indexed
+   * sequentially.
+   */
+  private void writeTarget(IndexingTarget target, Future<BufferedFileTransaction> result,
+      IndexTransaction transaction) throws IndexRequestFailed, TargetIndexingFailed {
+    if (result == null) {
+      indexTarget(target, transaction, false);
+      return;
+    }
+    try {
+      BufferedFileTransaction buffer = result.get();
+      if (buffer != null) {
+        transaction.applyTarget(target, buffer);
+      }
+    } catch (ExecutionException exception) {
+      Throwable cause = exception.getCause();
+      if (cause instanceof IndexRequestFailed) {
+        throw (IndexRequestFailed) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw new TargetIndexingFailed(target, (RuntimeException) cause, false);
+      } else if (cause instanceof Error) {
+        throw new TargetIndexingFailed(target, (Error) cause, false);
+      }
+      throw new TargetIndexingFailed(target, new RuntimeException(cause), false);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IndexTemporarilyNonOperational(exception);
+    } catch (RuntimeException exception) {
+      throw new TargetIndexingFailed(target, exception, false);
+    } catch (Error exception) {
+      throw new TargetIndexingFailed(target, exception, false);
+    }
+  }
 }
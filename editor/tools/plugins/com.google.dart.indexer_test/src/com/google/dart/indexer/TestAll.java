@@ -22,7 +22,9 @@ public class TestAll {
     suite.addTest(com.google.dart.indexer.pagedstorage.TestAll.suite());
     suite.addTest(com.google.dart.indexer.pagestore.TestAll.suite());
     suite.addTest(com.google.dart.indexer.source.TestAll.suite());
+    suite.addTest(com.google.dart.indexer.storage.TestAll.suite());
     suite.addTest(com.google.dart.indexer.utilities.TestAll.suite());
+    suite.addTest(com.google.dart.indexer.workspace.index.TestAll.suite());
     return suite;
   }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.pagedstorage;
+
+import com.google.dart.indexer.pagedstorage.filesystem.AccessMode;
+import com.google.dart.indexer.pagedstorage.filesystem.FileSystem;
+import com.google.dart.indexer.storage.paged.store.FileStore;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class PageLogTest extends TestCase {
+  /**
+   * A storage that records the pages replayed into it instead of writing them into its file.
+   */
+  private static class ReplayedStorage extends PagedStorage {
+    private final Map<Integer, byte[]> pages = new HashMap<Integer, byte[]>();
+
+    public ReplayedStorage() {
+      super("memFS:replayed", AccessMode.READ_WRITE, 1024, 1);
+    }
+
+    @Override
+    void replayPage(int pageId, byte[] image) {
+      pages.put(pageId, image.clone());
+    }
+  }
+
+  private static final int PAGE_SIZE = 128;
+
+  private static byte[] page(int value) {
+    byte[] page = new byte[PAGE_SIZE];
+    Arrays.fill(page, (byte) value);
+    return page;
+  }
+
+  private ReplayedStorage storage = new ReplayedStorage();
+
+  private String fileName;
+
+  public void test_PageLog_commit_concurrent() throws Exception {
+    final PageLog log = openLog();
+    final List<String> failures = new ArrayList<String>();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      final int pageId = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 20; j++) {
+            long target;
+            synchronized (log) {
+              log.append(pageId, page(pageId * 20 + j));
+              log.appendCommitMarker();
+              target = log.length();
+            }
+            log.commit();
+            if (log.committedLength() < target) {
+              synchronized (failures) {
+                failures.add("Page " + pageId + " was not committed by commit " + j);
+              }
+            }
+          }
+        }
+      };
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(new ArrayList<String>(), failures);
+    assertEquals(log.length(), log.committedLength());
+    log.close();
+
+    assertEquals(threads.length, openLog().replay(storage));
+    for (int i = 0; i < threads.length; i++) {
+      assertTrue(Arrays.equals(page(i * 20 + 19), storage.pages.get(i)));
+    }
+  }
+
+  public void test_PageLog_discardCommitted() throws Exception {
+    PageLog log = openLog();
+    log.append(1, page(1));
+    log.appendCommitMarker();
+    log.commit();
+    log.append(2, page(2));
+    synchronized (log) {
+      log.awaitIdle();
+      log.discardCommitted();
+    }
+    assertEquals(0, log.committedLength());
+    log.appendCommitMarker();
+    log.commit();
+    log.close();
+
+    assertEquals(1, openLog().replay(storage));
+    assertTrue(Arrays.equals(page(2), storage.pages.get(2)));
+  }
+
+  public void test_PageLog_readCommitted() throws Exception {
+    PageLog log = openLog();
+    log.append(1, page(1));
+    log.append(2, page(2));
+    log.appendCommitMarker();
+    log.append(1, page(3));
+    log.commit();
+    Map<Integer, byte[]> images = new TreeMap<Integer, byte[]>();
+    log.readCommitted(0, log.committedLength(), images);
+    assertEquals(2, images.size());
+    assertTrue(Arrays.equals(page(1), images.get(1)));
+    assertTrue(Arrays.equals(page(2), images.get(2)));
+    log.close();
+  }
+
+  public void test_PageLog_replay() throws Exception {
+    PageLog log = openLog();
+    log.append(1, page(1));
+    log.append(2, page(2));
+    log.appendCommitMarker();
+    log.append(1, page(3));
+    log.appendCommitMarker();
+    log.commit();
+    log.close();
+
+    assertEquals(2, openLog().replay(storage));
+    assertTrue(Arrays.equals(page(3), storage.pages.get(1)));
+    assertTrue(Arrays.equals(page(2), storage.pages.get(2)));
+  }
+
+  public void test_PageLog_replay_tornTail() throws Exception {
+    PageLog log = openLog();
+    log.append(1, page(1));
+    log.appendCommitMarker();
+    log.append(2, page(2));
+    log.append(3, page(3));
+    log.appendCommitMarker();
+    log.commit();
+    log.close();
+    // lose the commit marker of the second batch
+    FileStore file = FileStore.open(storage, fileName, AccessMode.READ_WRITE);
+    file.init();
+    file.setLength(file.length() - 16);
+    file.close();
+
+    assertEquals(1, openLog().replay(storage));
+    assertTrue(Arrays.equals(page(1), storage.pages.get(1)));
+  }
+
+  public void test_PageLog_replay_uncommitted() throws Exception {
+    PageLog log = openLog();
+    log.append(1, page(1));
+    log.appendCommitMarker();
+    log.append(2, page(2));
+    log.commit();
+    log.close();
+
+    assertEquals(1, openLog().replay(storage));
+    assertNull(storage.pages.get(2));
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    fileName = "memFS:test" + System.nanoTime() + ".log";
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileSystem.getInstance(fileName).delete(fileName);
+    super.tearDown();
+  }
+
+  private PageLog openLog() throws Exception {
+    return new PageLog(storage, fileName, AccessMode.READ_WRITE, PAGE_SIZE);
+  }
+}
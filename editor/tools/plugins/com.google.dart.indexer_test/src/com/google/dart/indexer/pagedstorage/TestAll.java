@@ -19,6 +19,7 @@ import junit.framework.TestSuite;
 public class TestAll {
   public static Test suite() {
     TestSuite suite = new TestSuite("Tests in " + TestAll.class.getPackage().getName());
+    suite.addTestSuite(PageLogTest.class);
     suite.addTest(com.google.dart.indexer.pagedstorage.util.TestAll.suite());
     return suite;
   }
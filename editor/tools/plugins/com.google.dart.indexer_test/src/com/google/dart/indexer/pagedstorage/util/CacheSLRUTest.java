@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.pagedstorage.util;
+
+import com.google.dart.indexer.pagedstorage.stats.PageCacheStats;
+import com.google.dart.indexer.storage.paged.store.CacheObject;
+import com.google.dart.indexer.storage.paged.store.CacheWriter;
+
+import junit.framework.TestCase;
+
+public class CacheSLRUTest extends TestCase {
+  private static class TestRecord extends CacheObject {
+    public TestRecord(int pos) {
+      setPos(pos);
+    }
+
+    @Override
+    public boolean canRemove() {
+      return !isPinned();
+    }
+
+    @Override
+    public int getMemorySize() {
+      return RECORD_SIZE;
+    }
+  }
+
+  /**
+   * The size of each record, in double words. A cache of one kilobyte holds 32 records.
+   */
+  private static final int RECORD_SIZE = 8;
+
+  private static final CacheWriter WRITER = new CacheWriter() {
+    @Override
+    public void writeBack(CacheObject entry) {
+    }
+  };
+
+  public void test_CacheSLRU_pinned() throws Exception {
+    CacheSLRU cache = new CacheSLRU(WRITER, 1);
+    TestRecord pinned = new TestRecord(0);
+    pinned.pin();
+    cache.put(pinned);
+    for (int pos = 1; pos < 200; pos++) {
+      cache.put(new TestRecord(pos));
+      cache.get(pos);
+    }
+    assertSame(pinned, cache.find(0));
+    assertTrue(cache.getSize() <= cache.getMaxSize());
+
+    pinned.unpin();
+    for (int pos = 200; pos < 400; pos++) {
+      cache.put(new TestRecord(pos));
+      cache.get(pos);
+    }
+    assertNull(cache.find(0));
+  }
+
+  public void test_CacheSLRU_scan() throws Exception {
+    CacheSLRU cache = new CacheSLRU(WRITER, 1);
+    for (int pos = 0; pos < 10; pos++) {
+      cache.put(new TestRecord(pos));
+      cache.get(pos);
+    }
+    for (int pos = 100; pos < 200; pos++) {
+      cache.put(new TestRecord(pos));
+    }
+    for (int pos = 0; pos < 10; pos++) {
+      assertNotNull("Record " + pos + " was evicted", cache.find(pos));
+    }
+    assertNull(cache.find(100));
+    assertNotNull(cache.find(199));
+  }
+
+  public void test_CacheSLRU_setMaxSize_grow() throws Exception {
+    CacheSLRU cache = new CacheSLRU(WRITER, 1);
+    for (int pos = 0; pos < 20; pos++) {
+      cache.put(new TestRecord(pos));
+    }
+    cache.setMaxSize(64);
+    for (int pos = 0; pos < 20; pos++) {
+      assertNotNull("Record " + pos + " was lost", cache.find(pos));
+    }
+    for (int pos = 20; pos < 1000; pos++) {
+      cache.put(new TestRecord(pos));
+    }
+    for (int pos = 0; pos < 1000; pos++) {
+      assertNotNull("Record " + pos + " was evicted", cache.find(pos));
+    }
+    cache.remove(500);
+    assertNull(cache.find(500));
+    assertEquals(999 * RECORD_SIZE, cache.getSize());
+  }
+
+  public void test_CacheSLRU_stats() throws Exception {
+    CacheSLRU cache = new CacheSLRU(WRITER, 1);
+    cache.put(new TestRecord(1));
+    assertNotNull(cache.get(1));
+    assertNull(cache.get(2));
+    assertNotNull(cache.find(1));
+    assertNull(cache.find(3));
+    PageCacheStats stats = new PageCacheStats();
+    cache.stats(stats);
+    assertEquals(2, stats.hits);
+    assertEquals(2, stats.misses);
+    assertEquals(0, stats.evictions);
+    assertEquals(RECORD_SIZE, stats.size);
+    assertEquals(cache.getMaxSize(), stats.maxSize);
+
+    for (int pos = 2; pos <= 100; pos++) {
+      cache.put(new TestRecord(pos));
+    }
+    stats = new PageCacheStats();
+    cache.stats(stats);
+    assertEquals(100 - cache.getSize() / RECORD_SIZE, stats.evictions);
+  }
+}
@@ -15,6 +15,7 @@ package com.google.dart.indexer.pagestore;
 
 import com.google.dart.indexer.pagedstorage.PagedStorage;
 import com.google.dart.indexer.pagedstorage.filesystem.AccessMode;
+import com.google.dart.indexer.pagedstorage.pagestore.PinnedPages;
 import com.google.dart.indexer.pagedstorage.treestore.PageRecPos;
 import com.google.dart.indexer.pagedstorage.treestore.TreeStore;
 
@@ -32,19 +33,21 @@ public class TreeStoreBasicTests extends TestCase {
 
   private PagedStorage pagedStorage;
 
+  private PinnedPages pinnedPages = new PinnedPages();
+
   private TreeStore treeStore;
 
   public void test1Level1Item() throws Exception {
-    treeStore.lookup(new String[] {"foo"}, true);
+    treeStore.lookup(new String[] {"foo"}, true, pinnedPages);
     assertEquals("TreeStore root=4\n" + "  PAGE 4: 1 records\n" + "    Rec0: 1 items\n"
         + "      Item0: child NONE \"foo\" 0 0 0 0\n", treeStore.toTestableString());
 
   }
 
   public void test1Level3Items() throws Exception {
-    treeStore.lookup(new String[] {"foo"}, true);
-    treeStore.lookup(new String[] {"bar"}, true);
-    treeStore.lookup(new String[] {"boz"}, true);
+    treeStore.lookup(new String[] {"foo"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"bar"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"boz"}, true, pinnedPages);
     assertEquals("TreeStore root=4\n" + "  PAGE 4: 1 records\n" + "    Rec0: 3 items\n"
         + "      Item0: child NONE \"bar\" 0 0 0 0\n" + "      Item1: child NONE \"boz\" 0 0 0 0\n"
         + "      Item2: child NONE \"foo\" 0 0 0 0\n" + "", treeStore.toTestableString());
@@ -52,9 +55,9 @@ public class TreeStoreBasicTests extends TestCase {
   }
 
   public void test1Level3ItemsDelete() throws Exception {
-    treeStore.lookup(new String[] {"foo"}, true);
-    PageRecPos pos = treeStore.lookup(new String[] {"bar"}, true);
-    treeStore.lookup(new String[] {"boz"}, true);
+    treeStore.lookup(new String[] {"foo"}, true, pinnedPages);
+    PageRecPos pos = treeStore.lookup(new String[] {"bar"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"boz"}, true, pinnedPages);
     pos.delete();
     assertEquals("TreeStore root=4\n" + "  PAGE 4: 1 records\n" + "    Rec0: 2 items\n"
         + "      Item0: child NONE \"boz\" 0 0 0 0\n" + "      Item1: child NONE \"foo\" 0 0 0 0\n"
@@ -63,10 +66,10 @@ public class TreeStoreBasicTests extends TestCase {
   }
 
   public void test2Levels4Items() throws Exception {
-    treeStore.lookup(new String[] {"foo", "abc"}, true);
-    treeStore.lookup(new String[] {"bar"}, true);
-    treeStore.lookup(new String[] {"boz", "def"}, true);
-    treeStore.lookup(new String[] {"boz", "ghi"}, true);
+    treeStore.lookup(new String[] {"foo", "abc"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"bar"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"boz", "def"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"boz", "ghi"}, true, pinnedPages);
     assertEquals("TreeStore root=4\n" + "  PAGE 4: 3 records\n" + "    Rec0: 3 items\n"
         + "      Item0: child NONE \"bar\" 0 0 0 0\n" + "      Item1: child Rec2 \"boz\" 0 0 0 0\n"
         + "      Item2: child Rec1 \"foo\" 0 0 0 0\n" + "    Rec1: 1 items\n"
@@ -77,11 +80,11 @@ public class TreeStoreBasicTests extends TestCase {
   }
 
   public void test2Levels4ItemsDeleteSublevel() throws Exception {
-    treeStore.lookup(new String[] {"foo", "abc"}, true);
-    treeStore.lookup(new String[] {"bar"}, true);
-    treeStore.lookup(new String[] {"boz", "def"}, true);
-    treeStore.lookup(new String[] {"boz", "ghi"}, true);
-    PageRecPos pos = treeStore.lookup(new String[] {"boz"}, false);
+    treeStore.lookup(new String[] {"foo", "abc"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"bar"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"boz", "def"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"boz", "ghi"}, true, pinnedPages);
+    PageRecPos pos = treeStore.lookup(new String[] {"boz"}, false, pinnedPages);
     pos.delete();
     assertEquals("TreeStore root=4\n" + "  PAGE 4: 2 records\n" + "    Rec0: 2 items\n"
         + "      Item0: child NONE \"bar\" 0 0 0 0\n" + "      Item1: child Rec1 \"foo\" 0 0 0 0\n"
@@ -91,7 +94,7 @@ public class TreeStoreBasicTests extends TestCase {
   }
 
   public void test3Levels1Item() throws Exception {
-    treeStore.lookup(new String[] {"foo", "abc", "xyz"}, true);
+    treeStore.lookup(new String[] {"foo", "abc", "xyz"}, true, pinnedPages);
     assertEquals("TreeStore root=4\n" + "  PAGE 4: 3 records\n" + "    Rec0: 1 items\n"
         + "      Item0: child Rec1 \"foo\" 0 0 0 0\n" + "    Rec1: 1 items\n"
         + "      Item0: child Rec2 \"abc\" 0 0 0 0\n" + "    Rec2: 1 items\n"
@@ -121,12 +124,13 @@ public class TreeStoreBasicTests extends TestCase {
 
   public void testLevel2MovedToSubpage() throws Exception {
     int size = pagedStorage.getPageSize() * 1 / 5;
-    treeStore.lookup(new String[] {"foo", "abc", makeLongName("xyz", size)}, true);
-    treeStore.lookup(new String[] {"foo", "abc", makeLongName("wxy", size)}, true);
-    treeStore.lookup(new String[] {"foo", "abc", makeLongName("vwx", size)}, true);
-    treeStore.lookup(new String[] {"foo", "def", makeLongName("uvw", size)}, true);
-    treeStore.lookup(new String[] {"foo", "def", makeLongName("tuv", size)}, true);
-    PageRecPos pos = treeStore.lookup(new String[] {"foo", "abc", makeLongName("wxy", size)}, false);
+    treeStore.lookup(new String[] {"foo", "abc", makeLongName("xyz", size)}, true, pinnedPages);
+    treeStore.lookup(new String[] {"foo", "abc", makeLongName("wxy", size)}, true, pinnedPages);
+    treeStore.lookup(new String[] {"foo", "abc", makeLongName("vwx", size)}, true, pinnedPages);
+    treeStore.lookup(new String[] {"foo", "def", makeLongName("uvw", size)}, true, pinnedPages);
+    treeStore.lookup(new String[] {"foo", "def", makeLongName("tuv", size)}, true, pinnedPages);
+    PageRecPos pos = treeStore.lookup(new String[] {"foo", "abc", makeLongName("wxy", size)},
+        false, pinnedPages);
     assertEquals(
         "TreeStore root=4\n"
             + "  PAGE 4: 3 records\n"
@@ -156,6 +160,7 @@ public class TreeStoreBasicTests extends TestCase {
   }
 
   protected void tearDown() throws Exception {
+    pinnedPages.unpinAll();
     pagedStorage.close();
   }
 }
@@ -15,25 +15,27 @@ package com.google.dart.indexer.pagestore;
 
 import com.google.dart.indexer.pagedstorage.PagedStorage;
 import com.google.dart.indexer.pagedstorage.filesystem.AccessMode;
+import com.google.dart.indexer.pagedstorage.pagestore.PinnedPages;
 import com.google.dart.indexer.pagedstorage.treestore.TreeStore;
 
 import junit.framework.TestCase;
 
 public class TreeStoreOffsetTests extends TestCase {
   private PagedStorage pagedStorage;
+  private PinnedPages pinnedPages = new PinnedPages();
   private TreeStore treeStore;
 
   public void test1Level1Item() throws Exception {
-    treeStore.lookup(new String[] {"foo"}, true);
+    treeStore.lookup(new String[] {"foo"}, true, pinnedPages);
     assertEquals("TreeStore root=4\n" + "  PAGE 4: 1 records\n" + "    Rec0: 1 items\n"
         + "      Item0: child NONE \"foo\" 0 0 0 0\n", treeStore.toString());
 
   }
 
   public void test1Level3Items() throws Exception {
-    treeStore.lookup(new String[] {"foo"}, true);
-    treeStore.lookup(new String[] {"bar"}, true);
-    treeStore.lookup(new String[] {"boz"}, true);
+    treeStore.lookup(new String[] {"foo"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"bar"}, true, pinnedPages);
+    treeStore.lookup(new String[] {"boz"}, true, pinnedPages);
     assertEquals("TreeStore root=4\n" + "  PAGE 4: 1 records\n" + "    Rec0: 3 items\n"
         + "      Item0: child NONE \"bar\" 0 0 0 0\n" + "      Item1: child NONE \"boz\" 0 0 0 0\n"
         + "      Item2: child NONE \"foo\" 0 0 0 0\n" + "", treeStore.toString());
@@ -41,7 +43,7 @@ public class TreeStoreOffsetTests extends TestCase {
   }
 
   public void test3Levels1Item() throws Exception {
-    treeStore.lookup(new String[] {"foo", "abc", "xyz"}, true);
+    treeStore.lookup(new String[] {"foo", "abc", "xyz"}, true, pinnedPages);
     assertEquals("TreeStore root=4\n" + "  PAGE 4: 3 records\n" + "    Rec0: 1 items\n"
         + "      Item0: child Rec1 \"foo\" 0 0 0 0\n" + "    Rec1: 1 items\n"
         + "      Item0: child Rec2 \"abc\" 0 0 0 0\n" + "    Rec2: 1 items\n"
@@ -63,6 +65,7 @@ public class TreeStoreOffsetTests extends TestCase {
   }
 
   protected void tearDown() throws Exception {
+    pinnedPages.unpinAll();
     pagedStorage.close();
   }
 }
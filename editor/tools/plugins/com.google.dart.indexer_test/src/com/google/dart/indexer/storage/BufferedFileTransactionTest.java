@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.storage;
+
+import com.google.dart.indexer.index.entries.DependentLocation;
+import com.google.dart.indexer.index.entries.FileInfo;
+import com.google.dart.indexer.index.layers.Layer;
+import com.google.dart.indexer.locations.Location;
+import com.google.dart.indexer.locations.LocationType;
+import com.google.dart.indexer.source.IndexableSource;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BufferedFileTransactionTest extends TestCase {
+  /**
+   * A file transaction that records the changes applied to it.
+   */
+  private static class RecordingFileTransaction extends FileTransaction {
+    private final List<String> changes = new ArrayList<String>();
+
+    @Override
+    @Deprecated
+    public void addDependency(IFile masterFile, DependentLocation dependency) {
+      changes.add("dependency " + dependency);
+    }
+
+    @Override
+    public void addDependency(IndexableSource masterFile, DependentLocation dependency) {
+      changes.add("dependency " + dependency);
+    }
+
+    @Override
+    public void addReference(Layer layer, Location sourceLocation, Location destinationLocation) {
+      changes.add("reference " + sourceLocation + " " + destinationLocation);
+    }
+
+    @Override
+    public void addSourceLocation(Location location) {
+      changes.add("source " + location);
+    }
+
+    @Override
+    public void commit() {
+      changes.add("commit");
+    }
+
+    @Override
+    public FileInfo getOriginalFileInfo() {
+      return null;
+    }
+  }
+
+  private static class TestLocation implements Location {
+    private final String name;
+
+    public TestLocation(String name) {
+      this.name = name;
+    }
+
+    @Override
+    @Deprecated
+    public IFile getContainingFile() {
+      return null;
+    }
+
+    @Override
+    public URI getContainingUri() {
+      return null;
+    }
+
+    @Override
+    public LocationType getLocationType() {
+      return null;
+    }
+
+    @Override
+    public String getSemiUniqueIdentifier() {
+      return name;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  public void test_BufferedFileTransaction_applyTo_order() throws Exception {
+    Location a = new TestLocation("a");
+    Location b = new TestLocation("b");
+    Location c = new TestLocation("c");
+    BufferedFileTransaction buffer = new BufferedFileTransaction();
+    buffer.addSourceLocation(b);
+    buffer.addReference(null, b, a);
+    buffer.addSourceLocation(a);
+    buffer.addReference(null, a, c);
+    buffer.addReference(null, b, c);
+    buffer.addSourceLocation(c);
+    RecordingFileTransaction fileTransaction = new RecordingFileTransaction();
+    buffer.applyTo(fileTransaction);
+    assertEquals(
+        Arrays.asList("source b", "reference b a", "source a", "reference a c", "reference b c",
+            "source c"), fileTransaction.changes);
+  }
+
+  public void test_BufferedFileTransaction_applyTo_twice() throws Exception {
+    BufferedFileTransaction buffer = new BufferedFileTransaction();
+    buffer.addSourceLocation(new TestLocation("a"));
+    buffer.addSourceLocation(new TestLocation("b"));
+    RecordingFileTransaction first = new RecordingFileTransaction();
+    buffer.applyTo(first);
+    RecordingFileTransaction second = new RecordingFileTransaction();
+    buffer.applyTo(second);
+    assertEquals(Arrays.asList("source a", "source b"), first.changes);
+    assertEquals(first.changes, second.changes);
+  }
+
+  public void test_BufferedFileTransaction_commit() throws Exception {
+    BufferedFileTransaction buffer = new BufferedFileTransaction();
+    try {
+      buffer.commit();
+      fail("Expected UnsupportedOperationException");
+    } catch (UnsupportedOperationException exception) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.storage.paged;
+
+import com.google.dart.indexer.pagedstorage.stats.PageCacheStats;
+
+import junit.framework.TestCase;
+
+public class AdaptiveCacheManagerTest extends TestCase {
+  /**
+   * A cache manager whose live heap is set by the test rather than read from the virtual machine.
+   */
+  private static class TestCacheManager extends AdaptiveCacheManager {
+    private long liveHeapKb = 0;
+
+    public TestCacheManager(long maxHeapKb) {
+      super(maxHeapKb * 1024);
+    }
+
+    @Override
+    long getLiveHeapKb() {
+      return liveHeapKb;
+    }
+  }
+
+  /**
+   * The maximum heap size used by most tests: one GB, of which the caches may use a quarter.
+   */
+  private static final long MAX_HEAP_KB = 1024 * 1024;
+
+  private static PageCacheStats pageStats(long hits, long misses, int size, int maxSize) {
+    PageCacheStats stats = new PageCacheStats();
+    stats.hits = hits;
+    stats.misses = misses;
+    stats.size = size;
+    stats.maxSize = maxSize;
+    return stats;
+  }
+
+  public void test_AdaptiveCacheManager_grow_locations() {
+    TestCacheManager manager = new TestCacheManager(MAX_HEAP_KB);
+    int pageCacheKb = manager.getPageCacheSize();
+    int locationCacheSize = manager.getLocationCacheSize();
+    String decision = manager.adjust(pageStats(0, 0, 0, 100), 100, 900, locationCacheSize);
+    assertNotNull(decision);
+    assertTrue(decision, decision.startsWith("grew locations"));
+    assertEquals(pageCacheKb, manager.getPageCacheSize());
+    assertEquals(locationCacheSize * 2, manager.getLocationCacheSize());
+  }
+
+  public void test_AdaptiveCacheManager_grow_pages() {
+    TestCacheManager manager = new TestCacheManager(MAX_HEAP_KB);
+    assertEquals(98304, manager.getPageCacheSize());
+    assertEquals(262144, manager.getLocationCacheSize());
+    String decision = manager.adjust(pageStats(500, 500, 100, 100), 0, 0, 0);
+    assertEquals("grew pages, 50% hits", decision);
+    assertEquals(196608, manager.getPageCacheSize());
+    assertEquals(262144, manager.getLocationCacheSize());
+    CacheSizingStats stats = new CacheSizingStats();
+    manager.stats(stats);
+    assertEquals(1, stats.growCount);
+    assertEquals(0, stats.shrinkCount);
+    assertEquals(decision, stats.lastDecision);
+  }
+
+  public void test_AdaptiveCacheManager_grow_withinBudget() {
+    TestCacheManager manager = new TestCacheManager(MAX_HEAP_KB);
+    assertNotNull(manager.adjust(pageStats(500, 500, 100, 100), 0, 0, 0));
+    // The location cache uses 32 MB of the 256 MB budget.
+    assertNotNull(manager.adjust(pageStats(1000, 1000, 100, 100), 0, 0, 0));
+    assertEquals(229376, manager.getPageCacheSize());
+    assertNull(manager.adjust(pageStats(1500, 1500, 100, 100), 0, 0, 0));
+    assertEquals(229376, manager.getPageCacheSize());
+  }
+
+  public void test_AdaptiveCacheManager_noChange_fewLookups() {
+    TestCacheManager manager = new TestCacheManager(MAX_HEAP_KB);
+    assertNull(manager.adjust(pageStats(100, 800, 100, 100), 0, 0, 0));
+    // Only the lookups since the previous adjustment are taken into account.
+    assertNull(manager.adjust(pageStats(200, 1500, 100, 100), 0, 0, 0));
+    assertEquals(98304, manager.getPageCacheSize());
+  }
+
+  public void test_AdaptiveCacheManager_noChange_highHitRate() {
+    TestCacheManager manager = new TestCacheManager(MAX_HEAP_KB);
+    assertNull(manager.adjust(pageStats(950, 50, 100, 100), 9500, 500,
+        manager.getLocationCacheSize()));
+    assertEquals(98304, manager.getPageCacheSize());
+    assertEquals(262144, manager.getLocationCacheSize());
+  }
+
+  public void test_AdaptiveCacheManager_noChange_notFull() {
+    TestCacheManager manager = new TestCacheManager(MAX_HEAP_KB);
+    assertNull(manager.adjust(pageStats(100, 900, 50, 100), 100, 900, 1000));
+    assertEquals(98304, manager.getPageCacheSize());
+    assertEquals(262144, manager.getLocationCacheSize());
+  }
+
+  public void test_AdaptiveCacheManager_shrink() {
+    TestCacheManager manager = new TestCacheManager(MAX_HEAP_KB);
+    manager.liveHeapKb = MAX_HEAP_KB * 95 / 100;
+    // Low memory takes precedence over a thrashing cache.
+    String decision = manager.adjust(pageStats(500, 500, 100, 100), 0, 0, 0);
+    assertNotNull(decision);
+    assertTrue(decision, decision.startsWith("shrunk"));
+    assertEquals(49152, manager.getPageCacheSize());
+    assertEquals(131072, manager.getLocationCacheSize());
+    CacheSizingStats stats = new CacheSizingStats();
+    manager.stats(stats);
+    assertEquals(0, stats.growCount);
+    assertEquals(1, stats.shrinkCount);
+
+    manager.liveHeapKb = MAX_HEAP_KB / 2;
+    assertNull(manager.adjust(pageStats(1000, 1000, 10, 100), 0, 0, 0));
+    assertEquals(49152, manager.getPageCacheSize());
+  }
+
+  public void test_AdaptiveCacheManager_shrink_minimum() {
+    TestCacheManager manager = new TestCacheManager(16 * 1024);
+    manager.liveHeapKb = 16 * 1024;
+    assertEquals(1536, manager.getPageCacheSize());
+    assertEquals(4096, manager.getLocationCacheSize());
+    assertNotNull(manager.adjust(pageStats(0, 0, 0, 100), 0, 0, 0));
+    assertEquals(1024, manager.getPageCacheSize());
+    assertEquals(2048, manager.getLocationCacheSize());
+    assertNotNull(manager.adjust(pageStats(0, 0, 0, 100), 0, 0, 0));
+    assertEquals(1024, manager.getPageCacheSize());
+    assertEquals(1024, manager.getLocationCacheSize());
+    assertNull(manager.adjust(pageStats(0, 0, 0, 100), 0, 0, 0));
+  }
+}
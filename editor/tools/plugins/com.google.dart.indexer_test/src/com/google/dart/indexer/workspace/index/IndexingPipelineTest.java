@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.indexer.workspace.index;
+
+import com.google.dart.indexer.index.IndexTransaction;
+import com.google.dart.indexer.index.configuration.ContributorWrapper;
+import com.google.dart.indexer.index.configuration.IndexConfiguration;
+import com.google.dart.indexer.index.configuration.IndexConfigurationInstance;
+import com.google.dart.indexer.index.configuration.Processor;
+import com.google.dart.indexer.index.layers.Layer;
+import com.google.dart.indexer.index.layers.LayerId;
+import com.google.dart.indexer.index.updating.FileInfoUpdater;
+import com.google.dart.indexer.source.IndexableSource;
+import com.google.dart.indexer.storage.BufferedFileTransaction;
+import com.google.dart.indexer.storage.inmemory.OptimizedIndexStorage;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+public class IndexingPipelineTest extends TestCase {
+  /**
+   * A configuration whose instances each have a single {@link TestProcessor}.
+   */
+  private static class TestConfiguration implements IndexConfiguration {
+    private final List<TestConfigurationInstance> instances =
+        new ArrayList<TestConfigurationInstance>();
+
+    @Override
+    public String describe() {
+      return "test";
+    }
+
+    @Override
+    public synchronized TestConfigurationInstance instantiate() {
+      TestConfigurationInstance instance = new TestConfigurationInstance(this);
+      instances.add(instance);
+      return instance;
+    }
+  }
+
+  private static class TestConfigurationInstance implements IndexConfigurationInstance {
+    private final TestConfiguration configuration;
+
+    private final TestProcessor processor = new TestProcessor();
+
+    private long additionalTimeSpentParsing = 0;
+
+    public TestConfigurationInstance(TestConfiguration configuration) {
+      this.configuration = configuration;
+    }
+
+    @Override
+    public synchronized void addTimeSpentParsing(long timeSpentParsing) {
+      additionalTimeSpentParsing += timeSpentParsing;
+    }
+
+    @Override
+    public String describe() {
+      return configuration.describe();
+    }
+
+    @Override
+    @Deprecated
+    public Processor[] findProcessors(IFile file) {
+      return new Processor[] {processor};
+    }
+
+    @Override
+    public Processor[] findProcessors(IndexableSource source) {
+      return new Processor[] {processor};
+    }
+
+    @Override
+    public synchronized long gatherTimeSpentParsing() {
+      long result = additionalTimeSpentParsing + processor.getAndResetTimeSpentParsing();
+      additionalTimeSpentParsing = 0;
+      return result;
+    }
+
+    @Override
+    public IndexConfiguration getConfiguration() {
+      return configuration;
+    }
+
+    @Override
+    public Processor[] getKnownProcessors() {
+      return new Processor[] {processor};
+    }
+
+    @Override
+    public Layer getLayer(int ordinal) {
+      return null;
+    }
+
+    @Override
+    public Layer getLayer(LayerId layerId) {
+      return null;
+    }
+
+    @Override
+    public Layer[] getLayers() {
+      return new Layer[0];
+    }
+
+    @Override
+    @Deprecated
+    public boolean isIndexedFile(IFile file) {
+      return true;
+    }
+
+    @Override
+    public boolean isIndexedFile(IndexableSource source) {
+      return true;
+    }
+  }
+
+  private static class TestGroup implements IndexingTargetGroup {
+  }
+
+  /**
+   * A processor that records the threads on which the targets in each group were processed, and
+   * that reports {@link #PARSE_TIME} milliseconds spent parsing for each target.
+   */
+  private static class TestProcessor implements Processor {
+    private static final Map<IndexingTargetGroup, Set<Thread>> groupThreads =
+        new HashMap<IndexingTargetGroup, Set<Thread>>();
+
+    private long timeSpentParsing = 0;
+
+    private boolean transactionEnded = false;
+
+    @Override
+    public long getAndResetTimeSpentParsing() {
+      long result = timeSpentParsing;
+      timeSpentParsing = 0;
+      return result;
+    }
+
+    @Override
+    public void initialize(ContributorWrapper[] calculators,
+        Map<String, Processor> idsToUsedProcessors) {
+    }
+
+    @Override
+    public void processTarget(IndexingTarget target, FileInfoUpdater updater) {
+      synchronized (groupThreads) {
+        Set<Thread> threads = groupThreads.get(target.getGroup());
+        if (threads == null) {
+          threads = new HashSet<Thread>();
+          groupThreads.put(target.getGroup(), threads);
+        }
+        threads.add(Thread.currentThread());
+      }
+      timeSpentParsing += PARSE_TIME;
+    }
+
+    @Override
+    public void transactionEnded() {
+      transactionEnded = true;
+    }
+  }
+
+  private static class TestTarget implements IndexingTarget {
+    private final IndexingTargetGroup group;
+
+    public TestTarget(IndexingTargetGroup group) {
+      this.group = group;
+    }
+
+    @Override
+    public IndexableSource asSource() {
+      return null;
+    }
+
+    @Override
+    public boolean exists() {
+      return true;
+    }
+
+    @Override
+    @Deprecated
+    public IFile getFile() {
+      return FILE;
+    }
+
+    @Override
+    public IndexingTargetGroup getGroup() {
+      return group;
+    }
+
+    @Override
+    public long getModificationStamp() {
+      return 0L;
+    }
+
+    @Override
+    @Deprecated
+    public IProject getProject() {
+      return null;
+    }
+
+    @Override
+    public URI getUri() {
+      return null;
+    }
+  }
+
+  /**
+   * The number of milliseconds the test processor reports having spent parsing each target.
+   */
+  private static final long PARSE_TIME = 5L;
+
+  /**
+   * The file returned by every target. The test processor ignores the file, so none of its methods
+   * need to be implemented.
+   */
+  private static final IFile FILE = (IFile) Proxy.newProxyInstance(
+      IFile.class.getClassLoader(),
+      new Class<?>[] {IFile.class},
+      new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] arguments) {
+          throw new UnsupportedOperationException(method.getName());
+        }
+      });
+
+  private static final int THREAD_COUNT = 3;
+
+  private TestConfiguration configuration;
+
+  private TestConfigurationInstance instance;
+
+  private IndexingPipeline pipeline;
+
+  public void test_IndexingPipeline_shutdown() throws Exception {
+    List<Future<BufferedFileTransaction>> results = submit(4, 5);
+    for (Future<BufferedFileTransaction> result : results) {
+      result.get();
+    }
+    pipeline.shutdown();
+    pipeline = null;
+    assertEquals(20 * PARSE_TIME, instance.gatherTimeSpentParsing());
+    for (TestConfigurationInstance workerInstance : configuration.instances) {
+      if (workerInstance != instance) {
+        assertTrue(workerInstance.processor.transactionEnded);
+      }
+    }
+  }
+
+  public void test_IndexingPipeline_submit() throws Exception {
+    List<Future<BufferedFileTransaction>> results = submit(10, 8);
+    for (Future<BufferedFileTransaction> result : results) {
+      assertNotNull(result.get());
+    }
+    assertEquals(THREAD_COUNT + 1, configuration.instances.size());
+    assertFalse(instance.processor.transactionEnded);
+    Set<Thread> allThreads = new HashSet<Thread>();
+    synchronized (TestProcessor.groupThreads) {
+      assertEquals(10, TestProcessor.groupThreads.size());
+      for (Set<Thread> threads : TestProcessor.groupThreads.values()) {
+        assertEquals("Targets in the same group processed by different workers", 1, threads.size());
+        allThreads.addAll(threads);
+      }
+    }
+    assertEquals(THREAD_COUNT, allThreads.size());
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    synchronized (TestProcessor.groupThreads) {
+      TestProcessor.groupThreads.clear();
+    }
+    configuration = new TestConfiguration();
+    instance = configuration.instantiate();
+    IndexTransaction transaction = new IndexTransaction(
+        new OptimizedIndexStorage(instance).createTransaction(), instance);
+    pipeline = new IndexingPipeline(transaction, instance, THREAD_COUNT);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (pipeline != null) {
+      pipeline.shutdown();
+    }
+    super.tearDown();
+  }
+
+  /**
+   * Submit the given number of targets in each of the given number of groups, interleaving the
+   * targets of the different groups.
+   */
+  private List<Future<BufferedFileTransaction>> submit(int groupCount, int targetsPerGroup) {
+    IndexingTargetGroup[] groups = new IndexingTargetGroup[groupCount];
+    for (int i = 0; i < groupCount; i++) {
+      groups[i] = new TestGroup();
+    }
+    List<Future<BufferedFileTransaction>> results =
+        new ArrayList<Future<BufferedFileTransaction>>();
+    for (int i = 0; i < targetsPerGroup; i++) {
+      for (IndexingTargetGroup group : groups) {
+        results.add(pipeline.submit(new TestTarget(group)));
+      }
+    }
+    return results;
+  }
+}
@@ -30,6 +30,12 @@ import java.util.concurrent.TimeUnit;
  */
 public class AnalysisServer {
 
+  /**
+   * The number of background threads on which analysis tasks are performed
+   */
+  private static final int WORKER_COUNT = Math.max(1,
+      Math.min(4, Runtime.getRuntime().availableProcessors()));
+
   private static PerformanceListener performanceListener;
 
   public static PerformanceListener getPerformanceListener() {
@@ -57,107 +63,70 @@ public class AnalysisServer {
   /**
    * The outstanding tasks to be performed. Lock against this object before accessing it.
    */
-  private final ArrayList<Task> queue = new ArrayList<Task>();
+  private final TaskQueue queue = new TaskQueue();
 
   /**
-   * The index at which the task being performed can insert new tasks. Tracking this allows new
-   * tasks to take priority and be first in the queue. Lock against {@link #queue} before accessing
-   * this field.
+   * The background threads on which analysis tasks are performed
    */
-  private int queueIndex = 0;
+  private final Worker[] workers;
 
   /**
-   * The background thread on which analysis tasks are performed
+   * A context representing what is "saved on disk". Contents of this object may be accessed on any
+   * of the background threads, see {@link Task#getLibraryFiles()}.
    */
-  private final Thread backgroundThread;
+  private final Context savedContext = new Context();
 
   /**
-   * A context representing what is "saved on disk". Contents of this object should only be accessed
-   * on the background thread.
+   * Information about libraries in {@link #savedContext} that were resolved in a prior session
    */
-  private final Context savedContext = new Context();
+  private final ContextSnapshot snapshot;
 
   /**
-   * <code>true</code> if the background thread should continue executing analysis tasks
+   * Synchronize against this field when notifying listeners, so that listeners are notified one at
+   * a time
    */
-  private boolean analyze;
+  private final Object notificationLock = new Object();
 
   /**
-   * Flag indicating whether the background thread is waiting for more tasks to be queued. Lock
-   * against {@link #queue} before accessing this field.
+   * The number of idle state changes of the {@link #queue} that listeners have been notified of.
+   * Lock against {@link #notificationLock} before accessing this field.
    */
-  private boolean isBackgroundThreadIdle = false;
+  private int idleChangesNotified = 0;
 
   /**
-   * Create a new instance that processes analysis tasks on a background thread
+   * <code>true</code> if the background threads should continue executing analysis tasks
+   */
+  private volatile boolean analyze;
+
+  /**
+   * Create a new instance that processes analysis tasks on background threads
    * 
    * @param libraryManager the target (VM, Dartium, JS) against which user libraries are resolved
    */
   public AnalysisServer(EditorLibraryManager libraryManager) {
+    this(libraryManager, null);
+  }
+
+  /**
+   * Create a new instance that processes analysis tasks on background threads
+   * 
+   * @param libraryManager the target (VM, Dartium, JS) against which user libraries are resolved
+   * @param cacheFile the file in which information about resolved libraries is saved when the
+   *          receiver is stopped so that unmodified libraries need not be analyzed in the next
+   *          session, or <code>null</code> if the information should not be saved
+   */
+  public AnalysisServer(EditorLibraryManager libraryManager, File cacheFile) {
     if (libraryManager == null) {
       throw new IllegalArgumentException();
     }
     this.libraryManager = libraryManager;
+    this.snapshot = new ContextSnapshot(cacheFile);
     this.analyze = true;
-    this.backgroundThread = new Thread(new Runnable() {
-
-      @Override
-      public void run() {
-        try {
-
-          while (analyze) {
-
-            // Get a task from the queue or null if the queue is empty
-            // and determine if the thread has changed idle state
-            Task task = null;
-            boolean notify = false;
-            synchronized (queue) {
-              if (queue.size() > 0) {
-                queueIndex = 0;
-                task = queue.remove(0);
-                if (isBackgroundThreadIdle) {
-                  isBackgroundThreadIdle = false;
-                  notify = true;
-                }
-              } else {
-                if (!isBackgroundThreadIdle) {
-                  isBackgroundThreadIdle = true;
-                  notify = true;
-                }
-              }
-            }
-
-            // Notify others if the receiver's idle state has changed
-            if (notify) {
-              notifyIdle(task == null);
-            }
-
-            // Perform the task or wait for a new task to be added to the queue
-            if (task != null) {
-              try {
-                task.perform();
-              } catch (Throwable e) {
-                DartCore.logError("Analysis Task Exception", e);
-              }
-            } else {
-              synchronized (queue) {
-                if (queue.isEmpty()) {
-                  try {
-                    queue.wait();
-                  } catch (InterruptedException e) {
-                    //$FALL-THROUGH$
-                  }
-                }
-              }
-            }
-
-          }
-        } catch (Throwable e) {
-          DartCore.logError("Analysis Server Exception", e);
-        }
-      }
-    }, getClass().getSimpleName());
-    this.backgroundThread.start();
+    this.workers = new Worker[WORKER_COUNT];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new Worker(getClass().getSimpleName() + "-" + (i + 1));
+      workers[i].start();
+    }
   }
 
   public void addAnalysisListener(AnalysisListener listener) {
@@ -199,7 +168,7 @@ public class AnalysisServer {
    * @param file the file or directory (not <code>null</code>)
    */
   public void changed(File file) {
-    queueNewTask(new FileChangedTask(this, savedContext, file));
+    queueNewTask(new FileChangedTask(this, savedContext, snapshot, file));
   }
 
   /**
@@ -236,11 +205,11 @@ public class AnalysisServer {
 
   /**
    * Answer <code>true</code> if the recevier does not have any queued tasks and the receiver's
-   * background thread is waiting for new tasks to be queued.
+   * background threads are waiting for new tasks to be queued.
    */
   public boolean isIdle() {
     synchronized (queue) {
-      return isBackgroundThreadIdle && queue.isEmpty();
+      return queue.isIdle();
     }
   }
 
@@ -248,7 +217,7 @@ public class AnalysisServer {
    * Called when all cached information should be discarded and all libraries reanalyzed
    */
   public void reanalyzeLibraries() {
-    queueNewTask(new EverythingChangedTask(this, savedContext));
+    queueNewTask(new EverythingChangedTask(this, savedContext, snapshot));
   }
 
   public void removeAnalysisListener(AnalysisListener listener) {
@@ -288,7 +257,7 @@ public class AnalysisServer {
       @Override
       void perform() {
         analyze = false;
-        // TODO (danrubel) write elements to disk
+        snapshot.write(savedContext);
         stopped.countDown();
       }
     });
@@ -335,47 +304,38 @@ public class AnalysisServer {
   void queueAnalyzeContext() {
     if (analyze) {
       synchronized (queue) {
-        int index = queue.size() - 1;
-        if (index >= 0) {
-          Task lastTask = queue.get(index);
-          if (lastTask instanceof AnalyzeContextTask) {
-            return;
-          }
-        } else {
-          index = 0;
+        if (queue.getLastBackgroundTask() instanceof AnalyzeContextTask) {
+          return;
         }
-        queue.add(index, new AnalyzeContextTask(this, savedContext));
+        queue.addBackgroundTask(new AnalyzeContextTask(this, savedContext, snapshot));
       }
     }
   }
 
   /**
-   * Add a priority task to the front of the queue. Should *not* be called by the current task being
-   * performed... use {@link #queueSubTask(Task)} instead.
+   * Add a priority task to the front of the interactive lane. Should *not* be called by the current
+   * task being performed... use {@link #queueSubTask(Task)} instead.
    */
   void queueNewTask(Task task) {
     if (analyze) {
       synchronized (queue) {
-        queue.add(0, task);
-        queueIndex++;
-        queue.notifyAll();
+        queue.addNewTask(task);
       }
     }
   }
 
   /**
-   * Used by the current task being performed to add subtasks in a way that will not reduce the
-   * priority of new tasks that have been queued while the current task is executing
+   * Used by the current task being performed to add subtasks. Once the current task has been
+   * performed, its subtasks are added in order to the front of the lane from which the current task
+   * was taken, so the subtasks of a user request keep the priority of the request.
    */
   void queueSubTask(Task subtask) {
     if (analyze) {
-      if (Thread.currentThread() != backgroundThread) {
+      Thread thread = Thread.currentThread();
+      if (!(thread instanceof Worker) || ((Worker) thread).getServer() != this) {
         throw new IllegalStateException();
       }
-      synchronized (queue) {
-        queue.add(queueIndex, subtask);
-        queueIndex++;
-      }
+      ((Worker) thread).subtasks.add(subtask);
     }
   }
 
@@ -413,13 +373,133 @@ public class AnalysisServer {
     }
   }
 
-  private void notifyIdle(boolean idle) {
-    for (AnalysisListener listener : getAnalysisListeners()) {
+  /**
+   * Notify listeners that files have been parsed
+   */
+  void notifyParsed(AnalysisEvent event) {
+    synchronized (notificationLock) {
+      for (AnalysisListener listener : getAnalysisListeners()) {
+        try {
+          listener.parsed(event);
+        } catch (Throwable e) {
+          DartCore.logError("Exception during parsed notification", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Notify listeners that a library has been resolved
+   */
+  void notifyResolved(AnalysisEvent event) {
+    synchronized (notificationLock) {
+      for (AnalysisListener listener : getAnalysisListeners()) {
+        try {
+          listener.resolved(event);
+        } catch (Throwable e) {
+          DartCore.logError("Exception during resolved notification", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Notify listeners that the receiver has changed idle state. Workers determine the changes
+   * under the {@link #queue} lock but notify listeners outside of it, so wait until listeners have
+   * been notified of all earlier changes.
+   * 
+   * @param idleChangeCount the {@link TaskQueue#getIdleChangeCount()} after the change
+   * @param idle <code>true</code> if the receiver has become idle
+   */
+  private void notifyIdle(int idleChangeCount, boolean idle) {
+    synchronized (notificationLock) {
+      boolean interrupted = false;
+      while (idleChangesNotified < idleChangeCount - 1) {
+        try {
+          notificationLock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      for (AnalysisListener listener : getAnalysisListeners()) {
+        try {
+          listener.idle(idle);
+        } catch (Throwable e) {
+          DartCore.logError("Exception during idle notification", e);
+        }
+      }
+      idleChangesNotified = idleChangeCount;
+      notificationLock.notifyAll();
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * A background thread on which analysis tasks are performed
+   */
+  private class Worker extends Thread {
+
+    /**
+     * The subtasks queued by the task being performed
+     */
+    final ArrayList<Task> subtasks = new ArrayList<Task>();
+
+    Worker(String name) {
+      super(name);
+    }
+
+    @Override
+    public void run() {
       try {
-        listener.idle(idle);
+        while (true) {
+
+          // Wait for a task that can be performed now
+          // and determine if the receiver has changed idle state
+          Task task = null;
+          boolean notify;
+          int idleChangeCount;
+          synchronized (queue) {
+            while (analyze && (task = queue.removeNext()) == null) {
+              queue.wait();
+            }
+            if (task == null) {
+              return;
+            }
+            notify = queue.setBusy();
+            idleChangeCount = queue.getIdleChangeCount();
+          }
+
+          // Notify others if the receiver's idle state has changed
+          if (notify) {
+            notifyIdle(idleChangeCount, false);
+          }
+
+          // Perform the task
+          try {
+            task.perform();
+          } catch (Throwable e) {
+            DartCore.logError("Analysis Task Exception", e);
+          }
+
+          // Queue subtasks and determine if the receiver has become idle
+          synchronized (queue) {
+            notify = queue.done(task, subtasks);
+            idleChangeCount = queue.getIdleChangeCount();
+          }
+          subtasks.clear();
+          if (notify) {
+            notifyIdle(idleChangeCount, true);
+          }
+        }
       } catch (Throwable e) {
-        DartCore.logError("Exception during idle notification", e);
+        DartCore.logError("Analysis Server Exception", e);
       }
     }
+
+    AnalysisServer getServer() {
+      return AnalysisServer.this;
+    }
   }
 }
@@ -57,9 +57,6 @@ class AnalysisUtility {
     }
   };
 
-  private static final CachingArtifactProvider provider = new CachingArtifactProvider() {
-  };
-
   /**
    * Parse a single file and report the errors/warnings
    */
@@ -101,7 +98,11 @@ class AnalysisUtility {
 
     File libraryFile = library.getFile();
     LibrarySource librarySource = library.getLibrarySource();
-    provider.clearCachedArtifacts();
+
+    // Libraries may be resolved at the same time on different threads, so each resolution
+    // has its own artifacts
+    CachingArtifactProvider provider = new CachingArtifactProvider() {
+    };
 
     Map<URI, LibraryUnit> newlyResolved = null;
     try {
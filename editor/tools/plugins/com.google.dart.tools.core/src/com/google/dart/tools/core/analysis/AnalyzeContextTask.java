@@ -21,20 +21,22 @@ import java.io.File;
 class AnalyzeContextTask extends Task {
   private final AnalysisServer server;
   private final Context context;
+  private final ContextSnapshot snapshot;
 
-  AnalyzeContextTask(AnalysisServer server, Context context) {
+  AnalyzeContextTask(AnalysisServer server, Context context, ContextSnapshot snapshot) {
     this.server = server;
     this.context = context;
+    this.snapshot = snapshot;
   }
 
   @Override
   void perform() {
 
-    // Parse library files
+    // Parse library files that have been modified since they were analyzed in a prior session
 
     boolean found = false;
     for (File libFile : server.getTrackedLibraryFiles()) {
-      if (context.getCachedLibrary(libFile) == null) {
+      if (context.getCachedLibrary(libFile) == null && !snapshot.isUpToDate(libFile)) {
         server.queueSubTask(new ParseLibraryFileTask(server, context, libFile));
         found = true;
       }
@@ -47,7 +49,9 @@ class AnalyzeContextTask extends Task {
     // Analyze all libraries
 
     for (File libFile : server.getTrackedLibraryFiles()) {
-      server.queueSubTask(new AnalyzeLibraryTask(server, context, libFile));
+      if (!snapshot.isUpToDate(libFile)) {
+        server.queueSubTask(new AnalyzeLibraryTask(server, context, libFile));
+      }
     }
   }
 }
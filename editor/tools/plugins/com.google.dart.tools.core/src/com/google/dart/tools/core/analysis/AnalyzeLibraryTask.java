@@ -16,6 +16,8 @@ package com.google.dart.tools.core.analysis;
 import com.google.dart.tools.core.DartCore;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * Analyze a library
@@ -41,6 +43,11 @@ class AnalyzeLibraryTask extends Task {
     this.callback = callback;
   }
 
+  @Override
+  Collection<File> getLibraryFiles() {
+    return Collections.singletonList(libraryFile);
+  }
+
   @Override
   void perform() {
 
@@ -62,10 +69,11 @@ class AnalyzeLibraryTask extends Task {
       return;
     }
 
-    // Parse imported libraries
+    // Parse libraries imported directly or indirectly so that the library can be resolved
+    // without blocking tasks for other libraries (see ResolveLibraryTask#getLibraryFiles())
 
     boolean found = false;
-    for (File file : library.getImportedFiles()) {
+    for (File file : context.getUnresolvedLibraryFiles(libraryFile)) {
       if (context.getCachedLibrary(file) == null && file.exists()) {
         server.queueSubTask(new ParseLibraryTask(server, context, file));
         found = true;
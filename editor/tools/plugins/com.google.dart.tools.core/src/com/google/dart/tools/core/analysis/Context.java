@@ -19,34 +19,99 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * The context (saved on disk, editor buffer, refactoring) in which analysis occurs.
  */
 class Context {
 
+  /**
+   * A node in a tree of file paths, with one node per path segment
+   */
+  private static class PathNode {
+    final HashMap<String, PathNode> children = new HashMap<String, PathNode>();
+
+    /**
+     * The libraries sourcing the file represented by this node
+     */
+    final HashSet<Library> libraries = new HashSet<Library>();
+
+    /**
+     * Add the libraries sourcing files in the directory tree represented by this node
+     */
+    void collectLibraries(Collection<Library> result) {
+      result.addAll(libraries);
+      for (PathNode child : children.values()) {
+        child.collectLibraries(result);
+      }
+    }
+
+    boolean isEmpty() {
+      return libraries.isEmpty() && children.isEmpty();
+    }
+  }
+
   private static final Library[] NO_LIBRARIES = new Library[] {};
 
+  private static final Pattern SEPARATOR = Pattern.compile(Pattern.quote(File.separator));
+
   /**
-   * The libraries in this context, including imported libraries. This should only be accessed on
-   * the background thread.
+   * The libraries in this context, including imported libraries. This may be accessed on any of the
+   * {@link AnalysisServer} background threads, but a library should only be cached or discarded by
+   * a task for that library (see {@link Task#getLibraryFiles()}).
    */
-  private final HashMap<File, Library> libraryCache;
+  private final ConcurrentHashMap<File, Library> libraryCache;
+
+  /**
+   * The root of a tree of the files sourced by cached libraries, used to find the libraries
+   * containing a file or files in a directory tree without scanning all cached libraries.
+   * Synchronize against the receiver before accessing this field.
+   */
+  private final PathNode sourceTree = new PathNode();
+
+  /**
+   * A mapping of library file to cached libraries importing that library. Synchronize against the
+   * receiver before accessing this field.
+   */
+  private final HashMap<File, HashSet<Library>> importingLibraries =
+      new HashMap<File, HashSet<Library>>();
 
   Context() {
-    this.libraryCache = new HashMap<File, Library>();
+    this.libraryCache = new ConcurrentHashMap<File, Library>();
   }
 
-  void cacheLibrary(Library library) {
-    libraryCache.put(library.getFile(), library);
+  synchronized void cacheLibrary(Library library) {
+    Library oldLibrary = libraryCache.put(library.getFile(), library);
+    if (oldLibrary != null) {
+      removeFromIndex(oldLibrary);
+    }
+    for (File file : library.getSourceFiles()) {
+      getPathNode(file, true).libraries.add(library);
+    }
+    for (File file : library.getImportedFiles()) {
+      HashSet<Library> importing = importingLibraries.get(file);
+      if (importing == null) {
+        importing = new HashSet<Library>();
+        importingLibraries.put(file, importing);
+      }
+      importing.add(library);
+    }
   }
 
-  void discardLibraries() {
+  synchronized void discardLibraries() {
     libraryCache.clear();
+    sourceTree.children.clear();
+    importingLibraries.clear();
   }
 
-  void discardLibrary(Library library) {
-    libraryCache.remove(library.getFile());
+  synchronized void discardLibrary(Library library) {
+    Library oldLibrary = libraryCache.remove(library.getFile());
+    if (oldLibrary != null) {
+      removeFromIndex(oldLibrary);
+    }
   }
 
   Collection<Library> getCachedLibraries() {
@@ -74,27 +139,66 @@ class Context {
     if (library != null) {
       return new Library[] {library};
     }
-    Library[] result = NO_LIBRARIES;
+    boolean isFile = file.isFile()
+        || (!file.exists() && DartCore.isDartLikeFileName(file.getName()));
 
-    // If this is a file, then return the libraries that source the file
+    synchronized (this) {
+      PathNode node = getPathNode(file, false);
+      if (node == null) {
+        return NO_LIBRARIES;
+      }
 
-    if (file.isFile() || (!file.exists() && DartCore.isDartLikeFileName(file.getName()))) {
-      for (Library cachedLibrary : libraryCache.values()) {
-        if (cachedLibrary.getSourceFiles().contains(file)) {
-          result = append(result, cachedLibrary);
-        }
+      // If this is a file, then return the libraries that source the file
+
+      if (isFile) {
+        return node.libraries.toArray(new Library[node.libraries.size()]);
       }
-      return result;
+
+      // Otherwise return the libraries containing files in the specified directory tree
+
+      HashSet<Library> result = new HashSet<Library>();
+      for (PathNode child : node.children.values()) {
+        child.collectLibraries(result);
+      }
+      return result.toArray(new Library[result.size()]);
     }
+  }
 
-    // Otherwise return the libraries containing files in the specified directory tree
+  /**
+   * Answer the libraries importing the specified file
+   */
+  synchronized ArrayList<Library> getLibrariesImporting(File file) {
+    HashSet<Library> importing = importingLibraries.get(file);
+    if (importing == null) {
+      return new ArrayList<Library>();
+    }
+    return new ArrayList<Library>(importing);
+  }
 
-    String prefix = file.getAbsolutePath() + File.separator;
-    for (Library cachedLibrary : libraryCache.values()) {
-      for (File sourceFile : cachedLibrary.getSourceFiles()) {
-        if (sourceFile.getPath().startsWith(prefix)) {
-          result = append(result, cachedLibrary);
-          break;
+  /**
+   * Answer the specified library file and the files of all libraries that it imports directly or
+   * indirectly, stopping at libraries that have already been resolved. Files of libraries that have
+   * not been cached are included, but the libraries that they import are not known.
+   * 
+   * @return a collection of files (not <code>null</code>, contains no <code>null</code>s)
+   */
+  Collection<File> getUnresolvedLibraryFiles(File libraryFile) {
+    HashSet<File> result = new HashSet<File>();
+    ArrayList<File> todo = new ArrayList<File>();
+    result.add(libraryFile);
+    todo.add(libraryFile);
+    while (!todo.isEmpty()) {
+      Library library = libraryCache.get(todo.remove(todo.size() - 1));
+      if (library == null) {
+        continue;
+      }
+      for (File importedFile : library.getImportedFiles()) {
+        Library importedLibrary = libraryCache.get(importedFile);
+        if (importedLibrary != null && importedLibrary.getLibraryUnit() != null) {
+          continue;
+        }
+        if (result.add(importedFile)) {
+          todo.add(importedFile);
         }
       }
     }
@@ -102,26 +206,67 @@ class Context {
   }
 
   /**
-   * Answer the libraries importing the specified file
+   * Answer the node in {@link #sourceTree} for the specified file or directory.
+   * 
+   * @param create <code>true</code> if missing nodes should be created
+   * @return the node or <code>null</code> if it does not exist and create is <code>false</code>
    */
-  ArrayList<Library> getLibrariesImporting(File file) {
-    ArrayList<Library> result = new ArrayList<Library>();
-    for (Library cachedLibrary : libraryCache.values()) {
-      if (cachedLibrary.getImportedFiles().contains(file)) {
-        result.add(cachedLibrary);
+  private PathNode getPathNode(File file, boolean create) {
+    PathNode node = sourceTree;
+    for (String segment : SEPARATOR.split(file.getAbsolutePath())) {
+      if (segment.length() == 0) {
+        continue;
       }
+      PathNode child = node.children.get(segment);
+      if (child == null) {
+        if (!create) {
+          return null;
+        }
+        child = new PathNode();
+        node.children.put(segment, child);
+      }
+      node = child;
     }
-    return result;
+    return node;
   }
 
-  private Library[] append(Library[] oldArray, Library library) {
-    if (oldArray.length == 0) {
-      return new Library[] {library};
+  /**
+   * Remove the specified library from {@link #sourceTree} and {@link #importingLibraries}
+   */
+  private void removeFromIndex(Library library) {
+    for (File file : library.getSourceFiles()) {
+      removeFromSourceTree(sourceTree, SEPARATOR.split(file.getAbsolutePath()), 0, library);
+    }
+    for (File file : library.getImportedFiles()) {
+      HashSet<Library> importing = importingLibraries.get(file);
+      if (importing != null) {
+        importing.remove(library);
+        if (importing.isEmpty()) {
+          importingLibraries.remove(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Remove the specified library from the node for the specified path segments, and remove any
+   * nodes that become empty as a result.
+   */
+  private void removeFromSourceTree(PathNode node, String[] segments, int index, Library library) {
+    if (index == segments.length) {
+      node.libraries.remove(library);
+      return;
+    }
+    if (segments[index].length() == 0) {
+      removeFromSourceTree(node, segments, index + 1, library);
+      return;
+    }
+    PathNode child = node.children.get(segments[index]);
+    if (child != null) {
+      removeFromSourceTree(child, segments, index + 1, library);
+      if (child.isEmpty()) {
+        node.children.remove(segments[index]);
+      }
     }
-    int oldLen = oldArray.length;
-    Library[] newArray = new Library[oldLen + 1];
-    System.arraycopy(oldArray, 0, newArray, 0, oldLen);
-    newArray[oldLen] = library;
-    return newArray;
   }
 }
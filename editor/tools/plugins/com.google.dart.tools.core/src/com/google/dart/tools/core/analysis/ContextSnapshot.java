@@ -0,0 +1,331 @@
+/*
+ * Copyright 2012 Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.tools.core.analysis;
+
+import com.google.dart.tools.core.DartCore;
+import com.google.dart.tools.core.DartCoreDebug;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Information about the libraries that were resolved in a prior session, saved on disk when the
+ * {@link AnalysisServer} stops and read the first time the information is needed. Libraries whose
+ * files have not been modified since then, and whose imported libraries have not been modified
+ * either, need not be analyzed again because the problem markers and index entries created when
+ * they were last analyzed are still valid. Only tasks that are performed while no other task is
+ * being performed (see {@link Task#getLibraryFiles()}) should access an instance of this class.
+ */
+class ContextSnapshot {
+
+  /**
+   * Information about a library resolved in a prior session
+   */
+  private static class SavedLibrary {
+
+    /**
+     * The modification stamps of the library file and the files it sources at the time they were
+     * parsed
+     */
+    final HashMap<File, Long> stamps;
+
+    /**
+     * The files of the libraries imported by the library
+     */
+    final ArrayList<File> importedFiles;
+
+    /**
+     * <code>true</code> if the library and the libraries it imports directly or indirectly have
+     * been found to be unmodified during this session
+     */
+    boolean upToDate;
+
+    SavedLibrary(HashMap<File, Long> stamps, ArrayList<File> importedFiles) {
+      this.stamps = stamps;
+      this.importedFiles = importedFiles;
+    }
+  }
+
+  /**
+   * The version of the file format, which should be incremented whenever the format changes
+   */
+  private static final int FILE_VERSION_NUMBER = 1;
+
+  /**
+   * The file in which the information is saved or <code>null</code> if it is not saved
+   */
+  private final File cacheFile;
+
+  /**
+   * A mapping of library file to information about that library, or <code>null</code> if the
+   * information has not yet been read from disk
+   */
+  private HashMap<File, SavedLibrary> libraries;
+
+  /**
+   * @param cacheFile the file in which the information is saved or <code>null</code> if the
+   *          information should not be saved
+   */
+  ContextSnapshot(File cacheFile) {
+    this.cacheFile = cacheFile;
+  }
+
+  /**
+   * Record that the specified library has been resolved.
+   * 
+   * @param libraryFile the library file
+   * @param stamps the modification stamps of the library file and the files it sources at the time
+   *          they were parsed
+   * @param importedFiles the files of the libraries imported by the library
+   */
+  void cacheLibrary(File libraryFile, Map<File, Long> stamps, Collection<File> importedFiles) {
+    getLibraries().put(libraryFile,
+        new SavedLibrary(new HashMap<File, Long>(stamps), new ArrayList<File>(importedFiles)));
+  }
+
+  /**
+   * Discard information about the libraries containing the specified file or files in the specified
+   * directory tree. Libraries importing those libraries are no longer considered up to date as a
+   * result.
+   * 
+   * @return <code>true</code> if any information was discarded
+   */
+  boolean discard(File file) {
+    boolean discarded = false;
+    String prefix = file.getAbsolutePath() + File.separator;
+    Iterator<SavedLibrary> iter = getLibraries().values().iterator();
+    while (iter.hasNext()) {
+      SavedLibrary library = iter.next();
+      library.upToDate = false;
+      for (File savedFile : library.stamps.keySet()) {
+        if (savedFile.equals(file) || savedFile.getPath().startsWith(prefix)) {
+          iter.remove();
+          discarded = true;
+          break;
+        }
+      }
+    }
+    return discarded;
+  }
+
+  /**
+   * Discard all information about libraries resolved in a prior session
+   */
+  void discardAll() {
+    getLibraries().clear();
+  }
+
+  /**
+   * Answer <code>true</code> if the specified library was resolved in a prior session and neither
+   * the library nor the libraries it imports directly or indirectly have been modified since.
+   */
+  boolean isUpToDate(File libraryFile) {
+    SavedLibrary library = getLibraries().get(libraryFile);
+    if (library == null) {
+      return false;
+    }
+    if (library.upToDate) {
+      return true;
+    }
+    HashMap<File, SavedLibrary> checked = new HashMap<File, SavedLibrary>();
+    if (!isUpToDate(libraryFile, library, checked)) {
+      return false;
+    }
+    for (SavedLibrary checkedLibrary : checked.values()) {
+      checkedLibrary.upToDate = true;
+    }
+    return true;
+  }
+
+  /**
+   * Save information about the libraries resolved in the specified context, along with any
+   * information from the prior session that has not been discarded, for use in the next session.
+   */
+  void write(Context context) {
+    if (cacheFile == null) {
+      return;
+    }
+    for (Library library : context.getCachedLibraries()) {
+      if (library.getLibraryUnit() == null) {
+        continue;
+      }
+      Map<File, Long> stamps = library.getStamps();
+      if (stamps == null) {
+        getLibraries().remove(library.getFile());
+        continue;
+      }
+      cacheLibrary(library.getFile(), stamps, library.getImportedFiles());
+    }
+    long start = System.currentTimeMillis();
+    try {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+          cacheFile)));
+      try {
+        write(output);
+      } finally {
+        output.close();
+      }
+    } catch (IOException e) {
+      DartCore.logError("Failed to save analysis information to " + cacheFile, e);
+      cacheFile.delete();
+      return;
+    }
+    if (DartCoreDebug.WARMUP) {
+      DartCore.logInformation("Saved information about " + libraries.size() + " libraries in "
+          + (System.currentTimeMillis() - start) + " ms to " + cacheFile);
+    }
+  }
+
+  /**
+   * Answer the information about libraries resolved in a prior session, reading it from disk if it
+   * has not already been read
+   */
+  private HashMap<File, SavedLibrary> getLibraries() {
+    if (libraries == null) {
+      libraries = new HashMap<File, SavedLibrary>();
+      if (cacheFile != null && cacheFile.exists()) {
+        long start = System.currentTimeMillis();
+        try {
+          DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(
+              cacheFile)));
+          try {
+            read(input);
+          } finally {
+            input.close();
+          }
+        } catch (IOException e) {
+          DartCore.logError("Failed to read analysis information from " + cacheFile, e);
+          libraries.clear();
+          return libraries;
+        }
+        if (DartCoreDebug.WARMUP) {
+          DartCore.logInformation("Read information about " + libraries.size() + " libraries in "
+              + (System.currentTimeMillis() - start) + " ms from " + cacheFile);
+        }
+      }
+    }
+    return libraries;
+  }
+
+  /**
+   * Answer <code>true</code> if the specified library and the libraries it imports directly or
+   * indirectly have not been modified, removing information about modified libraries.
+   * 
+   * @param checked the libraries that have been or are being checked
+   */
+  private boolean isUpToDate(File libraryFile, SavedLibrary library,
+      HashMap<File, SavedLibrary> checked) {
+    if (library.upToDate || checked.put(libraryFile, library) != null) {
+      return true;
+    }
+    for (Entry<File, Long> entry : library.stamps.entrySet()) {
+      if (entry.getKey().lastModified() != entry.getValue().longValue()) {
+        libraries.remove(libraryFile);
+        return false;
+      }
+    }
+    for (File importedFile : library.importedFiles) {
+      SavedLibrary importedLibrary = libraries.get(importedFile);
+      if (importedLibrary == null || !isUpToDate(importedFile, importedLibrary, checked)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Read the information written by {@link #write(DataOutputStream)}
+   */
+  private void read(DataInputStream input) throws IOException {
+    if (input.readInt() != FILE_VERSION_NUMBER) {
+      return;
+    }
+    File[] files = new File[input.readInt()];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = new File(input.readUTF());
+    }
+    int libraryCount = input.readInt();
+    for (int i = 0; i < libraryCount; i++) {
+      File libraryFile = files[input.readInt()];
+      int stampCount = input.readInt();
+      HashMap<File, Long> stamps = new HashMap<File, Long>(stampCount * 2);
+      for (int j = 0; j < stampCount; j++) {
+        stamps.put(files[input.readInt()], input.readLong());
+      }
+      int importCount = input.readInt();
+      ArrayList<File> importedFiles = new ArrayList<File>(importCount);
+      for (int j = 0; j < importCount; j++) {
+        importedFiles.add(files[input.readInt()]);
+      }
+      libraries.put(libraryFile, new SavedLibrary(stamps, importedFiles));
+    }
+  }
+
+  /**
+   * Write the information about libraries. Each file path is written once in a table at the
+   * beginning and referenced by index thereafter.
+   */
+  private void write(DataOutputStream output) throws IOException {
+    HashMap<File, Integer> fileIndices = new HashMap<File, Integer>();
+    ArrayList<File> files = new ArrayList<File>();
+    for (Entry<File, SavedLibrary> entry : libraries.entrySet()) {
+      addFile(fileIndices, files, entry.getKey());
+      for (File file : entry.getValue().stamps.keySet()) {
+        addFile(fileIndices, files, file);
+      }
+      for (File file : entry.getValue().importedFiles) {
+        addFile(fileIndices, files, file);
+      }
+    }
+    output.writeInt(FILE_VERSION_NUMBER);
+    output.writeInt(files.size());
+    for (File file : files) {
+      output.writeUTF(file.getPath());
+    }
+    output.writeInt(libraries.size());
+    for (Entry<File, SavedLibrary> entry : libraries.entrySet()) {
+      SavedLibrary library = entry.getValue();
+      output.writeInt(fileIndices.get(entry.getKey()));
+      output.writeInt(library.stamps.size());
+      for (Entry<File, Long> stamp : library.stamps.entrySet()) {
+        output.writeInt(fileIndices.get(stamp.getKey()));
+        output.writeLong(stamp.getValue());
+      }
+      output.writeInt(library.importedFiles.size());
+      for (File file : library.importedFiles) {
+        output.writeInt(fileIndices.get(file));
+      }
+    }
+  }
+
+  private static void addFile(HashMap<File, Integer> fileIndices, ArrayList<File> files,
+      File file) {
+    if (!fileIndices.containsKey(file)) {
+      fileIndices.put(file, files.size());
+      files.add(file);
+    }
+  }
+}
@@ -18,7 +18,6 @@ import com.google.dart.compiler.DartCompilerListener;
 import com.google.dart.compiler.DartSource;
 import com.google.dart.compiler.ast.DartUnit;
 import com.google.dart.compiler.ast.LibraryUnit;
-import com.google.dart.tools.core.DartCore;
 
 import static com.google.dart.tools.core.analysis.AnalysisUtility.toFile;
 
@@ -50,13 +49,7 @@ class ErrorListener implements DartCompilerListener {
   }
 
   void notifyParsed(AnalysisEvent event) {
-    for (AnalysisListener listener : server.getAnalysisListeners()) {
-      try {
-        listener.parsed(event);
-      } catch (Throwable e) {
-        DartCore.logError("Exception during parsed notification", e);
-      }
-    }
+    server.notifyParsed(event);
   }
 
   void notifyParsed(File libraryFile, File sourceFile, DartUnit dartUnit) {
@@ -84,13 +77,7 @@ class ErrorListener implements DartCompilerListener {
       }
       event.addErrors(server, errors);
 
-      for (AnalysisListener listener : server.getAnalysisListeners()) {
-        try {
-          listener.resolved(event);
-        } catch (Throwable e) {
-          DartCore.logError("Exception during resolved notification", e);
-        }
-      }
+      server.notifyResolved(event);
     }
   }
 }
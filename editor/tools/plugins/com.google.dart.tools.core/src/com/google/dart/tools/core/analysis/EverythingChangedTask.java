@@ -17,15 +17,18 @@ class EverythingChangedTask extends Task {
 
   private final AnalysisServer server;
   private final Context context;
+  private final ContextSnapshot snapshot;
 
-  EverythingChangedTask(AnalysisServer server, Context context) {
+  EverythingChangedTask(AnalysisServer server, Context context, ContextSnapshot snapshot) {
     this.server = server;
     this.context = context;
+    this.snapshot = snapshot;
   }
 
   @Override
   void perform() {
     context.discardLibraries();
+    snapshot.discardAll();
     server.queueAnalyzeContext();
   }
 }
@@ -22,11 +22,13 @@ class FileChangedTask extends Task {
 
   private final AnalysisServer server;
   private final Context context;
+  private final ContextSnapshot snapshot;
   private final File file;
 
-  FileChangedTask(AnalysisServer server, Context context, File file) {
+  FileChangedTask(AnalysisServer server, Context context, ContextSnapshot snapshot, File file) {
     this.server = server;
     this.context = context;
+    this.snapshot = snapshot;
     this.file = file;
   }
 
@@ -42,6 +44,12 @@ class FileChangedTask extends Task {
 
   @Override
   void perform() {
+
+    // Libraries analyzed in a prior session are no longer up to date
+    if (snapshot.discard(file)) {
+      server.queueAnalyzeContext();
+    }
+
     Library[] libraries = context.getLibrariesContaining(file);
     for (Library library : libraries) {
 
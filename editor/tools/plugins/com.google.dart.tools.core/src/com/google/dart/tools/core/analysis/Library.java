@@ -24,8 +24,11 @@ import static com.google.dart.tools.core.analysis.AnalysisUtility.toFile;
 
 import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Cached information about a Dart library used internally by the {@link AnalysisServer}.
@@ -83,17 +86,19 @@ class Library {
   private final LibrarySource librarySource;
   private final HashMap<String, File> imports;
   private final HashMap<String, File> sources;
-  private final HashMap<File, DartUnit> unitCache;
+  private final ConcurrentHashMap<File, DartUnit> unitCache;
+  private final ConcurrentHashMap<File, Long> stamps;
 
-  private LibraryUnit libraryUnit;
+  private volatile LibraryUnit libraryUnit;
 
-  private Library(File libraryFile, LibrarySource librarySource, DartUnit libraryUnit,
+  Library(File libraryFile, LibrarySource librarySource, DartUnit libraryUnit,
       HashMap<String, File> imports, HashMap<String, File> sources) {
     this.libraryFile = libraryFile;
     this.librarySource = librarySource;
     this.imports = imports;
     this.sources = sources;
-    this.unitCache = new HashMap<File, DartUnit>();
+    this.unitCache = new ConcurrentHashMap<File, DartUnit>();
+    this.stamps = new ConcurrentHashMap<File, Long>();
     this.unitCache.put(libraryFile, libraryUnit);
   }
 
@@ -111,11 +116,21 @@ class Library {
     unitCache.put(file, unit);
   }
 
+  /**
+   * Cache the specified unit parsed from the specified file
+   * 
+   * @param stamp the modification stamp of the file before it was read
+   */
+  void cacheUnit(File file, DartUnit unit, long stamp) {
+    cacheUnit(file, unit);
+    stamps.put(file, stamp);
+  }
+
   DartUnit getCachedUnit(File file) {
     return unitCache.get(file);
   }
 
-  HashMap<File, DartUnit> getCachedUnits() {
+  Map<File, DartUnit> getCachedUnits() {
     return unitCache;
   }
 
@@ -138,4 +153,26 @@ class Library {
   Collection<File> getSourceFiles() {
     return sources.values();
   }
+
+  /**
+   * Answer the modification stamps of the library file and the files sourced by the library at the
+   * time they were read, or <code>null</code> if any of those files was parsed without recording
+   * its modification stamp. Files that do not exist have a modification stamp of zero.
+   */
+  Map<File, Long> getStamps() {
+    HashMap<File, Long> result = new HashMap<File, Long>();
+    ArrayList<File> files = new ArrayList<File>(sources.values());
+    files.add(libraryFile);
+    for (File file : files) {
+      Long stamp = stamps.get(file);
+      if (stamp == null) {
+        if (file.exists()) {
+          return null;
+        }
+        stamp = 0L;
+      }
+      result.put(file, stamp);
+    }
+    return result;
+  }
 }
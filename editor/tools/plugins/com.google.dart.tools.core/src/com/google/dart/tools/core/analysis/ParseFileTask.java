@@ -18,6 +18,8 @@ import com.google.dart.compiler.ast.DartUnit;
 import static com.google.dart.tools.core.analysis.AnalysisUtility.parse;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * Parse a Dart source file and cache the result
@@ -35,6 +37,11 @@ class ParseFileTask extends Task {
     this.dartFile = dartFile;
   }
 
+  @Override
+  Collection<File> getLibraryFiles() {
+    return Collections.singletonList(libraryFile);
+  }
+
   @Override
   void perform() {
     if (!dartFile.exists()) {
@@ -48,7 +55,8 @@ class ParseFileTask extends Task {
     if (dartUnit != null) {
       return;
     }
+    long stamp = dartFile.lastModified();
     dartUnit = parse(server, library.getFile(), library.getLibrarySource(), dartFile);
-    library.cacheUnit(dartFile, dartUnit);
+    library.cacheUnit(dartFile, dartUnit, stamp);
   }
 }
@@ -19,6 +19,8 @@ import com.google.dart.compiler.ast.DartUnit;
 import static com.google.dart.tools.core.analysis.AnalysisUtility.parse;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
 import java.net.URI;
 
 /**
@@ -40,6 +42,11 @@ class ParseLibraryFileTask extends Task {
     this.librarySource = new UrlLibrarySource(libUri, server.getLibraryManager());
   }
 
+  @Override
+  Collection<File> getLibraryFiles() {
+    return Collections.singletonList(libraryFile);
+  }
+
   @Override
   void perform() {
     if (!libraryFile.exists()) {
@@ -49,8 +56,10 @@ class ParseLibraryFileTask extends Task {
     if (library != null) {
       return;
     }
+    long stamp = libraryFile.lastModified();
     DartUnit unit = parse(server, libraryFile, librarySource, libraryFile);
     library = Library.fromDartUnit(server, libraryFile, librarySource, unit);
+    library.cacheUnit(libraryFile, unit, stamp);
     context.cacheLibrary(library);
   }
 }
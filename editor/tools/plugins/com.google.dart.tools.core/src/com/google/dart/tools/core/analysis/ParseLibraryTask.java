@@ -14,6 +14,8 @@
 package com.google.dart.tools.core.analysis;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * Parse the library file and all files referenced in #source directives
@@ -29,6 +31,11 @@ class ParseLibraryTask extends Task {
     this.libraryFile = libraryFile;
   }
 
+  @Override
+  Collection<File> getLibraryFiles() {
+    return Collections.singletonList(libraryFile);
+  }
+
   @Override
   void perform() {
 
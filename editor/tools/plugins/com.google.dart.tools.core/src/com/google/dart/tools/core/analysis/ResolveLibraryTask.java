@@ -21,6 +21,7 @@ import static com.google.dart.tools.core.analysis.AnalysisUtility.toFile;
 
 import java.io.File;
 import java.net.URI;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -40,6 +41,23 @@ class ResolveLibraryTask extends Task {
     this.library = library;
   }
 
+  /**
+   * Answer the files of the library and the unresolved libraries that it imports directly or
+   * indirectly, as all of these are resolved and cached by this task. If any of those libraries has
+   * not been parsed, then the libraries that it imports are not known and this task is performed
+   * while no other task is being performed.
+   */
+  @Override
+  Collection<File> getLibraryFiles() {
+    Collection<File> libraryFiles = context.getUnresolvedLibraryFiles(library.getFile());
+    for (File file : libraryFiles) {
+      if (context.getCachedLibrary(file) == null && file.exists()) {
+        return null;
+      }
+    }
+    return libraryFiles;
+  }
+
   @Override
   void perform() {
     if (library.getLibraryUnit() != null) {
@@ -13,14 +13,30 @@
  */
 package com.google.dart.tools.core.analysis;
 
+import java.io.File;
+import java.util.Collection;
+
 /**
  * An analysis task
  */
 abstract class Task {
 
   /**
-   * Perform the task. This is executed in the background thread and may modify any aspect of the
-   * analysis model or cached elements.
+   * Answer the files of the libraries whose cached information may be modified by this task. Tasks
+   * for disjoint sets of libraries may be performed at the same time on different threads. This is
+   * called by the {@link TaskQueue} each time it looks for a task to perform, so the answer may
+   * change as other tasks are performed.
+   * 
+   * @return the library files or <code>null</code> if the task may modify any aspect of the
+   *         analysis model, in which case it is performed while no other task is being performed
+   */
+  Collection<File> getLibraryFiles() {
+    return null;
+  }
+
+  /**
+   * Perform the task. This is executed on one of the server's background threads and may modify
+   * the cached information about the libraries answered by {@link #getLibraryFiles()}.
    */
   abstract void perform();
 }
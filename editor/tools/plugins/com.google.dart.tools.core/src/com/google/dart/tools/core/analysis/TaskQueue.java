@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012 Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.tools.core.analysis;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * The outstanding tasks to be performed by the {@link AnalysisServer} background threads. Tasks
+ * requested by the user (e.g. resolving a library for the editor) are kept in an interactive lane
+ * and are performed before tasks in the background lane (e.g. analyzing all tracked libraries).
+ * Tasks for different libraries (see {@link Task#getLibraryFiles()}) are performed at the same time
+ * on different threads, while tasks for the same library are performed one at a time in queue
+ * order. Lock against the receiver before calling any method.
+ */
+class TaskQueue {
+
+  /**
+   * Information about a task being performed
+   */
+  private static class RunningTask {
+    final ArrayDeque<Task> lane;
+    final Collection<File> libraryFiles;
+
+    RunningTask(ArrayDeque<Task> lane, Collection<File> libraryFiles) {
+      this.lane = lane;
+      this.libraryFiles = libraryFiles;
+    }
+  }
+
+  /**
+   * The tasks requested by the user
+   */
+  private final ArrayDeque<Task> interactiveLane = new ArrayDeque<Task>();
+
+  /**
+   * The tasks performed when there are no tasks requested by the user
+   */
+  private final ArrayDeque<Task> backgroundLane = new ArrayDeque<Task>();
+
+  /**
+   * The tasks being performed
+   */
+  private final HashMap<Task, RunningTask> runningTasks = new HashMap<Task, RunningTask>();
+
+  /**
+   * The library files of the tasks being performed
+   */
+  private final HashSet<File> runningLibraryFiles = new HashSet<File>();
+
+  /**
+   * <code>true</code> if a task that may modify any library is being performed
+   */
+  private boolean runningExclusiveTask = false;
+
+  /**
+   * <code>true</code> if the receiver was idle when last checked by {@link #setBusy()} or
+   * {@link #done(Task, List)}
+   */
+  private boolean idle = true;
+
+  /**
+   * The number of times {@link #idle} has changed
+   */
+  private int idleChangeCount = 0;
+
+  /**
+   * Add a task to the background lane after all other background tasks
+   */
+  void addBackgroundTask(Task task) {
+    backgroundLane.addLast(task);
+    notifyAll();
+  }
+
+  /**
+   * Add a task to the interactive lane before all other tasks
+   */
+  void addNewTask(Task task) {
+    interactiveLane.addFirst(task);
+    notifyAll();
+  }
+
+  /**
+   * Called when a task returned by {@link #removeNext()} has been performed. The specified subtasks are
+   * added at the front of the lane from which the task was taken, in the specified order.
+   * 
+   * @return <code>true</code> if this caused the receiver to become idle
+   */
+  boolean done(Task task, List<Task> subtasks) {
+    RunningTask runningTask = runningTasks.remove(task);
+    if (runningTask.libraryFiles == null) {
+      runningExclusiveTask = false;
+    } else {
+      runningLibraryFiles.removeAll(runningTask.libraryFiles);
+    }
+    ListIterator<Task> iter = subtasks.listIterator(subtasks.size());
+    while (iter.hasPrevious()) {
+      runningTask.lane.addFirst(iter.previous());
+    }
+    notifyAll();
+    if (!idle && isIdle()) {
+      idle = true;
+      idleChangeCount++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Answer the number of times the receiver has changed idle state in {@link #setBusy()} or
+   * {@link #done(Task, List)}, so that notifications of the changes can be delivered in order
+   */
+  int getIdleChangeCount() {
+    return idleChangeCount;
+  }
+
+  /**
+   * Answer the last task in the background lane or <code>null</code> if none
+   */
+  Task getLastBackgroundTask() {
+    return backgroundLane.peekLast();
+  }
+
+  /**
+   * Answer <code>true</code> if there are no outstanding tasks
+   */
+  boolean isIdle() {
+    return interactiveLane.isEmpty() && backgroundLane.isEmpty() && runningTasks.isEmpty();
+  }
+
+  /**
+   * Remove and answer the first task in the interactive lane or else in the background lane that
+   * can be performed now, or answer <code>null</code> if there is none. A task cannot be performed
+   * if a task for one of its libraries is being performed or precedes it in the queue. A task which
+   * may modify any library can be performed only when no other task is being performed, and tasks
+   * following it must wait until it has been performed. The caller must call
+   * {@link #done(Task, List)} once the returned task has been performed.
+   */
+  Task removeNext() {
+    if (runningExclusiveTask) {
+      return null;
+    }
+    HashSet<File> blockedFiles = new HashSet<File>(runningLibraryFiles);
+    for (ArrayDeque<Task> lane : Arrays.asList(interactiveLane, backgroundLane)) {
+      Iterator<Task> iter = lane.iterator();
+      while (iter.hasNext()) {
+        Task task = iter.next();
+        Collection<File> libraryFiles = task.getLibraryFiles();
+        if (libraryFiles == null) {
+          if (!runningTasks.isEmpty()) {
+            return null;
+          }
+          iter.remove();
+          runningExclusiveTask = true;
+          runningTasks.put(task, new RunningTask(lane, null));
+          return task;
+        }
+        if (!intersects(blockedFiles, libraryFiles)) {
+          iter.remove();
+          runningLibraryFiles.addAll(libraryFiles);
+          runningTasks.put(task, new RunningTask(lane, libraryFiles));
+          return task;
+        }
+        blockedFiles.addAll(libraryFiles);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Called when a task has been returned by {@link #removeNext()}.
+   * 
+   * @return <code>true</code> if the receiver was idle before
+   */
+  boolean setBusy() {
+    boolean wasIdle = idle;
+    if (wasIdle) {
+      idle = false;
+      idleChangeCount++;
+    }
+    return wasIdle;
+  }
+
+  private boolean intersects(HashSet<File> files, Collection<File> otherFiles) {
+    for (File file : otherFiles) {
+      if (files.contains(file)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
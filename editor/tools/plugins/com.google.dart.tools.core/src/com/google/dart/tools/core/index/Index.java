@@ -38,6 +38,12 @@ import com.google.dart.tools.core.model.CompilationUnit;
  * a value of <code>null</code> because the element, and any information associated with it, will
  * have been removed by the previous operation.
  * <p>
+ * The one exception is that requests for information can be answered before the indexing of
+ * resources that was requested earlier has completed, so that they are not delayed by large amounts
+ * of indexing. The information about a resource is replaced all at once, so such a request will see
+ * either all of the information from before the resource was indexed or all of the information from
+ * after it was indexed.
+ * <p>
  * However, there is no other guarantee about the order in which callbacks will be invoked.
  * Specifically, given two elements <b>E1</b> and <b>E2</b>, and an attribute <b>A</b>, if the
  * following operations are performed: <blockquote><code>
@@ -56,6 +56,16 @@ public final class Location {
     this.length = length;
   }
 
+  @Override
+  public boolean equals(Object object) {
+    if (!(object instanceof Location)) {
+      return false;
+    }
+    Location location = (Location) object;
+    return offset == location.offset && length == location.length
+        && element.equals(location.element);
+  }
+
   /**
    * Return the element containing this location.
    * 
@@ -83,6 +93,11 @@ public final class Location {
     return offset;
   }
 
+  @Override
+  public int hashCode() {
+    return (element.hashCode() * 31 + offset) * 31 + length;
+  }
+
   @Override
   public String toString() {
     return "[" + offset + " - " + (offset + length - 1) + "] in " + element;
@@ -20,6 +20,7 @@ import com.google.dart.indexer.exceptions.IndexTemporarilyNonOperationalUnchecke
 import com.google.dart.indexer.index.layers.bidirectional_edges.BidirectionalEdgesLayerForwardEdgesQuery;
 import com.google.dart.indexer.index.layers.bidirectional_edges.BidirectionalEdgesLayerReverseEdgesQuery;
 import com.google.dart.indexer.index.layers.reverse_edges.ReverseEdgesQuery;
+import com.google.dart.indexer.index.queries.Query;
 import com.google.dart.indexer.locations.Location;
 import com.google.dart.indexer.standard.StandardDriver;
 import com.google.dart.indexer.workspace.driver.WorkspaceIndexingDriver;
@@ -45,9 +46,20 @@ import com.google.dart.tools.core.model.Type;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The class <code>DartIndexer</code> defines methods used to cross-reference {@link DartElement
@@ -58,7 +70,7 @@ public class DartIndexer {
    * The interface <code>IndexerSearch</code> defines the behavior of objects that can perform a
    * search.
    */
-  private interface IndexerSearch {
+  public interface IndexerSearch {
     /**
      * Perform a search, returning the results of the search.
      * 
@@ -69,6 +81,129 @@ public class DartIndexer {
     public DartIndexerResult performSearch() throws IndexTemporarilyNonOperational;
   }
 
+  /**
+   * The interface <code>SearchCallback</code> defines the behavior of objects that are notified
+   * when a search submitted with {@link DartIndexer#submitSearch(IndexerSearch, SearchCallback)}
+   * has completed. The callback is invoked on the thread that performed the search, and is not
+   * invoked if the search was canceled.
+   */
+  public interface SearchCallback {
+    /**
+     * The search has completed normally.
+     * 
+     * @param result the results of the search
+     */
+    public void searchCompleted(DartIndexerResult result);
+
+    /**
+     * The search could not be performed because the index cannot be built.
+     * 
+     * @param exception the exception thrown by the search
+     */
+    public void searchFailed(IndexTemporarilyNonOperational exception);
+  }
+
+  /**
+   * Instances of the class <code>SearchTask</code> perform a search on the query executor and
+   * notify an optional callback when the search has completed. A search that has been canceled is
+   * not interrupted, but stops waiting for the index when it next checks its monitor.
+   */
+  private static class SearchTask extends FutureTask<DartIndexerResult> {
+    /**
+     * The callback to be notified when the search has completed, or <code>null</code>.
+     */
+    private final SearchCallback callback;
+
+    /**
+     * The monitor passed to the indexer while performing the search, which is canceled when the
+     * search has been canceled.
+     */
+    private final IProgressMonitor monitor = new NullProgressMonitor() {
+      @Override
+      public boolean isCanceled() {
+        return isCancelled();
+      }
+    };
+
+    public SearchTask(final IndexerSearch search, SearchCallback callback) {
+      super(new Callable<DartIndexerResult>() {
+        @Override
+        public DartIndexerResult call() throws IndexTemporarilyNonOperational {
+          return search.performSearch();
+        }
+      });
+      this.callback = callback;
+    }
+
+    @Override
+    protected void done() {
+      if (callback == null || isCancelled()) {
+        return;
+      }
+      try {
+        callback.searchCompleted(get());
+      } catch (ExecutionException exception) {
+        Throwable cause = exception.getCause();
+        if (cause instanceof IndexTemporarilyNonOperational) {
+          callback.searchFailed((IndexTemporarilyNonOperational) cause);
+        } else {
+          DartCore.logError(cause);
+        }
+      } catch (InterruptedException exception) {
+        // Cannot happen, the search has completed.
+      }
+    }
+
+    @Override
+    public void run() {
+      currentSearch.set(this);
+      try {
+        super.run();
+      } finally {
+        currentSearch.remove();
+      }
+    }
+  }
+
+  /**
+   * The maximum number of searches that are performed concurrently.
+   */
+  private static final int QUERY_THREAD_COUNT = 2;
+
+  /**
+   * The number of milliseconds to wait for the results of a search before checking again whether
+   * the search has been canceled.
+   */
+  private static final long CANCEL_CHECK_INTERVAL = 100L;
+
+  /**
+   * The executor used to perform the searches that are waited for, or that notify a callback. Its
+   * threads are daemon threads, which terminate after having been idle for a minute.
+   */
+  private static final ThreadPoolExecutor queryExecutor;
+
+  /**
+   * The search being performed by the current thread, or <code>null</code> if the current thread
+   * is not performing a search on the {@link #queryExecutor}.
+   */
+  private static final ThreadLocal<SearchTask> currentSearch = new ThreadLocal<SearchTask>();
+
+  static {
+    queryExecutor = new ThreadPoolExecutor(QUERY_THREAD_COUNT, QUERY_THREAD_COUNT, 60L,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          private final AtomicInteger threadCount = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Dart indexer query "
+                + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    queryExecutor.allowCoreThreadTimeOut(true);
+  }
+
   /**
    * Ideas for additional queries:
    * <ul>
@@ -105,7 +240,7 @@ public class DartIndexer {
       WorkspaceIndexingDriver driver = StandardDriver.getInstance();
       ReverseEdgesQuery query = new ReverseEdgesQuery(SyntheticLocation.ALL_CLASSES,
           driver.getConfiguration().getLayer(DartLayers.ELEMENTS_BY_CATEGORY));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(merge(query.getSources(), getBundledClassLocations()),
           getFilesWithErrors());
     } catch (IndexTemporarilyNonOperational exception) {
@@ -132,7 +267,7 @@ public class DartIndexer {
       WorkspaceIndexingDriver driver = StandardDriver.getInstance();
       ReverseEdgesQuery query = new ReverseEdgesQuery(SyntheticLocation.ALL_INTERFACES,
           driver.getConfiguration().getLayer(DartLayers.ELEMENTS_BY_CATEGORY));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(merge(query.getSources(), getBundledInterfaceLocations()),
           getFilesWithErrors());
     } catch (IndexTemporarilyNonOperational exception) {
@@ -159,14 +294,14 @@ public class DartIndexer {
       WorkspaceIndexingDriver driver = StandardDriver.getInstance();
       ReverseEdgesQuery classesQuery = new ReverseEdgesQuery(SyntheticLocation.ALL_CLASSES,
           driver.getConfiguration().getLayer(DartLayers.ELEMENTS_BY_CATEGORY));
-      driver.execute(classesQuery);
+      execute(driver, classesQuery);
       ReverseEdgesQuery interfacesQuery = new ReverseEdgesQuery(SyntheticLocation.ALL_INTERFACES,
           driver.getConfiguration().getLayer(DartLayers.ELEMENTS_BY_CATEGORY));
-      driver.execute(interfacesQuery);
+      execute(driver, interfacesQuery);
       ReverseEdgesQuery functionTypesQuery = new ReverseEdgesQuery(
           SyntheticLocation.ALL_FUNCTION_TYPE_ALIASES, driver.getConfiguration().getLayer(
               DartLayers.ELEMENTS_BY_CATEGORY));
-      driver.execute(functionTypesQuery);
+      execute(driver, functionTypesQuery);
       return new DartIndexerResult(merge(classesQuery.getSources(), interfacesQuery.getSources(),
           functionTypesQuery.getSources(), getBundledClassLocations(),
           getBundledInterfaceLocations(), getBundledFunctionTypeLocations()), getFilesWithErrors());
@@ -230,7 +365,7 @@ public class DartIndexer {
       WorkspaceIndexingDriver driver = StandardDriver.getInstance();
       ReverseEdgesQuery query = new ReverseEdgesQuery(new MethodLocation(method,
           method.getNameRange()), driver.getConfiguration().getLayer(DartLayers.METHOD_OVERRIDE));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(query.getSources(), getFilesWithErrors());
     } catch (DartModelException exception) {
       throw new IndexTemporarilyNonOperational(exception);
@@ -275,7 +410,7 @@ public class DartIndexer {
       WorkspaceIndexingDriver driver = StandardDriver.getInstance();
       ReverseEdgesQuery query = new ReverseEdgesQuery(new FunctionLocation(function,
           function.getNameRange()), driver.getConfiguration().getLayer(DartLayers.METHOD_CALLS));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(query.getSources(), getFilesWithErrors());
     } catch (DartModelException exception) {
       throw new IndexTemporarilyNonOperational(exception);
@@ -360,7 +495,7 @@ public class DartIndexer {
       WorkspaceIndexingDriver driver = StandardDriver.getInstance();
       ReverseEdgesQuery query = new ReverseEdgesQuery(new FunctionTypeAliasLocation(alias,
           alias.getNameRange()), driver.getConfiguration().getLayer(DartLayers.TYPE_REFERENCES));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(query.getSources(), getFilesWithErrors());
     } catch (DartModelException exception) {
       throw new IndexTemporarilyNonOperational(exception);
@@ -444,7 +579,7 @@ public class DartIndexer {
       ReverseEdgesQuery query = new ReverseEdgesQuery(
           new FieldLocation(field, field.getNameRange()), driver.getConfiguration().getLayer(
               DartLayers.FIELD_ACCESSES));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(query.getSources(), getFilesWithErrors());
     } catch (DartModelException exception) {
       throw new IndexTemporarilyNonOperational(exception);
@@ -528,7 +663,7 @@ public class DartIndexer {
       WorkspaceIndexingDriver driver = StandardDriver.getInstance();
       ReverseEdgesQuery query = new ReverseEdgesQuery(new MethodLocation(method,
           method.getNameRange()), driver.getConfiguration().getLayer(DartLayers.METHOD_CALLS));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(query.getSources(), getFilesWithErrors());
     } catch (DartModelException exception) {
       throw new IndexTemporarilyNonOperational(exception);
@@ -615,7 +750,7 @@ public class DartIndexer {
       WorkspaceIndexingDriver driver = StandardDriver.getInstance();
       ReverseEdgesQuery query = new ReverseEdgesQuery(new TypeLocation(type, type.getNameRange()),
           driver.getConfiguration().getLayer(DartLayers.TYPE_REFERENCES));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(query.getSources(), getFilesWithErrors());
     } catch (DartModelException exception) {
       throw new IndexTemporarilyNonOperational(exception);
@@ -688,7 +823,7 @@ public class DartIndexer {
       BidirectionalEdgesLayerReverseEdgesQuery query = new BidirectionalEdgesLayerReverseEdgesQuery(
           new TypeLocation(type, type.getNameRange()), driver.getConfiguration().getLayer(
               DartLayers.TYPE_HIERARCHY));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(query.getSources(), getFilesWithErrors());
     } catch (DartModelException exception) {
       throw new IndexTemporarilyNonOperational(exception);
@@ -761,7 +896,7 @@ public class DartIndexer {
       BidirectionalEdgesLayerForwardEdgesQuery query = new BidirectionalEdgesLayerForwardEdgesQuery(
           new TypeLocation(type, type.getNameRange()), driver.getConfiguration().getLayer(
               DartLayers.TYPE_HIERARCHY));
-      driver.execute(query);
+      execute(driver, query);
       return new DartIndexerResult(query.getDestinations(), getFilesWithErrors());
     } catch (DartModelException exception) {
       throw new IndexTemporarilyNonOperational(exception);
@@ -806,6 +941,71 @@ public class DartIndexer {
     });
   }
 
+  /**
+   * Return <code>true</code> if the current thread is performing a search on one of the threads
+   * used to perform queries, and the search has been canceled. Searches that may take long should
+   * check this and stop, since the thread performing them is not interrupted.
+   * 
+   * @return <code>true</code> if the search being performed by the current thread was canceled
+   */
+  public static boolean isSearchCanceled() {
+    SearchTask search = currentSearch.get();
+    return search != null && search.isCancelled();
+  }
+
+  /**
+   * Return the result of performing the given search. This method will block until either
+   * <ul>
+   * <li>the search has been completed,</li>
+   * <li>the search fails because the index cannot be built, or</li>
+   * <li>the progress monitor indicates that the search should be canceled</li>
+   * </ul>
+   * The search is performed on one of the threads used to perform queries. If the progress monitor
+   * is canceled, the search is canceled. The thread that performs it is not interrupted, because
+   * that would close the files of the index, but the search stops waiting for the index to be
+   * built, see {@link #isSearchCanceled()}.
+   * 
+   * @param monitor the progress monitor used to determine whether to stop waiting for results
+   * @param search the search to be performed
+   * @return the result of performing the given search
+   * @throws IndexTemporarilyNonOperational if the search cannot be completed because the index
+   *           could not be built
+   * @throws InterruptedException if the progress monitor indicates that the operation should be
+   *           canceled
+   * @pre monitor != null
+   * @pre search != null
+   * @post $result != null
+   */
+  public static DartIndexerResult performSearch(IProgressMonitor monitor, IndexerSearch search)
+      throws IndexTemporarilyNonOperational, InterruptedException {
+    Future<DartIndexerResult> future = submitSearch(search, null);
+    try {
+      while (true) {
+        if (monitor.isCanceled()) {
+          throw new InterruptedException();
+        }
+        try {
+          return future.get(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException exception) {
+          // Check again whether the search has been canceled.
+        }
+      }
+    } catch (ExecutionException exception) {
+      Throwable cause = exception.getCause();
+      if (cause instanceof IndexTemporarilyNonOperational) {
+        throw (IndexTemporarilyNonOperational) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      // Does nothing if the search has completed.
+      future.cancel(false);
+    }
+  }
+
   /**
    * Stop the indexer.
    */
@@ -813,6 +1013,24 @@ public class DartIndexer {
     StandardDriver.shutdown();
   }
 
+  /**
+   * Submit the given search to be performed on one of the threads used to perform queries. The
+   * search can be canceled through the returned future.
+   * 
+   * @param search the search to be performed
+   * @param callback the callback to be notified when the search has completed, or
+   *          <code>null</code> if the caller will only use the returned future
+   * @return the future result of the search
+   * @pre search != null
+   * @post $result != null
+   */
+  public static Future<DartIndexerResult> submitSearch(IndexerSearch search,
+      SearchCallback callback) {
+    SearchTask task = new SearchTask(search, callback);
+    queryExecutor.execute(task);
+    return task;
+  }
+
   /**
    * Given an arbitrary location, determine whether it refers to a Dart element, and if so return
    * the element, otherwise return <code>null</code>.
@@ -841,6 +1059,16 @@ public class DartIndexer {
     }
   }
 
+  /**
+   * Execute the given query. If the current thread is performing a search that is canceled, stop
+   * waiting for the index to be built.
+   */
+  private static void execute(WorkspaceIndexingDriver driver, Query query)
+      throws IndexTemporarilyNonOperational {
+    SearchTask search = currentSearch.get();
+    driver.execute(query, search != null ? search.monitor : null);
+  }
+
   /**
    * Return an array containing locations representing all of the classes in bundled libraries.
    * 
@@ -942,53 +1170,4 @@ public class DartIndexer {
     }
     return result;
   }
-
-  /**
-   * Return the result of performing the given search. This method will block until either
-   * <ul>
-   * <li>the search has been completed,</li>
-   * <li>the search fails because the index cannot be built, or</li>
-   * <li>the progress monitor indicates that the search should be canceled</li>
-   * </ul>
-   * Note that the search is not actually canceled if the progress monitor is canceled, this method
-   * simply stops waiting for the search. The search will continue to run on a separate thread.
-   * 
-   * @param monitor the progress monitor used to determine whether to stop waiting for results
-   * @param search the type being referenced
-   * @return the result of performing the given search
-   * @throws IndexTemporarilyNonOperational if the search cannot be completed because the index
-   *           could not be built
-   * @throws InterruptedException if the progress monitor indicates that the operation should be
-   *           canceled
-   * @pre monitor != null
-   * @pre search != null
-   * @post $result != null
-   */
-  private static DartIndexerResult performSearch(IProgressMonitor monitor,
-      final IndexerSearch search) throws IndexTemporarilyNonOperational, InterruptedException {
-    final DartIndexerResult[] result = {null};
-    final IndexTemporarilyNonOperational[] thrownException = {null};
-
-    Thread queryThread = new Thread(new Runnable() {
-      @Override
-      public void run() {
-        try {
-          result[0] = search.performSearch();
-        } catch (IndexTemporarilyNonOperational exception) {
-          thrownException[0] = exception;
-        }
-      }
-    });
-    queryThread.start();
-    while (true) {
-      if (result[0] != null) {
-        return result[0];
-      } else if (thrownException[0] != null) {
-        throw thrownException[0];
-      } else if (monitor.isCanceled()) {
-        throw new InterruptedException();
-      }
-      Thread.sleep(500);
-    }
-  }
 }
@@ -64,11 +64,9 @@ import com.google.dart.compiler.resolver.CoreTypeProviderImplementation;
 import com.google.dart.compiler.resolver.Element;
 import com.google.dart.compiler.resolver.ElementKind;
 import com.google.dart.compiler.resolver.FieldElement;
-import com.google.dart.compiler.resolver.FieldNodeElement;
 import com.google.dart.compiler.resolver.FunctionAliasElement;
 import com.google.dart.compiler.resolver.LibraryElement;
 import com.google.dart.compiler.resolver.MethodElement;
-import com.google.dart.compiler.resolver.MethodNodeElement;
 import com.google.dart.compiler.resolver.NodeElement;
 import com.google.dart.compiler.resolver.ResolutionContext;
 import com.google.dart.compiler.resolver.Resolver;
@@ -526,53 +524,6 @@ public class CompletionEngine {
     }
   }
 
-  /**
-   * Collects all method and field definitions from every class in all known libraries.
-   */
-  private static class MemberElementVisitor extends ElementVisitor {
-
-    String prefix = null;
-    boolean mustIncludeStatics = true;
-    private Set<Element> elements = new HashSet<Element>();
-
-    public MemberElementVisitor(String prefix, boolean mustIncludeStatics) {
-      this.prefix = prefix; // may be null
-      this.mustIncludeStatics = mustIncludeStatics;
-    }
-
-    @Override
-    public void element(FieldNodeElement element) {
-      if (mustIncludeStatics || !element.isStatic()) {
-        add(element);
-      }
-    }
-
-    @Override
-    public void element(MethodNodeElement element) {
-      if (mustIncludeStatics || !element.isStatic()) {
-        add(element);
-      }
-    }
-
-    public Set<Element> getElements() {
-      return elements;
-    }
-
-    private void add(NodeElement element) {
-      if (filter(element.getName())) {
-        elements.add(element);
-      }
-    }
-
-    private boolean filter(String name) {
-      if (prefix == null) {
-        return true;
-      } else {
-        return name.startsWith(prefix);
-      }
-    }
-  }
-
   /**
    * In most cases completion processing begins at an identifier. The identifier itself is not very
    * informative so most identifiers defer to their parent node for analysis.
@@ -1101,28 +1052,30 @@ public class CompletionEngine {
     return posParamCount;
   }
 
+  /**
+   * Collects the non-static field and method definitions whose names start with the given prefix
+   * from every class in the given library and the libraries it imports, transitively.
+   */
   static private List<Element> findAllElements(LibraryUnit library, String prefix) {
-    Set<Element> elemSet = findAllElements(library, prefix, new HashSet<LibraryUnit>());
-    List<Element> elements = new ArrayList<Element>(elemSet.size());
-    elements.addAll(elemSet);
+    long startTime = DartCoreDebug.ENABLE_CONTENT_ASSIST_TIMING ? System.currentTimeMillis() : 0L;
+    List<Element> elements = new ArrayList<Element>();
+    findAllElements(library, prefix, new HashSet<LibraryUnit>(), elements);
+    if (DartCoreDebug.ENABLE_CONTENT_ASSIST_TIMING) {
+      System.out.println("Code Assist (find all elements): "
+          + (System.currentTimeMillis() - startTime));
+    }
     return elements;
   }
 
-  static private Set<Element> findAllElements(LibraryUnit library, String prefix,
-      Set<LibraryUnit> libs) {
-    if (libs.contains(library)) {
-      return new HashSet<Element>();
-    }
-    libs.add(library);
-    MemberElementVisitor visitor = new MemberElementVisitor(prefix, false);
-    for (DartUnit unit : library.getUnits()) {
-      unit.accept(visitor);
+  static private void findAllElements(LibraryUnit library, String prefix, Set<LibraryUnit> libs,
+      List<Element> elements) {
+    if (!libs.add(library)) {
+      return;
     }
-    Set<Element> elements = visitor.getElements();
+    library.getSymbolTable().findMembers(prefix, false, elements);
     for (LibraryUnit lib : library.getImports()) {
-      elements.addAll(findAllElements(lib, prefix, libs));
+      findAllElements(lib, prefix, libs, elements);
     }
-    return elements;
   }
 
   static private List<Element> getAllElements(Type type) {
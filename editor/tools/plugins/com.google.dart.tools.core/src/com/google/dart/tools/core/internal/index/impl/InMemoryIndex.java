@@ -36,6 +36,7 @@ import com.google.dart.tools.core.internal.index.operation.OperationProcessor;
 import com.google.dart.tools.core.internal.index.operation.OperationQueue;
 import com.google.dart.tools.core.internal.index.operation.RemoveResourceOperation;
 import com.google.dart.tools.core.internal.index.persistance.IndexReader;
+import com.google.dart.tools.core.internal.index.persistance.IndexSegmentLog;
 import com.google.dart.tools.core.internal.index.persistance.IndexWriter;
 import com.google.dart.tools.core.internal.index.store.IndexStore;
 import com.google.dart.tools.core.internal.model.CompilationUnitImpl;
@@ -49,6 +50,7 @@ import com.google.dart.tools.core.model.DartLibrary;
 import com.google.dart.tools.core.model.DartModel;
 import com.google.dart.tools.core.model.DartModelException;
 import com.google.dart.tools.core.model.DartProject;
+import com.google.dart.tools.core.model.DartSdk;
 import com.google.dart.tools.core.utilities.compiler.DartCompilerUtilities;
 
 import org.eclipse.core.resources.ResourcesPlugin;
@@ -57,18 +59,21 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * The unique instance of the class <code>InMemoryIndex</code> maintains an in-memory {@link Index
  * index}. The index is expected to be initialized once before it is used in any given session and
- * shut down at the end of the session. The index will be read from disk when it is initialized and
- * written to disk when it is shut down.
+ * shut down at the end of the session. The index will be recovered from disk when it is initialized,
+ * and the changes made to it are appended to a {@link IndexSegmentLog log} as they are made, so
+ * that the index does not need to be written when it is shut down.
  */
 public class InMemoryIndex implements Index {
   /**
@@ -81,10 +86,28 @@ public class InMemoryIndex implements Index {
    */
   private OperationQueue queue = new OperationQueue();
 
+  /**
+   * The latch that is released when the index has been initialized. The processors do not perform
+   * any operation before then, so that operations are neither lost when the store is cleared or
+   * loaded nor performed against a partially loaded store.
+   */
+  private CountDownLatch initialized = new CountDownLatch(1);
+
   /**
    * The object used to process operations that have been added to the queue.
    */
-  private OperationProcessor processor = new OperationProcessor(queue);
+  private OperationProcessor processor = new OperationProcessor(queue, false, initialized);
+
+  /**
+   * The object used to perform queries while the operation processor is indexing resources.
+   */
+  private OperationProcessor queryProcessor = new OperationProcessor(queue, true, initialized);
+
+  /**
+   * The log to which the changes to the index are appended, or <code>null</code> if the index has
+   * not been initialized or the changes cannot be recorded.
+   */
+  private volatile IndexSegmentLog segmentLog;
 
   /**
    * A flag indicating whether the content of the index store has been initialized.
@@ -103,9 +126,14 @@ public class InMemoryIndex implements Index {
   private static final InMemoryIndex UniqueInstance = new InMemoryIndex();
 
   /**
-   * The name of the file containing the index.
+   * The prefix of the names of the files containing the segments of the index.
+   */
+  private static final String INDEX_FILE_PREFIX = "index";
+
+  /**
+   * The name of the file that contained the index before the index was kept in segments.
    */
-  private static final String INDEX_FILE = "index.idx";
+  private static final String LEGACY_INDEX_FILE = "index.idx";
 
   /**
    * The name of the file containing the initial state of the index.
@@ -121,8 +149,16 @@ public class InMemoryIndex implements Index {
     return UniqueInstance;
   }
 
+  /**
+   * Return a new index for testing. Unless it is explicitly initialized, the index starts out empty
+   * and its processors do not wait for it to be initialized.
+   * 
+   * @return a new index for testing
+   */
   public static InMemoryIndex newInstanceForTesting() {
-    return new InMemoryIndex();
+    InMemoryIndex index = new InMemoryIndex();
+    index.initialized.countDown();
+    return index;
   }
 
   private long initIndexingTime = 0L;
@@ -158,15 +194,22 @@ public class InMemoryIndex implements Index {
     return processor;
   }
 
+  /**
+   * Return the object used to perform queries while the operation processor is indexing resources.
+   * 
+   * @return the object used to perform queries while resources are being indexed
+   */
+  public OperationProcessor getQueryProcessor() {
+    return queryProcessor;
+  }
+
   /**
    * Return the number of relationships that are currently recorded in this index.
    * 
    * @return the number of relationships that are currently recorded in this index
    */
   public int getRelationshipCount() {
-    synchronized (indexStore) {
-      return indexStore.getRelationshipCount();
-    }
+    return indexStore.getRelationshipCount();
   }
 
   /**
@@ -186,6 +229,18 @@ public class InMemoryIndex implements Index {
     queue.enqueue(new GetRelationshipsOperation(indexStore, element, relationship, callback));
   }
 
+  /**
+   * Return the log to which the changes to the index are appended, or <code>null</code> if the
+   * index has not been initialized or the changes cannot be recorded. Operations read the log when
+   * they are performed rather than when they are queued, because the log is only created while the
+   * index is being initialized.
+   * 
+   * @return the log to which the changes to the index are appended
+   */
+  public IndexSegmentLog getSegmentLog() {
+    return segmentLog;
+  }
+
   /**
    * Process the given resource within the context of the given working set in order to record the
    * data and relationships found within the resource.
@@ -196,34 +251,42 @@ public class InMemoryIndex implements Index {
    */
   @Override
   public void indexResource(Resource resource, CompilationUnit compilationUnit, DartUnit unit) {
-    queue.enqueue(new IndexResourceOperation(indexStore, resource, compilationUnit, unit,
-        performanceRecorder));
+    queue.enqueue(new IndexResourceOperation(indexStore, this, resource, compilationUnit,
+        unit, performanceRecorder));
   }
 
   /**
-   * Initialize this index, assuming that it has not already been initialized.
+   * Initialize this index, assuming that it has not already been initialized. The processors of the
+   * index do not perform any operation until this method has returned.
    */
   public void initializeIndex() {
     synchronized (indexStore) {
-      if (hasBeenInitialized) {
-        return;
-      }
-      hasBeenInitialized = true;
-      indexStore.clear();
-      if (!initializeIndexFrom(getIndexFile())) {
+      try {
+        if (hasBeenInitialized) {
+          return;
+        }
+        hasBeenInitialized = true;
         indexStore.clear();
-        if (!initializeIndexFrom(getInitialIndexFile())) {
+        if (!recoverIndex()) {
           indexStore.clear();
-          if (!indexBundledLibraries()) {
+          if (!initializeIndexFrom(getInitialIndexFile())) {
             indexStore.clear();
-            return;
+            if (!indexBundledLibraries()) {
+              indexStore.clear();
+              return;
+            }
+            writeIndexTo(getInitialIndexFile());
+          }
+          if (!indexUserLibraries()) {
+            indexStore.clear();
+            initializeIndexFrom(getInitialIndexFile());
+          }
+          if (segmentLog != null) {
+            segmentLog.compact();
           }
-          writeIndexTo(getInitialIndexFile());
-        }
-        if (!indexUserLibraries()) {
-          indexStore.clear();
-          initializeIndexFrom(getInitialIndexFile());
         }
+      } finally {
+        initialized.countDown();
       }
     }
   }
@@ -241,12 +304,13 @@ public class InMemoryIndex implements Index {
    */
   @Override
   public void removeResource(Resource resource) {
-    queue.enqueue(new RemoveResourceOperation(indexStore, resource));
+    queue.enqueue(new RemoveResourceOperation(indexStore, this, resource));
   }
 
   /**
-   * Report the number of milliseconds spent indexing since the last time this value was reported
-   * and cleared, clearing the value after reporting it.
+   * Report the number of milliseconds spent indexing, and the time operations spent waiting in the
+   * queue, since the last time these values were reported and cleared, clearing the values after
+   * reporting them.
    */
   public void reportAndResetIndexingTime() {
     if (performanceRecorder != null) {
@@ -254,13 +318,19 @@ public class InMemoryIndex implements Index {
           + " resources in " + performanceRecorder.getTotalIndexTime() + " ms ["
           + performanceRecorder.getTotalBindingTime() + " ms in binding]");
       performanceRecorder.clear();
+      DartCore.logInformation("Index queue: " + queue.size() + " pending, " + queue.getMaxDepth()
+          + " at most; " + queue.getQueryCount() + " queries waited "
+          + queue.getTotalQueryWaitTime() + " ms [" + queue.getMaxQueryWaitTime() + " ms at most]; "
+          + queue.getUpdateCount() + " updates waited " + queue.getTotalUpdateWaitTime() + " ms ["
+          + queue.getMaxUpdateWaitTime() + " ms at most]");
+      queue.clearStatistics();
     }
   }
 
   public void shutdown() {
     synchronized (indexStore) {
-      if (hasBeenInitialized) {
-        writeIndexTo(getIndexFile());
+      if (hasBeenInitialized && segmentLog != null) {
+        segmentLog.close();
       }
     }
   }
@@ -275,15 +345,6 @@ public class InMemoryIndex implements Index {
 //    return new File(DartCore.getPlugin().getStateLocation().toFile(), fileName);
 //  }
 
-  /**
-   * Return the file in which the state of the index is to be stored between sessions.
-   * 
-   * @return the file in which the state of the index is to be stored
-   */
-  private File getIndexFile() {
-    return new File(DartCore.getPlugin().getStateLocation().toFile(), INDEX_FILE);
-  }
-
   /**
    * Return the file containing the initial state of the index. This file should be considered to be
    * read-only and should be loaded only if the normal index file does not yet exist. The initial
@@ -449,8 +510,9 @@ public class InMemoryIndex implements Index {
   private boolean initializeIndexFrom(File indexFile) {
     if (indexFile.exists()) {
       try {
-        readIndexFrom(indexFile);
-        return true;
+        if (readIndexFrom(indexFile)) {
+          return true;
+        }
       } catch (IOException exception) {
         DartCore.logError("Could not read index file: \"" + indexFile.getAbsolutePath() + "\"",
             exception);
@@ -466,32 +528,48 @@ public class InMemoryIndex implements Index {
   }
 
   /**
-   * Read the contents of this index from the given input stream.
+   * Read the contents of this index from the given buffer.
    * 
-   * @param input the input stream from which this index will be read
-   * @throws IOException if the index could not be read from the given input stream
+   * @param buffer the buffer from which this index will be read
+   * @return <code>true</code> if the buffer is valid and could be read
+   * @throws IOException if the index could not be read from the given buffer
    */
-  private void readIndex(ObjectInputStream input) throws IOException {
+  private boolean readIndex(ByteBuffer buffer) throws IOException {
     IndexReader reader = indexStore.createIndexReader();
-    reader.readIndex(input);
+    return reader.readIndex(buffer);
   }
 
   /**
-   * Read the contents of this index from the given file.
+   * Read the contents of this index from the given file. The file is read into memory with a single
+   * read rather than mapped, so that it can be overwritten when the index is written back.
    * 
    * @param indexFile the file from which this index will be read
+   * @return <code>true</code> if the file is valid and could be read
    * @throws IOException if the index could not be read from the given file
    */
-  private void readIndexFrom(File indexFile) throws IOException {
-    ObjectInputStream input = null;
+  private boolean readIndexFrom(File indexFile) throws IOException {
+    FileInputStream input = null;
     try {
-      input = new ObjectInputStream(new FileInputStream(indexFile));
+      input = new FileInputStream(indexFile);
       long startTime = System.currentTimeMillis();
-      readIndex(input);
+      FileChannel channel = input.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Index file is too large: " + size + " bytes");
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          throw new IOException("Unexpected end of index file");
+        }
+      }
+      buffer.flip();
+      boolean result = readIndex(buffer);
       if (DartCoreDebug.PERF_INDEX) {
         long endTime = System.currentTimeMillis();
         DartCore.logInformation("Reading the index took " + (endTime - startTime) + " ms");
       }
+      return result;
     } finally {
       if (input != null) {
         try {
@@ -505,13 +583,44 @@ public class InMemoryIndex implements Index {
     }
   }
 
+  /**
+   * Recover the contents of this index from the segments written during previous sessions, and
+   * start recording the changes made to it.
+   * 
+   * @return <code>true</code> if the contents of this index were recovered
+   */
+  private boolean recoverIndex() {
+    File stateDirectory = DartCore.getPlugin().getStateLocation().toFile();
+    File legacyIndexFile = new File(stateDirectory, LEGACY_INDEX_FILE);
+    if (legacyIndexFile.exists() && !legacyIndexFile.delete()) {
+      DartCore.logError("Could not delete index file: \"" + legacyIndexFile.getAbsolutePath()
+          + "\"");
+    }
+    segmentLog = new IndexSegmentLog(indexStore, stateDirectory, INDEX_FILE_PREFIX,
+        DartSdk.getInstance().getSdkVersion());
+    try {
+      long startTime = System.currentTimeMillis();
+      boolean recovered = segmentLog.recover();
+      if (DartCoreDebug.PERF_INDEX) {
+        long endTime = System.currentTimeMillis();
+        DartCore.logInformation("Recovering the index took " + (endTime - startTime) + " ms");
+      }
+      return recovered;
+    } catch (IOException exception) {
+      DartCore.logError("Could not start index log in \"" + stateDirectory.getAbsolutePath()
+          + "\"", exception);
+      segmentLog = null;
+      return false;
+    }
+  }
+
   /**
    * Write the contents of this index to the given output stream.
    * 
    * @param output the output stream to which this index will be written
    * @throws IOException if the index could not be written to the given output stream
    */
-  private void writeIndex(ObjectOutputStream output) throws IOException {
+  private void writeIndex(OutputStream output) throws IOException {
     IndexWriter writer = indexStore.createIndexWriter();
     writer.writeIndex(output);
   }
@@ -524,9 +633,9 @@ public class InMemoryIndex implements Index {
    */
   private void writeIndexTo(File indexFile) {
     boolean successfullyWritten = true;
-    ObjectOutputStream output = null;
+    OutputStream output = null;
     try {
-      output = new ObjectOutputStream(new FileOutputStream(indexFile));
+      output = new FileOutputStream(indexFile);
       long startTime = System.currentTimeMillis();
       writeIndex(output);
       if (DartCoreDebug.PERF_INDEX) {
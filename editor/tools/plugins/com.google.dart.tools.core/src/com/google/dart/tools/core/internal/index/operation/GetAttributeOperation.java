@@ -60,12 +60,14 @@ public class GetAttributeOperation implements IndexOperation {
     this.callback = callback;
   }
 
+  @Override
+  public boolean isQuery() {
+    return true;
+  }
+
   @Override
   public void performOperation() {
-    String value;
-    synchronized (indexStore) {
-      value = indexStore.getAttribute(element, attribute);
-    }
+    String value = indexStore.getAttribute(element, attribute);
     callback.hasValue(element, attribute, value);
   }
 
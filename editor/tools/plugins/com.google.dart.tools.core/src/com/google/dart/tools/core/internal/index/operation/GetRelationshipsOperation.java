@@ -61,12 +61,14 @@ public class GetRelationshipsOperation implements IndexOperation {
     this.callback = callback;
   }
 
+  @Override
+  public boolean isQuery() {
+    return true;
+  }
+
   @Override
   public void performOperation() {
-    Location[] locations;
-    synchronized (indexStore) {
-      locations = indexStore.getRelationships(element, relationship);
-    }
+    Location[] locations = indexStore.getRelationships(element, relationship);
     callback.hasRelationships(element, relationship, locations);
   }
 
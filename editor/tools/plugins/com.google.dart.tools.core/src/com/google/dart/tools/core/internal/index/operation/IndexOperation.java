@@ -18,6 +18,14 @@ package com.google.dart.tools.core.internal.index.operation;
  * operations on an index.
  */
 public interface IndexOperation {
+  /**
+   * Return <code>true</code> if this operation only reads information from the index. Queries can
+   * be performed before indexing operations that were requested earlier.
+   * 
+   * @return <code>true</code> if this operation only reads information from the index
+   */
+  public boolean isQuery();
+
   /**
    * Perform the operation implemented by this operation.
    */
@@ -17,7 +17,9 @@ import com.google.dart.compiler.ast.DartUnit;
 import com.google.dart.tools.core.DartCore;
 import com.google.dart.tools.core.index.Resource;
 import com.google.dart.tools.core.internal.index.contributor.IndexContributor;
+import com.google.dart.tools.core.internal.index.impl.InMemoryIndex;
 import com.google.dart.tools.core.internal.index.impl.IndexPerformanceRecorder;
+import com.google.dart.tools.core.internal.index.persistance.IndexSegmentLog;
 import com.google.dart.tools.core.internal.index.store.IndexStore;
 import com.google.dart.tools.core.internal.model.ExternalCompilationUnitImpl;
 import com.google.dart.tools.core.model.CompilationUnit;
@@ -33,6 +35,12 @@ public class IndexResourceOperation implements IndexOperation {
    */
   private IndexStore indexStore;
 
+  /**
+   * The index whose segment log the changes to the index are to be appended to, or
+   * <code>null</code> if the changes are not to be recorded.
+   */
+  private InMemoryIndex index;
+
   /**
    * The resource being indexed.
    */
@@ -58,44 +66,62 @@ public class IndexResourceOperation implements IndexOperation {
    * Initialize a newly created operation that will index the specified resource.
    * 
    * @param indexStore the index store against which this operation is being run
+   * @param index the index whose segment log the changes to the index are to be appended to, or
+   *          <code>null</code> if the changes are not to be recorded
    * @param resource the resource being indexed
    * @param compilationUnit the compilation unit being indexed
    * @param unit the fully resolved AST structure representing the contents of the resource
    * @param performanceRecorder the object used to record performance information about this
    *          operation
    */
-  public IndexResourceOperation(IndexStore indexStore, Resource resource,
-      CompilationUnit compilationUnit, DartUnit unit, IndexPerformanceRecorder performanceRecorder) {
+  public IndexResourceOperation(IndexStore indexStore, InMemoryIndex index, Resource resource,
+      CompilationUnit compilationUnit, DartUnit unit,
+      IndexPerformanceRecorder performanceRecorder) {
     this.indexStore = indexStore;
+    this.index = index;
     this.resource = resource;
     this.compilationUnit = compilationUnit;
     this.unit = unit;
     this.performanceRecorder = performanceRecorder;
   }
 
+  @Override
+  public boolean isQuery() {
+    return false;
+  }
+
   @Override
   public void performOperation() {
     if (!compilationUnit.exists()) {
       return;
     }
-    long indexStart = 0L;
+    long indexStart = System.currentTimeMillis();
     long indexEnd = 0L;
     long bindingTime = 0L;
-    synchronized (indexStore) {
-      indexStart = System.currentTimeMillis();
+    // Collect the contributions without blocking the queries against the index, then replace the
+    // previous contributions of the resource in a single update.
+    IndexStore contributions = new IndexStore();
+    IndexSegmentLog segmentLog = index == null ? null : index.getSegmentLog();
+    try {
+      IndexContributor contributor = new IndexContributor(contributions, compilationUnit);
+      unit.accept(contributor);
+      indexStore.regenerateResource(resource, contributions);
+      indexEnd = System.currentTimeMillis();
+      if (segmentLog != null) {
+        segmentLog.recordIndex(resource, contributions);
+      }
+      bindingTime = contributor.getBindingTime();
+      if (!(compilationUnit instanceof ExternalCompilationUnitImpl)) {
+        contributor.logTrace();
+      }
+    } catch (DartModelException exception) {
       indexStore.regenerateResource(resource);
-      try {
-        IndexContributor contributor = new IndexContributor(indexStore, compilationUnit);
-        unit.accept(contributor);
-        indexEnd = System.currentTimeMillis();
-        bindingTime = contributor.getBindingTime();
-        if (!(compilationUnit instanceof ExternalCompilationUnitImpl)) {
-          contributor.logTrace();
-        }
-      } catch (DartModelException exception) {
-        DartCore.logError("Could not index " + compilationUnit.getResource().getLocation(),
-            exception);
+      if (segmentLog != null) {
+        // Replaying an index without contributions removes the same information as the line above.
+        segmentLog.recordIndex(resource, new IndexStore());
       }
+      DartCore.logError("Could not index " + compilationUnit.getResource().getLocation(),
+          exception);
     }
     if (performanceRecorder != null && indexEnd > 0L) {
       performanceRecorder.recordIndexingTime(indexEnd - indexStart, bindingTime);
@@ -16,9 +16,16 @@ package com.google.dart.tools.core.internal.index.operation;
 import com.google.dart.tools.core.DartCore;
 import com.google.dart.tools.core.DartCoreDebug;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Instances of the class <code>OperationProcessor</code> process the operations on a single
  * {@link OperationQueue operation queue}. Each processor can be run one time on a single thread.
+ * <p>
+ * A queue has a single processor performing all kinds of operations, and can have a second
+ * processor that only performs the queries that can be answered before pending operations, so that
+ * the index can be queried while resources are being indexed.
  */
 public class OperationProcessor {
   /**
@@ -52,6 +59,17 @@ public class OperationProcessor {
    */
   private OperationQueue queue;
 
+  /**
+   * A flag indicating whether this processor only performs queries.
+   */
+  private boolean queriesOnly;
+
+  /**
+   * The latch that is released when the processor can start performing operations, or
+   * <code>null</code> if it can start as soon as it is run.
+   */
+  private CountDownLatch startSignal;
+
   /**
    * The current state of the processor.
    */
@@ -69,7 +87,35 @@ public class OperationProcessor {
    * @param queue the queue containing the operations to be processed
    */
   public OperationProcessor(OperationQueue queue) {
+    this(queue, false);
+  }
+
+  /**
+   * Initialize a newly created operation processor to process the operations on the given queue.
+   * 
+   * @param queue the queue containing the operations to be processed
+   * @param queriesOnly <code>true</code> if the processor should only perform the queries that can
+   *          be answered before pending operations
+   */
+  public OperationProcessor(OperationQueue queue, boolean queriesOnly) {
+    this(queue, queriesOnly, null);
+  }
+
+  /**
+   * Initialize a newly created operation processor to process the operations on the given queue
+   * once the given latch has been released. Operations that are added to the queue before then
+   * wait in the queue.
+   * 
+   * @param queue the queue containing the operations to be processed
+   * @param queriesOnly <code>true</code> if the processor should only perform the queries that can
+   *          be answered before pending operations
+   * @param startSignal the latch that is released when the processor can start performing
+   *          operations, or <code>null</code> if it can start as soon as it is run
+   */
+  public OperationProcessor(OperationQueue queue, boolean queriesOnly, CountDownLatch startSignal) {
     this.queue = queue;
+    this.queriesOnly = queriesOnly;
+    this.startSignal = startSignal;
   }
 
   /**
@@ -87,10 +133,24 @@ public class OperationProcessor {
       state = ProcessorState.RUNNING;
     }
     try {
+      if (startSignal != null) {
+        try {
+          while (isRunning() && !startSignal.await(WAIT_DURATION, TimeUnit.MILLISECONDS)) {
+            // Operations cannot be performed until the start signal has been given.
+          }
+        } catch (InterruptedException exception) {
+          synchronized (this) {
+            if (state == ProcessorState.RUNNING) {
+              state = ProcessorState.STOP_REQESTED;
+            }
+          }
+        }
+      }
       while (isRunning()) {
         IndexOperation operation = null;
         try {
-          operation = queue.dequeue(WAIT_DURATION);
+          operation = queriesOnly ? queue.dequeueQuery(WAIT_DURATION)
+              : queue.dequeue(WAIT_DURATION);
         } catch (InterruptedException exception) {
           synchronized (this) {
             if (state == ProcessorState.RUNNING) {
@@ -102,7 +162,13 @@ public class OperationProcessor {
           if (DartCoreDebug.TRACE_INDEX_PROCESSOR) {
             DartCore.logInformation("Operation Processor: beginning " + operation);
           }
-          operation.performOperation();
+          try {
+            operation.performOperation();
+          } finally {
+            if (queriesOnly) {
+              queue.queryCompleted();
+            }
+          }
           if (DartCoreDebug.TRACE_INDEX_PROCESSOR) {
             DartCore.logInformation("Operation Processor: completed " + operation);
           }
@@ -13,17 +13,103 @@
  */
 package com.google.dart.tools.core.internal.index.operation;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 
 /**
  * Instances of the class <code>OperationQueue</code> represent a queue of operations against the
  * index that are waiting to be performed.
+ * <p>
+ * {@link IndexOperation#isQuery() Queries} are performed before any pending
+ * {@link IndexResourceOperation}, so that they do not wait behind the indexing of large numbers of
+ * resources. A query is never performed before any other kind of operation that was added to the
+ * queue before it, so a query will not see information about a resource that has been removed. All
+ * other operations are performed in the order in which they were added to the queue.
+ * <p>
+ * Queries that can overtake the pending operations can also be removed by a second processor using
+ * {@link #dequeueQuery(long)}, and performed while the first processor is indexing resources. An
+ * operation that cannot be overtaken is not removed until such queries have been completed, so
+ * that they do not see its effects either.
  */
 public class OperationQueue {
   /**
-   * The operations that are waiting to be performed.
+   * Instances of the class <code>QueuedOperation</code> record the time at which an operation was
+   * added to the queue.
    */
-  private ArrayList<IndexOperation> operations = new ArrayList<IndexOperation>();
+  private static class QueuedOperation {
+    /**
+     * The operation that was added to the queue.
+     */
+    private final IndexOperation operation;
+
+    /**
+     * The time at which the operation was added to the queue.
+     */
+    private final long enqueueTime;
+
+    public QueuedOperation(IndexOperation operation, long enqueueTime) {
+      this.operation = operation;
+      this.enqueueTime = enqueueTime;
+    }
+  }
+
+  /**
+   * The queries that are waiting to be performed before any of the {@link #operations}.
+   */
+  private ArrayDeque<QueuedOperation> queries = new ArrayDeque<QueuedOperation>();
+
+  /**
+   * The operations that are waiting to be performed, in the order in which they were added.
+   */
+  private ArrayDeque<QueuedOperation> operations = new ArrayDeque<QueuedOperation>();
+
+  /**
+   * The number of operations in {@link #operations} that cannot be overtaken by a query.
+   */
+  private int barrierCount = 0;
+
+  /**
+   * The number of queries that were removed by {@link #dequeueQuery(long)} and have not yet been
+   * completed.
+   */
+  private int runningQueryCount = 0;
+
+  /**
+   * The largest number of operations that were waiting to be performed since the last time the
+   * statistics were cleared.
+   */
+  private int maxDepth = 0;
+
+  /**
+   * The number of queries that were removed from this queue since the last time the statistics
+   * were cleared.
+   */
+  private int queryCount = 0;
+
+  /**
+   * The number of milliseconds the queries that were removed from this queue spent waiting.
+   */
+  private long totalQueryWaitTime = 0L;
+
+  /**
+   * The largest number of milliseconds a query that was removed from this queue spent waiting.
+   */
+  private long maxQueryWaitTime = 0L;
+
+  /**
+   * The number of operations other than queries that were removed from this queue since the last
+   * time the statistics were cleared.
+   */
+  private int updateCount = 0;
+
+  /**
+   * The number of milliseconds the operations other than queries spent waiting.
+   */
+  private long totalUpdateWaitTime = 0L;
+
+  /**
+   * The largest number of milliseconds an operation other than a query spent waiting.
+   */
+  private long maxUpdateWaitTime = 0L;
 
   /**
    * Initialize a newly created operation queue to be empty.
@@ -32,6 +118,21 @@ public class OperationQueue {
     super();
   }
 
+  /**
+   * Clear the statistics about the depth of this queue and the time spent waiting in it.
+   */
+  public void clearStatistics() {
+    synchronized (operations) {
+      maxDepth = queries.size() + operations.size();
+      queryCount = 0;
+      totalQueryWaitTime = 0L;
+      maxQueryWaitTime = 0L;
+      updateCount = 0;
+      totalUpdateWaitTime = 0L;
+      maxUpdateWaitTime = 0L;
+    }
+  }
+
   /**
    * If this queue is not empty, then remove the next operation from the head of this queue and
    * return it. If this queue is empty, then the behavior of this method depends on the value of the
@@ -56,16 +157,51 @@ public class OperationQueue {
    */
   public IndexOperation dequeue(long timeout) throws InterruptedException {
     synchronized (operations) {
-      if (operations.isEmpty()) {
+      if (!canDequeue()) {
         if (timeout <= 0L) {
           return null;
         }
         operations.wait(timeout);
-        if (operations.isEmpty()) {
+        if (!canDequeue()) {
           return null;
         }
       }
-      return operations.remove(0);
+      QueuedOperation queuedOperation = queries.pollFirst();
+      if (queuedOperation == null) {
+        queuedOperation = operations.removeFirst();
+        if (isBarrier(queuedOperation.operation)) {
+          barrierCount--;
+        }
+      }
+      return removed(queuedOperation);
+    }
+  }
+
+  /**
+   * Remove and return the next query that can be performed before the operations that are waiting
+   * to be performed, waiting for one to be added for at most the given number of milliseconds, as
+   * in {@link #dequeue(long)}. The caller must invoke {@link #queryCompleted()} once it has
+   * performed the query.
+   * 
+   * @param timeout the maximum number of milliseconds to wait for a query to be available before
+   *          giving up and returning <code>null</code>
+   * @return the query that was removed from the queue, or <code>null</code>
+   * @throws InterruptedException if the thread on which this method is running was interrupted
+   *           while it was waiting for a query to be added to the queue
+   */
+  public IndexOperation dequeueQuery(long timeout) throws InterruptedException {
+    synchronized (operations) {
+      if (queries.isEmpty()) {
+        if (timeout <= 0L) {
+          return null;
+        }
+        operations.wait(timeout);
+        if (queries.isEmpty()) {
+          return null;
+        }
+      }
+      runningQueryCount++;
+      return removed(queries.removeFirst());
     }
   }
 
@@ -76,8 +212,168 @@ public class OperationQueue {
    */
   public void enqueue(IndexOperation operation) {
     synchronized (operations) {
-      operations.add(operation);
+      QueuedOperation queuedOperation = new QueuedOperation(operation, System.currentTimeMillis());
+      if (operation.isQuery() && barrierCount == 0) {
+        queries.addLast(queuedOperation);
+      } else {
+        operations.addLast(queuedOperation);
+        if (isBarrier(operation)) {
+          barrierCount++;
+        }
+      }
+      maxDepth = Math.max(maxDepth, queries.size() + operations.size());
+      operations.notifyAll();
+    }
+  }
+
+  /**
+   * Return the largest number of operations that were waiting to be performed since the last time
+   * the statistics were cleared.
+   * 
+   * @return the largest number of operations that were waiting to be performed
+   */
+  public int getMaxDepth() {
+    synchronized (operations) {
+      return maxDepth;
+    }
+  }
+
+  /**
+   * Return the largest number of milliseconds a query spent waiting in this queue since the last
+   * time the statistics were cleared.
+   * 
+   * @return the largest number of milliseconds a query spent waiting
+   */
+  public long getMaxQueryWaitTime() {
+    synchronized (operations) {
+      return maxQueryWaitTime;
+    }
+  }
+
+  /**
+   * Return the largest number of milliseconds an operation other than a query spent waiting in this
+   * queue since the last time the statistics were cleared.
+   * 
+   * @return the largest number of milliseconds an operation other than a query spent waiting
+   */
+  public long getMaxUpdateWaitTime() {
+    synchronized (operations) {
+      return maxUpdateWaitTime;
+    }
+  }
+
+  /**
+   * Return the number of queries that were removed from this queue since the last time the
+   * statistics were cleared.
+   * 
+   * @return the number of queries that were removed from this queue
+   */
+  public int getQueryCount() {
+    synchronized (operations) {
+      return queryCount;
+    }
+  }
+
+  /**
+   * Return the number of milliseconds the queries that were removed from this queue spent waiting
+   * since the last time the statistics were cleared.
+   * 
+   * @return the number of milliseconds the queries spent waiting
+   */
+  public long getTotalQueryWaitTime() {
+    synchronized (operations) {
+      return totalQueryWaitTime;
+    }
+  }
+
+  /**
+   * Return the number of milliseconds the operations other than queries that were removed from this
+   * queue spent waiting since the last time the statistics were cleared.
+   * 
+   * @return the number of milliseconds the operations other than queries spent waiting
+   */
+  public long getTotalUpdateWaitTime() {
+    synchronized (operations) {
+      return totalUpdateWaitTime;
+    }
+  }
+
+  /**
+   * Return the number of operations other than queries that were removed from this queue since the
+   * last time the statistics were cleared.
+   * 
+   * @return the number of operations other than queries that were removed from this queue
+   */
+  public int getUpdateCount() {
+    synchronized (operations) {
+      return updateCount;
+    }
+  }
+
+  /**
+   * Record that a query that was removed by {@link #dequeueQuery(long)} has been performed.
+   */
+  public void queryCompleted() {
+    synchronized (operations) {
+      runningQueryCount--;
       operations.notifyAll();
     }
   }
+
+  /**
+   * Return the number of operations that are waiting to be performed.
+   * 
+   * @return the number of operations that are waiting to be performed
+   */
+  public int size() {
+    synchronized (operations) {
+      return queries.size() + operations.size();
+    }
+  }
+
+  /**
+   * Return <code>true</code> if {@link #dequeue(long)} can remove an operation. An operation that
+   * cannot be overtaken by queries is not removed while queries are being performed.
+   * 
+   * @return <code>true</code> if an operation can be removed
+   */
+  private boolean canDequeue() {
+    if (!queries.isEmpty()) {
+      return true;
+    }
+    QueuedOperation next = operations.peekFirst();
+    return next != null && (runningQueryCount == 0 || !isBarrier(next.operation));
+  }
+
+  /**
+   * Return <code>true</code> if the given operation cannot be overtaken by a query that is added to
+   * the queue after it.
+   * 
+   * @param operation the operation being tested
+   * @return <code>true</code> if the operation cannot be overtaken by a query
+   */
+  private boolean isBarrier(IndexOperation operation) {
+    return !operation.isQuery() && !(operation instanceof IndexResourceOperation);
+  }
+
+  /**
+   * Record the time the given operation spent waiting in this queue, and return the operation.
+   * 
+   * @param queuedOperation the operation that was removed from this queue
+   * @return the operation that was removed
+   */
+  private IndexOperation removed(QueuedOperation queuedOperation) {
+    IndexOperation operation = queuedOperation.operation;
+    long waitTime = System.currentTimeMillis() - queuedOperation.enqueueTime;
+    if (operation.isQuery()) {
+      queryCount++;
+      totalQueryWaitTime += waitTime;
+      maxQueryWaitTime = Math.max(maxQueryWaitTime, waitTime);
+    } else {
+      updateCount++;
+      totalUpdateWaitTime += waitTime;
+      maxUpdateWaitTime = Math.max(maxUpdateWaitTime, waitTime);
+    }
+    return operation;
+  }
 }
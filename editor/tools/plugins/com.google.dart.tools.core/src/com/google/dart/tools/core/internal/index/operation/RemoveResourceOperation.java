@@ -14,6 +14,8 @@
 package com.google.dart.tools.core.internal.index.operation;
 
 import com.google.dart.tools.core.index.Resource;
+import com.google.dart.tools.core.internal.index.impl.InMemoryIndex;
+import com.google.dart.tools.core.internal.index.persistance.IndexSegmentLog;
 import com.google.dart.tools.core.internal.index.store.IndexStore;
 
 /**
@@ -26,6 +28,12 @@ public class RemoveResourceOperation implements IndexOperation {
    */
   private IndexStore indexStore;
 
+  /**
+   * The index whose segment log the changes to the index are to be appended to, or
+   * <code>null</code> if the changes are not to be recorded.
+   */
+  private InMemoryIndex index;
+
   /**
    * The resource being indexed.
    */
@@ -35,17 +43,27 @@ public class RemoveResourceOperation implements IndexOperation {
    * Initialize a newly created operation that will index the specified resource.
    * 
    * @param indexStore the index store against which this operation is being run
+   * @param index the index whose segment log the changes to the index are to be appended to, or
+   *          <code>null</code> if the changes are not to be recorded
    * @param resource the resource being indexed
    */
-  public RemoveResourceOperation(IndexStore indexStore, Resource resource) {
+  public RemoveResourceOperation(IndexStore indexStore, InMemoryIndex index, Resource resource) {
     this.indexStore = indexStore;
+    this.index = index;
     this.resource = resource;
   }
 
+  @Override
+  public boolean isQuery() {
+    return false;
+  }
+
   @Override
   public void performOperation() {
-    synchronized (indexStore) {
-      indexStore.removeResource(resource);
+    indexStore.removeResource(resource);
+    IndexSegmentLog segmentLog = index == null ? null : index.getSegmentLog();
+    if (segmentLog != null) {
+      segmentLog.recordRemove(resource);
     }
   }
 
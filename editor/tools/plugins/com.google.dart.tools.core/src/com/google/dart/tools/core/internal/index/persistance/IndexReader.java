@@ -15,21 +15,23 @@ package com.google.dart.tools.core.internal.index.persistance;
 
 import com.google.dart.tools.core.index.Attribute;
 import com.google.dart.tools.core.index.Element;
-import com.google.dart.tools.core.index.Location;
 import com.google.dart.tools.core.index.Relationship;
 import com.google.dart.tools.core.index.Resource;
-import com.google.dart.tools.core.internal.index.store.ContributedLocation;
 import com.google.dart.tools.core.internal.index.store.IndexStore;
+import com.google.dart.tools.core.internal.index.store.LocationTable;
 import com.google.dart.tools.core.model.DartSdk;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.HashMap;
 
 /**
  * Instances of the class <code>IndexReader</code> implement an object that can read the contents of
- * an index from a {@link Reader reader}.
+ * an index from a {@link ByteBuffer buffer} in the format written by {@link IndexWriter}. Only the
+ * string table, the resources, the elements, the attributes and the directory of relationships are
+ * decoded; the locations are left in the buffer and are read by the index when they are needed.
  */
 public class IndexReader {
   /**
@@ -42,18 +44,6 @@ public class IndexReader {
    */
   private String[] stringTable;
 
-  /**
-   * A table mapping resource identifiers to the resources representing them. This is an
-   * optimization used to reduce the number of objects created.
-   */
-  private HashMap<String, Resource> resourceMap = new HashMap<String, Resource>();
-
-  /**
-   * A table mapping element identifiers to the elements representing them. This is an optimization
-   * used to reduce the number of objects created.
-   */
-  private HashMap<String, Element> elementMap = new HashMap<String, Element>();
-
   /**
    * Initialize a newly created index reader to add the attributes and relationships that are read
    * into the given index.
@@ -65,188 +55,196 @@ public class IndexReader {
   }
 
   /**
-   * Read the contents of the index from the given input stream.
+   * Read the contents of the index from the given buffer. The buffer is retained by the index, and
+   * must not be modified afterwards.
    * 
-   * @param input the stream from which the contents of the index are to be read
-   * @return <code>true</code> if the input stream is valid and could be read
+   * @param buffer the buffer from which the contents of the index are to be read
+   * @return <code>true</code> if the buffer is valid and could be read
    * @throws IOException if the index could not be read
    */
-  public boolean readIndex(ObjectInputStream input) throws IOException {
-    int version = input.readInt(); // File version number.
-    if (version == 1) {
-      // Version 1 was considered unreadable if the editor's build number had changed. Given that
-      // a change to the version number necessitates a new build, a file with this version can never
-      // be readable once a new version was introduced.
-      return false;
-    } else if (version == 2) {
-      return readIndexVersion2(input);
-    } else {
-      throw new IOException("Invalid version number in index file: " + version);
-    }
+  public boolean readIndex(ByteBuffer buffer) throws IOException {
+    return readIndex(buffer, DartSdk.getInstance().getSdkVersion());
   }
 
   /**
-   * Read the contents of the index from the given input stream given that the version of the file
-   * format has been determined to be <code>2</code>.
+   * Read the contents of the index from the given buffer if it is the index of the given version of
+   * the SDK. The buffer is retained by the index, and must not be modified afterwards.
    * 
-   * @param input the stream from which the contents of the index are to be read
-   * @return <code>true</code> if the input stream is valid and could be read
+   * @param buffer the buffer from which the contents of the index are to be read
+   * @param sdkVersion the version of the SDK the index is expected to be for
+   * @return <code>true</code> if the buffer is valid and could be read
    * @throws IOException if the index could not be read
    */
-  public boolean readIndexVersion2(ObjectInputStream input) throws IOException {
-    String sdkVersion = input.readUTF();
-    if (!sdkVersion.equals(DartSdk.getInstance().getSdkVersion())) {
+  public boolean readIndex(ByteBuffer buffer, String sdkVersion) throws IOException {
+    buffer = buffer.slice();
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    if (buffer.limit() < IndexWriter.HEADER_SIZE * 4
+        || buffer.getInt(0) != IndexWriter.FILE_MAGIC_NUMBER) {
+      // Files written before version 3 were serialized objects and are not readable.
       return false;
     }
-    readStringTable(input);
-    readAttributeMap(input);
-    readRelationshipMap(input);
-    return true;
-  }
-
-  /**
-   * Read an attribute from the given input stream.
-   * 
-   * @param input the stream from which the attribute is to be read
-   * @return the attribute that was read
-   * @throws IOException if the attribute could not be read
-   */
-  private Attribute readAttribute(ObjectInputStream input) throws IOException {
-    return Attribute.getAttribute(readString(input));
-  }
-
-  /**
-   * Read the attribute map from the given input stream.
-   * 
-   * @param input the stream from which the attribute map is to be read
-   * @throws IOException if the attribute map could not be read
-   */
-  private void readAttributeMap(ObjectInputStream input) throws IOException {
-    int elementCount = input.readInt();
+    int version = buffer.getInt(4);
+    if (version != IndexWriter.FILE_VERSION_NUMBER) {
+      throw new IOException("Invalid version number in index file: " + version);
+    }
+    IntBuffer header = buffer.asIntBuffer();
+    header.position(2);
+    int sdkVersionIndex = header.get();
+    int stringCount = header.get();
+    int stringOffsetsPosition = header.get();
+    int stringDataPosition = header.get();
+    int resourceCount = header.get();
+    int resourcePosition = header.get();
+    int elementCount = header.get();
+    int elementPosition = header.get();
+    int attributeCount = header.get();
+    int attributePosition = header.get();
+    int directoryCount = header.get();
+    int directoryPosition = header.get();
+    int locationSize = header.get();
+    int locationPosition = header.get();
+    checkSection(buffer, stringOffsetsPosition, stringCount + 1, 4);
+    checkSection(buffer, resourcePosition, resourceCount, 4);
+    checkSection(buffer, elementPosition, elementCount, 8);
+    checkSection(buffer, attributePosition, attributeCount, 16);
+    checkSection(buffer, directoryPosition, directoryCount, 16);
+    checkSection(buffer, locationPosition, locationSize, 4);
+
+    readStringTable(buffer, stringCount, stringOffsetsPosition, stringDataPosition);
+    if (!readString(sdkVersionIndex).equals(sdkVersion)) {
+      return false;
+    }
+    Resource[] resources = new Resource[resourceCount];
+    HashMap<String, Integer> resourceIds = new HashMap<String, Integer>(resourceCount * 2);
+    for (int i = 0; i < resourceCount; i++) {
+      String resourceId = readString(buffer.getInt(resourcePosition + i * 4));
+      resources[i] = new Resource(resourceId);
+      resourceIds.put(resourceId, Integer.valueOf(i));
+    }
+    Element[] elements = new Element[elementCount];
     for (int i = 0; i < elementCount; i++) {
-      Element element = readElement(input);
-      int attributeCount = input.readInt();
-      for (int j = 0; j < attributeCount; j++) {
-        index.recordAttribute(element, readAttribute(input), readString(input));
+      int position = elementPosition + i * 8;
+      int resourceIndex = buffer.getInt(position);
+      if (resourceIndex >= 0) {
+        elements[i] = new Element(getResource(resources, resourceIds, readString(resourceIndex)),
+            readString(buffer.getInt(position + 4)));
       }
     }
-  }
-
-  /**
-   * Read a contributed location from the given input stream.
-   * 
-   * @param input the stream from which the contributed location is to be read
-   * @return the contributed location that was read
-   * @throws IOException if the contributed location could not be read
-   */
-  private ContributedLocation readContributedLocation(ObjectInputStream input) throws IOException {
-    return new ContributedLocation(readResource(input), readLocation(input));
-  }
-
-  /**
-   * Read an element from the given input stream.
-   * 
-   * @param input the stream from which the element is to be read
-   * @return the element that was read
-   * @throws IOException if the element could not be read
-   */
-  private Element readElement(ObjectInputStream input) throws IOException {
-    Resource resource = readResource(input);
-    String elementId = readString(input);
-    String elementKey = resource.getResourceId() + "#" + elementId;
-    Element element = elementMap.get(elementKey);
-    if (element == null) {
-      element = new Element(resource, elementId);
-      elementMap.put(elementKey, element);
+    HashMap<Element, HashMap<Attribute, String>> attributeMap;
+    attributeMap = new HashMap<Element, HashMap<Attribute, String>>();
+    for (int i = 0; i < attributeCount; i++) {
+      int position = attributePosition + i * 16;
+      Element element = new Element(getResource(resources, resourceIds,
+          readString(buffer.getInt(position))), readString(buffer.getInt(position + 4)));
+      HashMap<Attribute, String> elementAttributeMap = attributeMap.get(element);
+      if (elementAttributeMap == null) {
+        elementAttributeMap = new HashMap<Attribute, String>();
+        attributeMap.put(element, elementAttributeMap);
+      }
+      elementAttributeMap.put(Attribute.getAttribute(readString(buffer.getInt(position + 8))),
+          readString(buffer.getInt(position + 12)));
     }
-    return element;
-  }
-
-  /**
-   * Read a location from the given input stream.
-   * 
-   * @param input the stream from which the location is to be read
-   * @return the location that was read
-   * @throws IOException if the location could not be read
-   */
-  private Location readLocation(ObjectInputStream input) throws IOException {
-    return new Location(readElement(input), input.readInt(), input.readInt());
-  }
-
-  /**
-   * Read a relationship from the given input stream.
-   * 
-   * @param input the stream from which the relationship is to be read
-   * @return the relationship that was read
-   * @throws IOException if the relationship could not be read
-   */
-  private Relationship readRelationship(ObjectInputStream input) throws IOException {
-    return Relationship.getRelationship(readString(input));
+    LocationTable[] locationTables = new LocationTable[elementCount];
+    for (int i = 0; i < directoryCount; i++) {
+      int position = directoryPosition + i * 16;
+      int elementId = buffer.getInt(position);
+      int start = buffer.getInt(position + 8);
+      int size = buffer.getInt(position + 12);
+      if (elementId < 0 || elementId >= elementCount || elements[elementId] == null || start < 0
+          || size < 0 || size % LocationTable.LOCATION_SIZE != 0 || start + size > locationSize) {
+        throw new IOException("Invalid relationship in index file at " + position);
+      }
+      LocationTable table = locationTables[elementId];
+      if (table == null) {
+        table = new LocationTable();
+        locationTables[elementId] = table;
+      }
+      String relationshipId = readString(buffer.getInt(position + 4));
+      table.addBuffered(Relationship.getRelationship(relationshipId), start, size);
+    }
+    buffer.position(locationPosition);
+    buffer.limit(locationPosition + locationSize * 4);
+    IntBuffer locations = buffer.slice().asIntBuffer();
+    index.loadIndex(resources, elements, attributeMap, locationTables, locations);
+    return true;
   }
 
   /**
-   * Read the relationship map from the given input stream.
+   * Check that a section of the given size fits in the given buffer.
    * 
-   * @param input the stream from which the relationship map is to be read
-   * @throws IOException if the relationship map could not be read
-   */
-  private void readRelationshipMap(ObjectInputStream input) throws IOException {
-    int elementCount = input.readInt();
-    for (int i = 0; i < elementCount; i++) {
-      Element element = readElement(input);
-      int relationshipCount = input.readInt();
-      for (int j = 0; j < relationshipCount; j++) {
-        Relationship relationship = readRelationship(input);
-        int locationCount = input.readInt();
-        for (int k = 0; k < locationCount; k++) {
-          ContributedLocation location = readContributedLocation(input);
-          index.recordRelationship(location.getContributor(), element, relationship,
-              location.getLocation());
-        }
-      }
+   * @param buffer the buffer containing the section
+   * @param position the position of the first byte of the section
+   * @param count the number of records in the section
+   * @param recordSize the number of bytes in each record
+   * @throws IOException if the section does not fit in the buffer
+   */
+  private void checkSection(ByteBuffer buffer, int position, int count, int recordSize)
+      throws IOException {
+    if (position < 0 || count < 0 || (long) position + (long) count * recordSize > buffer.limit()) {
+      throw new IOException("Invalid section in index file at " + position);
     }
   }
 
   /**
-   * Read a resource from the given input stream.
+   * Return the resource with the given identifier, reusing the resource that was read from the
+   * resource section if there is one.
    * 
-   * @param input the stream from which the resource is to be read
-   * @return the resource that was read
-   * @throws IOException if the resource could not be read
-   */
-  private Resource readResource(ObjectInputStream input) throws IOException {
-    String resourceId = readString(input);
-    Resource resource = resourceMap.get(resourceId);
-    if (resource == null) {
-      resource = new Resource(resourceId);
-      resourceMap.put(resourceId, resource);
+   * @param resources the resources that were read
+   * @param resourceIds a table mapping resource identifiers to the index of the resource
+   * @param resourceId the identifier of the resource to be returned
+   * @return the resource with the given identifier
+   */
+  private Resource getResource(Resource[] resources, HashMap<String, Integer> resourceIds,
+      String resourceId) {
+    Integer index = resourceIds.get(resourceId);
+    if (index == null) {
+      return new Resource(resourceId);
     }
-    return resource;
+    return resources[index.intValue()];
   }
 
   /**
-   * Read a string from the given input stream.
+   * Return the string with the given index in the string table.
    * 
-   * @param input the stream from which the string is to be read
-   * @return the string that was read
-   * @throws IOException if the string could not be read
+   * @param index the index of the string to be returned
+   * @return the string with the given index
+   * @throws IOException if there is no string with the given index
    */
-  private String readString(ObjectInputStream input) throws IOException {
-    int index = input.readInt();
+  private String readString(int index) throws IOException {
+    if (index < 0 || index >= stringTable.length) {
+      throw new IOException("Invalid string index in index file: " + index);
+    }
     return stringTable[index];
   }
 
   /**
-   * Read the string table from the given input stream.
+   * Read the string table from the given buffer.
    * 
-   * @param input the stream from which the string table is to be read
+   * @param buffer the buffer from which the string table is to be read
+   * @param count the number of strings in the table
+   * @param offsetsPosition the position of the offsets of the strings
+   * @param dataPosition the position of the encoded strings
    * @throws IOException if the string table could not be read
    */
-  private void readStringTable(ObjectInputStream input) throws IOException {
-    int length = input.readInt();
-    stringTable = new String[length];
-    for (int i = 0; i < length; i++) {
-      stringTable[i] = input.readUTF();
+  private void readStringTable(ByteBuffer buffer, int count, int offsetsPosition, int dataPosition)
+      throws IOException {
+    stringTable = new String[count];
+    byte[] bytes = new byte[256];
+    int start = buffer.getInt(offsetsPosition);
+    for (int i = 0; i < count; i++) {
+      int end = buffer.getInt(offsetsPosition + (i + 1) * 4);
+      int length = end - start;
+      if (start < 0 || length < 0 || dataPosition + end > buffer.limit()) {
+        throw new IOException("Invalid string in index file: " + i);
+      }
+      if (length > bytes.length) {
+        bytes = new byte[Math.max(length, bytes.length * 2)];
+      }
+      ByteBuffer data = buffer.duplicate();
+      data.position(dataPosition + start);
+      data.get(bytes, 0, length);
+      stringTable[i] = new String(bytes, 0, length, IndexWriter.UTF_8);
+      start = end;
     }
   }
 }
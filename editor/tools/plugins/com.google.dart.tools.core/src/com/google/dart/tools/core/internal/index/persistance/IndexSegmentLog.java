@@ -0,0 +1,630 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.tools.core.internal.index.persistance;
+
+import com.google.dart.tools.core.DartCore;
+import com.google.dart.tools.core.index.Resource;
+import com.google.dart.tools.core.internal.index.store.IndexStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+/**
+ * Instances of the class <code>IndexSegmentLog</code> keep the contents of an index on disk as a
+ * base segment, holding the whole index as written by {@link IndexWriter}, followed by the changes
+ * made to the index since the base segment was written.
+ * <p>
+ * The changes are appended to a log as one small segment per operation: either the information
+ * contributed by a resource that was indexed, in the format written by {@link IndexWriter}, or the
+ * removal of a resource. Each segment is preceded by its length and a CRC-32 checksum, so that a
+ * segment that was only partially written when the process terminated is detected and ignored.
+ * <p>
+ * When the log grows larger than the base segment, the index is compacted: a new log is started and
+ * a copy of the index is written as the new base segment on a background thread, after which the
+ * previous base segment and logs are deleted. Segments are numbered by generation. The files of a
+ * generation <i>n</i> are <code><i>prefix</i>-<i>n</i>.idx</code>, which holds the index as it was
+ * when the log <code><i>prefix</i>-<i>n</i>.log</code> was started. To recover the index, the
+ * newest base segment that can be read is loaded and the logs of the same or later generations are
+ * replayed in order. The segments of a log that were not completely written are removed when the log
+ * is replayed, because the changes made after recovering are appended to a later log.
+ */
+public class IndexSegmentLog {
+  /**
+   * The suffix of the files containing base segments.
+   */
+  private static final String BASE_SUFFIX = ".idx";
+
+  /**
+   * The suffix of the files containing logs.
+   */
+  private static final String LOG_SUFFIX = ".log";
+
+  /**
+   * The suffix of the files being written by the compactor.
+   */
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+
+  /**
+   * The kind of segment recording the information contributed by a resource.
+   */
+  private static final byte INDEX_SEGMENT = 1;
+
+  /**
+   * The kind of segment recording the removal of a resource.
+   */
+  private static final byte REMOVE_SEGMENT = 2;
+
+  /**
+   * The size of the log below which the index is never compacted.
+   */
+  private static final long MIN_COMPACTION_SIZE = 4 * 1024 * 1024;
+
+  /**
+   * The index whose contents are being kept.
+   */
+  private IndexStore indexStore;
+
+  /**
+   * The directory containing the segments.
+   */
+  private File directory;
+
+  /**
+   * The prefix of the names of the files containing the segments.
+   */
+  private String prefix;
+
+  /**
+   * The version of the SDK that is indexed.
+   */
+  private String sdkVersion;
+
+  /**
+   * The generation of the log to which segments are being appended.
+   */
+  private int generation = 0;
+
+  /**
+   * The stream used to append segments to the log, or <code>null</code> if the log is not open.
+   */
+  private FileOutputStream log;
+
+  /**
+   * The number of bytes in the logs that would be replayed to recover the index.
+   */
+  private long logSize = 0L;
+
+  /**
+   * The number of bytes in the newest base segment.
+   */
+  private long baseSize = 0L;
+
+  /**
+   * The thread writing a new base segment, or <code>null</code> if the index is not being
+   * compacted.
+   */
+  private Thread compactor;
+
+  /**
+   * A flag indicating whether a log could not be started or written, in which case the segments on
+   * disk no longer reflect the index and are deleted when the log is closed.
+   */
+  private boolean disabled = false;
+
+  /**
+   * Initialize a newly created log to keep the contents of the given index in the given directory.
+   * 
+   * @param indexStore the index whose contents are to be kept
+   * @param directory the directory containing the segments
+   * @param prefix the prefix of the names of the files containing the segments
+   * @param sdkVersion the version of the SDK that is indexed
+   */
+  public IndexSegmentLog(IndexStore indexStore, File directory, String prefix, String sdkVersion) {
+    this.indexStore = indexStore;
+    this.directory = directory;
+    this.prefix = prefix;
+    this.sdkVersion = sdkVersion;
+  }
+
+  /**
+   * Close the log, waiting for the index to be compacted if it is being compacted. The information
+   * in the index does not need to be written.
+   */
+  public void close() {
+    Thread runningCompactor;
+    synchronized (this) {
+      closeLog();
+      runningCompactor = compactor;
+    }
+    if (runningCompactor != null) {
+      try {
+        runningCompactor.join();
+      } catch (InterruptedException exception) {
+        // The partially written base segment will be ignored and deleted.
+      }
+    }
+    synchronized (this) {
+      if (disabled) {
+        deleteSegments(Integer.MAX_VALUE);
+      }
+    }
+  }
+
+  /**
+   * Start a new log and write the current contents of the index as the base segment of the new
+   * generation on a background thread, unless the index is already being compacted.
+   */
+  public synchronized void compact() {
+    if (compactor != null || disabled) {
+      return;
+    }
+    closeLog();
+    final int newGeneration = generation + 1;
+    try {
+      openLog(newGeneration);
+    } catch (IOException exception) {
+      DartCore.logError("Could not start index log: \"" + getLogFile(newGeneration) + "\"",
+          exception);
+      disabled = true;
+      return;
+    }
+    logSize = 0L;
+    final IndexWriter writer = indexStore.createIndexWriter();
+    compactor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeBase(writer, newGeneration);
+      }
+    }, "Index compactor");
+    compactor.setDaemon(true);
+    compactor.start();
+  }
+
+  /**
+   * Record that the information contributed by the given resource has been replaced by the
+   * information in the given index.
+   * 
+   * @param resource the resource that was indexed
+   * @param contributions the index containing the information contributed by the resource
+   */
+  public void recordIndex(Resource resource, IndexStore contributions) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeByte(INDEX_SEGMENT);
+      output.writeUTF(resource.getResourceId());
+      contributions.createIndexWriter().writeIndex(output, sdkVersion);
+      appendSegment(bytes.toByteArray());
+    } catch (IOException exception) {
+      DartCore.logError("Could not record the indexing of " + resource, exception);
+    }
+  }
+
+  /**
+   * Record that the information associated with the given resource has been removed.
+   * 
+   * @param resource the resource that was removed
+   */
+  public void recordRemove(Resource resource) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeByte(REMOVE_SEGMENT);
+      output.writeUTF(resource.getResourceId());
+      appendSegment(bytes.toByteArray());
+    } catch (IOException exception) {
+      DartCore.logError("Could not record the removal of " + resource, exception);
+    }
+  }
+
+  /**
+   * Replace the contents of the index with the contents of the newest base segment and the changes
+   * recorded since, and start a new log. If no base segment can be read, the index is left empty
+   * and all of the segments are deleted; the index should then be {@link #compact() compacted}
+   * once it has been rebuilt.
+   * 
+   * @return <code>true</code> if the contents of the index were recovered
+   * @throws IOException if a new log could not be started
+   */
+  public synchronized boolean recover() throws IOException {
+    for (File file : listFiles()) {
+      if (file.getName().endsWith(TEMPORARY_SUFFIX)) {
+        deleteFile(file);
+      }
+    }
+    ArrayList<Integer> baseGenerations = listGenerations(BASE_SUFFIX);
+    ArrayList<Integer> logGenerations = listGenerations(LOG_SUFFIX);
+    int lastGeneration = 0;
+    if (!baseGenerations.isEmpty()) {
+      lastGeneration = baseGenerations.get(baseGenerations.size() - 1).intValue();
+    }
+    if (!logGenerations.isEmpty()) {
+      lastGeneration = Math.max(lastGeneration,
+          logGenerations.get(logGenerations.size() - 1).intValue());
+    }
+    int baseGeneration = -1;
+    for (int i = baseGenerations.size() - 1; i >= 0 && baseGeneration < 0; i--) {
+      int candidate = baseGenerations.get(i).intValue();
+      File baseFile = getBaseFile(candidate);
+      indexStore.clear();
+      if (readBase(baseFile)) {
+        baseGeneration = candidate;
+        baseSize = baseFile.length();
+      } else {
+        deleteFile(baseFile);
+      }
+    }
+    logSize = 0L;
+    if (baseGeneration < 0) {
+      indexStore.clear();
+      baseSize = 0L;
+      deleteSegments(Integer.MAX_VALUE);
+    }
+    boolean truncated = true;
+    if (baseGeneration >= 0) {
+      boolean replaying = true;
+      for (Integer logGeneration : logGenerations) {
+        File logFile = getLogFile(logGeneration.intValue());
+        if (logGeneration.intValue() < baseGeneration) {
+          deleteFile(logFile);
+        } else if (replaying) {
+          long replayedLength = replayLog(logFile);
+          if (replayedLength < logFile.length()) {
+            // The log is cut back to the segments that were applied, so that the changes appended
+            // to the next log are replayed after them. The changes in later logs cannot be applied
+            // without the missing ones.
+            truncated = truncateFile(logFile, replayedLength);
+            replaying = false;
+          }
+          logSize += replayedLength;
+        } else {
+          deleteFile(logFile);
+        }
+      }
+    }
+    openLog(lastGeneration + 1);
+    if (!truncated) {
+      // The log would stop the replay of the next log, so the recovered index is written instead.
+      compact();
+    }
+    return baseGeneration >= 0;
+  }
+
+  /**
+   * Append the given segment to the log, compacting the index if the log has grown larger than the
+   * base segment.
+   * 
+   * @param segment the bytes of the segment
+   * @throws IOException if the segment could not be appended
+   */
+  private synchronized void appendSegment(byte[] segment) throws IOException {
+    if (log == null) {
+      return;
+    }
+    CRC32 checksum = new CRC32();
+    checksum.update(segment);
+    ByteBuffer record = ByteBuffer.allocate(8 + segment.length);
+    record.putInt(segment.length);
+    record.putInt((int) checksum.getValue());
+    record.put(segment);
+    try {
+      // Write the whole record at once, so that only the last record can be incomplete.
+      log.write(record.array());
+    } catch (IOException exception) {
+      closeLog();
+      disabled = true;
+      throw exception;
+    }
+    logSize += record.capacity();
+    if (logSize > Math.max(MIN_COMPACTION_SIZE, baseSize)) {
+      compact();
+    }
+  }
+
+  /**
+   * Close the log to which segments are being appended, if it is open.
+   */
+  private void closeLog() {
+    if (log != null) {
+      try {
+        log.close();
+      } catch (IOException exception) {
+        DartCore.logError("Could not close index log: \"" + getLogFile(generation) + "\"",
+            exception);
+      }
+      log = null;
+    }
+  }
+
+  /**
+   * Delete the given file, logging a failure to do so.
+   * 
+   * @param file the file to be deleted
+   */
+  private void deleteFile(File file) {
+    if (file.exists() && !file.delete()) {
+      DartCore.logError("Could not delete index segment: \"" + file.getAbsolutePath() + "\"");
+    }
+  }
+
+  /**
+   * Delete the base segments and the logs of the generations before the given generation, except
+   * the log to which segments are being appended.
+   * 
+   * @param limit the first generation whose segments are to be kept
+   */
+  private void deleteSegments(int limit) {
+    for (Integer baseGeneration : listGenerations(BASE_SUFFIX)) {
+      if (baseGeneration.intValue() < limit) {
+        deleteFile(getBaseFile(baseGeneration.intValue()));
+      }
+    }
+    for (Integer logGeneration : listGenerations(LOG_SUFFIX)) {
+      int logGenerationValue = logGeneration.intValue();
+      if (logGenerationValue < limit && (log == null || logGenerationValue != generation)) {
+        deleteFile(getLogFile(logGenerationValue));
+      }
+    }
+  }
+
+  /**
+   * Return the file containing the base segment of the given generation.
+   * 
+   * @param segmentGeneration the generation of the base segment
+   * @return the file containing the base segment of the given generation
+   */
+  private File getBaseFile(int segmentGeneration) {
+    return new File(directory, prefix + "-" + segmentGeneration + BASE_SUFFIX);
+  }
+
+  /**
+   * Return the file containing the log of the given generation.
+   * 
+   * @param segmentGeneration the generation of the log
+   * @return the file containing the log of the given generation
+   */
+  private File getLogFile(int segmentGeneration) {
+    return new File(directory, prefix + "-" + segmentGeneration + LOG_SUFFIX);
+  }
+
+  /**
+   * Return the files in the directory whose names start with the prefix.
+   * 
+   * @return the files in the directory whose names start with the prefix
+   */
+  private ArrayList<File> listFiles() {
+    ArrayList<File> result = new ArrayList<File>();
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().startsWith(prefix + "-")) {
+          result.add(file);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return the generations of the files with the given suffix, in increasing order.
+   * 
+   * @param suffix the suffix of the files
+   * @return the generations of the files with the given suffix
+   */
+  private ArrayList<Integer> listGenerations(String suffix) {
+    ArrayList<Integer> generations = new ArrayList<Integer>();
+    for (File file : listFiles()) {
+      String name = file.getName();
+      if (name.endsWith(suffix)) {
+        try {
+          generations.add(Integer.valueOf(name.substring(prefix.length() + 1, name.length()
+              - suffix.length())));
+        } catch (NumberFormatException exception) {
+          // Not a segment.
+        }
+      }
+    }
+    Collections.sort(generations);
+    return generations;
+  }
+
+  /**
+   * Start the log of the given generation.
+   * 
+   * @param logGeneration the generation of the log
+   * @throws IOException if the log could not be started
+   */
+  private void openLog(int logGeneration) throws IOException {
+    log = new FileOutputStream(getLogFile(logGeneration));
+    generation = logGeneration;
+  }
+
+  /**
+   * Replace the contents of the index with the contents of the given base segment.
+   * 
+   * @param baseFile the file containing the base segment
+   * @return <code>true</code> if the base segment could be read
+   */
+  private boolean readBase(File baseFile) {
+    try {
+      return indexStore.createIndexReader().readIndex(readFile(baseFile), sdkVersion);
+    } catch (IOException exception) {
+      DartCore.logError("Could not read index segment: \"" + baseFile.getAbsolutePath() + "\"",
+          exception);
+      return false;
+    }
+  }
+
+  /**
+   * Return a buffer containing the contents of the given file.
+   * 
+   * @param file the file to be read
+   * @return a buffer containing the contents of the given file
+   * @throws IOException if the file could not be read
+   */
+  private ByteBuffer readFile(File file) throws IOException {
+    FileInputStream input = new FileInputStream(file);
+    try {
+      FileChannel channel = input.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Index segment is too large: " + size + " bytes");
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          throw new IOException("Unexpected end of index segment");
+        }
+      }
+      buffer.flip();
+      return buffer;
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Apply the changes recorded in the given log to the index, stopping at the first segment that
+   * was not completely written.
+   * 
+   * @param logFile the file containing the log
+   * @return the number of bytes at the beginning of the log holding the segments that were applied
+   */
+  private long replayLog(File logFile) {
+    ByteBuffer buffer;
+    try {
+      buffer = readFile(logFile);
+    } catch (IOException exception) {
+      DartCore.logError("Could not read index log: \"" + logFile.getAbsolutePath() + "\"",
+          exception);
+      return 0L;
+    }
+    byte[] bytes = buffer.array();
+    CRC32 checksum = new CRC32();
+    while (buffer.remaining() >= 8) {
+      int start = buffer.position();
+      int length = buffer.getInt();
+      int expectedChecksum = buffer.getInt();
+      int offset = buffer.position();
+      if (length <= 0 || length > buffer.remaining()) {
+        return start;
+      }
+      checksum.reset();
+      checksum.update(bytes, offset, length);
+      if ((int) checksum.getValue() != expectedChecksum) {
+        return start;
+      }
+      try {
+        ByteArrayInputStream segment = new ByteArrayInputStream(bytes, offset, length);
+        DataInputStream input = new DataInputStream(segment);
+        byte kind = input.readByte();
+        Resource resource = new Resource(input.readUTF());
+        if (kind == INDEX_SEGMENT) {
+          IndexStore contributions = new IndexStore();
+          int contributionsOffset = offset + length - segment.available();
+          ByteBuffer contributionsBuffer = ByteBuffer.wrap(bytes, contributionsOffset,
+              segment.available());
+          if (!contributions.createIndexReader().readIndex(contributionsBuffer, sdkVersion)) {
+            return start;
+          }
+          indexStore.regenerateResource(resource, contributions);
+        } else if (kind == REMOVE_SEGMENT) {
+          indexStore.removeResource(resource);
+        } else {
+          return start;
+        }
+      } catch (IOException exception) {
+        DartCore.logError("Invalid segment in index log: \"" + logFile.getAbsolutePath() + "\"",
+            exception);
+        return start;
+      }
+      buffer.position(offset + length);
+    }
+    return buffer.position();
+  }
+
+  /**
+   * Cut the given file back to the given number of bytes, logging a failure to do so.
+   * 
+   * @param file the file to be truncated
+   * @param length the number of bytes to be kept
+   * @return <code>true</code> if the file was truncated
+   */
+  private boolean truncateFile(File file, long length) {
+    try {
+      RandomAccessFile output = new RandomAccessFile(file, "rw");
+      try {
+        output.setLength(length);
+      } finally {
+        output.close();
+      }
+      return true;
+    } catch (IOException exception) {
+      DartCore.logError("Could not truncate index log: \"" + file.getAbsolutePath() + "\"",
+          exception);
+      return false;
+    }
+  }
+
+  /**
+   * Write the contents of the given writer as the base segment of the given generation, and delete
+   * the segments it replaces.
+   * 
+   * @param writer the writer holding a copy of the contents of the index
+   * @param baseGeneration the generation of the base segment
+   */
+  private void writeBase(IndexWriter writer, int baseGeneration) {
+    File baseFile = getBaseFile(baseGeneration);
+    File temporaryFile = new File(directory, baseFile.getName() + TEMPORARY_SUFFIX);
+    boolean written = false;
+    try {
+      FileOutputStream output = new FileOutputStream(temporaryFile);
+      try {
+        writer.writeIndex(output, sdkVersion);
+        output.getFD().sync();
+      } finally {
+        output.close();
+      }
+      written = temporaryFile.renameTo(baseFile);
+      if (!written) {
+        DartCore.logError("Could not rename index segment: \"" + temporaryFile.getAbsolutePath()
+            + "\"");
+      }
+    } catch (IOException exception) {
+      DartCore.logError("Could not write index segment: \"" + baseFile.getAbsolutePath() + "\"",
+          exception);
+    }
+    synchronized (this) {
+      compactor = null;
+      if (written) {
+        baseSize = baseFile.length();
+        deleteSegments(baseGeneration);
+      } else {
+        deleteFile(temporaryFile);
+      }
+    }
+  }
+}
@@ -15,354 +15,314 @@ package com.google.dart.tools.core.internal.index.persistance;
 
 import com.google.dart.tools.core.index.Attribute;
 import com.google.dart.tools.core.index.Element;
-import com.google.dart.tools.core.index.Location;
-import com.google.dart.tools.core.index.Relationship;
 import com.google.dart.tools.core.index.Resource;
-import com.google.dart.tools.core.internal.index.store.ContributedLocation;
+import com.google.dart.tools.core.internal.index.store.LocationTable;
 import com.google.dart.tools.core.model.DartSdk;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Instances of the class <code>IndexWriter</code> implement an object that can write the contents
- * of an index to a {@link ObjectOutputStream stream}.
+ * of an index to a {@link OutputStream stream}.
+ * <p>
+ * The contents are written in a binary format that can be read, or memory-mapped, as a single
+ * buffer. The file starts with a header of {@link #HEADER_SIZE} integers: a magic number, the
+ * version number of the format, the index in the string table of the version of the SDK that was
+ * indexed, then the number of entries in and the position of each of the following sections:
+ * <ul>
+ * <li>the string table, as the positions of the UTF-8 encoded strings relative to the start of the
+ * string data (with one extra position marking the end of the last string), followed by the string
+ * data padded to a multiple of four bytes,</li>
+ * <li>the resources, as the index of the identifier of each resource in the string table,</li>
+ * <li>the elements, as the index of the resource and of the identifier of each element in the
+ * string table, or <code>-1</code> for identifiers that are not used,</li>
+ * <li>the attributes, as the indexes in the string table of the resource and the identifier of the
+ * element, of the attribute and of the value,</li>
+ * <li>the directory of relationships, as the element, the index of the relationship in the string
+ * table, the position of the first integer of the locations in the location section and the number
+ * of integers representing the locations,</li>
+ * <li>the locations, in the format used by {@link LocationTable}.</li>
+ * </ul>
+ * All of the records in a section have the same size, and all integers are big-endian.
  */
 public class IndexWriter {
   /**
-   * The table mapping elements to the values of attributes associated with those elements.
+   * The magic number at the start of the file.
    */
-  private HashMap<Element, HashMap<Attribute, String>> attributeMap;
+  public static final int FILE_MAGIC_NUMBER = 0x44494458;
 
   /**
-   * The table mapping elements to the relationships associated with those elements.
+   * The version number of the file format being generated.
    */
-  private HashMap<Element, HashMap<Relationship, ArrayList<ContributedLocation>>> relationshipMap;
+  public static int FILE_VERSION_NUMBER = 3;
 
   /**
-   * An array containing all of the strings to be written out.
+   * The number of integers in the header of the file.
    */
-  private String[] stringTable = new String[1024];
+  public static final int HEADER_SIZE = 16;
 
   /**
-   * The index of the next index in the string table that can be assigned to a string.
+   * The character set used to encode the strings.
    */
-  private int nextStringIndex = 0;
+  static final Charset UTF_8 = Charset.forName("UTF-8");
 
   /**
-   * A table mapping strings to the index that was assigned to the string.
+   * The resources to be written, indexed by their identifiers.
    */
-  private HashMap<String, Integer> stringMap = new HashMap<String, Integer>();
+  private Resource[] resources;
 
   /**
-   * The version number of the file format being generated.
+   * The elements to be written, indexed by their identifiers.
    */
-  public static int FILE_VERSION_NUMBER = 2;
+  private Element[] elements;
 
   /**
-   * Initialize a newly created index writer to write the attributes and relationships in the given
-   * maps.
-   * 
-   * @param attributeMap the table mapping elements to the values of attributes associated with
-   *          those elements
-   * @param relationshipMap the table mapping elements to the relationships associated with those
-   *          elements
+   * The table mapping elements to the values of attributes associated with those elements.
    */
-  public IndexWriter(HashMap<Element, HashMap<Attribute, String>> attributeMap,
-      HashMap<Element, HashMap<Relationship, ArrayList<ContributedLocation>>> relationshipMap) {
-    this.attributeMap = attributeMap;
-    this.relationshipMap = relationshipMap;
-  }
+  private HashMap<Element, HashMap<Attribute, String>> attributeMap;
 
   /**
-   * Write the contents of the index to the given output stream.
-   * 
-   * @param output the stream to which the contents of the index are to be written
-   * @throws IOException if the index could not be written
+   * The locations related to each of the elements.
    */
-  public void writeIndex(ObjectOutputStream output) throws IOException {
-    buildStringTable();
-
-    writeFileVersionNumber(output);
-    writeSDKVersionNumber(output);
-    writeStringTable(output);
-    writeAttributeMap(output);
-    writeRelationshipMap(output);
-  }
+  private LocationTable[] locationTables;
 
   /**
-   * Add the strings reachable from the attribute map to the string table.
+   * The buffer containing the locations that are not held in the location tables, or
+   * <code>null</code> if there are no such locations.
    */
-  private void addAttributeMapToStringTable() {
-    for (Map.Entry<Element, HashMap<Attribute, String>> elementEntry : attributeMap.entrySet()) {
-      addElementToStringTable(elementEntry.getKey());
-      for (Map.Entry<Attribute, String> attributeEntry : elementEntry.getValue().entrySet()) {
-        addAttributeToStringTable(attributeEntry.getKey());
-        addStringToStringTable(attributeEntry.getValue());
-      }
-    }
-  }
+  private IntBuffer buffer;
 
   /**
-   * Add the strings reachable from the given attribute to the string table.
-   * 
-   * @param attribute the attribute whose strings are to be added
+   * The strings to be written out.
    */
-  private void addAttributeToStringTable(Attribute attribute) {
-    addStringToStringTable(attribute.getIdentifier());
-  }
+  private ArrayList<String> stringTable = new ArrayList<String>(1024);
 
   /**
-   * Add the strings reachable from the given contributed location to the string table.
-   * 
-   * @param location the contributed location whose strings are to be added
+   * A table mapping strings to the index that was assigned to the string.
    */
-  private void addContributedLocationToStringTable(ContributedLocation location) {
-    addResourceToStringTable(location.getContributor());
-    addLocationToStringTable(location.getLocation());
-  }
+  private HashMap<String, Integer> stringMap = new HashMap<String, Integer>(1024);
 
   /**
-   * Add the strings reachable from the given element to the string table.
+   * Initialize a newly created index writer to write the given contents of an index.
    * 
-   * @param element the element whose strings are to be added
+   * @param resources the resources to be written, indexed by their identifiers
+   * @param elements the elements to be written, indexed by their identifiers, or <code>null</code>
+   *          for the identifiers that are not in use
+   * @param attributeMap the table mapping elements to the values of attributes associated with
+   *          those elements
+   * @param locationTables the locations related to each of the elements
+   * @param buffer the buffer containing the locations that are not held in the location tables, or
+   *          <code>null</code> if there are no such locations
    */
-  private void addElementToStringTable(Element element) {
-    addResourceToStringTable(element.getResource());
-    addStringToStringTable(element.getElementId());
+  public IndexWriter(Resource[] resources, Element[] elements,
+      HashMap<Element, HashMap<Attribute, String>> attributeMap, LocationTable[] locationTables,
+      IntBuffer buffer) {
+    this.resources = resources;
+    this.elements = elements;
+    this.attributeMap = attributeMap;
+    this.locationTables = locationTables;
+    this.buffer = buffer;
   }
 
   /**
-   * Add the strings reachable from the given location to the string table.
+   * Write the contents of the index to the given output stream.
    * 
-   * @param location the location whose strings are to be added
+   * @param output the stream to which the contents of the index are to be written
+   * @throws IOException if the index could not be written
    */
-  private void addLocationToStringTable(Location location) {
-    addElementToStringTable(location.getElement());
+  public void writeIndex(OutputStream output) throws IOException {
+    writeIndex(output, DartSdk.getInstance().getSdkVersion());
   }
 
   /**
-   * Add the strings reachable from the relationship map to the string table.
+   * Write the contents of the index to the given output stream, recording that it is the index of
+   * the given version of the SDK.
+   * 
+   * @param output the stream to which the contents of the index are to be written
+   * @param sdkVersion the version of the SDK that was indexed
+   * @throws IOException if the index could not be written
    */
-  private void addRelationshipMapToStringTable() {
-    for (Map.Entry<Element, HashMap<Relationship, ArrayList<ContributedLocation>>> elementEntry : relationshipMap.entrySet()) {
-      addElementToStringTable(elementEntry.getKey());
-      for (Map.Entry<Relationship, ArrayList<ContributedLocation>> relationshipEntry : elementEntry.getValue().entrySet()) {
-        addRelationshipToStringTable(relationshipEntry.getKey());
-        for (ContributedLocation location : relationshipEntry.getValue()) {
-          addContributedLocationToStringTable(location);
+  public void writeIndex(OutputStream output, String sdkVersion) throws IOException {
+    int sdkVersionIndex = addString(sdkVersion);
+    buildStringTable();
+    int stringCount = stringTable.size();
+    byte[][] encodedStrings = new byte[stringCount][];
+    int stringDataSize = 0;
+    for (int i = 0; i < stringCount; i++) {
+      encodedStrings[i] = stringTable.get(i).getBytes(UTF_8);
+      stringDataSize += encodedStrings[i].length;
+    }
+    int stringPadding = (4 - stringDataSize % 4) % 4;
+    int attributeCount = 0;
+    for (HashMap<Attribute, String> elementAttributeMap : attributeMap.values()) {
+      attributeCount += elementAttributeMap.size();
+    }
+    int directoryCount = 0;
+    int locationSize = 0;
+    for (LocationTable table : locationTables) {
+      if (table != null) {
+        directoryCount += table.getRelationshipCount();
+        for (int i = 0; i < table.getRelationshipCount(); i++) {
+          locationSize += table.getSize(i);
         }
       }
     }
-  }
-
-  /**
-   * Add the strings reachable from the given relationship to the string table.
-   * 
-   * @param relationship the relationship whose strings are to be added
-   */
-  private void addRelationshipToStringTable(Relationship relationship) {
-    addStringToStringTable(relationship.getIdentifier());
-  }
+    int stringOffsetsPosition = HEADER_SIZE * 4;
+    int stringDataPosition = stringOffsetsPosition + (stringCount + 1) * 4;
+    int resourcePosition = stringDataPosition + stringDataSize + stringPadding;
+    int elementPosition = resourcePosition + resources.length * 4;
+    int attributePosition = elementPosition + elements.length * 8;
+    int directoryPosition = attributePosition + attributeCount * 16;
+    int locationPosition = directoryPosition + directoryCount * 16;
+
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output, 64 * 1024));
+    data.writeInt(FILE_MAGIC_NUMBER);
+    data.writeInt(FILE_VERSION_NUMBER);
+    data.writeInt(sdkVersionIndex);
+    data.writeInt(stringCount);
+    data.writeInt(stringOffsetsPosition);
+    data.writeInt(stringDataPosition);
+    data.writeInt(resources.length);
+    data.writeInt(resourcePosition);
+    data.writeInt(elements.length);
+    data.writeInt(elementPosition);
+    data.writeInt(attributeCount);
+    data.writeInt(attributePosition);
+    data.writeInt(directoryCount);
+    data.writeInt(directoryPosition);
+    data.writeInt(locationSize);
+    data.writeInt(locationPosition);
+
+    int offset = 0;
+    for (int i = 0; i < stringCount; i++) {
+      data.writeInt(offset);
+      offset += encodedStrings[i].length;
+    }
+    data.writeInt(offset);
+    for (int i = 0; i < stringCount; i++) {
+      data.write(encodedStrings[i]);
+    }
+    for (int i = 0; i < stringPadding; i++) {
+      data.writeByte(0);
+    }
 
-  /**
-   * Add the strings reachable from the given resource to the string table.
-   * 
-   * @param resource the resource whose strings are to be added
-   */
-  private void addResourceToStringTable(Resource resource) {
-    addStringToStringTable(resource.getResourceId());
+    for (Resource resource : resources) {
+      data.writeInt(getStringIndex(resource.getResourceId()));
+    }
+    for (Element element : elements) {
+      if (element == null) {
+        data.writeInt(-1);
+        data.writeInt(-1);
+      } else {
+        data.writeInt(getStringIndex(element.getResource().getResourceId()));
+        data.writeInt(getStringIndex(element.getElementId()));
+      }
+    }
+    for (Map.Entry<Element, HashMap<Attribute, String>> elementEntry : attributeMap.entrySet()) {
+      Element element = elementEntry.getKey();
+      for (Map.Entry<Attribute, String> attributeEntry : elementEntry.getValue().entrySet()) {
+        data.writeInt(getStringIndex(element.getResource().getResourceId()));
+        data.writeInt(getStringIndex(element.getElementId()));
+        data.writeInt(getStringIndex(attributeEntry.getKey().getIdentifier()));
+        data.writeInt(getStringIndex(attributeEntry.getValue()));
+      }
+    }
+    int locationOffset = 0;
+    for (int i = 0; i < locationTables.length; i++) {
+      LocationTable table = locationTables[i];
+      if (table != null) {
+        for (int j = 0; j < table.getRelationshipCount(); j++) {
+          data.writeInt(i);
+          data.writeInt(getStringIndex(table.getRelationship(j).getIdentifier()));
+          data.writeInt(locationOffset);
+          data.writeInt(table.getSize(j));
+          locationOffset += table.getSize(j);
+        }
+      }
+    }
+    for (LocationTable table : locationTables) {
+      if (table != null) {
+        for (int i = 0; i < table.getRelationshipCount(); i++) {
+          int size = table.getSize(i);
+          for (int j = 0; j < size; j++) {
+            data.writeInt(table.get(i, j, buffer));
+          }
+        }
+      }
+    }
+    data.flush();
+    if (data.size() != locationPosition + locationSize * 4) {
+      throw new IllegalStateException("Wrote " + data.size() + " bytes, expected "
+          + (locationPosition + locationSize * 4));
+    }
   }
 
   /**
    * Add the given string to the string table.
    * 
    * @param string the string to be added
+   * @return the index of the string in the string table
    */
-  private void addStringToStringTable(String string) {
+  private int addString(String string) {
     Integer index = stringMap.get(string);
     if (index == null) {
-      int currentLength = stringTable.length;
-      if (nextStringIndex == currentLength) {
-        String[] newStringTable = new String[currentLength + 1024];
-        System.arraycopy(stringTable, 0, newStringTable, 0, currentLength);
-        stringTable = newStringTable;
-      }
-      stringTable[nextStringIndex] = string;
-      index = new Integer(nextStringIndex++);
+      index = Integer.valueOf(stringTable.size());
+      stringTable.add(string);
       stringMap.put(string, index);
     }
+    return index.intValue();
   }
 
   /**
    * Build the string table.
    */
   private void buildStringTable() {
-    addAttributeMapToStringTable();
-    addRelationshipMapToStringTable();
-  }
-
-  /**
-   * Write the given attribute to the given output stream.
-   * 
-   * @param output the stream to which the attribute is to be written
-   * @param attribute the attribute to be written
-   * @throws IOException if the attribute could not be written
-   */
-  private void writeAttribute(ObjectOutputStream output, Attribute attribute) throws IOException {
-    writeString(output, attribute.getIdentifier());
-  }
-
-  /**
-   * Write the attribute map to the given output stream.
-   * 
-   * @param output the stream to which the attribute map is to be written
-   * @throws IOException if the attribute map could not be written
-   */
-  private void writeAttributeMap(ObjectOutputStream output) throws IOException {
-    output.writeInt(attributeMap.size());
+    for (Resource resource : resources) {
+      addString(resource.getResourceId());
+    }
+    for (Element element : elements) {
+      if (element != null) {
+        addString(element.getResource().getResourceId());
+        addString(element.getElementId());
+      }
+    }
     for (Map.Entry<Element, HashMap<Attribute, String>> elementEntry : attributeMap.entrySet()) {
-      writeElement(output, elementEntry.getKey());
-      output.writeInt(elementEntry.getValue().size());
+      addString(elementEntry.getKey().getResource().getResourceId());
+      addString(elementEntry.getKey().getElementId());
       for (Map.Entry<Attribute, String> attributeEntry : elementEntry.getValue().entrySet()) {
-        writeAttribute(output, attributeEntry.getKey());
-        writeString(output, attributeEntry.getValue());
+        addString(attributeEntry.getKey().getIdentifier());
+        addString(attributeEntry.getValue());
       }
     }
-  }
-
-  /**
-   * Write the given contributed location to the given output stream.
-   * 
-   * @param output the stream to which the contributed location is to be written
-   * @param location the contributed location to be written
-   * @throws IOException if the contributed location could not be written
-   */
-  private void writeContributedLocation(ObjectOutputStream output, ContributedLocation location)
-      throws IOException {
-    writeResource(output, location.getContributor());
-    writeLocation(output, location.getLocation());
-  }
-
-  /**
-   * Write the given element to the given output stream.
-   * 
-   * @param output the stream to which the element is to be written
-   * @param element the element to be written
-   * @throws IOException if the element could not be written
-   */
-  private void writeElement(ObjectOutputStream output, Element element) throws IOException {
-    writeResource(output, element.getResource());
-    writeString(output, element.getElementId());
-  }
-
-  /**
-   * Write the version number of the file format being generated.
-   * 
-   * @param output the stream to which the contents of the index are to be written
-   * @throws IOException if the index could not be written
-   */
-  private void writeFileVersionNumber(ObjectOutputStream output) throws IOException {
-    output.writeInt(FILE_VERSION_NUMBER);
-  }
-
-  /**
-   * Write the given location to the given output stream.
-   * 
-   * @param output the stream to which the location is to be written
-   * @param location the location to be written
-   * @throws IOException if the location could not be written
-   */
-  private void writeLocation(ObjectOutputStream output, Location location) throws IOException {
-    writeElement(output, location.getElement());
-    output.writeInt(location.getOffset());
-    output.writeInt(location.getLength());
-  }
-
-  /**
-   * Write the given relationship to the given output stream.
-   * 
-   * @param output the stream to which the relationship is to be written
-   * @param relationship the relationship to be written
-   * @throws IOException if the relationship could not be written
-   */
-  private void writeRelationship(ObjectOutputStream output, Relationship relationship)
-      throws IOException {
-    writeString(output, relationship.getIdentifier());
-  }
-
-  /**
-   * Write the relationship map to the given output stream.
-   * 
-   * @param output the stream to which the relationship map is to be written
-   * @throws IOException if the relationship map could not be written
-   */
-  private void writeRelationshipMap(ObjectOutputStream output) throws IOException {
-    output.writeInt(relationshipMap.size());
-    for (Map.Entry<Element, HashMap<Relationship, ArrayList<ContributedLocation>>> elementEntry : relationshipMap.entrySet()) {
-      writeElement(output, elementEntry.getKey());
-      output.writeInt(elementEntry.getValue().size());
-      for (Map.Entry<Relationship, ArrayList<ContributedLocation>> relationshipEntry : elementEntry.getValue().entrySet()) {
-        writeRelationship(output, relationshipEntry.getKey());
-        output.writeInt(relationshipEntry.getValue().size());
-        for (ContributedLocation location : relationshipEntry.getValue()) {
-          writeContributedLocation(output, location);
+    for (LocationTable table : locationTables) {
+      if (table != null) {
+        for (int i = 0; i < table.getRelationshipCount(); i++) {
+          addString(table.getRelationship(i).getIdentifier());
         }
       }
     }
   }
 
   /**
-   * Write the given resource to the given output stream.
+   * Return the index of the given string in the string table.
    * 
-   * @param output the stream to which the resource is to be written
-   * @param resource the resource to be written
-   * @throws IOException if the resource could not be written
+   * @param string the string whose index is to be returned
+   * @return the index of the given string in the string table
    */
-  private void writeResource(ObjectOutputStream output, Resource resource) throws IOException {
-    writeString(output, resource.getResourceId());
-  }
-
-  /**
-   * Write the version number of the SDK that was indexed.
-   * 
-   * @param output the stream to which the SDK version is to be written
-   * @throws IOException if the SDK version could not be written
-   */
-  private void writeSDKVersionNumber(ObjectOutputStream output) throws IOException {
-    output.writeUTF(DartSdk.getInstance().getSdkVersion());
-  }
-
-  /**
-   * Write the given string to the given output stream.
-   * 
-   * @param output the stream to which the string is to be written
-   * @param string the string to be written
-   * @throws IOException if the string could not be written
-   */
-  private void writeString(ObjectOutputStream output, String string) throws IOException {
+  private int getStringIndex(String string) {
     Integer index = stringMap.get(string);
     if (index == null) {
       throw new IllegalStateException(
           "Attempting to write a string that was not in the string table: \"" + string + "\"");
     }
-    output.writeInt(index.intValue());
-  }
-
-  /**
-   * Write the string table to the given output stream.
-   * 
-   * @param output the stream to which the string table is to be written
-   * @throws IOException if the string table could not be written
-   */
-  private void writeStringTable(ObjectOutputStream output) throws IOException {
-    int length = nextStringIndex;
-    output.writeInt(length);
-    for (int i = 0; i < length; i++) {
-      output.writeUTF(stringTable[i]);
-    }
+    return index.intValue();
   }
 }
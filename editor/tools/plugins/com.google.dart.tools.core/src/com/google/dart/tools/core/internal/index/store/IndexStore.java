@@ -23,20 +23,35 @@ import com.google.dart.tools.core.internal.index.persistance.IndexWriter;
 import com.google.dart.tools.core.utilities.io.PrintStringWriter;
 
 import java.io.PrintWriter;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Instances of the class <code>IndexStore</code> store information computed by the index. There are
  * two kinds of information that can be stored: relationships between elements and data associated
  * with elements.
+ * <p>
+ * In order to keep large indexes small, the resources and elements known to the index are mapped to
+ * integer identifiers, and the locations related to an element are stored as packed arrays of those
+ * identifiers, offsets and lengths. {@link Location} objects are only created when they are
+ * requested. When the index is read, the locations are left in the buffer they were read from until
+ * they are modified.
+ * <p>
+ * Index stores can be safely accessed from multiple threads. Any number of threads can read from a
+ * store at the same time, but a thread modifying the store has exclusive access to it. This allows
+ * queries to be answered by the query processor of the index while the operation processor is
+ * indexing resources.
  */
 public class IndexStore {
+  /**
+   * The lock used to allow concurrent reads and exclusive writes.
+   */
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
   /**
    * A table mapping elements to tables mapping attributes to values.
    */
@@ -44,17 +59,57 @@ public class IndexStore {
       1024);
 
   /**
-   * A table mapping elements to tables mapping relationships to lists of locations.
+   * The resources that are known to the index, indexed by their identifiers.
    */
-  private HashMap<Element, HashMap<Relationship, ArrayList<ContributedLocation>>> relationshipMap = new HashMap<Element, HashMap<Relationship, ArrayList<ContributedLocation>>>(
-      1024);
+  private ArrayList<Resource> resources = new ArrayList<Resource>(256);
+
+  /**
+   * A table mapping the resources that are known to the index to their identifiers.
+   */
+  private HashMap<Resource, Integer> resourceIds = new HashMap<Resource, Integer>(256);
+
+  /**
+   * The elements that are known to the index, indexed by their identifiers. Identifiers that are
+   * not currently in use are mapped to <code>null</code>.
+   */
+  private Element[] elements = new Element[1024];
+
+  /**
+   * The identifiers of the resources containing each of the {@link #elements}.
+   */
+  private int[] elementResourceIds = new int[1024];
+
+  /**
+   * The locations related to each of the {@link #elements}, or <code>null</code> if the element is
+   * not related to any location.
+   */
+  private LocationTable[] locationTables = new LocationTable[1024];
+
+  /**
+   * The number of element identifiers that have been assigned.
+   */
+  private int elementCount = 0;
 
   /**
-   * A table mapping the resources that are known to the index to a set of the elements known to be
-   * in those resources.
+   * A table mapping the elements that are known to the index to their identifiers.
    */
-  private HashMap<Resource, Set<Element>> resourceToElementMap = new HashMap<Resource, Set<Element>>(
-      256);
+  private HashMap<Element, Integer> elementIds = new HashMap<Element, Integer>(1024);
+
+  /**
+   * The element identifiers that are no longer in use and can be assigned again.
+   */
+  private int[] freeElementIds = new int[64];
+
+  /**
+   * The number of identifiers in {@link #freeElementIds}.
+   */
+  private int freeElementCount = 0;
+
+  /**
+   * The buffer containing the locations that were read and have not been modified since, or
+   * <code>null</code> if the index was not read.
+   */
+  private IntBuffer buffer;
 
   /**
    * Initialize a newly created index to be empty.
@@ -67,9 +122,21 @@ public class IndexStore {
    * Remove all data from this index.
    */
   public void clear() {
-    resourceToElementMap.clear();
-    attributeMap.clear();
-    relationshipMap.clear();
+    lock.writeLock().lock();
+    try {
+      attributeMap.clear();
+      resources.clear();
+      resourceIds.clear();
+      elements = new Element[1024];
+      elementResourceIds = new int[1024];
+      locationTables = new LocationTable[1024];
+      elementCount = 0;
+      elementIds.clear();
+      freeElementCount = 0;
+      buffer = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
   }
 
   /**
@@ -82,12 +149,34 @@ public class IndexStore {
   }
 
   /**
-   * Return a writer that can write the contents of this index to a stream.
+   * Return a writer that can write the contents of this index to a stream. The writer holds a copy
+   * of the current contents of this index, so the index can be modified while the writer is being
+   * used.
    * 
    * @return a writer that can write the contents of this index to a stream
    */
   public IndexWriter createIndexWriter() {
-    return new IndexWriter(attributeMap, relationshipMap);
+    lock.readLock().lock();
+    try {
+      Element[] writtenElements = new Element[elementCount];
+      System.arraycopy(elements, 0, writtenElements, 0, elementCount);
+      LocationTable[] writtenTables = new LocationTable[elementCount];
+      for (int i = 0; i < elementCount; i++) {
+        LocationTable table = locationTables[i];
+        if (table != null) {
+          writtenTables[i] = new LocationTable(table);
+        }
+      }
+      HashMap<Element, HashMap<Attribute, String>> writtenAttributeMap = new HashMap<Element, HashMap<Attribute, String>>(
+          attributeMap.size());
+      for (Map.Entry<Element, HashMap<Attribute, String>> entry : attributeMap.entrySet()) {
+        writtenAttributeMap.put(entry.getKey(), new HashMap<Attribute, String>(entry.getValue()));
+      }
+      return new IndexWriter(resources.toArray(new Resource[resources.size()]), writtenElements,
+          writtenAttributeMap, writtenTables, buffer);
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   /**
@@ -99,11 +188,16 @@ public class IndexStore {
    * @return the value of the given attribute that is associated with the given element
    */
   public String getAttribute(Element element, Attribute attribute) {
-    HashMap<Attribute, String> elementAttributeMap = attributeMap.get(element);
-    if (elementAttributeMap != null) {
-      return elementAttributeMap.get(attribute);
+    lock.readLock().lock();
+    try {
+      HashMap<Attribute, String> elementAttributeMap = attributeMap.get(element);
+      if (elementAttributeMap != null) {
+        return elementAttributeMap.get(attribute);
+      }
+      return null;
+    } finally {
+      lock.readLock().unlock();
     }
-    return null;
   }
 
   /**
@@ -112,13 +206,21 @@ public class IndexStore {
    * @return the number of relationships that are currently recorded in this index
    */
   public int getRelationshipCount() {
-    int count = 0;
-    for (HashMap<Relationship, ArrayList<ContributedLocation>> elementRelationshipMap : relationshipMap.values()) {
-      for (ArrayList<ContributedLocation> contributedLocations : elementRelationshipMap.values()) {
-        count += contributedLocations.size();
+    lock.readLock().lock();
+    try {
+      int count = 0;
+      for (int i = 0; i < elementCount; i++) {
+        LocationTable table = locationTables[i];
+        if (table != null) {
+          for (int j = 0; j < table.getRelationshipCount(); j++) {
+            count += table.getSize(j) / LocationTable.LOCATION_SIZE;
+          }
+        }
       }
+      return count;
+    } finally {
+      lock.readLock().unlock();
     }
-    return count;
   }
 
   /**
@@ -132,19 +234,80 @@ public class IndexStore {
    * @return the locations of the elements that have the given relationship with the given element
    */
   public Location[] getRelationships(Element element, Relationship relationship) {
-    HashMap<Relationship, ArrayList<ContributedLocation>> elementRelationshipMap = relationshipMap.get(element);
-    if (elementRelationshipMap != null) {
-      ArrayList<ContributedLocation> contributedLocations = elementRelationshipMap.get(relationship);
-      if (contributedLocations != null) {
-        int count = contributedLocations.size();
-        Location[] locations = new Location[count];
-        for (int i = 0; i < count; i++) {
-          locations[i] = contributedLocations.get(i).getLocation();
+    lock.readLock().lock();
+    try {
+      Integer elementId = elementIds.get(element);
+      if (elementId == null) {
+        return Location.EMPTY_ARRAY;
+      }
+      LocationTable table = locationTables[elementId.intValue()];
+      if (table == null) {
+        return Location.EMPTY_ARRAY;
+      }
+      int index = table.indexOf(relationship);
+      if (index < 0) {
+        return Location.EMPTY_ARRAY;
+      }
+      int count = table.getSize(index) / LocationTable.LOCATION_SIZE;
+      Location[] locations = new Location[count];
+      for (int i = 0; i < count; i++) {
+        int base = i * LocationTable.LOCATION_SIZE;
+        locations[i] = new Location(elements[table.get(index, base + 1, buffer)], table.get(
+            index, base + 2, buffer), table.get(index, base + 3, buffer));
+      }
+      return locations;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Replace the contents of this index with the given contents, which were read from an external
+   * form of the index. The locations are left in the given buffer until they are modified.
+   * 
+   * @param resources the resources known to the index, indexed by their identifiers
+   * @param elements the elements known to the index, indexed by their identifiers, or
+   *          <code>null</code> for the identifiers that are not in use
+   * @param attributeMap a table mapping elements to tables mapping attributes to values
+   * @param locationTables the locations related to each of the elements, or <code>null</code> for
+   *          the elements that are not related to any location
+   * @param buffer the buffer containing the locations
+   */
+  public void loadIndex(Resource[] resources, Element[] elements,
+      HashMap<Element, HashMap<Attribute, String>> attributeMap, LocationTable[] locationTables,
+      IntBuffer buffer) {
+    lock.writeLock().lock();
+    try {
+      this.attributeMap.clear();
+      this.attributeMap.putAll(attributeMap);
+      this.resources.clear();
+      resourceIds.clear();
+      for (Resource resource : resources) {
+        getResourceId(resource);
+      }
+      int count = elements.length;
+      int capacity = Math.max(count, 1024);
+      this.elements = new Element[capacity];
+      elementResourceIds = new int[capacity];
+      this.locationTables = new LocationTable[capacity];
+      elementCount = count;
+      elementIds.clear();
+      freeElementCount = 0;
+      for (int i = 0; i < count; i++) {
+        Element element = elements[i];
+        if (element == null) {
+          freeElementId(i);
+        } else {
+          this.elements[i] = element;
+          elementResourceIds[i] = getResourceId(element.getResource());
+          this.locationTables[i] = locationTables[i];
+          elementIds.put(element, Integer.valueOf(i));
         }
-        return locations;
       }
+      this.buffer = buffer;
+    } finally {
+      lock.writeLock().unlock();
     }
-    return Location.EMPTY_ARRAY;
   }
 
   /**
@@ -164,13 +327,12 @@ public class IndexStore {
    * @param value the value of the attribute for the given element
    */
   public void recordAttribute(Element element, Attribute attribute, String value) {
-    recordElement(element);
-    HashMap<Attribute, String> elementAttributeMap = attributeMap.get(element);
-    if (elementAttributeMap == null) {
-      elementAttributeMap = new HashMap<Attribute, String>();
-      attributeMap.put(element, elementAttributeMap);
+    lock.writeLock().lock();
+    try {
+      addAttribute(element, attribute, value);
+    } finally {
+      lock.writeLock().unlock();
     }
-    elementAttributeMap.put(attribute, value);
   }
 
   /**
@@ -203,19 +365,13 @@ public class IndexStore {
     if (contributor == null || element == null || location == null) {
       return;
     }
-    recordElement(element);
-    recordElement(location.getElement());
-    HashMap<Relationship, ArrayList<ContributedLocation>> elementRelationshipMap = relationshipMap.get(element);
-    if (elementRelationshipMap == null) {
-      elementRelationshipMap = new HashMap<Relationship, ArrayList<ContributedLocation>>();
-      relationshipMap.put(element, elementRelationshipMap);
+    lock.writeLock().lock();
+    try {
+      addRelationship(getElementId(element), relationship, getResourceId(contributor),
+          getElementId(location.getElement()), location.getOffset(), location.getLength());
+    } finally {
+      lock.writeLock().unlock();
     }
-    ArrayList<ContributedLocation> locations = elementRelationshipMap.get(relationship);
-    if (locations == null) {
-      locations = new ArrayList<ContributedLocation>();
-      elementRelationshipMap.put(relationship, locations);
-    }
-    locations.add(new ContributedLocation(contributor, location));
   }
 
   /**
@@ -229,29 +385,53 @@ public class IndexStore {
    * @param resource the resource being re-analyzed
    */
   public void regenerateResource(Resource resource) {
-    resourceToElementMap.remove(resource);
-
-    Set<Entry<Element, HashMap<Relationship, ArrayList<ContributedLocation>>>> relationshipSet = relationshipMap.entrySet();
-    Iterator<Entry<Element, HashMap<Relationship, ArrayList<ContributedLocation>>>> relationshipSetIterator = relationshipSet.iterator();
-    while (relationshipSetIterator.hasNext()) {
-      Set<Entry<Relationship, ArrayList<ContributedLocation>>> elementRelationshipMap = relationshipSetIterator.next().getValue().entrySet();
-      Iterator<Entry<Relationship, ArrayList<ContributedLocation>>> relationshipIterator = elementRelationshipMap.iterator();
-      while (relationshipIterator.hasNext()) {
-        ArrayList<ContributedLocation> locations = relationshipIterator.next().getValue();
-        Iterator<ContributedLocation> locationIterator = locations.iterator();
-        while (locationIterator.hasNext()) {
-          ContributedLocation location = locationIterator.next();
-          if (location.getContributor().equals(resource)) {
-            locationIterator.remove();
-          }
-        }
-        if (locations.isEmpty()) {
-          relationshipIterator.remove();
+    lock.writeLock().lock();
+    try {
+      removeContributions(resource);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Replace the information that was contributed as a result of analyzing the given resource with
+   * the information recorded in the given index, which is typically a newly created index into
+   * which the resource was analyzed. Readers of this index will either see all of the previous
+   * information about the resource or all of the new information.
+   * 
+   * @param resource the resource that was re-analyzed
+   * @param contributions the index containing the information contributed by the resource
+   */
+  public void regenerateResource(Resource resource, IndexStore contributions) {
+    lock.writeLock().lock();
+    try {
+      removeContributions(resource);
+      for (Map.Entry<Element, HashMap<Attribute, String>> elementEntry : contributions.attributeMap.entrySet()) {
+        Element element = elementEntry.getKey();
+        for (Map.Entry<Attribute, String> attributeEntry : elementEntry.getValue().entrySet()) {
+          addAttribute(element, attributeEntry.getKey(), attributeEntry.getValue());
         }
       }
-      if (elementRelationshipMap.isEmpty()) {
-        relationshipSetIterator.remove();
+      for (int i = 0; i < contributions.elementCount; i++) {
+        LocationTable table = contributions.locationTables[i];
+        if (table == null) {
+          continue;
+        }
+        table.copyFromBuffer(contributions.buffer);
+        int elementId = getElementId(contributions.elements[i]);
+        for (int j = 0; j < table.getRelationshipCount(); j++) {
+          int[] packedLocations = table.getLocations(j);
+          int size = table.getSize(j);
+          for (int k = 0; k < size; k += LocationTable.LOCATION_SIZE) {
+            addRelationship(elementId, table.getRelationship(j),
+                getResourceId(contributions.resources.get(packedLocations[k])),
+                getElementId(contributions.elements[packedLocations[k + 1]]),
+                packedLocations[k + 2], packedLocations[k + 3]);
+          }
+        }
       }
+    } finally {
+      lock.writeLock().unlock();
     }
   }
 
@@ -266,81 +446,240 @@ public class IndexStore {
    * @param resource the resource being removed
    */
   public void removeResource(Resource resource) {
-    Set<Element> elements = resourceToElementMap.get(resource);
-    if (elements != null) {
-      for (Element element : elements) {
-        removeElement(element);
-      }
-      resourceToElementMap.remove(resource);
-    }
-
-    Set<Entry<Element, HashMap<Relationship, ArrayList<ContributedLocation>>>> relationshipSet = relationshipMap.entrySet();
-    Iterator<Entry<Element, HashMap<Relationship, ArrayList<ContributedLocation>>>> relationshipSetIterator = relationshipSet.iterator();
-    while (relationshipSetIterator.hasNext()) {
-      Set<Entry<Relationship, ArrayList<ContributedLocation>>> elementRelationshipMap = relationshipSetIterator.next().getValue().entrySet();
-      Iterator<Entry<Relationship, ArrayList<ContributedLocation>>> relationshipIterator = elementRelationshipMap.iterator();
-      while (relationshipIterator.hasNext()) {
-        ArrayList<ContributedLocation> locations = relationshipIterator.next().getValue();
-        Iterator<ContributedLocation> locationIterator = locations.iterator();
-        while (locationIterator.hasNext()) {
-          ContributedLocation location = locationIterator.next();
-          if (location.getContributor().equals(resource)
-              || location.getLocation().getElement().getResource().equals(resource)) {
-            locationIterator.remove();
-          }
+    lock.writeLock().lock();
+    try {
+      Iterator<Element> attributeIterator = attributeMap.keySet().iterator();
+      while (attributeIterator.hasNext()) {
+        if (attributeIterator.next().getResource().equals(resource)) {
+          attributeIterator.remove();
         }
-        if (locations.isEmpty()) {
-          relationshipIterator.remove();
+      }
+      Integer resourceId = resourceIds.get(resource);
+      if (resourceId == null) {
+        return;
+      }
+      int id = resourceId.intValue();
+      for (int i = 0; i < elementCount; i++) {
+        LocationTable table = locationTables[i];
+        if (table != null && elementResourceIds[i] != id
+            && removeLocations(table, id, true)) {
+          locationTables[i] = null;
         }
       }
-      if (elementRelationshipMap.isEmpty()) {
-        relationshipSetIterator.remove();
+      // No location refers to the elements in the resource any longer.
+      for (int i = 0; i < elementCount; i++) {
+        if (elements[i] != null && elementResourceIds[i] == id) {
+          freeElementId(i);
+        }
       }
+    } finally {
+      lock.writeLock().unlock();
     }
   }
 
-//  private int getRelationshipCount() {
-//    int count = 0;
-//    for (HashMap<Relationship, ArrayList<Location>> elementMap : relationshipMap.values()) {
-//      for (ArrayList<Location> locationList : elementMap.values()) {
-//        count += locationList.size();
-//      }
-//    }
-//    return count;
-//  }
-
   @Override
   public String toString() {
     PrintStringWriter writer = new PrintStringWriter();
-    writeIndex(writer);
+    lock.readLock().lock();
+    try {
+      writeIndex(writer);
+    } finally {
+      lock.readLock().unlock();
+    }
     return writer.toString();
   }
 
   /**
-   * Add the given element to the resource-to-element map.
+   * Associate the given value with the given attribute of the given element. The caller must hold
+   * the write lock.
    * 
-   * @param element the element to be added to the map
-   */
-  private void recordElement(Element element) {
-    Resource resource = element.getResource();
-    Set<Element> elementList = resourceToElementMap.get(resource);
-    if (elementList == null) {
-      elementList = new HashSet<Element>();
-      resourceToElementMap.put(resource, elementList);
+   * @param element the element on which the attribute is defined
+   * @param attribute the attribute of the element that will be given a value
+   * @param value the value of the attribute for the given element
+   */
+  private void addAttribute(Element element, Attribute attribute, String value) {
+    HashMap<Attribute, String> elementAttributeMap = attributeMap.get(element);
+    if (elementAttributeMap == null) {
+      elementAttributeMap = new HashMap<Attribute, String>();
+      attributeMap.put(element, elementAttributeMap);
     }
-    elementList.add(element);
+    elementAttributeMap.put(attribute, value);
   }
 
   /**
-   * Remove from the index all of the information associated with the given element. This includes
-   * relationships between the element and any locations, relationships between any other elements
-   * and a location within the given element, and any values of any attributes defined the element.
+   * Record that the element with the given identifier has the given relationship with a location.
+   * The caller must hold the write lock.
    * 
-   * @param element the element being removed
+   * @param elementId the identifier of the element that is related to the location
+   * @param relationship the relationship between the element and the location
+   * @param contributorId the identifier of the resource that contributed the relationship
+   * @param locationElementId the identifier of the element containing the location
+   * @param offset the offset of the location
+   * @param length the length of the location
    */
-  private void removeElement(Element element) {
-    attributeMap.remove(element);
-    relationshipMap.remove(element);
+  private void addRelationship(int elementId, Relationship relationship, int contributorId,
+      int locationElementId, int offset, int length) {
+    LocationTable table = locationTables[elementId];
+    if (table == null) {
+      table = new LocationTable();
+      locationTables[elementId] = table;
+    }
+    table.copyFromBuffer(buffer);
+    table.add(relationship, contributorId, locationElementId, offset, length);
+  }
+
+  /**
+   * Return <code>true</code> if the given table contains locations that were contributed by the
+   * resource with the given identifier or, if requested, locations that are within the resource.
+   * 
+   * @param table the table being searched
+   * @param resourceId the identifier of the resource whose locations are being searched for
+   * @param withinResource <code>true</code> if the locations within the resource are searched for
+   * @return <code>true</code> if the table contains any of the locations
+   */
+  private boolean containsLocations(LocationTable table, int resourceId, boolean withinResource) {
+    for (int i = 0; i < table.getRelationshipCount(); i++) {
+      int size = table.getSize(i);
+      for (int j = 0; j < size; j += LocationTable.LOCATION_SIZE) {
+        if (table.get(i, j, buffer) == resourceId
+            || (withinResource && elementResourceIds[table.get(i, j + 1, buffer)] == resourceId)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Make the given element identifier available to be assigned again. The element must not be
+   * related to any location. The caller must hold the write lock.
+   * 
+   * @param elementId the identifier of the element being removed
+   */
+  private void freeElementId(int elementId) {
+    elementIds.remove(elements[elementId]);
+    elements[elementId] = null;
+    locationTables[elementId] = null;
+    if (freeElementCount == freeElementIds.length) {
+      int[] newFreeElementIds = new int[freeElementCount * 2];
+      System.arraycopy(freeElementIds, 0, newFreeElementIds, 0, freeElementCount);
+      freeElementIds = newFreeElementIds;
+    }
+    freeElementIds[freeElementCount++] = elementId;
+  }
+
+  /**
+   * Return the identifier of the given element, assigning a new identifier if the element is not
+   * yet known to the index. The caller must hold the write lock.
+   * 
+   * @param element the element whose identifier is to be returned
+   * @return the identifier of the given element
+   */
+  private int getElementId(Element element) {
+    Integer elementId = elementIds.get(element);
+    if (elementId != null) {
+      return elementId.intValue();
+    }
+    int id;
+    if (freeElementCount > 0) {
+      id = freeElementIds[--freeElementCount];
+    } else {
+      if (elementCount == elements.length) {
+        int newLength = elementCount * 2;
+        Element[] newElements = new Element[newLength];
+        System.arraycopy(elements, 0, newElements, 0, elementCount);
+        elements = newElements;
+        int[] newElementResourceIds = new int[newLength];
+        System.arraycopy(elementResourceIds, 0, newElementResourceIds, 0, elementCount);
+        elementResourceIds = newElementResourceIds;
+        LocationTable[] newLocationTables = new LocationTable[newLength];
+        System.arraycopy(locationTables, 0, newLocationTables, 0, elementCount);
+        locationTables = newLocationTables;
+      }
+      id = elementCount++;
+    }
+    elements[id] = element;
+    elementResourceIds[id] = getResourceId(element.getResource());
+    elementIds.put(element, Integer.valueOf(id));
+    return id;
+  }
+
+  /**
+   * Return the identifier of the given resource, assigning a new identifier if the resource is not
+   * yet known to the index. The caller must hold the write lock.
+   * 
+   * @param resource the resource whose identifier is to be returned
+   * @return the identifier of the given resource
+   */
+  private int getResourceId(Resource resource) {
+    Integer resourceId = resourceIds.get(resource);
+    if (resourceId != null) {
+      return resourceId.intValue();
+    }
+    int id = resources.size();
+    resources.add(resource);
+    resourceIds.put(resource, Integer.valueOf(id));
+    return id;
+  }
+
+  /**
+   * Remove from the index all of the information that was contributed as a result of analyzing the
+   * given resource. The caller must hold the write lock.
+   * 
+   * @param resource the resource whose contributions are to be removed
+   */
+  private void removeContributions(Resource resource) {
+    Integer resourceId = resourceIds.get(resource);
+    if (resourceId == null) {
+      return;
+    }
+    int id = resourceId.intValue();
+    for (int i = 0; i < elementCount; i++) {
+      LocationTable table = locationTables[i];
+      if (table != null && removeLocations(table, id, false)) {
+        locationTables[i] = null;
+      }
+    }
+  }
+
+  /**
+   * Remove from the given table the locations that were contributed by the resource with the given
+   * identifier and, if requested, the locations that are within the resource.
+   * 
+   * @param table the table from which locations are to be removed
+   * @param resourceId the identifier of the resource whose locations are to be removed
+   * @param withinResource <code>true</code> if the locations within the resource are to be removed
+   * @return <code>true</code> if the table no longer contains any location
+   */
+  private boolean removeLocations(LocationTable table, int resourceId, boolean withinResource) {
+    if (table.isBuffered()) {
+      if (!containsLocations(table, resourceId, withinResource)) {
+        return false;
+      }
+      table.copyFromBuffer(buffer);
+    }
+    boolean removed = false;
+    for (int i = 0; i < table.getRelationshipCount(); i++) {
+      int[] packedLocations = table.getLocations(i);
+      int size = table.getSize(i);
+      int newSize = 0;
+      for (int j = 0; j < size; j += LocationTable.LOCATION_SIZE) {
+        if (packedLocations[j] == resourceId
+            || (withinResource && elementResourceIds[packedLocations[j + 1]] == resourceId)) {
+          continue;
+        }
+        if (newSize != j) {
+          System.arraycopy(packedLocations, j, packedLocations, newSize,
+              LocationTable.LOCATION_SIZE);
+        }
+        newSize += LocationTable.LOCATION_SIZE;
+      }
+      if (newSize != size) {
+        table.setSize(i, newSize);
+        removed = true;
+      }
+    }
+    return removed && table.removeEmptyRelationships();
   }
 
   /**
@@ -371,39 +710,45 @@ public class IndexStore {
     writer.println();
     writer.println("Relationship Map");
     writer.println();
-    if (relationshipMap.isEmpty()) {
-      writer.println("  -- empty --");
-    } else {
-      for (Map.Entry<Element, HashMap<Relationship, ArrayList<ContributedLocation>>> elementEntry : relationshipMap.entrySet()) {
-        writer.print("  ");
-        writer.println(elementEntry.getKey());
-        for (Map.Entry<Relationship, ArrayList<ContributedLocation>> relationshipEntry : elementEntry.getValue().entrySet()) {
-          String relationship = relationshipEntry.getKey().toString();
-          for (ContributedLocation location : relationshipEntry.getValue()) {
-            writer.print("    ");
-            writer.print(relationship);
-            writer.print(" ");
-            writer.print(location.getLocation());
-            writer.print(" (contributed by ");
-            writer.print(location.getContributor());
-            writer.print(")");
-          }
+    boolean empty = true;
+    for (int i = 0; i < elementCount; i++) {
+      LocationTable table = locationTables[i];
+      if (table == null) {
+        continue;
+      }
+      empty = false;
+      writer.print("  ");
+      writer.println(elements[i]);
+      for (int j = 0; j < table.getRelationshipCount(); j++) {
+        String relationship = table.getRelationship(j).toString();
+        for (int k = 0; k < table.getSize(j); k += LocationTable.LOCATION_SIZE) {
+          writer.print("    ");
+          writer.print(relationship);
+          writer.print(" ");
+          writer.print(new Location(elements[table.get(j, k + 1, buffer)], table.get(j, k + 2,
+              buffer), table.get(j, k + 3, buffer)));
+          writer.print(" (contributed by ");
+          writer.print(resources.get(table.get(j, k, buffer)));
+          writer.println(")");
         }
       }
     }
+    if (empty) {
+      writer.println("  -- empty --");
+    }
 
     writer.println();
-    writer.println("Resource to Element Map");
+    writer.println("Element Map");
     writer.println();
-    if (resourceToElementMap.isEmpty()) {
+    if (elementIds.isEmpty()) {
       writer.println("  -- empty --");
     } else {
-      for (Map.Entry<Resource, Set<Element>> resourceEntry : resourceToElementMap.entrySet()) {
-        writer.print("  ");
-        writer.println(resourceEntry.getKey());
-        for (Element element : resourceEntry.getValue()) {
-          writer.print("    ");
-          writer.println(element);
+      for (int i = 0; i < elementCount; i++) {
+        if (elements[i] != null) {
+          writer.print("  ");
+          writer.print(i);
+          writer.print(" ");
+          writer.println(elements[i]);
         }
       }
     }
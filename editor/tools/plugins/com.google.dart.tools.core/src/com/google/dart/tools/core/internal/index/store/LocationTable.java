@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.tools.core.internal.index.store;
+
+import com.google.dart.tools.core.index.Relationship;
+
+import java.nio.IntBuffer;
+
+/**
+ * Instances of the class <code>LocationTable</code> hold the locations that have each of a number
+ * of relationships with a single element. Each location is represented by {@link #LOCATION_SIZE}
+ * consecutive integers: the identifier of the resource that contributed the location, the
+ * identifier of the element containing the location, the offset and the length of the location.
+ * <p>
+ * The locations having a relationship can either be held in an array or be left in a buffer from
+ * which the index was read, in which case they are only copied into an array when they are about to
+ * be modified.
+ */
+public class LocationTable {
+  /**
+   * The number of integers used to represent a single location.
+   */
+  public static final int LOCATION_SIZE = 4;
+
+  /**
+   * The relationships the element has with locations.
+   */
+  private Relationship[] relationships = new Relationship[2];
+
+  /**
+   * The packed locations having each of the relationships with the element, or <code>null</code>
+   * if the locations are still in the buffer from which the index was read.
+   */
+  private int[][] locations = new int[2][];
+
+  /**
+   * The positions in the buffer from which the index was read of the locations that have not been
+   * copied into {@link #locations}.
+   */
+  private int[] bufferPositions = new int[2];
+
+  /**
+   * The number of integers used to represent the locations having each of the relationships.
+   */
+  private int[] sizes = new int[2];
+
+  /**
+   * The number of relationships the element has with locations.
+   */
+  private int relationshipCount = 0;
+
+  /**
+   * A flag indicating whether any of the locations are still in the buffer from which the index was
+   * read.
+   */
+  private boolean buffered = false;
+
+  /**
+   * Initialize a newly created table to be empty.
+   */
+  public LocationTable() {
+    super();
+  }
+
+  /**
+   * Initialize a newly created table to hold a copy of the locations in the given table. Locations
+   * that are still in a buffer are not copied, but refer to the same buffer.
+   * 
+   * @param table the table whose locations are to be copied
+   */
+  public LocationTable(LocationTable table) {
+    int count = table.relationshipCount;
+    int capacity = Math.max(count, 1);
+    relationships = new Relationship[capacity];
+    locations = new int[capacity][];
+    bufferPositions = new int[capacity];
+    sizes = new int[capacity];
+    relationshipCount = count;
+    buffered = table.buffered;
+    System.arraycopy(table.relationships, 0, relationships, 0, count);
+    System.arraycopy(table.bufferPositions, 0, bufferPositions, 0, count);
+    System.arraycopy(table.sizes, 0, sizes, 0, count);
+    for (int i = 0; i < count; i++) {
+      int[] packedLocations = table.locations[i];
+      if (packedLocations != null) {
+        int size = sizes[i];
+        locations[i] = new int[Math.max(size, LOCATION_SIZE)];
+        System.arraycopy(packedLocations, 0, locations[i], 0, size);
+      }
+    }
+  }
+
+  /**
+   * Add a location having the given relationship with the element. The locations having the
+   * relationship must not be in a buffer.
+   * 
+   * @param relationship the relationship between the element and the location
+   * @param contributorId the identifier of the resource that contributed the location
+   * @param elementId the identifier of the element containing the location
+   * @param offset the offset of the location
+   * @param length the length of the location
+   */
+  public void add(Relationship relationship, int contributorId, int elementId, int offset,
+      int length) {
+    int index = indexOf(relationship);
+    if (index < 0) {
+      index = addRelationship(relationship);
+      locations[index] = new int[LOCATION_SIZE * 2];
+    }
+    int[] packedLocations = locations[index];
+    int size = sizes[index];
+    if (size == packedLocations.length) {
+      int[] newLocations = new int[size * 2];
+      System.arraycopy(packedLocations, 0, newLocations, 0, size);
+      packedLocations = newLocations;
+      locations[index] = packedLocations;
+    }
+    packedLocations[size] = contributorId;
+    packedLocations[size + 1] = elementId;
+    packedLocations[size + 2] = offset;
+    packedLocations[size + 3] = length;
+    sizes[index] = size + LOCATION_SIZE;
+  }
+
+  /**
+   * Record that the locations having the given relationship with the element are in the buffer
+   * from which the index is being read.
+   * 
+   * @param relationship the relationship between the element and the locations
+   * @param position the position in the buffer of the first integer representing the locations
+   * @param size the number of integers representing the locations
+   */
+  public void addBuffered(Relationship relationship, int position, int size) {
+    int index = addRelationship(relationship);
+    bufferPositions[index] = position;
+    sizes[index] = size;
+    buffered = true;
+  }
+
+  /**
+   * Copy any locations that are still in the given buffer into arrays.
+   * 
+   * @param buffer the buffer from which the index was read
+   */
+  public void copyFromBuffer(IntBuffer buffer) {
+    if (!buffered) {
+      return;
+    }
+    for (int i = 0; i < relationshipCount; i++) {
+      if (locations[i] == null) {
+        int[] packedLocations = new int[sizes[i]];
+        IntBuffer source = buffer.duplicate();
+        source.position(bufferPositions[i]);
+        source.get(packedLocations);
+        locations[i] = packedLocations;
+      }
+    }
+    buffered = false;
+  }
+
+  /**
+   * Return the integer at the given index in the representation of the locations having the
+   * relationship at the given index.
+   * 
+   * @param relationshipIndex the index of the relationship
+   * @param index the index of the integer
+   * @param buffer the buffer from which the index was read
+   * @return the integer at the given index
+   */
+  public int get(int relationshipIndex, int index, IntBuffer buffer) {
+    int[] packedLocations = locations[relationshipIndex];
+    if (packedLocations == null) {
+      return buffer.get(bufferPositions[relationshipIndex] + index);
+    }
+    return packedLocations[index];
+  }
+
+  /**
+   * Return the packed locations having the relationship at the given index, or <code>null</code>
+   * if they are still in the buffer from which the index was read. Only the first
+   * {@link #getSize(int) size} integers are valid.
+   * 
+   * @param relationshipIndex the index of the relationship
+   * @return the packed locations having the relationship at the given index
+   */
+  public int[] getLocations(int relationshipIndex) {
+    return locations[relationshipIndex];
+  }
+
+  /**
+   * Return the relationship at the given index.
+   * 
+   * @param relationshipIndex the index of the relationship
+   * @return the relationship at the given index
+   */
+  public Relationship getRelationship(int relationshipIndex) {
+    return relationships[relationshipIndex];
+  }
+
+  /**
+   * Return the number of relationships the element has with locations.
+   * 
+   * @return the number of relationships the element has with locations
+   */
+  public int getRelationshipCount() {
+    return relationshipCount;
+  }
+
+  /**
+   * Return the number of integers representing the locations having the relationship at the given
+   * index.
+   * 
+   * @param relationshipIndex the index of the relationship
+   * @return the number of integers representing the locations
+   */
+  public int getSize(int relationshipIndex) {
+    return sizes[relationshipIndex];
+  }
+
+  /**
+   * Return the index of the given relationship, or <code>-1</code> if the element does not have the
+   * relationship with any location.
+   * 
+   * @param relationship the relationship whose index is to be returned
+   * @return the index of the given relationship
+   */
+  public int indexOf(Relationship relationship) {
+    // Relationships are unique for each identifier.
+    for (int i = 0; i < relationshipCount; i++) {
+      if (relationships[i] == relationship) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return <code>true</code> if any of the locations are still in the buffer from which the index
+   * was read.
+   * 
+   * @return <code>true</code> if any of the locations are still in a buffer
+   */
+  public boolean isBuffered() {
+    return buffered;
+  }
+
+  /**
+   * Remove the relationships that no longer have any location.
+   * 
+   * @return <code>true</code> if the element no longer has any relationship
+   */
+  public boolean removeEmptyRelationships() {
+    int count = 0;
+    for (int i = 0; i < relationshipCount; i++) {
+      if (sizes[i] > 0) {
+        relationships[count] = relationships[i];
+        locations[count] = locations[i];
+        bufferPositions[count] = bufferPositions[i];
+        sizes[count] = sizes[i];
+        count++;
+      }
+    }
+    for (int i = count; i < relationshipCount; i++) {
+      relationships[i] = null;
+      locations[i] = null;
+    }
+    relationshipCount = count;
+    return count == 0;
+  }
+
+  /**
+   * Set the number of integers representing the locations having the relationship at the given
+   * index. The locations must not be in a buffer.
+   * 
+   * @param relationshipIndex the index of the relationship
+   * @param size the number of integers representing the locations
+   */
+  public void setSize(int relationshipIndex, int size) {
+    sizes[relationshipIndex] = size;
+  }
+
+  /**
+   * Add the given relationship to this table, returning its index.
+   * 
+   * @param relationship the relationship being added
+   * @return the index of the relationship
+   */
+  private int addRelationship(Relationship relationship) {
+    if (relationshipCount == relationships.length) {
+      int newLength = relationshipCount * 2;
+      Relationship[] newRelationships = new Relationship[newLength];
+      System.arraycopy(relationships, 0, newRelationships, 0, relationshipCount);
+      relationships = newRelationships;
+      int[][] newLocations = new int[newLength][];
+      System.arraycopy(locations, 0, newLocations, 0, relationshipCount);
+      locations = newLocations;
+      int[] newBufferPositions = new int[newLength];
+      System.arraycopy(bufferPositions, 0, newBufferPositions, 0, relationshipCount);
+      bufferPositions = newBufferPositions;
+      int[] newSizes = new int[newLength];
+      System.arraycopy(sizes, 0, newSizes, 0, relationshipCount);
+      sizes = newSizes;
+    }
+    int index = relationshipCount++;
+    relationships[index] = relationship;
+    sizes[index] = 0;
+    return index;
+  }
+}
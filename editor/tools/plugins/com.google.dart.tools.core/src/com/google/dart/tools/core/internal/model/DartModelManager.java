@@ -1713,6 +1713,7 @@ public class DartModelManager {
 
     // Stop indexing
     if (DartCoreDebug.NEW_INDEXER) {
+      InMemoryIndex.getInstance().getQueryProcessor().stop(false);
       InMemoryIndex.getInstance().getOperationProcessor().stop(true);
       InMemoryIndex.getInstance().shutdown();
     } else {
@@ -1752,6 +1753,12 @@ public class DartModelManager {
           InMemoryIndex.getInstance().getOperationProcessor().run();
         }
       }, "Index Operation Processor").start(); //$NON-NLS-0$
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          InMemoryIndex.getInstance().getQueryProcessor().run();
+        }
+      }, "Index Query Processor").start(); //$NON-NLS-0$
     } else {
       LocationPersitence lp = LocationPersitence.getInstance();
       lp.registerLocationType(CompilationUnitLocation.TYPE); // C
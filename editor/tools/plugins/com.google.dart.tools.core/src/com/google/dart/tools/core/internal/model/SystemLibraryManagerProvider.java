@@ -68,7 +68,8 @@ public class SystemLibraryManagerProvider {
   public static AnalysisServer getDefaultAnalysisServer() {
     synchronized (lock) {
       if (defaultAnalysisServer == null) {
-        defaultAnalysisServer = new AnalysisServer(getAnyLibraryManager());
+        File cacheFile = DartCore.getPlugin().getStateLocation().append("analysis.cache").toFile();
+        defaultAnalysisServer = new AnalysisServer(getAnyLibraryManager(), cacheFile);
         defaultAnalysisServer.addAnalysisListener(new AnalysisMarkerManager(defaultAnalysisServer));
         defaultAnalysisServer.addAnalysisListener(new AnalysisIndexManager());
         // TODO (danrubel) merge ResourceChangeListener with delta processor
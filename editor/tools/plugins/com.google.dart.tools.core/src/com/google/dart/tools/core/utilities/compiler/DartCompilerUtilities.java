@@ -13,6 +13,7 @@
  */
 package com.google.dart.tools.core.utilities.compiler;
 
+import com.google.common.collect.MapMaker;
 import com.google.dart.compiler.CommandLineOptions.CompilerOptions;
 import com.google.dart.compiler.CompilerConfiguration;
 import com.google.dart.compiler.DartArtifactProvider;
@@ -65,6 +66,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The class <code>DartCompilerUtilities</code> defines utility methods for parsing, resolving, and
@@ -201,23 +203,26 @@ public class DartCompilerUtilities {
   private static final class DeltaAnalysisRunnable extends CompilerRunner {
     private int completionLocation;
     private DartNode completionNode;
+    private LibraryUnit cachedLibrary;
     private LibraryWithSuppliedSources librarySource;
     private DartUnit parsedUnit;
     private DartSourceString source;
     private DartNode analyzedNode;
     private URI unitUri;
 
-    DeltaAnalysisRunnable(LibrarySource librarySource, URI unitUri,
+    DeltaAnalysisRunnable(LibrarySource librarySource, LibraryUnit cachedLibrary, URI unitUri,
         Map<URI, String> suppliedSources, DartUnit suppliedUnit, DartNode completionNode,
         int completionLocation, Collection<DartCompilationError> parseErrors) {
       super(parseErrors);
       librarySource.getClass(); // quick null check
+      cachedLibrary.getClass(); // quick null check
       unitUri.getClass(); // quick null check
       suppliedSources.getClass(); // quick null check
       suppliedUnit.getClass(); // quick null check
       completionNode.getClass(); // quick null check
       parseErrors.getClass(); // quick null check
       this.librarySource = new LibraryWithSuppliedSources(librarySource, suppliedSources);
+      this.cachedLibrary = cachedLibrary;
       this.parsedUnit = suppliedUnit;
       this.completionNode = completionNode;
       this.completionLocation = completionLocation;
@@ -229,7 +234,7 @@ public class DartCompilerUtilities {
     @Override
     public void run() throws Exception {
       final SystemLibraryManager libraryManager = SystemLibraryManagerProvider.getSystemLibraryManager();
-      final LibraryElement enclosingLibrary = cachedLibraries.get(librarySource.wrappedSource).getElement();
+      final LibraryElement enclosingLibrary = cachedLibrary.getElement();
 
       // Try to find the core library in the enclosing set of libraries, otherwise the typeAnalyzer
       // will be void of core types.
@@ -477,10 +482,21 @@ public class DartCompilerUtilities {
   }
 
   /**
-   * Synchronize against this field when calling the compiler and passing an artifact provider
+   * Locks held while analyzing a library, keyed by library {@link URI}. Analyses of different
+   * libraries run in parallel. Analysis writes artifacts only to its own
+   * {@link LocalArtifactProvider}, so it does not need to wait for compilation.
    */
-  private static final Object compilerLock = new Object();
+  private static final ConcurrentMap<URI, Object> analysisLocks = new MapMaker().weakValues().makeMap();
 
+  /**
+   * Locks held while compiling a library and writing its artifacts, keyed by library {@link URI}.
+   */
+  private static final ConcurrentMap<URI, Object> compileLocks = new MapMaker().weakValues().makeMap();
+
+  /**
+   * Resolved libraries used for delta analysis. Synchronize against this field when accessing it.
+   * The cached {@link LibraryUnit}s are not modified, so they may be used without holding the lock.
+   */
   private static LRUCache<LibrarySource, LibraryUnit> cachedLibraries = new LRUCache<LibrarySource, LibraryUnit>(
       10);
   private static PerformanceListener performanceListener = null;
@@ -488,7 +504,11 @@ public class DartCompilerUtilities {
   public static DartNode analyzeDelta(LibrarySource library, String sourceString,
       DartUnit suppliedUnit, DartNode completionNode, int completionLocation,
       final Collection<DartCompilationError> parseErrors) throws DartModelException {
-    if (cachedLibraries.get(library) == null) {
+    LibraryUnit cachedLibrary;
+    synchronized (cachedLibraries) {
+      cachedLibrary = cachedLibraries.get(library);
+    }
+    if (cachedLibrary == null) {
       Collection<DartUnit> parsedUnits = new ArrayList<DartUnit>();
       parsedUnits.add(suppliedUnit);
       LibraryUnit resolvedLib = resolveLibrary(library, parsedUnits, parseErrors);
@@ -504,8 +524,8 @@ public class DartCompilerUtilities {
     URI unitUri = src.getUri();
     Map<URI, String> suppliedSources = new HashMap<URI, String>();
     suppliedSources.put(unitUri, sourceString);
-    DeltaAnalysisRunnable runnable = new DeltaAnalysisRunnable(library, unitUri, suppliedSources,
-        suppliedUnit, completionNode, completionLocation, parseErrors);
+    DeltaAnalysisRunnable runnable = new DeltaAnalysisRunnable(library, cachedLibrary, unitUri,
+        suppliedSources, suppliedUnit, completionNode, completionLocation, parseErrors);
     runnable.runSafe();
     if (runnable.exception != null) {
       throw new DartModelException(new CoreException(new Status(IStatus.ERROR, DartCore.PLUGIN_ID,
@@ -778,12 +798,12 @@ public class DartCompilerUtilities {
   /**
    * A synchronized call to
    * {@link DartCompiler#analyzeLibrary(LibrarySource, Map, CompilerConfiguration, DartArtifactProvider, DartCompilerListener)}
+   * . Only analyses of the same library are serialized, so the given provider must not write
+   * artifacts into a provider shared with other libraries.
    */
   public static LibraryUnit secureAnalyzeLibrary(LibrarySource librarySource,
       Map<URI, DartUnit> parsedUnits, final CompilerConfiguration config,
       DartArtifactProvider provider, DartCompilerListener listener) throws IOException {
-
-    // Any calls to compiler involving artifact provider must be synchronized
     long start = System.currentTimeMillis();
     LibraryUnit unit;
     if (DartCoreDebug.ANALYSIS_SERVER && parsedUnits == null) {
@@ -819,7 +839,7 @@ public class DartCompilerUtilities {
         throw new RuntimeException("Timed out waiting for library to be resolved: " + libraryFile);
       }
     } else {
-      synchronized (compilerLock) {
+      synchronized (getLock(analysisLocks, librarySource)) {
         unit = DartCompiler.analyzeLibrary(librarySource, parsedUnits, config, provider, listener);
       }
     }
@@ -832,11 +852,11 @@ public class DartCompilerUtilities {
   /**
    * A synchronized call to
    * {@link DartCompiler#compileLib(LibrarySource, CompilerConfiguration, DartArtifactProvider, DartCompilerListener)}
+   * . Only compilations of the same library are serialized.
    */
   public static void secureCompileLib(LibrarySource libSource, CompilerConfiguration config,
       DartArtifactProvider provider, DartCompilerListener listener) throws IOException {
-    synchronized (compilerLock) {
-      // Any calls to compiler involving artifact provider must be synchronized
+    synchronized (getLock(compileLocks, libSource)) {
       long start = System.currentTimeMillis();
       List<LibrarySource> embeddedLibraries = new ArrayList<LibrarySource>();
       DartCompiler.compileLib(libSource, embeddedLibraries, config, provider, listener);
@@ -863,6 +883,22 @@ public class DartCompilerUtilities {
     return parsedUnits;
   }
 
+  /**
+   * @return the lock to use for the given library, creating it if necessary.
+   */
+  private static Object getLock(ConcurrentMap<URI, Object> locks, LibrarySource library) {
+    URI uri = library.getUri();
+    Object lock = locks.get(uri);
+    if (lock == null) {
+      Object newLock = new Object();
+      lock = locks.putIfAbsent(uri, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
+
   private static boolean equalUris(SystemLibraryManager manager, URI firstUri, URI secondUri) {
     if (firstUri == null) {
       return secondUri == null;
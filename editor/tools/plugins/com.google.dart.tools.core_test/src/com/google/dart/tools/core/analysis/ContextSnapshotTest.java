@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.tools.core.analysis;
+
+import com.google.dart.tools.core.test.util.FileOperation;
+import com.google.dart.tools.core.test.util.TestUtilities;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+public class ContextSnapshotTest extends TestCase {
+
+  private static final Collection<File> NO_FILES = Collections.emptyList();
+
+  private File cacheFile;
+  private File appFile;
+  private File libFile;
+  private File sourceFile;
+
+  public void test_ContextSnapshot_discard() throws Exception {
+    TestUtilities.runWithTempDirectory(new FileOperation() {
+      @Override
+      public void run(File tempDir) throws Exception {
+        ContextSnapshot snapshot = setupSnapshot(tempDir);
+        assertTrue(snapshot.isUpToDate(appFile));
+        assertFalse(snapshot.discard(new File(tempDir, "other.dart")));
+        assertTrue(snapshot.isUpToDate(appFile));
+        assertTrue(snapshot.discard(sourceFile));
+        assertFalse(snapshot.isUpToDate(libFile));
+        assertFalse(snapshot.isUpToDate(appFile));
+      }
+    });
+  }
+
+  public void test_ContextSnapshot_modified() throws Exception {
+    TestUtilities.runWithTempDirectory(new FileOperation() {
+      @Override
+      public void run(File tempDir) throws Exception {
+        ContextSnapshot snapshot = setupSnapshot(tempDir);
+        sourceFile.setLastModified(sourceFile.lastModified() + 10000);
+        assertFalse(snapshot.isUpToDate(appFile));
+        assertFalse(snapshot.isUpToDate(libFile));
+      }
+    });
+  }
+
+  public void test_ContextSnapshot_readWrite() throws Exception {
+    TestUtilities.runWithTempDirectory(new FileOperation() {
+      @Override
+      public void run(File tempDir) throws Exception {
+        setupSnapshot(tempDir).write(new Context());
+        assertTrue(cacheFile.exists());
+        ContextSnapshot snapshot = new ContextSnapshot(cacheFile);
+        assertTrue(snapshot.isUpToDate(appFile));
+        assertTrue(snapshot.isUpToDate(libFile));
+        assertFalse(snapshot.isUpToDate(sourceFile));
+        snapshot.discardAll();
+        assertFalse(snapshot.isUpToDate(appFile));
+      }
+    });
+  }
+
+  private File createFile(File dir, String name) throws IOException {
+    File file = new File(dir, name);
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write("// " + name);
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+
+  /**
+   * Answer a snapshot in which "app.dart" imports "lib.dart" which sources "source.dart"
+   */
+  private ContextSnapshot setupSnapshot(File tempDir) throws IOException {
+    cacheFile = new File(tempDir, "analysis.cache");
+    appFile = createFile(tempDir, "app.dart");
+    libFile = createFile(tempDir, "lib.dart");
+    sourceFile = createFile(tempDir, "source.dart");
+    ContextSnapshot snapshot = new ContextSnapshot(cacheFile);
+    HashMap<File, Long> stamps = new HashMap<File, Long>();
+    stamps.put(appFile, appFile.lastModified());
+    snapshot.cacheLibrary(appFile, stamps, Arrays.asList(libFile));
+    stamps.clear();
+    stamps.put(libFile, libFile.lastModified());
+    stamps.put(sourceFile, sourceFile.lastModified());
+    snapshot.cacheLibrary(libFile, stamps, NO_FILES);
+    return snapshot;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.tools.core.analysis;
+
+import com.google.dart.compiler.ast.DartUnit;
+import com.google.dart.tools.core.test.util.FileOperation;
+import com.google.dart.tools.core.test.util.TestUtilities;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+public class ContextTest extends TestCase {
+
+  private Context context;
+  private File appFile;
+  private File libFile;
+  private File srcDir;
+  private File sourceFile;
+  private File otherSourceFile;
+
+  public void test_Context_discardLibraries() throws Exception {
+    TestUtilities.runWithTempDirectory(new FileOperation() {
+      @Override
+      public void run(File tempDir) throws Exception {
+        setupContext(tempDir);
+        context.discardLibraries();
+        assertTrue(context.getCachedLibraries().isEmpty());
+        assertLibraries(context.getLibrariesContaining(sourceFile));
+        assertLibraries(context.getLibrariesContaining(tempDir));
+        assertTrue(context.getLibrariesImporting(libFile).isEmpty());
+      }
+    });
+  }
+
+  public void test_Context_importedFile() throws Exception {
+    TestUtilities.runWithTempDirectory(new FileOperation() {
+      @Override
+      public void run(File tempDir) throws Exception {
+        setupContext(tempDir);
+        Library app = context.getCachedLibrary(appFile);
+        Library lib = context.getCachedLibrary(libFile);
+        assertLibraries(context.getLibrariesContaining(libFile), lib);
+        assertEquals(Arrays.asList(app), context.getLibrariesImporting(libFile));
+        assertTrue(context.getLibrariesImporting(appFile).isEmpty());
+
+        // The importing library is still found once the imported library has been discarded
+        context.discardLibrary(lib);
+        assertNull(context.getCachedLibrary(libFile));
+        assertEquals(Arrays.asList(app), context.getLibrariesImporting(libFile));
+        context.discardLibrary(app);
+        assertTrue(context.getLibrariesImporting(libFile).isEmpty());
+      }
+    });
+  }
+
+  public void test_Context_removeLibrary() throws Exception {
+    TestUtilities.runWithTempDirectory(new FileOperation() {
+      @Override
+      public void run(File tempDir) throws Exception {
+        setupContext(tempDir);
+        Library app = context.getCachedLibrary(appFile);
+        Library lib = context.getCachedLibrary(libFile);
+
+        // A library replacing another under the same file replaces its imports and sources
+        Library newApp = newLibrary(appFile, new File[] {}, new File[] {otherSourceFile});
+        context.cacheLibrary(newApp);
+        assertSame(newApp, context.getCachedLibrary(appFile));
+        assertTrue(context.getLibrariesImporting(libFile).isEmpty());
+        assertLibraries(context.getLibrariesContaining(sourceFile), lib);
+        assertLibraries(context.getLibrariesContaining(otherSourceFile), lib, newApp);
+
+        // Discarding a library discards the library cached for its file, and its sources
+        context.discardLibrary(app);
+        assertNull(context.getCachedLibrary(appFile));
+        assertLibraries(context.getLibrariesContaining(otherSourceFile), lib);
+        context.discardLibrary(lib);
+        assertTrue(context.getCachedLibraries().isEmpty());
+        assertLibraries(context.getLibrariesContaining(srcDir));
+        assertLibraries(context.getLibrariesContaining(tempDir));
+      }
+    });
+  }
+
+  public void test_Context_sourcedFile() throws Exception {
+    TestUtilities.runWithTempDirectory(new FileOperation() {
+      @Override
+      public void run(File tempDir) throws Exception {
+        setupContext(tempDir);
+        Library app = context.getCachedLibrary(appFile);
+        Library lib = context.getCachedLibrary(libFile);
+        assertLibraries(context.getLibrariesContaining(sourceFile), lib);
+        assertLibraries(context.getLibrariesContaining(otherSourceFile), lib);
+        assertLibraries(context.getLibrariesContaining(srcDir), lib);
+        assertLibraries(context.getLibrariesContaining(tempDir), lib);
+        assertLibraries(context.getLibrariesContaining(createFile(srcDir, "unknown.dart")));
+
+        // Discarding the library sourcing the file and the library importing it
+        for (Library library : context.getLibrariesContaining(sourceFile)) {
+          context.discardLibrary(library);
+          for (Library importing : context.getLibrariesImporting(library.getFile())) {
+            context.discardLibrary(importing);
+          }
+        }
+        assertNull(context.getCachedLibrary(libFile));
+        assertNull(context.getCachedLibrary(appFile));
+        assertFalse(context.getCachedLibraries().contains(app));
+        assertLibraries(context.getLibrariesContaining(sourceFile));
+        assertLibraries(context.getLibrariesContaining(srcDir));
+        assertTrue(context.getLibrariesImporting(libFile).isEmpty());
+      }
+    });
+  }
+
+  private void assertLibraries(Library[] actual, Library... expected) {
+    assertEquals(new HashSet<Library>(Arrays.asList(expected)),
+        new HashSet<Library>(Arrays.asList(actual)));
+    assertEquals(expected.length, actual.length);
+  }
+
+  private File createFile(File dir, String name) throws IOException {
+    File file = new File(dir, name);
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write("// " + name);
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+
+  private Library newLibrary(File file, File[] importedFiles, File[] sourceFiles) {
+    HashMap<String, File> imports = new HashMap<String, File>();
+    for (File importedFile : importedFiles) {
+      imports.put(importedFile.getName(), importedFile);
+    }
+    HashMap<String, File> sources = new HashMap<String, File>();
+    for (File sourceFile : sourceFiles) {
+      sources.put(sourceFile.getName(), sourceFile);
+    }
+    return new Library(file, null, new DartUnit(null, false), imports, sources);
+  }
+
+  /**
+   * Cache "app.dart" which imports "lib.dart" which sources "src/source.dart" and
+   * "src/other.dart"
+   */
+  private void setupContext(File tempDir) throws IOException {
+    appFile = createFile(tempDir, "app.dart");
+    libFile = createFile(tempDir, "lib.dart");
+    srcDir = new File(tempDir, "src");
+    srcDir.mkdir();
+    sourceFile = createFile(srcDir, "source.dart");
+    otherSourceFile = createFile(srcDir, "other.dart");
+    context = new Context();
+    context.cacheLibrary(newLibrary(appFile, new File[] {libFile}, new File[] {}));
+    context.cacheLibrary(newLibrary(libFile, new File[] {}, new File[] {
+        sourceFile, otherSourceFile}));
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.tools.core.analysis;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class TaskQueueTest extends TestCase {
+
+  private static class MockTask extends Task {
+    private final Collection<File> libraryFiles;
+
+    MockTask(File... libraryFiles) {
+      this.libraryFiles = libraryFiles.length > 0 ? Arrays.asList(libraryFiles) : null;
+    }
+
+    @Override
+    Collection<File> getLibraryFiles() {
+      return libraryFiles;
+    }
+
+    @Override
+    void perform() {
+    }
+  }
+
+  private static final List<Task> NO_TASKS = Collections.emptyList();
+
+  private final File libA = new File("a.dart");
+  private final File libB = new File("b.dart");
+  private final File libC = new File("c.dart");
+
+  private TaskQueue queue;
+
+  public void test_TaskQueue_exclusive() throws Exception {
+    Task task1 = new MockTask(libA);
+    Task task2 = new MockTask();
+    Task task3 = new MockTask(libB);
+    queue.addBackgroundTask(task1);
+    queue.addBackgroundTask(task2);
+    queue.addBackgroundTask(task3);
+    assertSame(task1, queue.removeNext());
+    assertNull(queue.removeNext());
+    queue.done(task1, NO_TASKS);
+    assertSame(task2, queue.removeNext());
+    assertNull(queue.removeNext());
+    queue.done(task2, NO_TASKS);
+    assertSame(task3, queue.removeNext());
+  }
+
+  public void test_TaskQueue_idle() throws Exception {
+    assertTrue(queue.isIdle());
+    Task task1 = new MockTask(libA);
+    Task task2 = new MockTask(libB);
+    queue.addNewTask(task1);
+    queue.addNewTask(task2);
+    assertFalse(queue.isIdle());
+    assertEquals(0, queue.getIdleChangeCount());
+    assertSame(task2, queue.removeNext());
+    assertTrue(queue.setBusy());
+    assertEquals(1, queue.getIdleChangeCount());
+    assertSame(task1, queue.removeNext());
+    assertFalse(queue.setBusy());
+    assertFalse(queue.done(task2, NO_TASKS));
+    assertEquals(1, queue.getIdleChangeCount());
+    assertFalse(queue.isIdle());
+    assertTrue(queue.done(task1, NO_TASKS));
+    assertEquals(2, queue.getIdleChangeCount());
+    assertTrue(queue.isIdle());
+  }
+
+  public void test_TaskQueue_lanes() throws Exception {
+    Task background = new MockTask(libA);
+    Task interactive1 = new MockTask(libB);
+    Task interactive2 = new MockTask(libC);
+    queue.addBackgroundTask(background);
+    queue.addNewTask(interactive1);
+    queue.addNewTask(interactive2);
+    assertSame(background, queue.getLastBackgroundTask());
+    assertSame(interactive2, queue.removeNext());
+    assertSame(interactive1, queue.removeNext());
+    assertSame(background, queue.removeNext());
+    assertNull(queue.removeNext());
+  }
+
+  public void test_TaskQueue_sameLibrary() throws Exception {
+    Task task1 = new MockTask(libA);
+    Task task2 = new MockTask(libA, libB);
+    Task task3 = new MockTask(libB);
+    Task task4 = new MockTask(libC);
+    queue.addBackgroundTask(task1);
+    queue.addBackgroundTask(task2);
+    queue.addBackgroundTask(task3);
+    queue.addBackgroundTask(task4);
+    assertSame(task1, queue.removeNext());
+    // task3 must wait for task2 which precedes it and shares a library
+    assertSame(task4, queue.removeNext());
+    assertNull(queue.removeNext());
+    queue.done(task1, NO_TASKS);
+    assertSame(task2, queue.removeNext());
+    assertNull(queue.removeNext());
+    queue.done(task2, NO_TASKS);
+    assertSame(task3, queue.removeNext());
+  }
+
+  public void test_TaskQueue_subtasks() throws Exception {
+    Task task = new MockTask(libA);
+    Task background = new MockTask(libB);
+    Task interactive = new MockTask(libC);
+    Task subtask1 = new MockTask(libA);
+    Task subtask2 = new MockTask(libA);
+    queue.addBackgroundTask(task);
+    queue.addBackgroundTask(background);
+    assertSame(task, queue.removeNext());
+    queue.addNewTask(interactive);
+    ArrayList<Task> subtasks = new ArrayList<Task>();
+    subtasks.add(subtask1);
+    subtasks.add(subtask2);
+    queue.done(task, subtasks);
+    assertSame(interactive, queue.removeNext());
+    assertSame(subtask1, queue.removeNext());
+    assertSame(background, queue.removeNext());
+    assertNull(queue.removeNext());
+    queue.done(subtask1, NO_TASKS);
+    assertSame(subtask2, queue.removeNext());
+  }
+
+  /**
+   * Callers must lock against the queue before calling any method
+   */
+  @Override
+  protected void runTest() throws Throwable {
+    synchronized (queue) {
+      super.runTest();
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    queue = new TaskQueue();
+  }
+}
@@ -20,6 +20,9 @@ public class TestAll {
   public static Test suite() {
     TestSuite suite = new TestSuite("Tests in " + TestAll.class.getPackage().getName());
     suite.addTestSuite(AnalysisServerTest.class);
+    suite.addTestSuite(ContextSnapshotTest.class);
+    suite.addTestSuite(ContextTest.class);
+    suite.addTestSuite(TaskQueueTest.class);
     return suite;
   }
 }
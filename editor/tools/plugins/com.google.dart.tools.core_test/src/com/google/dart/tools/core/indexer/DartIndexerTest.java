@@ -28,9 +28,13 @@ import static com.google.dart.tools.core.test.util.MoneyProjectUtilities.getMone
 
 import junit.framework.TestCase;
 
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class DartIndexerTest extends TestCase {
   public void test_DartIndexer_getAllTypes() throws Exception {
@@ -67,6 +71,81 @@ public class DartIndexerTest extends TestCase {
     convertResults(result, 0, Type.class);
   }
 
+  public void test_DartIndexer_performSearch_canceled() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch stopped = new CountDownLatch(1);
+    final boolean[] interrupted = {false};
+    final NullProgressMonitor monitor = new NullProgressMonitor();
+    try {
+      DartIndexer.performSearch(monitor, new DartIndexer.IndexerSearch() {
+        @Override
+        public DartIndexerResult performSearch() {
+          started.countDown();
+          monitor.setCanceled(true);
+          try {
+            while (!DartIndexer.isSearchCanceled()) {
+              Thread.sleep(10);
+            }
+          } catch (InterruptedException exception) {
+            interrupted[0] = true;
+          }
+          stopped.countDown();
+          return null;
+        }
+      });
+      fail("Expected InterruptedException");
+    } catch (InterruptedException exception) {
+      // Expected
+    }
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    assertTrue(stopped.await(10, TimeUnit.SECONDS));
+    assertFalse(interrupted[0]);
+    assertFalse(DartIndexer.isSearchCanceled());
+  }
+
+  public void test_DartIndexer_performSearch_failed() throws Exception {
+    final IndexTemporarilyNonOperational failure = new IndexTemporarilyNonOperational();
+    try {
+      DartIndexer.performSearch(new NullProgressMonitor(), new DartIndexer.IndexerSearch() {
+        @Override
+        public DartIndexerResult performSearch() throws IndexTemporarilyNonOperational {
+          throw failure;
+        }
+      });
+      fail("Expected IndexTemporarilyNonOperational");
+    } catch (IndexTemporarilyNonOperational exception) {
+      assertSame(failure, exception);
+    }
+  }
+
+  public void test_DartIndexer_submitSearch() throws Exception {
+    final DartIndexerResult expected = new DartIndexerResult(new Location[0], new IPath[0]);
+    final DartIndexerResult[] notified = {null};
+    final CountDownLatch done = new CountDownLatch(1);
+    Future<DartIndexerResult> future = DartIndexer.submitSearch(
+        new DartIndexer.IndexerSearch() {
+          @Override
+          public DartIndexerResult performSearch() {
+            return expected;
+          }
+        },
+        new DartIndexer.SearchCallback() {
+          @Override
+          public void searchCompleted(DartIndexerResult result) {
+            notified[0] = result;
+            done.countDown();
+          }
+
+          @Override
+          public void searchFailed(IndexTemporarilyNonOperational exception) {
+            done.countDown();
+          }
+        });
+    assertSame(expected, future.get(10, TimeUnit.SECONDS));
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertSame(expected, notified[0]);
+  }
+
   public void test_DartIndexer_unpackElementOrNull() throws Exception {
     CompilationUnit unit = getMoneyCompilationUnit("currency.dart");
     Type type = unit.getType("Currency");
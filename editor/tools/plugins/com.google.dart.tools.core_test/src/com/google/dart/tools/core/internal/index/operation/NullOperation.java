@@ -14,6 +14,21 @@
 package com.google.dart.tools.core.internal.index.operation;
 
 public class NullOperation implements IndexOperation {
+  private final boolean isQuery;
+
+  public NullOperation() {
+    this(false);
+  }
+
+  public NullOperation(boolean isQuery) {
+    this.isQuery = isQuery;
+  }
+
+  @Override
+  public boolean isQuery() {
+    return isQuery;
+  }
+
   @Override
   public void performOperation() {
   }
@@ -17,15 +17,57 @@ import com.google.dart.tools.core.test.util.TestUtilities;
 
 import junit.framework.TestCase;
 
+import java.util.concurrent.CountDownLatch;
+
 public class OperationProcessorTest extends TestCase {
   public void test_OperationProcessor_create() {
     assertNotNull(new OperationProcessor(new OperationQueue()));
   }
 
+  public void test_OperationProcessor_run_afterStartSignal() throws Exception {
+    final CountDownLatch performed = new CountDownLatch(1);
+    OperationQueue queue = new OperationQueue();
+    queue.enqueue(new IndexOperation() {
+      @Override
+      public boolean isQuery() {
+        return false;
+      }
+
+      @Override
+      public void performOperation() {
+        performed.countDown();
+      }
+    });
+    CountDownLatch startSignal = new CountDownLatch(1);
+    final OperationProcessor processor = new OperationProcessor(queue, false, startSignal);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        processor.run();
+      }
+    };
+    thread.start();
+    try {
+      Thread.sleep(300);
+      assertEquals("The operation was run before the start signal", 1, performed.getCount());
+      startSignal.countDown();
+      performed.await();
+    } finally {
+      processor.stop(false);
+      thread.join(1000);
+    }
+    assertFalse(thread.isAlive());
+  }
+
   public void test_OperationProcessor_run() {
     final boolean[] wasRun = {false};
     OperationQueue queue = new OperationQueue();
     queue.enqueue(new IndexOperation() {
+      @Override
+      public boolean isQuery() {
+        return false;
+      }
+
       @Override
       public void performOperation() {
         wasRun[0] = true;
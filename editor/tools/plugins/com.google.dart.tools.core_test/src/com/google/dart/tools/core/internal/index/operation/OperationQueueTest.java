@@ -47,4 +47,100 @@ public class OperationQueueTest extends TestCase {
     queue.enqueue(operation);
     assertEquals(operation, queue.dequeue(0));
   }
+
+  public void test_OperationQueue_dequeue_queryAfterIndex() throws InterruptedException {
+    OperationQueue queue = new OperationQueue();
+    IndexOperation indexOperation = new IndexResourceOperation(null, null, null, null, null, null);
+    IndexOperation query = new NullOperation(true);
+
+    queue.enqueue(indexOperation);
+    queue.enqueue(query);
+
+    assertEquals(query, queue.dequeue(0));
+    assertEquals(indexOperation, queue.dequeue(0));
+    assertNull(queue.dequeue(0));
+  }
+
+  public void test_OperationQueue_dequeue_queryAfterRemove() throws InterruptedException {
+    OperationQueue queue = new OperationQueue();
+    IndexOperation indexOperation = new IndexResourceOperation(null, null, null, null, null, null);
+    IndexOperation removeOperation = new NullOperation();
+    IndexOperation query1 = new NullOperation(true);
+    IndexOperation query2 = new NullOperation(true);
+
+    queue.enqueue(indexOperation);
+    queue.enqueue(removeOperation);
+    queue.enqueue(query1);
+
+    assertEquals(indexOperation, queue.dequeue(0));
+    assertEquals(removeOperation, queue.dequeue(0));
+    queue.enqueue(indexOperation);
+    queue.enqueue(query2);
+    assertEquals(query2, queue.dequeue(0));
+    assertEquals(query1, queue.dequeue(0));
+    assertEquals(indexOperation, queue.dequeue(0));
+    assertNull(queue.dequeue(0));
+  }
+
+  public void test_OperationQueue_dequeueQuery_barrierWaitsForQuery() throws InterruptedException {
+    OperationQueue queue = new OperationQueue();
+    IndexOperation query = new NullOperation(true);
+    IndexOperation removeOperation = new NullOperation();
+
+    queue.enqueue(query);
+    queue.enqueue(removeOperation);
+
+    assertEquals(query, queue.dequeueQuery(0));
+    assertNull(queue.dequeue(0));
+    queue.queryCompleted();
+    assertEquals(removeOperation, queue.dequeue(0));
+    assertNull(queue.dequeue(0));
+  }
+
+  public void test_OperationQueue_dequeueQuery_indexDuringQuery() throws InterruptedException {
+    OperationQueue queue = new OperationQueue();
+    IndexOperation indexOperation = new IndexResourceOperation(null, null, null, null, null, null);
+    IndexOperation query = new NullOperation(true);
+
+    queue.enqueue(indexOperation);
+    queue.enqueue(query);
+
+    assertEquals(query, queue.dequeueQuery(0));
+    assertEquals(indexOperation, queue.dequeue(0));
+    queue.queryCompleted();
+    assertNull(queue.dequeue(0));
+  }
+
+  public void test_OperationQueue_dequeueQuery_queryAfterRemove() throws InterruptedException {
+    OperationQueue queue = new OperationQueue();
+    IndexOperation removeOperation = new NullOperation();
+    IndexOperation query = new NullOperation(true);
+
+    queue.enqueue(removeOperation);
+    queue.enqueue(query);
+
+    assertNull(queue.dequeueQuery(0));
+    assertEquals(removeOperation, queue.dequeue(0));
+    assertEquals(query, queue.dequeue(0));
+    assertNull(queue.dequeue(0));
+  }
+
+  public void test_OperationQueue_statistics() throws InterruptedException {
+    OperationQueue queue = new OperationQueue();
+    queue.enqueue(new NullOperation());
+    queue.enqueue(new NullOperation(true));
+    assertEquals(2, queue.size());
+    assertEquals(2, queue.getMaxDepth());
+
+    queue.dequeue(0);
+    queue.dequeue(0);
+    assertEquals(0, queue.size());
+    assertEquals(1, queue.getQueryCount());
+    assertEquals(1, queue.getUpdateCount());
+
+    queue.clearStatistics();
+    assertEquals(0, queue.getMaxDepth());
+    assertEquals(0, queue.getQueryCount());
+    assertEquals(0, queue.getUpdateCount());
+  }
 }
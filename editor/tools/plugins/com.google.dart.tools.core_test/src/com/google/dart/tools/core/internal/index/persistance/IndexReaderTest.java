@@ -22,15 +22,10 @@ import com.google.dart.tools.core.internal.index.store.IndexStore;
 
 import junit.framework.TestCase;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Set;
+import java.nio.ByteBuffer;
 
 public class IndexReaderTest extends TestCase {
   private static final String ATTRIBUTE_ID_1 = "attribute-1";
@@ -42,36 +37,72 @@ public class IndexReaderTest extends TestCase {
   private static final String RELATIONSHIP_ID_2 = "relationship-2";
   private static final String RESOURCE_ID_1 = "file://resource1";
   private static final String RESOURCE_ID_2 = "file://resource2";
+  private static final String SDK_VERSION = "1";
+
+  private Resource resource1 = new Resource(RESOURCE_ID_1);
+  private Resource resource2 = new Resource(RESOURCE_ID_2);
+  private Element element1 = new Element(resource1, ELEMENT_ID_1);
+  private Element element2 = new Element(resource1, ELEMENT_ID_2);
+  private Element element3 = new Element(resource2, ELEMENT_ID_3);
+  private Relationship relationship1 = Relationship.getRelationship(RELATIONSHIP_ID_1);
+  private Relationship relationship2 = Relationship.getRelationship(RELATIONSHIP_ID_2);
 
   public void test_IndexReader_readIndex_empty() throws Exception {
     IndexStore index = writeAndReadIndex(createEmptyIndex());
-    assertTrue(getAttributeMap(index).isEmpty());
-    assertTrue(getRelationshipMap(index).isEmpty());
+    assertEquals(0, index.getRelationshipCount());
+    assertNull(index.getAttribute(element1, Attribute.getAttribute(ATTRIBUTE_ID_1)));
+    assertEquals(0, index.getRelationships(element1, relationship1).length);
+  }
+
+  public void test_IndexReader_readIndex_modified() throws Exception {
+    IndexStore index = writeAndReadIndex(createNonEmptyIndex());
+    index.recordRelationship(resource2, element1, relationship1, new Location(element3, 40, 2));
+    Location[] locations = index.getRelationships(element1, relationship1);
+    assertEquals(2, locations.length);
+    assertEquals(new Location(element2, 12, 5), locations[0]);
+    assertEquals(new Location(element3, 40, 2), locations[1]);
+
+    index.removeResource(resource2);
+    assertEquals(2, index.getRelationshipCount());
+    assertEquals(1, index.getRelationships(element1, relationship1).length);
+    assertEquals(0, index.getRelationships(element2, relationship1).length);
   }
 
   public void test_IndexReader_readIndex_nonEmpty() throws Exception {
     IndexStore index = writeAndReadIndex(createNonEmptyIndex());
+    assertIndexContents(index);
+  }
+
+  public void test_IndexReader_readIndex_notIndexFile() throws Exception {
+    ByteArrayOutputStream baseStream = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(baseStream);
+    output.writeInt(2);
+    output.writeUTF("0.0.0");
+    output.close();
+    IndexStore index = new IndexStore();
+    IndexReader reader = index.createIndexReader();
+    assertFalse(reader.readIndex(ByteBuffer.wrap(baseStream.toByteArray()), SDK_VERSION));
+  }
 
-    HashMap<Element, HashMap<Attribute, String>> attributeMap = getAttributeMap(index);
-    assertNotNull(attributeMap);
-    assertEquals(1, attributeMap.size());
-    Element element1 = attributeMap.keySet().iterator().next();
-    assertNotNull(element1);
-    Resource resource = element1.getResource();
-    assertNotNull(resource);
-    assertEquals(RESOURCE_ID_1, resource.getResourceId());
-    assertEquals(ELEMENT_ID_1, element1.getElementId());
-    String value = index.getAttribute(element1, Attribute.getAttribute(ATTRIBUTE_ID_1));
-    assertEquals(ATTRIBUTE_VALUE_1, value);
-
-    HashMap<Element, HashMap<Relationship, ArrayList<Location>>> relationshipMap = getRelationshipMap(index);
-    assertNotNull(relationshipMap);
-    assertEquals(2, relationshipMap.size());
-    assertTrue(relationshipMap.containsKey(element1));
-
-    HashMap<Resource, Set<Element>> resourceToElementMap = getResourceToElementMap(index);
-    assertNotNull(resourceToElementMap);
-    assertEquals(2, resourceToElementMap.size());
+  public void test_IndexReader_readIndex_readAgain() throws Exception {
+    IndexStore index = writeAndReadIndex(writeAndReadIndex(createNonEmptyIndex()));
+    assertIndexContents(index);
+  }
+
+  private void assertIndexContents(IndexStore index) {
+    assertEquals(ATTRIBUTE_VALUE_1,
+        index.getAttribute(element1, Attribute.getAttribute(ATTRIBUTE_ID_1)));
+    assertEquals(3, index.getRelationshipCount());
+    Location[] locations = index.getRelationships(element1, relationship1);
+    assertEquals(1, locations.length);
+    assertEquals(new Location(element2, 12, 5), locations[0]);
+    locations = index.getRelationships(element1, relationship2);
+    assertEquals(1, locations.length);
+    assertEquals(new Location(element2, 32, 9), locations[0]);
+    locations = index.getRelationships(element2, relationship1);
+    assertEquals(1, locations.length);
+    assertEquals(new Location(element3, 12, 5), locations[0]);
+    assertEquals(0, index.getRelationships(element3, relationship1).length);
   }
 
   private IndexStore createEmptyIndex() {
@@ -80,14 +111,6 @@ public class IndexReaderTest extends TestCase {
 
   private IndexStore createNonEmptyIndex() {
     IndexStore index = new IndexStore();
-    Resource resource1 = new Resource(RESOURCE_ID_1);
-    Resource resource2 = new Resource(RESOURCE_ID_2);
-    Element element1 = new Element(resource1, ELEMENT_ID_1);
-    Element element2 = new Element(resource1, ELEMENT_ID_2);
-    Element element3 = new Element(resource2, ELEMENT_ID_3);
-    Relationship relationship1 = Relationship.getRelationship(RELATIONSHIP_ID_1);
-    Relationship relationship2 = Relationship.getRelationship(RELATIONSHIP_ID_2);
-
     index.recordAttribute(element1, Attribute.getAttribute(ATTRIBUTE_ID_1), ATTRIBUTE_VALUE_1);
 
     index.recordRelationship(resource1, element1, relationship1, new Location(element2, 12, 5));
@@ -96,68 +119,20 @@ public class IndexReaderTest extends TestCase {
     return index;
   }
 
-  /**
-   * Access the attribute map associated with the specified index.
-   * 
-   * @param index the index whose attribute map is to be accessed
-   * @return the attribute map associated with the specified index
-   * @throws Exception if the attribute map could not be accessed
-   */
-  @SuppressWarnings("unchecked")
-  private HashMap<Element, HashMap<Attribute, String>> getAttributeMap(IndexStore index)
-      throws Exception {
-    Field field = index.getClass().getDeclaredField("attributeMap");
-    field.setAccessible(true);
-    return (HashMap<Element, HashMap<Attribute, String>>) field.get(index);
-  }
-
-  /**
-   * Access the relationship map associated with the specified index.
-   * 
-   * @param index the index whose relationship map is to be accessed
-   * @return the relationship map associated with the specified index
-   * @throws Exception if the relationship map could not be accessed
-   */
-  @SuppressWarnings("unchecked")
-  private HashMap<Element, HashMap<Relationship, ArrayList<Location>>> getRelationshipMap(
-      IndexStore index) throws Exception {
-    Field field = index.getClass().getDeclaredField("relationshipMap");
-    field.setAccessible(true);
-    return (HashMap<Element, HashMap<Relationship, ArrayList<Location>>>) field.get(index);
-  }
-
-  /**
-   * Access the resource-to-element map associated with the specified index.
-   * 
-   * @param index the index whose resource-to-element map is to be accessed
-   * @return the resource-to-element map associated with the specified index
-   * @throws Exception if the resource-to-element map could not be accessed
-   */
-  @SuppressWarnings("unchecked")
-  private HashMap<Resource, Set<Element>> getResourceToElementMap(IndexStore index)
-      throws Exception {
-    Field field = index.getClass().getDeclaredField("resourceToElementMap");
-    field.setAccessible(true);
-    return (HashMap<Resource, Set<Element>>) field.get(index);
-  }
-
   private IndexStore writeAndReadIndex(IndexStore originalIndex) throws IOException {
     //
     // Create an external format representing the index.
     //
     IndexWriter writer = originalIndex.createIndexWriter();
-    ByteArrayOutputStream baseStream = new ByteArrayOutputStream();
-    ObjectOutputStream output = new ObjectOutputStream(baseStream);
-    writer.writeIndex(output);
-    output.flush();
-    output.close();
-    byte[] externalFormat = baseStream.toByteArray();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    writer.writeIndex(output, SDK_VERSION);
+    byte[] externalFormat = output.toByteArray();
     //
     // Read the external format that was created.
     //
     IndexStore newIndex = new IndexStore();
     IndexReader reader = newIndex.createIndexReader();
-    reader.readIndex(new ObjectInputStream(new ByteArrayInputStream(externalFormat)));
+    assertTrue(reader.readIndex(ByteBuffer.wrap(externalFormat), SDK_VERSION));
     return newIndex;
   }
 }
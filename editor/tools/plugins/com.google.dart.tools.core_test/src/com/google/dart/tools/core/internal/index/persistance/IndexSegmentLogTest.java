@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.tools.core.internal.index.persistance;
+
+import com.google.dart.tools.core.index.Element;
+import com.google.dart.tools.core.index.Location;
+import com.google.dart.tools.core.index.Relationship;
+import com.google.dart.tools.core.index.Resource;
+import com.google.dart.tools.core.internal.index.store.IndexStore;
+import com.google.dart.tools.core.test.util.FileUtilities;
+import com.google.dart.tools.core.test.util.TestUtilities;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+public class IndexSegmentLogTest extends TestCase {
+  private static final String PREFIX = "index";
+  private static final String SDK_VERSION = "1";
+
+  private File directory;
+  private Resource resource1 = new Resource("file://resource1");
+  private Resource resource2 = new Resource("file://resource2");
+  private Element element1 = new Element(resource1, "element1");
+  private Element element2 = new Element(resource2, "element2");
+  private Relationship relationship = Relationship.getRelationship("relationship");
+
+  public void test_IndexSegmentLog_compact() throws Exception {
+    IndexStore index = new IndexStore();
+    IndexSegmentLog log = new IndexSegmentLog(index, directory, PREFIX, SDK_VERSION);
+    assertFalse(log.recover());
+    indexResource(index, log, resource1, element2, 10);
+    log.compact();
+    indexResource(index, log, resource2, element1, 20);
+    log.close();
+    assertFiles("index-2.idx", "index-2.log");
+
+    IndexStore recoveredIndex = new IndexStore();
+    log = new IndexSegmentLog(recoveredIndex, directory, PREFIX, SDK_VERSION);
+    assertTrue(log.recover());
+    log.close();
+    assertEquals(2, recoveredIndex.getRelationshipCount());
+    assertLocation(recoveredIndex, element2, resource1, 10);
+    assertLocation(recoveredIndex, element1, resource2, 20);
+    assertFiles("index-2.idx", "index-2.log", "index-3.log");
+  }
+
+  public void test_IndexSegmentLog_recover_differentSdk() throws Exception {
+    IndexStore index = new IndexStore();
+    IndexSegmentLog log = new IndexSegmentLog(index, directory, PREFIX, SDK_VERSION);
+    log.recover();
+    log.compact();
+    log.close();
+
+    log = new IndexSegmentLog(new IndexStore(), directory, PREFIX, SDK_VERSION + "1");
+    assertFalse(log.recover());
+    log.close();
+    assertFiles("index-3.log");
+  }
+
+  public void test_IndexSegmentLog_recover_incompleteSegment() throws Exception {
+    IndexStore index = new IndexStore();
+    IndexSegmentLog log = new IndexSegmentLog(index, directory, PREFIX, SDK_VERSION);
+    log.recover();
+    log.compact();
+    indexResource(index, log, resource1, element2, 10);
+    indexResource(index, log, resource2, element1, 20);
+    log.close();
+    RandomAccessFile file = new RandomAccessFile(new File(directory, "index-2.log"), "rw");
+    try {
+      file.setLength(file.length() - 3);
+    } finally {
+      file.close();
+    }
+
+    IndexStore recoveredIndex = new IndexStore();
+    log = new IndexSegmentLog(recoveredIndex, directory, PREFIX, SDK_VERSION);
+    assertTrue(log.recover());
+    log.close();
+    assertEquals(1, recoveredIndex.getRelationshipCount());
+    assertLocation(recoveredIndex, element2, resource1, 10);
+  }
+
+  public void test_IndexSegmentLog_recover_incompleteSegmentThenChanges() throws Exception {
+    IndexStore index = new IndexStore();
+    IndexSegmentLog log = new IndexSegmentLog(index, directory, PREFIX, SDK_VERSION);
+    log.recover();
+    log.compact();
+    indexResource(index, log, resource1, element2, 10);
+    indexResource(index, log, resource2, element1, 20);
+    log.close();
+    RandomAccessFile file = new RandomAccessFile(new File(directory, "index-2.log"), "rw");
+    try {
+      file.setLength(file.length() - 3);
+    } finally {
+      file.close();
+    }
+
+    index = new IndexStore();
+    log = new IndexSegmentLog(index, directory, PREFIX, SDK_VERSION);
+    assertTrue(log.recover());
+    indexResource(index, log, resource2, element1, 30);
+    log.close();
+    assertFiles("index-2.idx", "index-2.log", "index-3.log");
+
+    IndexStore recoveredIndex = new IndexStore();
+    log = new IndexSegmentLog(recoveredIndex, directory, PREFIX, SDK_VERSION);
+    assertTrue(log.recover());
+    log.close();
+    assertEquals(2, recoveredIndex.getRelationshipCount());
+    assertLocation(recoveredIndex, element2, resource1, 10);
+    assertLocation(recoveredIndex, element1, resource2, 30);
+  }
+
+  public void test_IndexSegmentLog_recover_noSegments() throws Exception {
+    IndexSegmentLog log = new IndexSegmentLog(new IndexStore(), directory, PREFIX, SDK_VERSION);
+    assertFalse(log.recover());
+    log.close();
+    assertFiles("index-1.log");
+  }
+
+  public void test_IndexSegmentLog_recover_regenerate() throws Exception {
+    IndexStore index = new IndexStore();
+    IndexSegmentLog log = new IndexSegmentLog(index, directory, PREFIX, SDK_VERSION);
+    log.recover();
+    indexResource(index, log, resource1, element2, 10);
+    log.compact();
+    indexResource(index, log, resource2, element1, 20);
+    index.regenerateResource(resource2);
+    log.recordIndex(resource2, new IndexStore());
+    log.close();
+
+    IndexStore recoveredIndex = new IndexStore();
+    log = new IndexSegmentLog(recoveredIndex, directory, PREFIX, SDK_VERSION);
+    assertTrue(log.recover());
+    log.close();
+    assertEquals(index.getRelationshipCount(), recoveredIndex.getRelationshipCount());
+    assertEquals(1, recoveredIndex.getRelationshipCount());
+    assertLocation(recoveredIndex, element2, resource1, 10);
+  }
+
+  public void test_IndexSegmentLog_recover_remove() throws Exception {
+    IndexStore index = new IndexStore();
+    IndexSegmentLog log = new IndexSegmentLog(index, directory, PREFIX, SDK_VERSION);
+    log.recover();
+    indexResource(index, log, resource1, element2, 10);
+    log.compact();
+    indexResource(index, log, resource2, element1, 20);
+    index.removeResource(resource1);
+    log.recordRemove(resource1);
+    log.close();
+
+    IndexStore recoveredIndex = new IndexStore();
+    log = new IndexSegmentLog(recoveredIndex, directory, PREFIX, SDK_VERSION);
+    assertTrue(log.recover());
+    log.close();
+    assertEquals(0, recoveredIndex.getRelationshipCount());
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    directory = TestUtilities.createTempDirectory();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtilities.delete(directory);
+    super.tearDown();
+  }
+
+  private void assertFiles(String... expectedNames) {
+    String[] names = directory.list();
+    Arrays.sort(names);
+    assertEquals(Arrays.asList(expectedNames), Arrays.asList(names));
+  }
+
+  private void assertLocation(IndexStore index, Element element, Resource contributor, int offset) {
+    Element locationElement = new Element(contributor, "unit");
+    Location[] locations = index.getRelationships(element, relationship);
+    assertEquals(1, locations.length);
+    assertEquals(new Location(locationElement, offset, 1), locations[0]);
+  }
+
+  /**
+   * Record that the given resource refers to the given element at the given offset, the way an
+   * index operation would.
+   */
+  private void indexResource(IndexStore index, IndexSegmentLog log, Resource resource,
+      Element element, int offset) {
+    IndexStore contributions = new IndexStore();
+    contributions.recordRelationship(resource, element, relationship, new Location(new Element(
+        resource, "unit"), offset, 1));
+    index.regenerateResource(resource, contributions);
+    log.recordIndex(resource, contributions);
+  }
+}
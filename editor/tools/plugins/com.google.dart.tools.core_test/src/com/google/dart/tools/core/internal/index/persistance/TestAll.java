@@ -20,6 +20,7 @@ public class TestAll {
   public static Test suite() {
     TestSuite suite = new TestSuite("Tests in " + TestAll.class.getPackage().getName());
     suite.addTestSuite(IndexReaderTest.class);
+    suite.addTestSuite(IndexSegmentLogTest.class);
     return suite;
   }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2012, the Dart project authors.
+ * 
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.dart.tools.core.internal.index.store;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.dart.compiler.DartCompilerListener;
+import com.google.dart.compiler.ast.ASTVisitor;
+import com.google.dart.compiler.ast.DartClass;
+import com.google.dart.compiler.ast.DartClassMember;
+import com.google.dart.compiler.ast.DartIdentifier;
+import com.google.dart.compiler.ast.DartUnit;
+import com.google.dart.compiler.parser.DartParser;
+import com.google.dart.compiler.parser.DartScannerParserContext;
+import com.google.dart.compiler.util.DartSourceString;
+import com.google.dart.tools.core.index.Element;
+import com.google.dart.tools.core.index.Location;
+import com.google.dart.tools.core.index.Relationship;
+import com.google.dart.tools.core.index.Resource;
+import com.google.dart.tools.core.internal.index.contributor.IndexConstants;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Benchmark for the memory used by an {@link IndexStore} holding the references found in the
+ * bundled libraries, compared with the nested hash tables the store used to be made of. Run it on
+ * the directories of the bundled libraries, e.g. <code>corelib/src lib/dom lib/html</code>.
+ * <p>
+ * The libraries are only parsed, so a reference to a name is taken to be a reference to the first
+ * class or member declared with that name, contributed by the resource containing the reference.
+ */
+public class IndexStoreBench {
+  /**
+   * The previous representation of the relationships in an index store.
+   */
+  private static class MapIndexStore {
+    private HashMap<Element, HashMap<Relationship, ArrayList<ContributedLocation>>> relationshipMap = new HashMap<Element, HashMap<Relationship, ArrayList<ContributedLocation>>>(
+        1024);
+
+    private HashMap<Resource, Set<Element>> resourceToElementMap = new HashMap<Resource, Set<Element>>(
+        256);
+
+    public Location[] getRelationships(Element element, Relationship relationship) {
+      HashMap<Relationship, ArrayList<ContributedLocation>> elementRelationshipMap = relationshipMap.get(element);
+      if (elementRelationshipMap != null) {
+        ArrayList<ContributedLocation> contributedLocations = elementRelationshipMap.get(relationship);
+        if (contributedLocations != null) {
+          int count = contributedLocations.size();
+          Location[] locations = new Location[count];
+          for (int i = 0; i < count; i++) {
+            locations[i] = contributedLocations.get(i).getLocation();
+          }
+          return locations;
+        }
+      }
+      return Location.EMPTY_ARRAY;
+    }
+
+    public void recordRelationship(Resource contributor, Element element,
+        Relationship relationship, Location location) {
+      recordElement(element);
+      recordElement(location.getElement());
+      HashMap<Relationship, ArrayList<ContributedLocation>> elementRelationshipMap = relationshipMap.get(element);
+      if (elementRelationshipMap == null) {
+        elementRelationshipMap = new HashMap<Relationship, ArrayList<ContributedLocation>>();
+        relationshipMap.put(element, elementRelationshipMap);
+      }
+      ArrayList<ContributedLocation> locations = elementRelationshipMap.get(relationship);
+      if (locations == null) {
+        locations = new ArrayList<ContributedLocation>();
+        elementRelationshipMap.put(relationship, locations);
+      }
+      locations.add(new ContributedLocation(contributor, location));
+    }
+
+    private void recordElement(Element element) {
+      Resource resource = element.getResource();
+      Set<Element> elementList = resourceToElementMap.get(resource);
+      if (elementList == null) {
+        elementList = new HashSet<Element>();
+        resourceToElementMap.put(resource, elementList);
+      }
+      elementList.add(element);
+    }
+  }
+
+  /**
+   * The number of values in each reference: the contributing resource, the resource and name of the
+   * referenced element, the resource and name of the element containing the reference, and the
+   * offset and length of the reference.
+   */
+  private static final int REFERENCE_SIZE = 7;
+
+  public static void main(String... arguments) throws IOException {
+    List<String> names = new ArrayList<String>();
+    List<String> sources = new ArrayList<String>();
+    for (String argument : arguments) {
+      addSources(new File(argument), names, sources);
+    }
+    List<DartUnit> units = new ArrayList<DartUnit>();
+    for (int i = 0; i < sources.size(); i++) {
+      DartSourceString source = new DartSourceString(names.get(i), sources.get(i));
+      units.add(new DartParser(new DartScannerParserContext(source, sources.get(i),
+          DartCompilerListener.EMPTY)).parseUnit(source));
+    }
+    final List<String> strings = new ArrayList<String>();
+    final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+    final Map<String, int[]> declarations = new HashMap<String, int[]>();
+    for (int i = 0; i < units.size(); i++) {
+      final int resourceId = intern(names.get(i), strings, stringIds);
+      units.get(i).accept(new ASTVisitor<Void>() {
+        @Override
+        public Void visitClass(DartClass node) {
+          declare(node.getClassName());
+          return super.visitClass(node);
+        }
+
+        @Override
+        public Void visitClassMember(DartClassMember<?> node) {
+          declare(node.getName().toString());
+          return null;
+        }
+
+        private void declare(String name) {
+          if (!declarations.containsKey(name)) {
+            declarations.put(name, new int[] {resourceId, intern(name, strings, stringIds)});
+          }
+        }
+      });
+    }
+    final int[][] references = new int[1][REFERENCE_SIZE * 1024];
+    final int[] referenceCount = new int[1];
+    for (int i = 0; i < units.size(); i++) {
+      final int resourceId = intern(names.get(i), strings, stringIds);
+      units.get(i).accept(new ASTVisitor<Void>() {
+        private int container = intern("", strings, stringIds);
+
+        @Override
+        public Void visitClass(DartClass node) {
+          int outerContainer = container;
+          container = intern(node.getClassName(), strings, stringIds);
+          super.visitClass(node);
+          container = outerContainer;
+          return null;
+        }
+
+        @Override
+        public Void visitClassMember(DartClassMember<?> node) {
+          int outerContainer = container;
+          container = intern(strings.get(container) + "." + node.getName(), strings, stringIds);
+          super.visitClassMember(node);
+          container = outerContainer;
+          return null;
+        }
+
+        @Override
+        public Void visitIdentifier(DartIdentifier node) {
+          int[] declaration = declarations.get(node.getName());
+          if (declaration != null) {
+            int size = referenceCount[0] * REFERENCE_SIZE;
+            if (size == references[0].length) {
+              int[] newReferences = new int[size * 2];
+              System.arraycopy(references[0], 0, newReferences, 0, size);
+              references[0] = newReferences;
+            }
+            int[] reference = references[0];
+            reference[size] = resourceId;
+            reference[size + 1] = declaration[0];
+            reference[size + 2] = declaration[1];
+            reference[size + 3] = resourceId;
+            reference[size + 4] = container;
+            reference[size + 5] = node.getSourceInfo().getOffset();
+            reference[size + 6] = node.getSourceInfo().getLength();
+            referenceCount[0]++;
+          }
+          return null;
+        }
+      });
+    }
+    units = null;
+    sources = null;
+    System.out.println(names.size() + " files, " + referenceCount[0] + " references, "
+        + declarations.size() + " referenced elements");
+
+    Relationship relationship = IndexConstants.IS_REFERENCED_BY;
+    long used = usedMemory();
+    long start = System.currentTimeMillis();
+    MapIndexStore mapStore = new MapIndexStore();
+    for (int i = 0; i < referenceCount[0]; i++) {
+      int[] r = references[0];
+      int base = i * REFERENCE_SIZE;
+      mapStore.recordRelationship(new Resource(strings.get(r[base])), new Element(new Resource(
+          strings.get(r[base + 1])), strings.get(r[base + 2])), relationship, new Location(
+          new Element(new Resource(strings.get(r[base + 3])), strings.get(r[base + 4])),
+          r[base + 5], r[base + 6]));
+    }
+    long recordTime = System.currentTimeMillis() - start;
+    long mapStoreMemory = usedMemory() - used;
+    long queryTime = queryAll(mapStore, null, declarations.values(), strings, relationship);
+    System.out.println(String.format("previous store: %.01f MB, record %d ms, query %d ms",
+        mapStoreMemory / 1e6, recordTime, queryTime));
+    mapStore = null;
+
+    used = usedMemory();
+    start = System.currentTimeMillis();
+    IndexStore store = new IndexStore();
+    for (int i = 0; i < referenceCount[0]; i++) {
+      int[] r = references[0];
+      int base = i * REFERENCE_SIZE;
+      store.recordRelationship(new Resource(strings.get(r[base])), new Element(new Resource(
+          strings.get(r[base + 1])), strings.get(r[base + 2])), relationship, new Location(
+          new Element(new Resource(strings.get(r[base + 3])), strings.get(r[base + 4])),
+          r[base + 5], r[base + 6]));
+    }
+    recordTime = System.currentTimeMillis() - start;
+    long storeMemory = usedMemory() - used;
+    queryTime = queryAll(null, store, declarations.values(), strings, relationship);
+    System.out.println(String.format("compact store: %.01f MB, record %d ms, query %d ms",
+        storeMemory / 1e6, recordTime, queryTime));
+    if (store.getRelationshipCount() != referenceCount[0]) {
+      throw new IllegalStateException("Expected " + referenceCount[0] + " relationships");
+    }
+  }
+
+  private static void addSources(File file, List<String> names, List<String> sources)
+      throws IOException {
+    if (file.isDirectory()) {
+      for (File child : file.listFiles()) {
+        addSources(child, names, sources);
+      }
+    } else if (file.getName().endsWith(".dart")) {
+      names.add(file.getPath());
+      sources.add(Files.toString(file, Charsets.UTF_8));
+    }
+  }
+
+  private static int intern(String string, List<String> strings, Map<String, Integer> stringIds) {
+    Integer id = stringIds.get(string);
+    if (id == null) {
+      id = strings.size();
+      strings.add(string);
+      stringIds.put(string, id);
+    }
+    return id;
+  }
+
+  /**
+   * Query the locations referencing each of the declarations ten times, returning the time it took.
+   */
+  private static long queryAll(MapIndexStore mapStore, IndexStore store,
+      Iterable<int[]> declarations, List<String> strings, Relationship relationship) {
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 10; i++) {
+      for (int[] declaration : declarations) {
+        Element element = new Element(new Resource(strings.get(declaration[0])),
+            strings.get(declaration[1]));
+        if (mapStore != null) {
+          mapStore.getRelationships(element, relationship);
+        } else {
+          store.getRelationships(element, relationship);
+        }
+      }
+    }
+    return System.currentTimeMillis() - start;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
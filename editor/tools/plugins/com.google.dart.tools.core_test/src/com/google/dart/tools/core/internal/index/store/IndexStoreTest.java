@@ -35,6 +35,23 @@ public class IndexStoreTest extends TestCase {
     assertNull(index.getAttribute(element, attribute));
   }
 
+  public void test_IndexStore_getRelationshipCount() {
+    IndexStore index = new IndexStore();
+    Resource resource1 = new Resource("resource1");
+    Resource resource2 = new Resource("resource2");
+    Element element1 = new Element(resource1, "element1");
+    Element element2 = new Element(resource2, "element2");
+    Relationship relationship1 = Relationship.getRelationship("relationship1");
+    Relationship relationship2 = Relationship.getRelationship("relationship2");
+    index.recordRelationship(resource1, element1, relationship1, new Location(element1, 10, 2));
+    index.recordRelationship(resource1, element1, relationship2, new Location(element1, 20, 2));
+    index.recordRelationship(resource2, element1, relationship1, new Location(element2, 30, 2));
+    assertEquals(3, index.getRelationshipCount());
+
+    index.regenerateResource(resource2);
+    assertEquals(2, index.getRelationshipCount());
+  }
+
   public void test_IndexStore_getRelationship() {
     IndexStore index = new IndexStore();
     Resource resource = new Resource("resource");
@@ -76,8 +93,32 @@ public class IndexStoreTest extends TestCase {
     locations = index.getRelationships(element, relationship);
     assertNotNull(locations);
     assertEquals(2, locations.length);
-    assertTrue((locations[0] == firstLocation && locations[1] == secondLocation)
-        || (locations[0] == secondLocation && locations[1] == firstLocation));
+    assertTrue((locations[0].equals(firstLocation) && locations[1].equals(secondLocation))
+        || (locations[0].equals(secondLocation) && locations[1].equals(firstLocation)));
+  }
+
+  public void test_IndexStore_regenerateResource_contributions() {
+    IndexStore index = new IndexStore();
+    Resource resource1 = new Resource("resource1");
+    Resource resource2 = new Resource("resource2");
+    Element element1 = new Element(resource1, "element1");
+    Element element2 = new Element(resource2, "element2");
+    Relationship relationship = Relationship.getRelationship("relationship");
+    Location location1 = new Location(element1, 100, 6);
+    Location location2 = new Location(element2, 100, 6);
+    Location location3 = new Location(element1, 200, 6);
+    index.recordRelationship(resource1, element2, relationship, location1);
+    index.recordRelationship(resource2, element2, relationship, location2);
+
+    IndexStore contributions = new IndexStore();
+    contributions.recordRelationship(resource1, element2, relationship, location3);
+    index.regenerateResource(resource1, contributions);
+
+    Location[] locations = index.getRelationships(element2, relationship);
+    assertNotNull(locations);
+    assertEquals(2, locations.length);
+    assertTrue((locations[0].equals(location2) && locations[1].equals(location3))
+        || (locations[0].equals(location3) && locations[1].equals(location2)));
   }
 
   public void test_IndexStore_removeResource_backward() {
@@ -100,6 +141,27 @@ public class IndexStoreTest extends TestCase {
     assertEquals(location1, locations[0]);
   }
 
+  public void test_IndexStore_removeResource_recordAgain() {
+    IndexStore index = new IndexStore();
+    Resource resource1 = new Resource("resource1");
+    Resource resource2 = new Resource("resource2");
+    Element element1 = new Element(resource1, "element1");
+    Element element2 = new Element(resource2, "element2");
+    Element element3 = new Element(resource2, "element3");
+    Relationship relationship = Relationship.getRelationship("relationship");
+    Location location1 = new Location(element2, 100, 6);
+    Location location2 = new Location(element3, 200, 6);
+    index.recordRelationship(resource2, element1, relationship, location1);
+
+    index.removeResource(resource2);
+    index.recordRelationship(resource2, element1, relationship, location2);
+
+    Location[] locations = index.getRelationships(element1, relationship);
+    assertEquals(1, locations.length);
+    assertEquals(location2, locations[0]);
+    assertEquals(0, index.getRelationships(element2, relationship).length);
+  }
+
   public void test_IndexStore_removeResource_forward() {
     IndexStore index = new IndexStore();
     Resource resource = new Resource("resource");